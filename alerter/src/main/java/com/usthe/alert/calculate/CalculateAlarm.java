@@ -30,8 +30,8 @@ import com.usthe.alert.util.AlertTemplateUtil;
 import com.usthe.common.entity.manager.Monitor;
 import com.usthe.common.entity.message.CollectRep;
 import com.usthe.common.util.CommonConstants;
-import com.usthe.common.util.CommonUtil;
 import com.usthe.common.util.ResourceBundleUtil;
+import com.usthe.common.util.ValueRowUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Configuration;
 
@@ -176,78 +176,54 @@ public class CalculateAlarm {
         Map<String, Object> fieldValueMap = new HashMap<>(16);
         for (CollectRep.ValueRow valueRow : metricsData.getValuesList()) {
             if (!valueRow.getColumnsList().isEmpty()) {
-                fieldValueMap.clear();
-                String instance = valueRow.getInstance();
-                if (!"".equals(instance)) {
-                    fieldValueMap.put("instance", instance);
-                }
-                for (int index = 0; index < valueRow.getColumnsList().size(); index++) {
-                    String valueStr = valueRow.getColumns(index);
-                    CollectRep.Field field = fields.get(index);
-                    if (field.getType() == CommonConstants.TYPE_NUMBER) {
-                        Double doubleValue = CommonUtil.parseStrDouble(valueStr);
-                        if (doubleValue != null) {
-                            fieldValueMap.put(field.getName(), doubleValue);
-                        }
-                    } else {
-                        if (!"".equals(valueStr)) {
-                            fieldValueMap.put(field.getName(), valueStr);
-                        }
-                    }
-                }
+                fillFieldValueMap(fields, valueRow, fieldValueMap);
                 for (Map.Entry<String, List<AlertDefine>> entry : defineMap.entrySet()) {
-                    List<AlertDefine> defines = entry.getValue();
-                    for (AlertDefine define : defines) {
-                        String expr = define.getExpr();
-                        try {
-                            Expression expression = AviatorEvaluator.compile(expr, true);
-                            Boolean match = (Boolean) expression.execute(fieldValueMap);
-                            if (match != null && match) {
-                                // 阈值规则匹配，判断已触发阈值次数，触发告警
-                                String monitorAlertKey = String.valueOf(monitorId) + define.getId();
-                                Alert triggeredAlert = triggeredAlertMap.get(monitorAlertKey);
-                                if (triggeredAlert != null) {
-                                    int times = triggeredAlert.getTimes() + 1;
-                                    triggeredAlert.setTimes(times);
-                                    triggeredAlert.setLastTriggerTime(currentTimeMilli);
-                                    int defineTimes = define.getTimes() == null ? 0 : define.getTimes();
-                                    if (times >= defineTimes) {
-                                        triggeredAlertMap.remove(monitorAlertKey);
-                                        dataQueue.addAlertData(triggeredAlert);
-                                    }
-                                } else {
-                                    int times = 1;
-                                    fieldValueMap.put("app", app);
-                                    fieldValueMap.put("metrics", metrics);
-                                    fieldValueMap.put("metric", define.getField());
-                                    Map<String, String> tags = new HashMap<>(6);
-                                    tags.put(CommonConstants.TAG_MONITOR_ID, String.valueOf(monitorId));
-                                    tags.put(CommonConstants.TAG_MONITOR_APP, app);
-                                    Alert alert = Alert.builder()
-                                            .tags(tags)
-                                            .alertDefineId(define.getId())
-                                            .priority(define.getPriority())
-                                            .status(CommonConstants.ALERT_STATUS_CODE_PENDING)
-                                            .target(app + "." + metrics + "." + define.getField())
-                                            .times(times)
-                                            .firstTriggerTime(currentTimeMilli)
-                                            .lastTriggerTime(currentTimeMilli)
-                                            // 模板中关键字匹配替换
-                                            .content(AlertTemplateUtil.render(define.getTemplate(), fieldValueMap))
-                                            .build();
-                                    int defineTimes = define.getTimes() == null ? 0 : define.getTimes();
-                                    if (times >= defineTimes) {
-                                        dataQueue.addAlertData(alert);
-                                    } else {
-                                        triggeredAlertMap.put(monitorAlertKey, alert);
-                                    }
-                                }
-                                // 此优先级以下的阈值规则则忽略
-                                break;
+                    AlertDefine define = matchDefine(entry.getValue(), fieldValueMap);
+                    if (define == null) {
+                        continue;
+                    }
+                    try {
+                        // 阈值规则匹配，判断已触发阈值次数，触发告警
+                        String monitorAlertKey = String.valueOf(monitorId) + define.getId();
+                        Alert triggeredAlert = triggeredAlertMap.get(monitorAlertKey);
+                        if (triggeredAlert != null) {
+                            int times = triggeredAlert.getTimes() + 1;
+                            triggeredAlert.setTimes(times);
+                            triggeredAlert.setLastTriggerTime(currentTimeMilli);
+                            int defineTimes = define.getTimes() == null ? 0 : define.getTimes();
+                            if (times >= defineTimes) {
+                                triggeredAlertMap.remove(monitorAlertKey);
+                                dataQueue.addAlertData(triggeredAlert);
+                            }
+                        } else {
+                            int times = 1;
+                            fieldValueMap.put("app", app);
+                            fieldValueMap.put("metrics", metrics);
+                            fieldValueMap.put("metric", define.getField());
+                            Map<String, String> tags = new HashMap<>(6);
+                            tags.put(CommonConstants.TAG_MONITOR_ID, String.valueOf(monitorId));
+                            tags.put(CommonConstants.TAG_MONITOR_APP, app);
+                            Alert alert = Alert.builder()
+                                    .tags(tags)
+                                    .alertDefineId(define.getId())
+                                    .priority(define.getPriority())
+                                    .status(CommonConstants.ALERT_STATUS_CODE_PENDING)
+                                    .target(app + "." + metrics + "." + define.getField())
+                                    .times(times)
+                                    .firstTriggerTime(currentTimeMilli)
+                                    .lastTriggerTime(currentTimeMilli)
+                                    // 模板中关键字匹配替换
+                                    .content(AlertTemplateUtil.render(define.getTemplate(), fieldValueMap))
+                                    .build();
+                            int defineTimes = define.getTimes() == null ? 0 : define.getTimes();
+                            if (times >= defineTimes) {
+                                dataQueue.addAlertData(alert);
+                            } else {
+                                triggeredAlertMap.put(monitorAlertKey, alert);
                             }
-                        } catch (Exception e) {
-                            log.warn(e.getMessage());
                         }
+                    } catch (Exception e) {
+                        log.warn(e.getMessage());
                     }
                 }
 
@@ -255,6 +231,61 @@ public class CalculateAlarm {
         }
     }
 
+    /**
+     * Fill the field values of one row into the map, the expression environment of the alert defines.
+     * 将一行数据的字段值填入map 作为告警定义表达式的计算环境
+     *
+     * @param fields        metrics fields
+     * @param valueRow      one row of the metrics data
+     * @param fieldValueMap field value map, cleared before filled
+     */
+    public static void fillFieldValueMap(List<CollectRep.Field> fields, CollectRep.ValueRow valueRow,
+                                         Map<String, Object> fieldValueMap) {
+        fieldValueMap.clear();
+        String instance = valueRow.getInstance();
+        if (!"".equals(instance)) {
+            fieldValueMap.put("instance", instance);
+        }
+        for (int index = 0; index < valueRow.getColumnsList().size(); index++) {
+            CollectRep.Field field = fields.get(index);
+            if (field.getType() == CommonConstants.TYPE_NUMBER) {
+                Double doubleValue = ValueRowUtil.getNumber(valueRow, index);
+                if (doubleValue != null) {
+                    fieldValueMap.put(field.getName(), doubleValue);
+                }
+            } else {
+                String valueStr = valueRow.getColumns(index);
+                if (!"".equals(valueStr)) {
+                    fieldValueMap.put(field.getName(), valueStr);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluate the defines in order and return the first matched one, the defines after it are ignored.
+     * 按序计算告警定义表达式 返回首个匹配的定义 其后的定义忽略
+     *
+     * @param defines       alert defines of one field, ordered by priority
+     * @param fieldValueMap field value map of one row
+     * @return the matched define, null when none matched
+     */
+    public static AlertDefine matchDefine(List<AlertDefine> defines, Map<String, Object> fieldValueMap) {
+        for (AlertDefine define : defines) {
+            try {
+                Expression expression = AviatorEvaluator.compile(define.getExpr(), true);
+                Boolean match = (Boolean) expression.execute(fieldValueMap);
+                if (match != null && match) {
+                    // 此优先级以下的阈值规则则忽略
+                    return define;
+                }
+            } catch (Exception e) {
+                log.warn(e.getMessage());
+            }
+        }
+        return null;
+    }
+
     private void handlerMonitorStatusAlert(String monitorId, String app, CollectRep.Code code) {
         Alert preAlert = triggeredAlertMap.get(monitorId);
         long currentTimeMill = System.currentTimeMillis();
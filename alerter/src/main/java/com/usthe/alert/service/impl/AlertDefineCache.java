@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.alert.service.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.usthe.common.entity.alerter.AlertDefine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the grouped, priority-sorted alert defines of monitor + app + metrics
+ * 监控+监控类型+指标组 对应的已分组排序告警定义缓存
+ * <p>
+ * app:metrics - monitorId - field:defines
+ * Invalidation is done by app + metrics (define add/modify/delete/bind) or by monitor (monitor delete).
+ * The hit, miss and hit rate of the last interval are logged periodically.
+ * 定期打印最近一个周期的命中数,未命中数和命中率
+ *
+ * @author tom
+ * @date 2026/10/16 15:02
+ */
+@Component
+@Slf4j
+public class AlertDefineCache implements DisposableBean {
+
+    /**
+     * interval minutes of the cache stats log
+     */
+    private static final long STATS_LOG_INTERVAL = 5;
+
+    /**
+     * app:metrics - monitorId - (field - defines), empty map means no define
+     */
+    private final Map<String, Map<Long, Map<String, List<AlertDefine>>>> defineCache = new ConcurrentHashMap<>(64);
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictCount = new LongAdder();
+    private final ScheduledExecutorService statsExecutor;
+    private long lastHitCount;
+    private long lastMissCount;
+
+    public AlertDefineCache() {
+        statsExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("alerter-define-cache-stats")
+                .build());
+        statsExecutor.scheduleWithFixedDelay(this::logStats, STATS_LOG_INTERVAL, STATS_LOG_INTERVAL, TimeUnit.MINUTES);
+    }
+
+    /**
+     * get the grouped defines from cache, load and cache them when not exist
+     * @param monitorId monitor id
+     * @param app monitor app
+     * @param metrics metrics
+     * @param loader load defines from database
+     * @return field - defines, null when no define
+     */
+    public Map<String, List<AlertDefine>> get(long monitorId, String app, String metrics,
+                                              Supplier<Map<String, List<AlertDefine>>> loader) {
+        Map<Long, Map<String, List<AlertDefine>>> monitorDefineMap =
+                defineCache.computeIfAbsent(cacheKey(app, metrics), key -> new ConcurrentHashMap<>(16));
+        Map<String, List<AlertDefine>> defineMap = monitorDefineMap.get(monitorId);
+        if (defineMap != null) {
+            hitCount.increment();
+            return defineMap.isEmpty() ? null : defineMap;
+        }
+        missCount.increment();
+        defineMap = loader.get();
+        defineMap = defineMap == null ? Collections.emptyMap() : Collections.unmodifiableMap(defineMap);
+        // the group may be evicted while loading, only cache into the group which is still in use
+        if (defineCache.get(cacheKey(app, metrics)) == monitorDefineMap) {
+            monitorDefineMap.put(monitorId, defineMap);
+        }
+        return defineMap.isEmpty() ? null : defineMap;
+    }
+
+    /**
+     * evict all monitors' defines of this app metrics, now and after the current transaction committed
+     * @param app monitor app
+     * @param metrics metrics
+     */
+    public void evict(String app, String metrics) {
+        if (app == null || metrics == null) {
+            return;
+        }
+        String key = cacheKey(app, metrics);
+        runNowAndAfterCommit(() -> {
+            if (defineCache.remove(key) != null) {
+                evictCount.increment();
+            }
+        });
+    }
+
+    /**
+     * evict all defines of this monitor, now and after the current transaction committed
+     * @param monitorId monitor id
+     */
+    public void evictMonitor(long monitorId) {
+        runNowAndAfterCommit(() -> {
+            for (Map<Long, Map<String, List<AlertDefine>>> monitorDefineMap : defineCache.values()) {
+                if (monitorDefineMap.remove(monitorId) != null) {
+                    evictCount.increment();
+                }
+            }
+        });
+    }
+
+    /**
+     * evict all
+     */
+    public void clear() {
+        runNowAndAfterCommit(defineCache::clear);
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictCount() {
+        return evictCount.sum();
+    }
+
+    public double getHitRate() {
+        long hit = hitCount.sum();
+        long total = hit + missCount.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * log the hit, miss and hit rate since the last log, nothing when no lookup
+     */
+    void logStats() {
+        long hit = hitCount.sum();
+        long miss = missCount.sum();
+        long intervalHit = hit - lastHitCount;
+        long intervalMiss = miss - lastMissCount;
+        lastHitCount = hit;
+        lastMissCount = miss;
+        long lookups = intervalHit + intervalMiss;
+        if (lookups == 0) {
+            return;
+        }
+        log.info("[alert define cache] last {} minutes hit: {}, miss: {}, hit rate: {}%, total evict: {}, groups: {}.",
+                STATS_LOG_INTERVAL, intervalHit, intervalMiss, String.format("%.2f", intervalHit * 100D / lookups),
+                evictCount.sum(), defineCache.size());
+    }
+
+    @Override
+    public void destroy() {
+        statsExecutor.shutdownNow();
+    }
+
+    private void runNowAndAfterCommit(Runnable evictTask) {
+        evictTask.run();
+        // a concurrent reader may load the uncommitted old data into cache, evict again after commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictTask.run();
+                }
+            });
+        }
+    }
+
+    private static String cacheKey(String app, String metrics) {
+        return app + ":" + metrics;
+    }
+}
@@ -28,6 +28,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Comparator;
@@ -53,6 +54,9 @@ public class AlertDefineServiceImpl implements AlertDefineService {
     @Autowired
     private AlertDefineBindDao alertDefineBindDao;
 
+    @Autowired
+    private AlertDefineCache alertDefineCache;
+
     @Override
     public void validate(AlertDefine alertDefine, boolean isModify) throws IllegalArgumentException {
         // todo
@@ -61,15 +65,20 @@ public class AlertDefineServiceImpl implements AlertDefineService {
     @Override
     public void addAlertDefine(AlertDefine alertDefine) throws RuntimeException {
         alertDefineDao.save(alertDefine);
+        alertDefineCache.evict(alertDefine.getApp(), alertDefine.getMetric());
     }
 
     @Override
     public void modifyAlertDefine(AlertDefine alertDefine) throws RuntimeException {
+        // the app or metric may be modified, evict the old one too
+        alertDefineDao.findById(alertDefine.getId()).ifPresent(define -> alertDefineCache.evict(define.getApp(), define.getMetric()));
         alertDefineDao.save(alertDefine);
+        alertDefineCache.evict(alertDefine.getApp(), alertDefine.getMetric());
     }
 
     @Override
     public void deleteAlertDefine(long alertId) throws RuntimeException {
+        alertDefineDao.findById(alertId).ifPresent(define -> alertDefineCache.evict(define.getApp(), define.getMetric()));
         alertDefineDao.deleteById(alertId);
     }
 
@@ -81,6 +90,7 @@ public class AlertDefineServiceImpl implements AlertDefineService {
 
     @Override
     public void deleteAlertDefines(Set<Long> alertIds) throws RuntimeException {
+        alertDefineDao.findAllById(alertIds).forEach(define -> alertDefineCache.evict(define.getApp(), define.getMetric()));
         alertDefineDao.deleteAlertDefinesByIdIn(alertIds);
     }
 
@@ -97,10 +107,18 @@ public class AlertDefineServiceImpl implements AlertDefineService {
         alertDefineBindDao.deleteAlertDefineBindsByAlertDefineIdEquals(alertId);
         // 保存关联
         alertDefineBindDao.saveAll(alertDefineBinds);
+        alertDefineDao.findById(alertId).ifPresent(define -> alertDefineCache.evict(define.getApp(), define.getMetric()));
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Map<String, List<AlertDefine>> getMonitorBindAlertDefines(long monitorId, String app, String metrics) {
+        // cache hit does not touch database, no transaction is started here
+        // 缓存命中时不访问数据库 这里不开启事务
+        return alertDefineCache.get(monitorId, app, metrics, () -> queryMonitorBindAlertDefines(monitorId, app, metrics));
+    }
+
+    private Map<String, List<AlertDefine>> queryMonitorBindAlertDefines(long monitorId, String app, String metrics) {
         List<AlertDefine> defines = alertDefineDao.queryAlertDefinesByMonitor(monitorId, app, metrics);
         List<AlertDefine> defaultDefines = alertDefineDao.queryAlertDefinesByAppAndMetricAndPresetTrueAndEnableTrue(app, metrics);
         defines.addAll(defaultDefines);
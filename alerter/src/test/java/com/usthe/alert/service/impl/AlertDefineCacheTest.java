@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.alert.service.impl;
+
+import com.usthe.common.entity.alerter.AlertDefine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link AlertDefineCache}
+ */
+class AlertDefineCacheTest {
+
+    private AlertDefineCache alertDefineCache;
+    private AtomicInteger loadTimes;
+
+    @BeforeEach
+    void setUp() {
+        alertDefineCache = new AlertDefineCache();
+        loadTimes = new AtomicInteger();
+    }
+
+    @AfterEach
+    void tearDown() {
+        alertDefineCache.destroy();
+    }
+
+    private Map<String, List<AlertDefine>> load() {
+        loadTimes.incrementAndGet();
+        AlertDefine define = AlertDefine.builder().id(1L).app("linux").metric("cpu").field("usage").expr("usage>90").build();
+        return Collections.singletonMap("usage", Collections.singletonList(define));
+    }
+
+    @Test
+    void hitAndMiss() {
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(alertDefineCache.get(1L, "linux", "cpu", this::load));
+        }
+        assertEquals(1, loadTimes.get());
+        assertEquals(1, alertDefineCache.getMissCount());
+        assertEquals(9, alertDefineCache.getHitCount());
+    }
+
+    @Test
+    void cacheNoDefine() {
+        assertNull(alertDefineCache.get(1L, "linux", "memory", () -> {
+            loadTimes.incrementAndGet();
+            return null;
+        }));
+        assertNull(alertDefineCache.get(1L, "linux", "memory", this::load));
+        assertEquals(1, loadTimes.get());
+    }
+
+    @Test
+    void evict() {
+        alertDefineCache.get(1L, "linux", "cpu", this::load);
+        alertDefineCache.get(2L, "linux", "cpu", this::load);
+        alertDefineCache.get(1L, "linux", "disk", this::load);
+        assertEquals(3, loadTimes.get());
+
+        alertDefineCache.evict("linux", "cpu");
+        alertDefineCache.get(1L, "linux", "cpu", this::load);
+        alertDefineCache.get(2L, "linux", "cpu", this::load);
+        alertDefineCache.get(1L, "linux", "disk", this::load);
+        assertEquals(5, loadTimes.get());
+
+        alertDefineCache.evictMonitor(1L);
+        alertDefineCache.get(1L, "linux", "cpu", this::load);
+        alertDefineCache.get(2L, "linux", "cpu", this::load);
+        alertDefineCache.get(1L, "linux", "disk", this::load);
+        assertEquals(7, loadTimes.get());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.benchmark.alerter;
+
+import com.usthe.alert.calculate.CalculateAlarm;
+import com.usthe.alert.util.AlertTemplateUtil;
+import com.usthe.common.entity.alerter.AlertDefine;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
+import com.usthe.common.util.ValueRowUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the alert calculation: the threshold expression evaluation over every row by CalculateAlarm,
+ * and the AlertTemplateUtil.render of the alert content
+ * 告警计算的基准测试: CalculateAlarm对每行数据计算阈值表达式 以及告警内容模板渲染
+ *
+ * @author tom
+ * @date 2026/10/16 18:35
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlertCalculateBenchmark {
+
+    private static final int ROWS = 32;
+
+    private static final String[] EXPRESSIONS = {
+            "usage > 90", "usage > 80 && available < 1024", "equals(mounted, \"/\") && usage > 70"};
+
+    private static final String TEMPLATE = "Alert, the instance: ${instance} metrics: ${metrics} usage is ${usage}%, "
+            + "available ${available}MB on ${mounted}.";
+
+    private CollectRep.MetricsData metricsData;
+    private List<AlertDefine> defines;
+    private Map<String, Object> renderData;
+
+    @Setup
+    public void setup() {
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder()
+                .setId(1L).setApp("linux").setMetrics("disk_free").setPriority(1)
+                .addFields(CollectRep.Field.newBuilder().setName("filesystem").setType(CommonConstants.TYPE_STRING))
+                .addFields(CollectRep.Field.newBuilder().setName("usage").setType(CommonConstants.TYPE_NUMBER))
+                .addFields(CollectRep.Field.newBuilder().setName("available").setType(CommonConstants.TYPE_NUMBER))
+                .addFields(CollectRep.Field.newBuilder().setName("mounted").setType(CommonConstants.TYPE_STRING));
+        for (int i = 0; i < ROWS; i++) {
+            CollectRep.ValueRow.Builder row = CollectRep.ValueRow.newBuilder().setInstance("/dev/sda" + i)
+                    .addColumns("/dev/sda" + i).addColumns("").addColumns("").addColumns(i == 0 ? "/" : "/data" + i);
+            double[] numbers = {0, 50 + i * 1.5, 4096 - i * 100, 0};
+            byte[] presence = {0b0110};
+            ValueRowUtil.setNumbers(row, numbers, presence, 4);
+            builder.addValues(row);
+        }
+        metricsData = builder.build();
+        defines = new ArrayList<>(EXPRESSIONS.length);
+        for (byte priority = 0; priority < EXPRESSIONS.length; priority++) {
+            defines.add(AlertDefine.builder().id((long) priority).app("linux").metric("disk_free").field("usage")
+                    .priority(priority).expr(EXPRESSIONS[priority]).times(1).build());
+        }
+        renderData = new HashMap<>(8);
+        renderData.put("instance", "/dev/sda1");
+        renderData.put("metrics", "disk_free");
+        renderData.put("usage", 93.5);
+        renderData.put("available", 512.0);
+        renderData.put("mounted", "/");
+    }
+
+    /**
+     * field value map of every row and the evaluation of the defines by CalculateAlarm
+     */
+    @Benchmark
+    public int evaluateExpressions() {
+        List<CollectRep.Field> fields = metricsData.getFieldsList();
+        Map<String, Object> fieldValueMap = new HashMap<>(16);
+        int matched = 0;
+        for (CollectRep.ValueRow valueRow : metricsData.getValuesList()) {
+            CalculateAlarm.fillFieldValueMap(fields, valueRow, fieldValueMap);
+            if (CalculateAlarm.matchDefine(defines, fieldValueMap) != null) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public String renderTemplate() {
+        return AlertTemplateUtil.render(TEMPLATE, renderData);
+    }
+}
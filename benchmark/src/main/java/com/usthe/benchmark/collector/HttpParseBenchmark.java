@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.benchmark.collector;
+
+import com.usthe.benchmark.Fixtures;
+import com.usthe.collector.collect.http.promethus.AbstractPrometheusParse;
+import com.usthe.collector.collect.http.promethus.PrometheusLastParser;
+import com.usthe.collector.collect.http.promethus.PrometheusMatrixParser;
+import com.usthe.collector.collect.http.promethus.PrometheusVectorParser;
+import com.usthe.collector.util.JsonPathParser;
+import com.usthe.collector.util.PrometheusTextParser;
+import com.usthe.common.entity.job.protocol.HttpProtocol;
+import com.usthe.common.entity.message.CollectRep;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the http response parsers: jsonPath, prometheus server api json, prometheus exporter text
+ * http响应解析的基准测试: jsonPath prometheus接口json prometheus exporter文本
+ *
+ * @author tom
+ * @date 2026/10/16 18:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpParseBenchmark {
+
+    private static final String ES_NODES_JSON_PATH = "$.nodes.*";
+
+    private String elasticsearchNodesStats;
+    private String prometheusVector;
+    private String prometheusMatrix;
+    private String nodeExporterText;
+    private AbstractPrometheusParse prometheusParser;
+    private HttpProtocol http;
+    private List<String> prometheusAliasFields;
+    private List<String> filesystemLabels;
+    private List<String> histogramLabels;
+
+    @Setup
+    public void setup() {
+        elasticsearchNodesStats = Fixtures.load("elasticsearch-nodes-stats.json");
+        prometheusVector = Fixtures.load("prometheus-vector.json");
+        prometheusMatrix = Fixtures.load("prometheus-matrix.json");
+        nodeExporterText = Fixtures.load("node-exporter.txt");
+        // same chain as PrometheusParseCreater
+        prometheusParser = new PrometheusVectorParser()
+                .setInstance(new PrometheusMatrixParser().setInstance(new PrometheusLastParser()));
+        http = new HttpProtocol();
+        prometheusAliasFields = Arrays.asList("instance", "cpu", "mode", "timestamp", "value");
+        filesystemLabels = Arrays.asList("device", "mountpoint");
+        histogramLabels = Arrays.asList("handler", "le");
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> jsonPath() {
+        return JsonPathParser.parseContentWithJsonPath(elasticsearchNodesStats, ES_NODES_JSON_PATH);
+    }
+
+    @Benchmark
+    public CollectRep.MetricsData.Builder prometheusVector() {
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder();
+        prometheusParser.handle(prometheusVector, prometheusAliasFields, http, builder);
+        return builder;
+    }
+
+    @Benchmark
+    public CollectRep.MetricsData.Builder prometheusMatrix() {
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder();
+        prometheusParser.handle(prometheusMatrix, prometheusAliasFields, http, builder);
+        return builder;
+    }
+
+    /**
+     * project one gauge family out of the exporter dump
+     */
+    @Benchmark
+    public void prometheusTextFamily(Blackhole blackhole) throws IOException {
+        PrometheusTextParser.parse(new StringReader(nodeExporterText), "node_filesystem_avail_bytes", filesystemLabels,
+                (name, labelNames, labelValues, value) -> blackhole.consume(value));
+    }
+
+    /**
+     * project one histogram family out of the exporter dump
+     */
+    @Benchmark
+    public void prometheusTextHistogram(Blackhole blackhole) throws IOException {
+        PrometheusTextParser.parse(new StringReader(nodeExporterText), "prometheus_http_request_duration_seconds",
+                histogramLabels, (name, labelNames, labelValues, value) -> blackhole.consume(value));
+    }
+
+    /**
+     * materialize every sample and label of the exporter dump
+     */
+    @Benchmark
+    public Map<String, List<Map<String, Object>>> prometheusTextAll() {
+        return PrometheusTextParser.parsePrometheusText(nodeExporterText);
+    }
+
+    /**
+     * the line scan alone, no family matches
+     */
+    @Benchmark
+    public void prometheusTextScan(Blackhole blackhole) throws IOException {
+        PrometheusTextParser.parse(new StringReader(nodeExporterText), "not_exist_family", Collections.emptyList(),
+                (name, labelNames, labelValues, value) -> blackhole.consume(value));
+    }
+}
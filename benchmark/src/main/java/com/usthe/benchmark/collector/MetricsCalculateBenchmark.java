@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.benchmark.collector;
+
+import com.usthe.collector.dispatch.MetricsCalculatePlan;
+import com.usthe.collector.dispatch.unit.UnitConvert;
+import com.usthe.collector.dispatch.unit.impl.DataSizeConvert;
+import com.usthe.collector.util.CollectUtil;
+import com.usthe.common.entity.job.Metrics;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the metrics field calculation in MetricsCollect.calculateFields
+ * (alias fields, calculate expressions, unit conversion) and of CollectUtil.extractDoubleAndUnitFromStr
+ * 采集指标字段计算(别名 计算表达式 单位转换)及数值单位提取的基准测试
+ *
+ * @author tom
+ * @date 2026/10/16 18:25
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsCalculateBenchmark {
+
+    private static final String[] RAW_VALUES = {"1048576", "23.43GB", "33KB", "44.22G", "97.5%", "-",
+            "1.5e+06", "not-a-number", "0", "512MB"};
+
+    /**
+     * rows of one collect response
+     */
+    @Param({"1", "64"})
+    public int rows;
+
+    private final List<UnitConvert> unitConvertList = Collections.singletonList(new DataSizeConvert());
+    private Metrics metrics;
+    private List<CollectRep.ValueRow> collectRows;
+
+    @Setup
+    public void setup() {
+        // disk metrics of app-linux, raw column unit B
+        metrics = new Metrics();
+        metrics.setName("disk_free");
+        metrics.setPriority((byte) 1);
+        metrics.setFields(Arrays.asList(
+                new Metrics.Field("filesystem", CommonConstants.TYPE_STRING, true, null),
+                new Metrics.Field("used", CommonConstants.TYPE_NUMBER, false, "MB"),
+                new Metrics.Field("available", CommonConstants.TYPE_NUMBER, false, "MB"),
+                new Metrics.Field("usage", CommonConstants.TYPE_NUMBER, false, "%"),
+                new Metrics.Field("mounted", CommonConstants.TYPE_STRING, false, null)));
+        metrics.setAliasFields(Arrays.asList("filesystem", "used", "available", "mounted"));
+        metrics.setCalculates(Collections.singletonList("usage=used/(used+available)*100"));
+        metrics.setUnits(Arrays.asList("used=B->MB", "available=B->MB"));
+        collectRows = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            collectRows.add(CollectRep.ValueRow.newBuilder()
+                    .addColumns("/dev/nvme0n1p" + i)
+                    .addColumns(String.valueOf(1073741824L + i * 4096L))
+                    .addColumns(String.valueOf(8589934592L - i * 8192L))
+                    .addColumns("/data" + i)
+                    .build());
+        }
+    }
+
+    private CollectRep.MetricsData.Builder collectData() {
+        return CollectRep.MetricsData.newBuilder().addAllValues(collectRows);
+    }
+
+    /**
+     * calculate with the plan cached on metrics, the steady state of a scheduled metrics
+     */
+    @Benchmark
+    public CollectRep.MetricsData calculateFieldsCachedPlan() {
+        CollectRep.MetricsData.Builder collectData = collectData();
+        MetricsCalculatePlan.of(metrics, unitConvertList).calculate(collectData);
+        return collectData.build();
+    }
+
+    /**
+     * compile expressions and units on every collection
+     */
+    @Benchmark
+    public CollectRep.MetricsData calculateFieldsColdPlan() {
+        CollectRep.MetricsData.Builder collectData = collectData();
+        MetricsCalculatePlan.build(metrics, unitConvertList).calculate(collectData);
+        return collectData.build();
+    }
+
+    @Benchmark
+    public void extractDoubleAndUnitFromStr(Blackhole blackhole) {
+        for (String value : RAW_VALUES) {
+            blackhole.consume(CollectUtil.extractDoubleAndUnitFromStr(value));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.benchmark.common;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonUtil;
+import com.usthe.common.util.ValueRowUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of parsing and reading the number values of ValueRow, string columns vs typed numbers
+ * ValueRow数字指标值解析读取的基准测试 字符串列对比类型化数值
+ *
+ * @author tom
+ * @date 2026/10/16 18:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueRowBenchmark {
+
+    private static final int COLUMNS = 12;
+
+    /**
+     * rows of metrics data
+     */
+    @Param({"1", "1000"})
+    public int rows;
+
+    private byte[] stringBytes;
+    private byte[] typedBytes;
+
+    @Setup
+    public void setup() {
+        CollectRep.MetricsData.Builder stringData = CollectRep.MetricsData.newBuilder();
+        CollectRep.MetricsData.Builder typedData = CollectRep.MetricsData.newBuilder();
+        for (int row = 0; row < rows; row++) {
+            CollectRep.ValueRow.Builder stringRow = CollectRep.ValueRow.newBuilder().setInstance("disk" + row);
+            CollectRep.ValueRow.Builder typedRow = CollectRep.ValueRow.newBuilder().setInstance("disk" + row);
+            stringRow.addColumns("disk" + row);
+            typedRow.addColumns("disk" + row);
+            double[] numbers = new double[COLUMNS];
+            byte[] presence = new byte[(COLUMNS + 7) >>> 3];
+            for (int index = 1; index < COLUMNS; index++) {
+                String value = CommonUtil.parseDoubleStr(String.valueOf(row * 1048576.1234 + index * 1000), null);
+                stringRow.addColumns(value);
+                numbers[index] = Double.parseDouble(value);
+                presence[index >>> 3] |= 1 << (index & 7);
+                typedRow.addColumns("");
+            }
+            ValueRowUtil.setNumbers(typedRow, numbers, presence, COLUMNS);
+            stringData.addValues(stringRow);
+            typedData.addValues(typedRow);
+        }
+        stringBytes = stringData.build().toByteArray();
+        typedBytes = typedData.build().toByteArray();
+    }
+
+    /**
+     * number values carried as strings, parsed on every read
+     */
+    @Benchmark
+    public double readStringColumns() throws InvalidProtocolBufferException {
+        return readAll(stringBytes);
+    }
+
+    /**
+     * number values carried as typed doubles
+     */
+    @Benchmark
+    public double readTypedNumbers() throws InvalidProtocolBufferException {
+        return readAll(typedBytes);
+    }
+
+    private double readAll(byte[] bytes) throws InvalidProtocolBufferException {
+        CollectRep.MetricsData metricsData = CollectRep.MetricsData.parseFrom(bytes);
+        double sum = 0;
+        for (CollectRep.ValueRow valueRow : metricsData.getValuesList()) {
+            for (int index = 1; index < valueRow.getColumnsCount(); index++) {
+                Double value = ValueRowUtil.getNumber(valueRow, index);
+                sum += value == null ? 0 : value;
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.benchmark.warehouse;
+
+import com.usthe.warehouse.store.tsdb.LocalTsdb;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the ingest and query of the embedded local tsdb, the bytes per sample reported as a secondary result
+ * 嵌入式本地时序存储的写入与查询基准测试 每个采样点占用的字节数作为次要结果输出
+ *
+ * @author tom
+ * @date 2026/10/16 22:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalTsdbBenchmark {
+
+    private static final long INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * series written in turn
+     */
+    @Param({"100", "10000"})
+    public int series;
+
+    private File dataDir;
+    private LocalTsdb localTsdb;
+    private final Random random = new Random(7);
+    private long startTime;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dataDir = Files.createTempDirectory("hertzbeat-tsdb-benchmark").toFile();
+        localTsdb = new LocalTsdb(dataDir, 30 * DAY, DAY, 64 * 1024 * 1024, 120, TimeUnit.MINUTES.toMillis(30));
+        startTime = System.currentTimeMillis() - 30 * DAY;
+        // one day of samples of the first series for the query
+        for (int i = 0; i < DAY / INTERVAL; i++) {
+            localTsdb.append(0L, "cpu", "usage", "", startTime + i * INTERVAL, gauge(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        localTsdb.close();
+        File[] files = dataDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dataDir.delete();
+    }
+
+    /**
+     * collect interval samples of a gauge, jitter in the timestamps
+     */
+    @Benchmark
+    public void append(StorageCounters counters) throws IOException {
+        long index = sequence++;
+        long round = index / series;
+        long time = startTime + DAY + round * INTERVAL + random.nextInt(50);
+        localTsdb.append(1L + index % series, "cpu", "usage", "", time, gauge(round));
+    }
+
+    @Benchmark
+    public void queryDay(Blackhole blackhole) {
+        localTsdb.scan(0L, "cpu", "usage", null, startTime, startTime + DAY,
+                (instance, time, value) -> blackhole.consume(value));
+    }
+
+    /**
+     * storage cost of the appended samples, read from the tsdb stats at the end of every iteration
+     * 写入采样点的存储开销 每轮迭代结束时从存储统计读取
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class StorageCounters {
+
+        /**
+         * bytes of the sealed chunks per sample
+         */
+        public double bytesPerSample;
+
+        @TearDown(Level.Iteration)
+        public void readStats(LocalTsdbBenchmark benchmark) {
+            bytesPerSample = benchmark.localTsdb.getStats().getBytesPerSample();
+        }
+    }
+
+    private static double gauge(long round) {
+        return Math.round((50 + 30 * Math.sin(round / 60D)) * 100) / 100D;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.benchmark.warehouse;
+
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
+import com.usthe.warehouse.store.MetricsDataRedisCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the protobuf (de)serialization of MetricsData in MetricsDataRedisCodec
+ * MetricsDataRedisCodec中MetricsData的protobuf序列化反序列化基准测试
+ *
+ * @author tom
+ * @date 2026/10/16 18:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsDataCodecBenchmark {
+
+    private static final int COLUMNS = 8;
+
+    /**
+     * rows of metrics data
+     */
+    @Param({"1", "100"})
+    public int rows;
+
+    private final MetricsDataRedisCodec codec = new MetricsDataRedisCodec();
+    private CollectRep.MetricsData metricsData;
+    private byte[] encoded;
+    private ByteBuf target;
+    private ByteBuffer directEncoded;
+
+    @Setup
+    public void setup() {
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder()
+                .setId(1024L).setApp("linux").setMetrics("interface").setTime(System.currentTimeMillis())
+                .setCode(CollectRep.Code.SUCCESS);
+        builder.addFields(CollectRep.Field.newBuilder().setName("interface_name").setType(CommonConstants.TYPE_STRING));
+        for (int i = 1; i < COLUMNS; i++) {
+            builder.addFields(CollectRep.Field.newBuilder().setName("field" + i).setType(CommonConstants.TYPE_NUMBER)
+                    .setUnit("MB"));
+        }
+        for (int row = 0; row < rows; row++) {
+            CollectRep.ValueRow.Builder valueRow = CollectRep.ValueRow.newBuilder().setInstance("eth" + row)
+                    .addColumns("eth" + row);
+            for (int i = 1; i < COLUMNS; i++) {
+                valueRow.addColumns(String.valueOf(row * 1048576.123 + i));
+            }
+            builder.addValues(valueRow);
+        }
+        metricsData = builder.build();
+        encoded = metricsData.toByteArray();
+        target = Unpooled.directBuffer(encoded.length);
+        directEncoded = ByteBuffer.allocateDirect(encoded.length);
+        directEncoded.put(encoded).flip();
+    }
+
+    @TearDown
+    public void tearDown() {
+        target.release();
+    }
+
+    @Benchmark
+    public ByteBuffer encodeValue() {
+        return codec.encodeValue(metricsData);
+    }
+
+    @Benchmark
+    public ByteBuf encodeValueToByteBuf() {
+        target.clear();
+        codec.encodeValue(metricsData, target);
+        return target;
+    }
+
+    @Benchmark
+    public CollectRep.MetricsData decodeValue() {
+        return codec.decodeValue(ByteBuffer.wrap(encoded));
+    }
+
+    @Benchmark
+    public CollectRep.MetricsData decodeDirectValue() {
+        return codec.decodeValue(directEncoded.duplicate());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.benchmark.warehouse;
+
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
+import com.usthe.warehouse.store.MetricsDataRedisCodec;
+import com.usthe.warehouse.store.RedisBatchWriter;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.protocol.ProtocolVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the metrics data writes/sec of RedisDataStorage against an embedded RESP server stand-in:
+ * one async HSET per message on an auto flush connection (the former way) vs RedisBatchWriter.
+ * Each invocation writes {@link #MESSAGES} messages of 1000 monitors * 4 metrics and waits their replies.
+ * 基于嵌入式RESP服务替身的RedisDataStorage指标数据每秒写入数基准测试:
+ * 自动刷写连接上每条消息一个异步HSET(原方式) 对比 RedisBatchWriter
+ *
+ * @author tom
+ * @date 2026/10/16 23:50
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisWriteBenchmark {
+
+    private static final int MESSAGES = 4000;
+    private static final String[] METRICS = {"cpu", "memory", "disk", "interface"};
+
+    /**
+     * max fields of one batch of the batch writer
+     */
+    @Param({"100", "500"})
+    public int batchSize;
+
+    /**
+     * compress threshold of the codec, 0 means no compression
+     */
+    @Param({"0", "512"})
+    public int compressThreshold;
+
+    private RespServerStandIn server;
+    private RedisClient redisClient;
+    private StatefulRedisConnection<String, CollectRep.MetricsData> connection;
+    private StatefulRedisConnection<String, CollectRep.MetricsData> writeConnection;
+    private RedisBatchWriter batchWriter;
+    private CollectRep.MetricsData[] messages;
+
+    @Setup
+    public void setup() throws Exception {
+        server = new RespServerStandIn();
+        redisClient = RedisClient.create(RedisURI.builder().withHost("127.0.0.1").withPort(server.getPort())
+                .withTimeout(Duration.ofSeconds(10)).build());
+        redisClient.setOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build());
+        MetricsDataRedisCodec codec = new MetricsDataRedisCodec(compressThreshold);
+        connection = redisClient.connect(codec);
+        writeConnection = redisClient.connect(codec);
+        batchWriter = new RedisBatchWriter(writeConnection, batchSize, Long.MAX_VALUE, 10000);
+        messages = new CollectRep.MetricsData[MESSAGES];
+        for (int index = 0; index < MESSAGES; index++) {
+            messages[index] = metricsData(index / METRICS.length, METRICS[index % METRICS.length]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        batchWriter.close();
+        writeConnection.close();
+        connection.close();
+        redisClient.shutdown();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public boolean hsetPerMessage() {
+        RedisAsyncCommands<String, CollectRep.MetricsData> commands = connection.async();
+        RedisFuture<?>[] futures = new RedisFuture[MESSAGES];
+        for (int index = 0; index < MESSAGES; index++) {
+            CollectRep.MetricsData metricsData = messages[index];
+            futures[index] = commands.hset(String.valueOf(metricsData.getId()), metricsData.getMetrics(), metricsData);
+        }
+        return LettuceFutures.awaitAll(10, TimeUnit.SECONDS, futures);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long batchWriter() {
+        for (CollectRep.MetricsData metricsData : messages) {
+            batchWriter.add(metricsData);
+        }
+        batchWriter.close();
+        return batchWriter.getWrittenFields();
+    }
+
+    private static CollectRep.MetricsData metricsData(long monitorId, String metrics) {
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder()
+                .setId(monitorId).setApp("linux").setMetrics(metrics).setTime(System.currentTimeMillis())
+                .setCode(CollectRep.Code.SUCCESS);
+        builder.addFields(CollectRep.Field.newBuilder().setName("name").setType(CommonConstants.TYPE_STRING));
+        for (int i = 1; i < 8; i++) {
+            builder.addFields(CollectRep.Field.newBuilder().setName("field" + i).setType(CommonConstants.TYPE_NUMBER)
+                    .setUnit("MB"));
+        }
+        for (int row = 0; row < 8; row++) {
+            CollectRep.ValueRow.Builder valueRow = CollectRep.ValueRow.newBuilder().setInstance(metrics + row)
+                    .addColumns(metrics + row);
+            for (int i = 1; i < 8; i++) {
+                valueRow.addColumns(String.valueOf(row * 1048576.123 + i));
+            }
+            builder.addValues(valueRow);
+        }
+        return builder.build();
+    }
+}
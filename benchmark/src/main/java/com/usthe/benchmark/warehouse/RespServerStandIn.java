@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.benchmark.warehouse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Embedded RESP2 server stand-in of the redis write benchmark
+ * It parses the request arrays and discards the data, HSET replies the field count, others reply OK.
+ * The replies are flushed when no more pipelined request is buffered, like a real redis.
+ * redis写入基准测试的嵌入式RESP2服务替身 解析请求数组并丢弃数据 HSET回复字段数 其它命令回复OK
+ * 没有更多已缓冲的流水线请求时才刷写回复 与真实redis一致
+ *
+ * @author tom
+ * @date 2026/10/16 23:50
+ */
+final class RespServerStandIn implements AutoCloseable {
+
+    private static final byte[] OK = "+OK\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptThread;
+
+    RespServerStandIn() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        acceptThread = new Thread(this::accept, "resp-stand-in-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread thread = new Thread(() -> serve(socket), "resp-stand-in-connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException ignored) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket ignored = socket;
+             InputStream input = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+             OutputStream output = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024)) {
+            while (true) {
+                expect(input, '*');
+                int args = (int) readNumber(input);
+                String command = null;
+                for (int index = 0; index < args; index++) {
+                    expect(input, '$');
+                    int length = (int) readNumber(input);
+                    if (index == 0) {
+                        byte[] name = new byte[length];
+                        readFully(input, name);
+                        command = new String(name, StandardCharsets.US_ASCII);
+                    } else {
+                        skipFully(input, length);
+                    }
+                    skipFully(input, 2);
+                }
+                if ("HSET".equalsIgnoreCase(command)) {
+                    output.write((":" + (args - 2) / 2 + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                } else {
+                    output.write(OK);
+                }
+                if (input.available() == 0) {
+                    output.flush();
+                }
+            }
+        } catch (IOException ignored) {
+            // the client closed
+        }
+    }
+
+    private static void expect(InputStream input, char prefix) throws IOException {
+        int read = input.read();
+        if (read == -1) {
+            throw new EOFException();
+        }
+        if (read != prefix) {
+            throw new IOException("unexpected prefix " + (char) read);
+        }
+    }
+
+    private static long readNumber(InputStream input) throws IOException {
+        long number = 0;
+        int read;
+        while ((read = input.read()) != '\r') {
+            if (read == -1) {
+                throw new EOFException();
+            }
+            number = number * 10 + (read - '0');
+        }
+        input.read();
+        return number;
+    }
+
+    private static void readFully(InputStream input, byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            int read = input.read(bytes, offset, bytes.length - offset);
+            if (read == -1) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+    }
+
+    private static void skipFully(InputStream input, long length) throws IOException {
+        while (length > 0) {
+            long skipped = input.skip(length);
+            if (skipped <= 0) {
+                if (input.read() == -1) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.benchmark.warehouse;
+
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
+import com.usthe.warehouse.WarehouseProperties;
+import com.usthe.warehouse.store.TdEngineBatchWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Benchmark of the rows per second written by TdEngineBatchWriter against a jdbc stand-in,
+ * every statement costs a round trip plus the transfer of its sql.
+ * batchSize 1 is the former way, one statement per metrics data.
+ * 基于jdbc替身的TdEngineBatchWriter每秒写入行数基准测试 每条语句耗费一次往返及其sql的传输时间
+ * batchSize为1即原先每个指标数据一条语句的方式
+ *
+ * @author tom
+ * @date 2026/10/16 14:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TdEngineBatchWriterBenchmark {
+
+    private static final int MONITORS = 500;
+    private static final int ROWS = 4;
+    private static final int MESSAGES_PER_INVOCATION = 100;
+    private static final long ROUND_TRIP_MICROS = 500;
+    private static final long SQL_BYTE_NANOS = 2;
+
+    /**
+     * rows of a batch statement
+     */
+    @Param({"1", "1000"})
+    public int batchSize;
+
+    private TdEngineBatchWriter batchWriter;
+    private CollectRep.MetricsData[] messages;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        WarehouseProperties.StoreProperties.TdEngineProperties properties =
+                new WarehouseProperties.StoreProperties.TdEngineProperties();
+        properties.setBatchSize(batchSize);
+        properties.setBatchInterval(60_000);
+        properties.setMaxSqlLength(1024 * 1024);
+        batchWriter = new TdEngineBatchWriter(dataSource(), properties);
+        messages = new CollectRep.MetricsData[MONITORS];
+        for (int monitor = 0; monitor < MONITORS; monitor++) {
+            CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder()
+                    .setId(monitor).setApp("linux").setMetrics("disk").setTime(System.currentTimeMillis())
+                    .setCode(CollectRep.Code.SUCCESS)
+                    .addFields(CollectRep.Field.newBuilder().setName("mounted").setType(CommonConstants.TYPE_STRING))
+                    .addFields(CollectRep.Field.newBuilder().setName("used").setType(CommonConstants.TYPE_NUMBER))
+                    .addFields(CollectRep.Field.newBuilder().setName("usage").setType(CommonConstants.TYPE_NUMBER));
+            for (int row = 0; row < ROWS; row++) {
+                builder.addValues(CollectRep.ValueRow.newBuilder().setInstance("/dev/sda" + row)
+                        .addColumns("/data" + row).addColumns(String.valueOf(1048576L * row))
+                        .addColumns(String.valueOf(row * 12.5)));
+            }
+            messages[monitor] = builder.build();
+        }
+    }
+
+    /**
+     * one operation is one written row, the score is rows per second
+     */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_INVOCATION * ROWS)
+    public void writeRows() {
+        for (int i = 0; i < MESSAGES_PER_INVOCATION; i++) {
+            batchWriter.add(messages[cursor]);
+            cursor = (cursor + 1) % MONITORS;
+        }
+    }
+
+    private static DataSource dataSource() {
+        return (DataSource) Proxy.newProxyInstance(TdEngineBatchWriterBenchmark.class.getClassLoader(),
+                new Class[]{DataSource.class},
+                (proxy, method, args) -> "getConnection".equals(method.getName()) ? connection() : null);
+    }
+
+    private static Connection connection() {
+        return (Connection) Proxy.newProxyInstance(TdEngineBatchWriterBenchmark.class.getClassLoader(),
+                new Class[]{Connection.class},
+                (proxy, method, args) -> "createStatement".equals(method.getName()) ? statement() : null);
+    }
+
+    private static Statement statement() {
+        return (Statement) Proxy.newProxyInstance(TdEngineBatchWriterBenchmark.class.getClassLoader(),
+                new Class[]{Statement.class},
+                (proxy, method, args) -> {
+                    if ("execute".equals(method.getName())) {
+                        int sqlLength = ((String) args[0]).length();
+                        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(ROUND_TRIP_MICROS)
+                                + sqlLength * SQL_BYTE_NANOS);
+                        return true;
+                    }
+                    return null;
+                });
+    }
+}
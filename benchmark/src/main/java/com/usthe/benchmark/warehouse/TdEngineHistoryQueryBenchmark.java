@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.benchmark.warehouse;
+
+import com.usthe.common.entity.dto.Value;
+import com.usthe.warehouse.WarehouseProperties;
+import com.usthe.warehouse.store.TdEngineHistoryQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark of the response time of the tdengine history interval query of 1h 1d 7d against a jdbc stand-in
+ * of 8 instances, each query costs a round trip and the scan of the returned windows.
+ * The dashboard threads query the same metric at the same time, as the refreshing dashboards do.
+ * 基于jdbc替身的1h 1d 7d tdengine历史聚合查询响应时间基准测试 共8个实例
+ * 每次查询耗费一次往返及所返回窗口的扫描时间 多个仪表盘线程同时查询同一指标 与刷新中的仪表盘一致
+ *
+ * @author tom
+ * @date 2026/10/17 01:10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class TdEngineHistoryQueryBenchmark {
+
+    private static final int INSTANCES = 8;
+    private static final long ROUND_TRIP_MICROS = 1000;
+    private static final long WINDOW_SCAN_MICROS = 5;
+    private static final Pattern RANGE_PATTERN = Pattern.compile("now - (\\d+)([smhd]) interval\\((\\d+)([smhd])\\)");
+
+    @Param({"1h", "1d", "7d"})
+    public String history;
+
+    /**
+     * seconds the query result cached, 0 means no cache
+     */
+    @Param({"0", "10"})
+    public long queryCacheTtl;
+
+    /**
+     * parallel instance queries, 1 is the former serial way
+     */
+    @Param({"1", "4"})
+    public int queryParallelism;
+
+    private TdEngineHistoryQuery historyQuery;
+
+    @Setup
+    public void setup() {
+        WarehouseProperties.StoreProperties.TdEngineProperties properties =
+                new WarehouseProperties.StoreProperties.TdEngineProperties();
+        properties.setQueryCacheTtl(queryCacheTtl);
+        properties.setQueryParallelism(queryParallelism);
+        historyQuery = new TdEngineHistoryQuery(dataSource(), properties);
+    }
+
+    @TearDown
+    public void tearDown() {
+        historyQuery.close();
+    }
+
+    @Benchmark
+    public Map<String, List<Value>> historyIntervalQuery() {
+        return historyQuery.getHistoryIntervalMetricData("linux_cpu_1", "usage", null, history);
+    }
+
+    private static DataSource dataSource() {
+        return (DataSource) Proxy.newProxyInstance(TdEngineHistoryQueryBenchmark.class.getClassLoader(),
+                new Class[]{DataSource.class},
+                (proxy, method, args) -> "getConnection".equals(method.getName()) ? connection() : null);
+    }
+
+    private static Connection connection() {
+        return (Connection) Proxy.newProxyInstance(TdEngineHistoryQueryBenchmark.class.getClassLoader(),
+                new Class[]{Connection.class},
+                (proxy, method, args) -> "createStatement".equals(method.getName()) ? statement() : null);
+    }
+
+    private static Statement statement() {
+        return (Statement) Proxy.newProxyInstance(TdEngineHistoryQueryBenchmark.class.getClassLoader(),
+                new Class[]{Statement.class},
+                (proxy, method, args) -> "executeQuery".equals(method.getName()) ? query((String) args[0]) : null);
+    }
+
+    private static ResultSet query(String sql) {
+        int rows;
+        boolean instanceQuery = sql.startsWith("SELECT DISTINCT instance");
+        if (instanceQuery) {
+            rows = INSTANCES;
+        } else {
+            Matcher matcher = RANGE_PATTERN.matcher(sql);
+            rows = matcher.find() ? (int) (millis(matcher.group(1), matcher.group(2))
+                    / millis(matcher.group(3), matcher.group(4))) : 0;
+        }
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(ROUND_TRIP_MICROS + rows * WINDOW_SCAN_MICROS));
+        long now = System.currentTimeMillis();
+        int[] cursor = {0};
+        return (ResultSet) Proxy.newProxyInstance(TdEngineHistoryQueryBenchmark.class.getClassLoader(),
+                new Class[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return cursor[0]++ < rows;
+                        case "getString":
+                            return "instance" + cursor[0];
+                        case "getTimestamp":
+                            return new Timestamp(now - cursor[0] * 1000L);
+                        case "getDouble":
+                            return cursor[0] * 1.23456789 + (int) args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private static long millis(String number, String unit) {
+        long value = Long.parseLong(number);
+        switch (unit) {
+            case "s":
+                return TimeUnit.SECONDS.toMillis(value);
+            case "m":
+                return TimeUnit.MINUTES.toMillis(value);
+            case "h":
+                return TimeUnit.HOURS.toMillis(value);
+            default:
+                return TimeUnit.DAYS.toMillis(value);
+        }
+    }
+}
@@ -41,4 +41,20 @@ public abstract class AbstractCollect {
      *                return response builder
      */
     public abstract void collect(CollectRep.MetricsData.Builder builder, long appId, String app, Metrics metrics);
+
+    /**
+     * Real acquisition implementation interface within a collection round of the job.
+     * The implementation can share the data fetched by other metrics groups in the same round
+     * 在任务的某一采集轮次内的采集实现接口 实现类可共享同一轮次其它指标组已获取的数据
+     *
+     * @param builder   response builder
+     * @param appId     App monitoring ID   应用监控ID
+     * @param app       Application Type  应用类型
+     * @param metrics   Metric group configuration    指标组配置
+     * @param roundTime dispatch time of the collection round, same for all metrics groups of the round
+     *                  采集轮次的调度时间 同一轮次所有指标组相同
+     */
+    public void collect(CollectRep.MetricsData.Builder builder, long appId, String app, Metrics metrics, long roundTime) {
+        collect(builder, appId, app, metrics);
+    }
 }
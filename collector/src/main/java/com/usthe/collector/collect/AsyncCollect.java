@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.collector.collect;
+
+import com.usthe.common.entity.job.Metrics;
+import com.usthe.common.entity.message.CollectRep;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking indicator group collection, the collect worker thread is not held while waiting the peer
+ * 非阻塞的指标组采集 等待对端响应期间不占用采集工作线程
+ *
+ * @author tom
+ * @date 2026/10/16 19:20
+ */
+public interface AsyncCollect {
+
+    /**
+     * Real acquisition implementation interface, the builder is filled when the future completes
+     * 真正的采集实现接口 future完成时response builder已填充
+     *
+     * @param builder response builder
+     * @param appId   App monitoring ID   应用监控ID
+     * @param app     Application Type  应用类型
+     * @param metrics Metric group configuration    指标组配置
+     * @return future completed when the collection is done
+     */
+    CompletableFuture<Void> collectAsync(CollectRep.MetricsData.Builder builder, long appId, String app, Metrics metrics);
+}
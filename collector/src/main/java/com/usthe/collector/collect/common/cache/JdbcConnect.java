@@ -20,29 +20,190 @@ package com.usthe.collector.collect.common.cache;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * jdbc common connection
+ * a small bounded connection pool of one jdbc target (url, username), cached in CommonCache and closed with its timeout.
+ * The connection is validated on borrow and evicted when idle too long,
+ * the prepared statements of the fixed sql are cached on each connection
+ * 单个jdbc目标(url, 用户名)的小型有界连接池 缓存在CommonCache中并随其超时关闭
+ * 借出时校验连接可用 空闲过久的连接被驱逐 每个连接缓存固定sql的预编译语句
+ *
  * @author tomsun28
  * @date 2022/1/1 21:24
  */
 @Slf4j
 public class JdbcConnect implements CacheCloseable {
 
-    private Connection connection;
+    /**
+     * max connections of one target
+     * 单个目标最大连接数
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 3;
+
+    /**
+     * connections idle longer than it are evicted
+     * 空闲超过此时间的连接被驱逐
+     */
+    private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * max cached prepared statements of one connection
+     * 单个连接最大缓存预编译语句数
+     */
+    private static final int MAX_CACHED_STATEMENTS = 32;
+
+    /**
+     * validate timeout of the borrowed connection, seconds
+     * 借出连接的校验超时时间 秒
+     */
+    private static final int VALIDATE_TIMEOUT = 1;
 
-    public JdbcConnect(Connection connection) {
-        this.connection = connection;
+    /**
+     * the SQLState class of connection exception
+     * 连接异常的SQLState类别
+     */
+    private static final String CONNECTION_EXCEPTION_STATE = "08";
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
+    private final AtomicInteger createdCount = new AtomicInteger();
+    private volatile boolean closed;
+
+    public JdbcConnect(String url, String username, String password) {
+        this(url, username, password, DEFAULT_MAX_CONNECTIONS);
     }
 
-    @Override
-    public void close() {
+    public JdbcConnect(String url, String username, String password, int maxConnections) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    /**
+     * Borrow a valid connection, wait the timeout when all connections are in use
+     * 借出一个可用连接 所有连接都在使用时最多等待timeout
+     *
+     * @param timeout wait timeout millis
+     * @return pooled connection, must be released
+     * @throws SQLException create connection error or wait timeout
+     */
+    public PooledConnection borrow(int timeout) throws SQLException {
+        if (closed) {
+            throw new SQLException("The jdbc connect pool is closed.");
+        }
         try {
-            if (connection != null) {
-                connection.close();
+            if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Wait jdbc connection timeout " + timeout + "ms, all connections are in use.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted when wait jdbc connection.");
+        }
+        try {
+            PooledConnection pooledConnection;
+            while ((pooledConnection = pollIdle()) != null) {
+                if (pooledConnection.isValid()) {
+                    return pooledConnection;
+                }
+                log.info("The jdbc connect form pool is invalid, close it.");
+                pooledConnection.close();
+            }
+            Connection connection = DriverManager.getConnection(url, username, password);
+            createdCount.incrementAndGet();
+            return new PooledConnection(connection);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Release the borrowed connection to the pool
+     * 归还借出的连接
+     *
+     * @param pooledConnection borrowed connection
+     * @param throwable        error happened when using the connection, null if none
+     */
+    public void release(PooledConnection pooledConnection, Throwable throwable) {
+        try {
+            if (closed || isConnectionError(throwable)) {
+                pooledConnection.close();
+                return;
+            }
+            pooledConnection.lastUsedTime = System.currentTimeMillis();
+            synchronized (idleConnections) {
+                idleConnections.offerFirst(pooledConnection);
+            }
+            evictIdle();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * count of the created connections
+     * 已创建的连接数
+     *
+     * @return count
+     */
+    public int getCreatedCount() {
+        return createdCount.get();
+    }
+
+    private PooledConnection pollIdle() {
+        synchronized (idleConnections) {
+            // the most recently used first, the least used ones become idle and are evicted
+            // 优先使用最近使用的连接 少用的连接空闲后被驱逐
+            return idleConnections.pollFirst();
+        }
+    }
+
+    private void evictIdle() {
+        long deadline = System.currentTimeMillis() - IDLE_TIMEOUT;
+        synchronized (idleConnections) {
+            Iterator<PooledConnection> iterator = idleConnections.descendingIterator();
+            while (iterator.hasNext()) {
+                PooledConnection pooledConnection = iterator.next();
+                if (pooledConnection.lastUsedTime >= deadline) {
+                    break;
+                }
+                iterator.remove();
+                pooledConnection.close();
             }
-        } catch (Exception e) {
-            log.error("close jdbc connect error: {}", e.getMessage());
+        }
+    }
+
+    private boolean isConnectionError(Throwable throwable) {
+        if (!(throwable instanceof SQLException)) {
+            return false;
+        }
+        String sqlState = ((SQLException) throwable).getSQLState();
+        return sqlState == null || sqlState.startsWith(CONNECTION_EXCEPTION_STATE);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (idleConnections) {
+            idleConnections.forEach(PooledConnection::close);
+            idleConnections.clear();
         }
     }
 
@@ -52,7 +213,94 @@ public class JdbcConnect implements CacheCloseable {
         super.finalize();
     }
 
-    public Connection getConnection() {
-        return connection;
+    /**
+     * the connection of the pool, not thread safe, used by one borrower at a time
+     * 连接池中的连接 非线程安全 同一时间只由一个借用者使用
+     */
+    public static class PooledConnection {
+
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statementCache =
+                new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() > MAX_CACHED_STATEMENTS) {
+                            closeStatement(eldest.getValue());
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+        private long lastUsedTime = System.currentTimeMillis();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Get the cached prepared statement of the sql
+         * 获取sql对应的缓存预编译语句
+         *
+         * @param sql     sql
+         * @param timeout query timeout millis
+         * @param maxRows max rows
+         * @return prepared statement
+         * @throws SQLException prepare error
+         */
+        public PreparedStatement prepareStatement(String sql, int timeout, int maxRows) throws SQLException {
+            PreparedStatement statement = statementCache.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.prepareStatement(sql);
+                statementCache.put(sql, statement);
+            }
+            int timeoutSecond = timeout / 1000;
+            statement.setQueryTimeout(timeoutSecond <= 0 ? 1 : timeoutSecond);
+            statement.setMaxRows(maxRows);
+            return statement;
+        }
+
+        /**
+         * Remove the cached statement of the sql, eg: the sql failed
+         * 移除sql对应的缓存语句 例如: sql执行失败
+         *
+         * @param sql sql
+         */
+        public void invalidateStatement(String sql) {
+            closeStatement(statementCache.remove(sql));
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        private boolean isValid() {
+            try {
+                return connection.isValid(VALIDATE_TIMEOUT);
+            } catch (Exception e) {
+                log.info("The jdbc connect validate error: {}", e.getMessage());
+                return false;
+            }
+        }
+
+        private static void closeStatement(PreparedStatement statement) {
+            if (statement == null) {
+                return;
+            }
+            try {
+                statement.close();
+            } catch (Exception e) {
+                log.debug("close jdbc statement error: {}", e.getMessage());
+            }
+        }
+
+        private void close() {
+            statementCache.values().forEach(PooledConnection::closeStatement);
+            statementCache.clear();
+            try {
+                connection.close();
+            } catch (Exception e) {
+                log.error("close jdbc connect error: {}", e.getMessage());
+            }
+        }
     }
 }
@@ -2,10 +2,30 @@ package com.usthe.collector.collect.common.cache;
 
 import lombok.extern.slf4j.Slf4j;
 
+import javax.management.InstanceNotFoundException;
+import javax.management.IntrospectionException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServerConnection;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import javax.management.remote.JMXConnectionNotification;
 import javax.management.remote.JMXConnector;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * jmx链接销毁管理
+ * 同时缓存此链接上的MBean元数据: ObjectName查询结果与可读属性名类型
+ * 由MBean注册/注销通知增量刷新 并按较长的TTL全量刷新
  *
  * @author huacheng
  * @date 2022/7/3 14:58
@@ -13,16 +33,146 @@ import javax.management.remote.JMXConnector;
 @Slf4j
 public class JmxConnect implements CacheCloseable {
 
+    /**
+     * ttl of the cached mbean metadata, refresh in full after it
+     * MBean元数据缓存有效期 过期后全量刷新
+     */
+    private static final long METADATA_TTL = TimeUnit.MINUTES.toMillis(10);
+
     private JMXConnector connection;
 
+    /**
+     * ObjectName pattern -> the matched ObjectNames
+     */
+    private final Map<ObjectName, QueryResult> queryCache = new ConcurrentHashMap<>(8);
+
+    /**
+     * ObjectName -> readable attribute name and type
+     */
+    private final Map<ObjectName, AttributeTypes> attributeCache = new ConcurrentHashMap<>(64);
+
+    private final NotificationListener registrationListener = this::handleRegistration;
+
+    private final NotificationListener connectionListener = this::handleConnection;
+
+    private volatile boolean listening;
+
     public JmxConnect(JMXConnector connection) {
         this.connection = connection;
+        if (connection != null) {
+            connection.addConnectionNotificationListener(connectionListener, null, null);
+        }
+    }
+
+    /**
+     * Query the ObjectNames matched the pattern, cached until the ttl expired
+     * 查询匹配的ObjectName 在TTL内使用缓存
+     *
+     * @param pattern ObjectName or pattern
+     * @return matched ObjectNames
+     * @throws IOException connection error
+     */
+    public Set<ObjectName> queryNames(ObjectName pattern) throws IOException {
+        MBeanServerConnection serverConnection = connection.getMBeanServerConnection();
+        listenRegistration(serverConnection);
+        QueryResult queryResult = queryCache.get(pattern);
+        if (queryResult != null && !queryResult.isExpired()) {
+            return queryResult.objectNames;
+        }
+        QueryResult newResult = new QueryResult();
+        newResult.objectNames.addAll(serverConnection.queryNames(pattern, null));
+        queryCache.put(pattern, newResult);
+        return newResult.objectNames;
     }
 
+    /**
+     * Get the readable attribute name and type of the mbean, cached until the mbean unregistered or the ttl expired
+     * 获取MBean的可读属性名与类型 缓存至MBean注销或TTL过期
+     *
+     * @param objectName mbean ObjectName
+     * @return attribute name -> attribute type
+     * @throws IOException                connection error
+     * @throws InstanceNotFoundException  mbean not found
+     * @throws IntrospectionException     mbean info error
+     * @throws ReflectionException        mbean info error
+     */
+    public Map<String, String> getReadableAttributes(ObjectName objectName)
+            throws IOException, InstanceNotFoundException, IntrospectionException, ReflectionException {
+        AttributeTypes attributeTypes = attributeCache.get(objectName);
+        if (attributeTypes != null && !attributeTypes.isExpired()) {
+            return attributeTypes.types;
+        }
+        MBeanAttributeInfo[] attributeInfos = connection.getMBeanServerConnection().getMBeanInfo(objectName).getAttributes();
+        Map<String, String> types = new LinkedHashMap<>(attributeInfos.length);
+        for (MBeanAttributeInfo attributeInfo : attributeInfos) {
+            if (attributeInfo.isReadable()) {
+                types.put(attributeInfo.getName(), attributeInfo.getType());
+            }
+        }
+        attributeCache.put(objectName, new AttributeTypes(Collections.unmodifiableMap(types)));
+        return types;
+    }
+
+    /**
+     * Remove the cached metadata of the mbean, eg: the mbean is not found
+     * 移除MBean的缓存元数据 例如: MBean已不存在
+     *
+     * @param objectName mbean ObjectName
+     */
+    public void invalidate(ObjectName objectName) {
+        attributeCache.remove(objectName);
+        queryCache.values().forEach(queryResult -> queryResult.objectNames.remove(objectName));
+    }
+
+    private void listenRegistration(MBeanServerConnection serverConnection) {
+        if (listening) {
+            return;
+        }
+        synchronized (this) {
+            if (listening) {
+                return;
+            }
+            try {
+                serverConnection.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME,
+                        registrationListener, null, null);
+            } catch (Exception e) {
+                // the metadata is refreshed by the ttl only
+                log.warn("jmx listen mbean registration error: {}", e.getMessage());
+            }
+            listening = true;
+        }
+    }
+
+    private void handleRegistration(Notification notification, Object handback) {
+        if (!(notification instanceof MBeanServerNotification)) {
+            return;
+        }
+        ObjectName objectName = ((MBeanServerNotification) notification).getMBeanName();
+        if (MBeanServerNotification.REGISTRATION_NOTIFICATION.equals(notification.getType())) {
+            queryCache.forEach((pattern, queryResult) -> {
+                if (pattern.apply(objectName)) {
+                    queryResult.objectNames.add(objectName);
+                }
+            });
+        } else if (MBeanServerNotification.UNREGISTRATION_NOTIFICATION.equals(notification.getType())) {
+            invalidate(objectName);
+        }
+    }
+
+    private void handleConnection(Notification notification, Object handback) {
+        // the registration notifications may be lost, refresh in full
+        if (JMXConnectionNotification.NOTIFS_LOST.equals(notification.getType())
+                || JMXConnectionNotification.OPENED.equals(notification.getType())) {
+            queryCache.clear();
+            attributeCache.clear();
+        }
+    }
 
     @Override
     public void close() {
         try {
+            queryCache.clear();
+            attributeCache.clear();
             if (connection != null) {
                 connection.close();
             }
@@ -40,4 +190,26 @@ public class JmxConnect implements CacheCloseable {
     public JMXConnector getConnection() {
         return connection;
     }
+
+    private static class QueryResult {
+        private final long loadTime = System.currentTimeMillis();
+        private final Set<ObjectName> objectNames = ConcurrentHashMap.newKeySet();
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - loadTime > METADATA_TTL;
+        }
+    }
+
+    private static class AttributeTypes {
+        private final long loadTime = System.currentTimeMillis();
+        private final Map<String, String> types;
+
+        private AttributeTypes(Map<String, String> types) {
+            this.types = types;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - loadTime > METADATA_TTL;
+        }
+    }
 }
@@ -0,0 +1,367 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.collector.collect.common.probe;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Event driven reachability prober, all in-flight tcp probes are non-blocking connects on one selector thread
+ * 事件驱动的可达性探测器 所有进行中的tcp探测都是同一个selector线程上的非阻塞连接
+ * <p>
+ * tcp: the port is connectable when the handshake completes
+ * icmp: an echo request by {@link InetAddress#isReachable(int)} on a bounded blocking pool off the selector thread,
+ * the jdk picks the icmp echo or the tcp echo port once by the process privilege, the probe type never changes by load,
+ * when the pool and its queue are full the probe fails as busy instead of unreachable
+ * tcp: 握手成功则端口可连接
+ * icmp: 在selector线程外的有界阻塞线程池中由InetAddress.isReachable发送echo请求
+ * jdk根据进程权限固定选择icmp echo或tcp echo端口 探测方式不随负载变化 线程池与队列满时探测以繁忙失败而非不可达
+ *
+ * @author tom
+ * @date 2026/10/16 19:10
+ */
+@Slf4j
+public class ReachabilityProber implements Closeable {
+
+    /**
+     * Threads running the probe callbacks, the callbacks finish the collection and dispatch the data which may block
+     * 执行探测回调的线程数 回调中完成采集并分发数据 可能阻塞
+     */
+    static final int CALLBACK_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final int CALLBACK_QUEUE_SIZE = 4096;
+    /**
+     * Max threads blocked in the icmp echo request
+     * 阻塞于icmp echo请求的最大线程数
+     */
+    static final int ICMP_THREADS = 64;
+    /**
+     * Max icmp probes waiting for a thread, the waiting time is taken from the probe timeout
+     * 等待线程的最大icmp探测数 等待时间计入探测超时
+     */
+    static final int ICMP_QUEUE_SIZE = 1024;
+
+    private final Selector selector;
+    private final Queue<Probe> pendingProbes = new ConcurrentLinkedQueue<>();
+    /**
+     * probes ordered by deadline, only touched by the selector thread
+     */
+    private final PriorityQueue<Probe> deadlineQueue = new PriorityQueue<>(
+            (probe1, probe2) -> Long.compare(probe1.deadline, probe2.deadline));
+    /**
+     * probe callbacks run here, keep the selector thread only for io, one slow callback does not stall the others
+     * 探测回调在此执行 selector线程只做io 单个慢回调不会阻塞其它回调
+     */
+    private final ThreadPoolExecutor callbackExecutor;
+    /**
+     * blocking icmp echo requests run here
+     * 阻塞的icmp echo请求在此执行
+     */
+    private final ThreadPoolExecutor icmpExecutor;
+    private final Thread selectorThread;
+    private volatile boolean running = true;
+
+    ReachabilityProber() throws IOException {
+        this(ICMP_THREADS, ICMP_QUEUE_SIZE);
+    }
+
+    ReachabilityProber(int icmpThreads, int icmpQueueSize) throws IOException {
+        selector = Selector.open();
+        callbackExecutor = new ThreadPoolExecutor(CALLBACK_THREADS, CALLBACK_THREADS, 10L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(CALLBACK_QUEUE_SIZE), daemonThreadFactory("reachability-prober-callback-"),
+                (runnable, executor) -> {
+                    // never block the selector thread by the full queue, complete the probe in the caller
+                    log.warn("[reachability prober] callback queue is full, run the callback in the caller thread.");
+                    runnable.run();
+                });
+        callbackExecutor.allowCoreThreadTimeOut(true);
+        icmpExecutor = new ThreadPoolExecutor(icmpThreads, icmpThreads, 10L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(icmpQueueSize), daemonThreadFactory("reachability-prober-icmp-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        icmpExecutor.allowCoreThreadTimeOut(true);
+        selectorThread = new Thread(this::selectLoop, "reachability-prober");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    private static ThreadFactory daemonThreadFactory(String namePrefix) {
+        AtomicInteger index = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public static ReachabilityProber getInstance() {
+        return Singleton.INSTANCE;
+    }
+
+    /**
+     * Probe whether the tcp port is connectable
+     * 探测tcp端口是否可连接
+     * @param address target address
+     * @param timeout timeout millis
+     * @return response time millis, fail with ConnectException when refused,
+     * SocketTimeoutException when timeout, IOException when others eg: no route to host
+     */
+    public CompletableFuture<Long> probeTcp(InetSocketAddress address, int timeout) {
+        Probe probe = new Probe(address, timeout);
+        if (!running) {
+            probe.fail(new IOException("reachability prober is closed"));
+            return probe.future;
+        }
+        pendingProbes.offer(probe);
+        if (!running && pendingProbes.remove(probe)) {
+            // closed concurrently, the selector thread may not drain it
+            probe.fail(new IOException("reachability prober is closed"));
+            return probe.future;
+        }
+        selector.wakeup();
+        return probe.future;
+    }
+
+    /**
+     * Probe whether the host is reachable
+     * 探测主机是否可达
+     * @param address target host
+     * @param timeout timeout millis
+     * @return response time millis, fail with SocketTimeoutException when timeout,
+     * RejectedExecutionException when the prober is busy, IOException when others
+     */
+    public CompletableFuture<Long> probeIcmp(InetAddress address, int timeout) {
+        long startTime = System.nanoTime();
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IOException("reachability prober is closed"));
+            return future;
+        }
+        try {
+            icmpExecutor.execute(() -> {
+                int remainTimeout = (int) (timeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                if (remainTimeout <= 0) {
+                    // the host is not probed at all, not a timeout of the host
+                    executeCallback(() -> future.completeExceptionally(new RejectedExecutionException(
+                            "reachability prober is busy, probe " + address + " waited over " + timeout + "ms")));
+                    return;
+                }
+                try {
+                    boolean reachable = address.isReachable(remainTimeout);
+                    long responseTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+                    executeCallback(() -> {
+                        if (reachable) {
+                            future.complete(responseTime);
+                        } else {
+                            future.completeExceptionally(new SocketTimeoutException(
+                                    "probe " + address + " timeout " + timeout + "ms"));
+                        }
+                    });
+                } catch (IOException e) {
+                    executeCallback(() -> future.completeExceptionally(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new RejectedExecutionException(
+                    "reachability prober is busy, too many icmp probes in flight", e));
+        }
+        return future;
+    }
+
+    private void executeCallback(Runnable callback) {
+        if (callbackExecutor.isShutdown()) {
+            callback.run();
+        } else {
+            try {
+                callbackExecutor.execute(callback);
+            } catch (RejectedExecutionException e) {
+                // shutdown concurrently
+                callback.run();
+            }
+        }
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                registerPendingProbes();
+                long selectTimeout = 0L;
+                Probe nearest = deadlineQueue.peek();
+                if (nearest != null) {
+                    selectTimeout = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(nearest.deadline - System.nanoTime()) + 1);
+                }
+                selector.select(selectTimeout);
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    finishConnect(key);
+                }
+                expireProbes();
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (Exception e) {
+                log.error("[reachability prober] select error: {}.", e.getMessage(), e);
+            }
+        }
+        // fail all in-flight probes when closed
+        IOException closed = new IOException("reachability prober is closed");
+        Probe probe;
+        while ((probe = pendingProbes.poll()) != null) {
+            probe.fail(closed);
+        }
+        while ((probe = deadlineQueue.poll()) != null) {
+            probe.fail(closed);
+        }
+    }
+
+    private void registerPendingProbes() {
+        Probe probe;
+        while ((probe = pendingProbes.poll()) != null) {
+            try {
+                SocketChannel channel = SocketChannel.open();
+                probe.channel = channel;
+                channel.configureBlocking(false);
+                if (channel.connect(probe.address)) {
+                    probe.success();
+                    continue;
+                }
+                channel.register(selector, SelectionKey.OP_CONNECT, probe);
+                deadlineQueue.offer(probe);
+            } catch (Exception e) {
+                probe.fail(e);
+            }
+        }
+    }
+
+    private void finishConnect(SelectionKey key) {
+        Probe probe = (Probe) key.attachment();
+        try {
+            if (((SocketChannel) key.channel()).finishConnect()) {
+                probe.success();
+            }
+        } catch (Exception e) {
+            probe.fail(e);
+        }
+    }
+
+    private void expireProbes() {
+        long now = System.nanoTime();
+        while (!deadlineQueue.isEmpty()) {
+            Probe probe = deadlineQueue.peek();
+            if (probe.done) {
+                deadlineQueue.poll();
+            } else if (probe.deadline - now <= 0) {
+                deadlineQueue.poll();
+                probe.fail(new SocketTimeoutException("probe " + probe.address + " timeout " + probe.timeout + "ms"));
+            } else {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        selector.close();
+        icmpExecutor.shutdownNow();
+        callbackExecutor.shutdown();
+    }
+
+    private class Probe {
+        private final InetSocketAddress address;
+        private final int timeout;
+        private final long startTime;
+        private final long deadline;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+        private SocketChannel channel;
+        private boolean done;
+
+        private Probe(InetSocketAddress address, int timeout) {
+            this.address = address;
+            this.timeout = timeout;
+            this.startTime = System.nanoTime();
+            this.deadline = startTime + TimeUnit.MILLISECONDS.toNanos(timeout);
+        }
+
+        private void success() {
+            long responseTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            if (finish()) {
+                executeCallback(() -> future.complete(responseTime));
+            }
+        }
+
+        private void fail(Exception e) {
+            if (finish()) {
+                executeCallback(() -> future.completeExceptionally(e));
+            }
+        }
+
+        private boolean finish() {
+            if (done) {
+                return false;
+            }
+            done = true;
+            if (channel != null) {
+                try {
+                    // the key is cancelled by closing the channel
+                    channel.close();
+                } catch (IOException e) {
+                    log.debug(e.getMessage());
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class Singleton {
+        private static final ReachabilityProber INSTANCE;
+
+        static {
+            try {
+                INSTANCE = new ReachabilityProber();
+            } catch (IOException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+}
@@ -31,11 +31,10 @@ import com.usthe.common.util.CommonConstants;
 import lombok.extern.slf4j.Slf4j;
 import org.postgresql.util.PSQLException;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.sql.SQLTimeoutException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Objects;
@@ -52,6 +51,10 @@ public class JdbcCommonCollect extends AbstractCollect {
     private static final String QUERY_TYPE_ONE_ROW = "oneRow";
     private static final String QUERY_TYPE_MULTI_ROW = "multiRow";
     private static final String QUERY_TYPE_COLUMNS = "columns";
+    /**
+     * 查询最大行数1000行
+     */
+    private static final int MAX_ROWS = 1000;
 
     private JdbcCommonCollect(){}
 
@@ -73,22 +76,42 @@ public class JdbcCommonCollect extends AbstractCollect {
         // 查询超时时间默认6000毫秒
         int timeout = CollectUtil.getTimeout(jdbcProtocol.getTimeout());
         try {
-            Statement statement = getConnection(jdbcProtocol.getUsername(),
-                    jdbcProtocol.getPassword(), databaseUrl, timeout);
-            switch (jdbcProtocol.getQueryType()) {
-                case QUERY_TYPE_ONE_ROW:
-                    queryOneRow(statement, jdbcProtocol.getSql(), metrics.getAliasFields(), builder, startTime);
-                    break;
-                case QUERY_TYPE_MULTI_ROW:
-                    queryMultiRow(statement, jdbcProtocol.getSql(), metrics.getAliasFields(), builder, startTime);
-                    break;
-                case QUERY_TYPE_COLUMNS:
-                    queryOneRowByMatchTwoColumns(statement, jdbcProtocol.getSql(), metrics.getAliasFields(), builder, startTime);
-                    break;
-                default:
-                    builder.setCode(CollectRep.Code.FAIL);
-                    builder.setMsg("Not support database query type: " + jdbcProtocol.getQueryType());
-                    break;
+            JdbcConnect jdbcConnect = getJdbcConnect(jdbcProtocol.getUsername(), jdbcProtocol.getPassword(), databaseUrl);
+            JdbcConnect.PooledConnection pooledConnection = jdbcConnect.borrow(timeout);
+            Throwable throwable = null;
+            try {
+                // the borrow wait and the query share the timeout, the query gets the remaining time
+                // 借出连接的等待与查询共用超时时间 查询使用剩余的时间
+                int queryTimeout = (int) (timeout - (System.currentTimeMillis() - startTime));
+                if (queryTimeout <= 0) {
+                    throw new SQLTimeoutException("Borrow jdbc connection timeout " + timeout + "ms, no time left to query.");
+                }
+                String sql = jdbcProtocol.getSql();
+                PreparedStatement statement;
+                switch (jdbcProtocol.getQueryType()) {
+                    case QUERY_TYPE_ONE_ROW:
+                        statement = pooledConnection.prepareStatement(sql, queryTimeout, 1);
+                        queryOneRow(statement, metrics.getAliasFields(), builder, startTime);
+                        break;
+                    case QUERY_TYPE_MULTI_ROW:
+                        statement = pooledConnection.prepareStatement(sql, queryTimeout, MAX_ROWS);
+                        queryMultiRow(statement, metrics.getAliasFields(), builder, startTime);
+                        break;
+                    case QUERY_TYPE_COLUMNS:
+                        statement = pooledConnection.prepareStatement(sql, queryTimeout, MAX_ROWS);
+                        queryOneRowByMatchTwoColumns(statement, metrics.getAliasFields(), builder, startTime);
+                        break;
+                    default:
+                        builder.setCode(CollectRep.Code.FAIL);
+                        builder.setMsg("Not support database query type: " + jdbcProtocol.getQueryType());
+                        break;
+                }
+            } catch (Exception e) {
+                throwable = e;
+                pooledConnection.invalidateStatement(jdbcProtocol.getSql());
+                throw e;
+            } finally {
+                jdbcConnect.release(pooledConnection, throwable);
             }
         } catch (CommunicationsException communicationsException) {
             log.warn("Jdbc sql error: {}, code: {}.", communicationsException.getMessage(), communicationsException.getErrorCode());
@@ -115,51 +138,27 @@ public class JdbcCommonCollect extends AbstractCollect {
     }
 
 
-    private Statement getConnection(String username, String password, String url,Integer timeout) throws Exception {
+    /**
+     * Get the connection pool of the target, one pool for one (url, username)
+     * 获取目标的连接池 每个(url, 用户名)一个连接池
+     */
+    private JdbcConnect getJdbcConnect(String username, String password, String url) {
         CacheIdentifier identifier = CacheIdentifier.builder()
                 .ip(url)
                 .username(username).password(password).build();
         Optional<Object> cacheOption = CommonCache.getInstance().getCache(identifier, true);
-        Statement statement = null;
         if (cacheOption.isPresent()) {
-            JdbcConnect jdbcConnect = (JdbcConnect) cacheOption.get();
-            try {
-                statement = jdbcConnect.getConnection().createStatement();
-                // 设置查询超时时间10秒
-                int timeoutSecond = timeout / 1000;
-                timeoutSecond = timeoutSecond <= 0 ? 1 : timeoutSecond;
-                statement.setQueryTimeout(timeoutSecond);
-                // 设置查询最大行数1000行
-                statement.setMaxRows(1000);
-            } catch (Exception e) {
-                log.info("The jdbc connect form cache, create statement error: {}", e.getMessage());
-                try {
-                    if (statement != null) {
-                        statement.close();
-                    }
-                    jdbcConnect.close();
-                } catch (Exception e2) {
-                    log.error(e2.getMessage());
-                }
-                statement = null;
-                CommonCache.getInstance().removeCache(identifier);
-            }
+            return (JdbcConnect) cacheOption.get();
         }
-        if (statement != null) {
-            return statement;
+        synchronized (this) {
+            cacheOption = CommonCache.getInstance().getCache(identifier, true);
+            if (cacheOption.isPresent()) {
+                return (JdbcConnect) cacheOption.get();
+            }
+            JdbcConnect jdbcConnect = new JdbcConnect(url, username, password);
+            CommonCache.getInstance().addCache(identifier, jdbcConnect);
+            return jdbcConnect;
         }
-        // 复用失败则新建连接
-        Connection connection = DriverManager.getConnection(url, username, password);
-        statement = connection.createStatement();
-        // 设置查询超时时间10秒
-        int timeoutSecond = timeout / 1000;
-        timeoutSecond = timeoutSecond <= 0 ? 1 : timeoutSecond;
-        statement.setQueryTimeout(timeoutSecond);
-        // 设置查询最大行数1000行
-        statement.setMaxRows(1000);
-        JdbcConnect jdbcConnect = new JdbcConnect(connection);
-        CommonCache.getInstance().addCache(identifier, jdbcConnect);
-        return statement;
     }
 
     /**
@@ -168,14 +167,12 @@ public class JdbcCommonCollect extends AbstractCollect {
      * 查询字段：one tow three four
      * 查询SQL：select one, tow, three, four from book limit 1;
      * @param statement 执行器
-     * @param sql sql
      * @param columns 查询的列头(一般是数据库表字段，也可能包含特殊字段,eg: responseTime)
      * @throws Exception when error happen
      */
-    private void queryOneRow(Statement statement, String sql, List<String> columns,
-                                           CollectRep.MetricsData.Builder builder, long startTime) throws Exception {
-        statement.setMaxRows(1);
-        ResultSet resultSet = statement.executeQuery(sql);
+    private void queryOneRow(PreparedStatement statement, List<String> columns,
+                             CollectRep.MetricsData.Builder builder, long startTime) throws Exception {
+        ResultSet resultSet = statement.executeQuery();
         try {
             if (resultSet.next()) {
                 CollectRep.ValueRow.Builder valueRowBuilder = CollectRep.ValueRow.newBuilder();
@@ -203,13 +200,12 @@ public class JdbcCommonCollect extends AbstractCollect {
      * 查询SQL：select key, value from book;
      * 返回的key映射查询字段
      * @param statement 执行器
-     * @param sql sql
      * @param columns 查询的列头(一般是数据库表字段，也可能包含特殊字段,eg: responseTime)
      * @throws Exception when error happen
      */
-    private void queryOneRowByMatchTwoColumns(Statement statement, String sql, List<String> columns,
+    private void queryOneRowByMatchTwoColumns(PreparedStatement statement, List<String> columns,
                                               CollectRep.MetricsData.Builder builder, long startTime) throws Exception {
-        ResultSet resultSet = statement.executeQuery(sql);
+        ResultSet resultSet = statement.executeQuery();
         try {
             HashMap<String, String> values = new HashMap<>(columns.size());
             while (resultSet.next()) {
@@ -240,13 +236,12 @@ public class JdbcCommonCollect extends AbstractCollect {
      * 查询字段：one tow three four
      * 查询SQL：select one, tow, three, four from book;
      * @param statement 执行器
-     * @param sql sql
      * @param columns 查询的列头(一般是数据库表字段，也可能包含特殊字段,eg: responseTime)
      * @throws Exception when error happen
      */
-    private void queryMultiRow(Statement statement, String sql, List<String> columns,
+    private void queryMultiRow(PreparedStatement statement, List<String> columns,
                                CollectRep.MetricsData.Builder builder, long startTime) throws Exception {
-        ResultSet resultSet = statement.executeQuery(sql);
+        ResultSet resultSet = statement.executeQuery();
         try {
             while (resultSet.next()) {
                 CollectRep.ValueRow.Builder valueRowBuilder = CollectRep.ValueRow.newBuilder();
@@ -27,6 +27,7 @@ import com.usthe.collector.dispatch.DispatchConstants;
 import com.usthe.collector.util.CollectUtil;
 import com.usthe.collector.util.CollectorConstants;
 import com.usthe.collector.util.JsonPathParser;
+import com.usthe.collector.util.PrometheusTextParser;
 import com.usthe.common.entity.job.Metrics;
 import com.usthe.common.entity.job.protocol.HttpProtocol;
 import com.usthe.common.entity.message.CollectRep;
@@ -34,6 +35,7 @@ import com.usthe.common.util.CommonConstants;
 import com.usthe.common.util.IpDomainUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.net.util.Base64;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
@@ -48,6 +50,7 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.auth.DigestScheme;
 import org.apache.http.impl.client.BasicAuthCache;
@@ -68,10 +71,14 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.InterruptedIOException;
+import java.io.Reader;
 import java.net.ConnectException;
 import java.net.UnknownHostException;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
@@ -86,6 +93,8 @@ import java.util.Map;
 @Slf4j
 public class HttpCollectImpl extends AbstractCollect {
 
+    private static final String PROMETHEUS_OPENMETRICS_TEXT = "application/openmetrics-text";
+
     private HttpCollectImpl() {}
 
     public static HttpCollectImpl getInstance() {
@@ -118,13 +127,26 @@ public class HttpCollectImpl extends AbstractCollect {
                 return;
             } else {
                 // 2xx 3xx 状态码 成功
+                String parseType = metrics.getHttp().getParseType();
+                if (DispatchConstants.PARSE_PROMETHEUS.equals(parseType) && isPrometheusTextResponse(response.getEntity())) {
+                    // exporter文本格式 直接流式解析响应流 不整体读入内存
+                    try {
+                        parseResponseByPrometheusText(response.getEntity(), metrics, builder, startTime);
+                    } catch (IOException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        log.info("parse error: {}.", e.getMessage(), e);
+                        builder.setCode(CollectRep.Code.FAIL);
+                        builder.setMsg("parse response data error:" + e.getMessage());
+                    }
+                    return;
+                }
                 String resp = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
                 // 根据不同的解析方式解析
                 if (resp == null || "".equals(resp)) {
                     log.info("http response entity is empty, status: {}.", statusCode);
                 }
                 Long responseTime  = System.currentTimeMillis() - startTime;
-                String parseType = metrics.getHttp().getParseType();
                 try {
                     if (DispatchConstants.PARSE_DEFAULT.equals(parseType)) {
                         parseResponseByDefault(resp, metrics.getAliasFields(), metrics.getHttp(), builder, responseTime);
@@ -347,6 +369,49 @@ public class HttpCollectImpl extends AbstractCollect {
         prometheusParser.handle(resp,aliasFields,http,builder);
     }
 
+    private boolean isPrometheusTextResponse(HttpEntity entity) {
+        if (entity == null || entity.getContentType() == null) {
+            return false;
+        }
+        String contentType = entity.getContentType().getValue();
+        return contentType != null && (contentType.startsWith(ContentType.TEXT_PLAIN.getMimeType())
+                || contentType.startsWith(PROMETHEUS_OPENMETRICS_TEXT));
+    }
+
+    private void parseResponseByPrometheusText(HttpEntity entity, Metrics metrics,
+                                               CollectRep.MetricsData.Builder builder, long startTime) throws IOException {
+        HttpProtocol http = metrics.getHttp();
+        String family = StringUtils.hasText(http.getParseScript()) ? http.getParseScript().trim() : metrics.getName();
+        List<String> aliasFields = metrics.getAliasFields();
+        List<String> labels = new ArrayList<>(aliasFields.size());
+        for (String alias : aliasFields) {
+            if (!CollectorConstants.RESPONSE_TIME.equalsIgnoreCase(alias)
+                    && !DispatchConstants.PROMETHEUS_TEXT_VALUE.equals(alias)
+                    && !DispatchConstants.PROMETHEUS_TEXT_NAME.equals(alias)) {
+                labels.add(alias);
+            }
+        }
+        Charset charset = ContentType.getOrDefault(entity).getCharset();
+        try (Reader reader = new InputStreamReader(entity.getContent(), charset == null ? StandardCharsets.UTF_8 : charset)) {
+            PrometheusTextParser.parse(reader, family, labels, (name, labelNames, labelValues, value) -> {
+                CollectRep.ValueRow.Builder valueRowBuilder = CollectRep.ValueRow.newBuilder();
+                for (String alias : aliasFields) {
+                    if (CollectorConstants.RESPONSE_TIME.equalsIgnoreCase(alias)) {
+                        valueRowBuilder.addColumns(Long.toString(System.currentTimeMillis() - startTime));
+                    } else if (DispatchConstants.PROMETHEUS_TEXT_VALUE.equals(alias)) {
+                        valueRowBuilder.addColumns(value);
+                    } else if (DispatchConstants.PROMETHEUS_TEXT_NAME.equals(alias)) {
+                        valueRowBuilder.addColumns(name);
+                    } else {
+                        String labelValue = labelValues.get(labelNames.indexOf(alias));
+                        valueRowBuilder.addColumns(labelValue == null ? CommonConstants.NULL_VALUE : labelValue);
+                    }
+                }
+                builder.addValues(valueRowBuilder.build());
+            });
+        }
+    }
+
     private void parseResponseByDefault(String resp, List<String> aliasFields, HttpProtocol http,
                                         CollectRep.MetricsData.Builder builder, Long responseTime) {
         JsonElement element = JsonParser.parseString(resp);
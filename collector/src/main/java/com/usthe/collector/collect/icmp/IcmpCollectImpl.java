@@ -18,6 +18,8 @@
 package com.usthe.collector.collect.icmp;
 
 import com.usthe.collector.collect.AbstractCollect;
+import com.usthe.collector.collect.AsyncCollect;
+import com.usthe.collector.collect.common.probe.ReachabilityProber;
 import com.usthe.collector.util.CollectorConstants;
 import com.usthe.common.entity.job.Metrics;
 import com.usthe.common.entity.job.protocol.IcmpProtocol;
@@ -25,17 +27,21 @@ import com.usthe.common.entity.message.CollectRep;
 import com.usthe.common.util.CommonConstants;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.IOException;
 import java.net.InetAddress;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * icmp协议采集实现 - ping
+ * 由ReachabilityProber非阻塞探测 等待期间不占用采集线程
  * @author tom
  * @date 2021/12/4 12:32
  */
 @Slf4j
-public class IcmpCollectImpl extends AbstractCollect {
+public class IcmpCollectImpl extends AbstractCollect implements AsyncCollect {
 
     private IcmpCollectImpl(){}
 
@@ -43,15 +49,18 @@ public class IcmpCollectImpl extends AbstractCollect {
         return IcmpCollectImpl.Singleton.INSTANCE;
     }
 
-
     @Override
     public void collect(CollectRep.MetricsData.Builder builder, long appId, String app, Metrics metrics) {
-        long startTime = System.currentTimeMillis();
+        collectAsync(builder, appId, app, metrics).join();
+    }
+
+    @Override
+    public CompletableFuture<Void> collectAsync(CollectRep.MetricsData.Builder builder, long appId, String app, Metrics metrics) {
         // 简单校验必有参数
         if (metrics == null || metrics.getIcmp() == null) {
             builder.setCode(CollectRep.Code.FAIL);
             builder.setMsg("ICMP collect must has icmp params");
-            return;
+            return CompletableFuture.completedFuture(null);
         }
         IcmpProtocol icmp = metrics.getIcmp();
         // 超时时间默认6000毫秒
@@ -61,12 +70,22 @@ public class IcmpCollectImpl extends AbstractCollect {
         } catch (Exception e) {
             log.warn(e.getMessage());
         }
+        InetAddress address;
         try {
-            // todo 需要配置java虚拟机root权限从而使用ICMP，否则是判断telnet对端7号端口是否开通
-            // https://stackoverflow.com/questions/11506321/how-to-ping-an-ip-address
-            boolean status = InetAddress.getByName(icmp.getHost()).isReachable(timeout);
-            long responseTime = System.currentTimeMillis() - startTime;
-            if (status) {
+            address = InetAddress.getByName(icmp.getHost());
+        } catch (UnknownHostException unknownHostException) {
+            builder.setCode(CollectRep.Code.UN_REACHABLE);
+            builder.setMsg("UnknownHost " + unknownHostException.getMessage());
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            builder.setCode(CollectRep.Code.FAIL);
+            builder.setMsg("IllegalArgument " + e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+        final int finalTimeout = timeout;
+        return ReachabilityProber.getInstance().probeIcmp(address, timeout).handle((responseTime, throwable) -> {
+            if (throwable == null) {
                 CollectRep.ValueRow.Builder valueRowBuilder = CollectRep.ValueRow.newBuilder();
                 for (String alias : metrics.getAliasFields()) {
                     if (CollectorConstants.RESPONSE_TIME.equalsIgnoreCase(alias)) {
@@ -76,25 +95,24 @@ public class IcmpCollectImpl extends AbstractCollect {
                     }
                 }
                 builder.addValues(valueRowBuilder.build());
-            } else {
-                builder.setCode(CollectRep.Code.UN_REACHABLE);
-                builder.setMsg("Un Reachable, Timeout " + timeout + "ms");
-                return;
+                return null;
+            }
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+            if (cause instanceof RejectedExecutionException) {
+                // the host is not probed, the collector is busy
+                builder.setCode(CollectRep.Code.FAIL);
+                builder.setMsg("Busy " + cause.getMessage());
+                return null;
             }
-        } catch (UnknownHostException unknownHostException) {
-            builder.setCode(CollectRep.Code.UN_REACHABLE);
-            builder.setMsg("UnknownHost " + unknownHostException.getMessage());
-            return;
-        } catch (IOException ioException) {
             builder.setCode(CollectRep.Code.UN_REACHABLE);
-            builder.setMsg("IOException " + ioException.getMessage());
-            return;
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            builder.setCode(CollectRep.Code.FAIL);
-            builder.setMsg("IllegalArgument " + e.getMessage());
-        }
-
+            if (cause instanceof SocketTimeoutException) {
+                builder.setMsg("Un Reachable, Timeout " + finalTimeout + "ms");
+            } else {
+                builder.setMsg("IOException " + cause.getMessage());
+            }
+            return null;
+        });
     }
 
     private static class Singleton {
@@ -54,24 +54,30 @@ public class JmxCollectImpl extends AbstractCollect {
             validateParams(metrics);
 
             // Create a jndi remote connection
-            JMXConnector jmxConnector = getConnectSession(jmxProtocol);
-
-            MBeanServerConnection serverConnection = jmxConnector.getMBeanServerConnection();
+            JmxConnect jmxConnect = getConnectSession(jmxProtocol);
+            MBeanServerConnection serverConnection = jmxConnect.getConnection().getMBeanServerConnection();
             ObjectName objectName = new ObjectName(jmxProtocol.getObjectName());
 
-            Set<ObjectInstance> objectInstanceSet = serverConnection.queryMBeans(objectName, null);
+            // the ObjectNames and attribute metadata are cached on the connection,
+            // steady-state collection is one getAttributes per ObjectName
+            // ObjectName与属性元数据缓存在连接上 稳定状态下每个ObjectName只有一次getAttributes
+            Set<ObjectName> objectNameSet = jmxConnect.queryNames(objectName);
             Set<String> attributeNameSet = metrics.getAliasFields().stream()
                     .map(field -> field.split(SUB_ATTRIBUTE)[0]).collect(Collectors.toSet());
-            for (ObjectInstance objectInstance : objectInstanceSet) {
-                ObjectName currentObjectName = objectInstance.getObjectName();
-                MBeanInfo beanInfo = serverConnection.getMBeanInfo(currentObjectName);
-                MBeanAttributeInfo[] attrInfos = beanInfo.getAttributes();
-                String[] attributes = new String[attributeNameSet.size()];
-                attributes = Arrays.stream(attrInfos)
-                        .filter(item -> item.isReadable() && attributeNameSet.contains(item.getName()))
-                        .map(MBeanFeatureInfo::getName)
-                        .collect(Collectors.toList()).toArray(attributes);
-                AttributeList attributeList = serverConnection.getAttributes(currentObjectName, attributes);
+            for (ObjectName currentObjectName : objectNameSet) {
+                AttributeList attributeList;
+                try {
+                    String[] attributes = jmxConnect.getReadableAttributes(currentObjectName).keySet().stream()
+                            .filter(attributeNameSet::contains)
+                            .toArray(String[]::new);
+                    attributeList = serverConnection.getAttributes(currentObjectName, attributes);
+                } catch (InstanceNotFoundException instanceNotFoundException) {
+                    // unregistered after the metadata cached
+                    // 元数据缓存后已注销
+                    log.debug("JMX MBean {} not found.", currentObjectName);
+                    jmxConnect.invalidate(currentObjectName);
+                    continue;
+                }
 
                 Map<String, String> attributeValueMap = extractAttributeValue(attributeList);
                 CollectRep.ValueRow.Builder valueRowBuilder = CollectRep.ValueRow.newBuilder();
@@ -136,24 +142,23 @@ public class JmxCollectImpl extends AbstractCollect {
         }
     }
 
-    private JMXConnector getConnectSession(JmxProtocol jmxProtocol) throws IOException {
+    private JmxConnect getConnectSession(JmxProtocol jmxProtocol) throws IOException {
         CacheIdentifier identifier = CacheIdentifier.builder().ip(jmxProtocol.getHost())
                 .port(jmxProtocol.getPort()).username(jmxProtocol.getUsername())
                 .password(jmxProtocol.getPassword()).build();
         Optional<Object> cacheOption = CommonCache.getInstance().getCache(identifier, true);
-        JMXConnector conn = null;
+        JmxConnect jmxConnect = null;
         if (cacheOption.isPresent()) {
-            JmxConnect jmxConnect = (JmxConnect) cacheOption.get();
-            conn = jmxConnect.getConnection();
+            jmxConnect = (JmxConnect) cacheOption.get();
             try {
-                conn.getMBeanServerConnection();
+                jmxConnect.getConnection().getMBeanServerConnection();
             } catch (Exception e) {
-                conn = null;
+                jmxConnect = null;
                 CommonCache.getInstance().removeCache(identifier);
             }
         }
-        if (conn != null) {
-            return conn;
+        if (jmxConnect != null) {
+            return jmxConnect;
         }
         String url;
         if (jmxProtocol.getUrl() != null) {
@@ -173,9 +178,10 @@ public class JmxCollectImpl extends AbstractCollect {
             environment.put("com.sun.jndi.rmi.factory.socket", clientSocketFactory);
         }
         JMXServiceURL jmxServiceUrl = new JMXServiceURL(url);
-        conn = JMXConnectorFactory.connect(jmxServiceUrl, environment);
-        CommonCache.getInstance().addCache(identifier, new JmxConnect(conn));
-        return conn;
+        JMXConnector conn = JMXConnectorFactory.connect(jmxServiceUrl, environment);
+        jmxConnect = new JmxConnect(conn);
+        CommonCache.getInstance().addCache(identifier, jmxConnect);
+        return jmxConnect;
     }
 
     private static class Singleton {
@@ -35,10 +35,13 @@ import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
 import java.time.Duration;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Redis 单机指标收集器
@@ -50,12 +53,31 @@ import java.util.Optional;
 @Slf4j
 public class RedisSingleCollectImpl extends AbstractCollect {
 
+    /**
+     * Max age of the info snapshot, the snapshots of removed monitors are cleaned after it
+     * info快照最大存活时间 已删除监控的快照在此之后被清理
+     */
+    private static final long SNAPSHOT_MAX_AGE = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * The info snapshot of each target in its current collection round, shared by all metrics groups of the round
+     * 每个采集目标当前采集轮次的info快照 由该轮次所有指标组共享
+     */
+    private final Map<String, InfoSnapshot> infoSnapshots = new ConcurrentHashMap<>(16);
+
+    private volatile long lastSweepTime = System.currentTimeMillis();
+
     public static RedisSingleCollectImpl getInstance() {
         return RedisSingleCollectImpl.Singleton.INSTANCE;
     }
 
     @Override
     public void collect(CollectRep.MetricsData.Builder builder, long appId, String app, Metrics metrics) {
+        collect(builder, appId, app, metrics, -1L);
+    }
+
+    @Override
+    public void collect(CollectRep.MetricsData.Builder builder, long appId, String app, Metrics metrics, long roundTime) {
         try {
             preCheck(metrics);
         } catch (Exception e) {
@@ -64,24 +86,25 @@ public class RedisSingleCollectImpl extends AbstractCollect {
             return;
         }
         try {
-            StatefulRedisConnection<String, String> connection = getConnection(metrics.getRedis());
-            String info = connection.sync().info();
-            Map<String, String> valueMap = parseInfo(info);
+            InfoSnapshot snapshot = getInfoSnapshot(appId, metrics.getRedis(), roundTime);
+            // the section of the same name as metrics group first, eg: server memory stats
+            // 优先从与指标组同名的section取值 例如: server memory stats
+            Map<String, String> sectionMap = snapshot.sections.get(metrics.getName().toLowerCase());
+            Map<String, String> valueMap = sectionMap == null ? snapshot.values : sectionMap;
             if (log.isDebugEnabled()) {
                 log.debug("[RedisSingleCollectImpl] fetch redis info");
                 valueMap.forEach((k, v) -> log.debug("{} : {}", k, v));
             }
             CollectRep.ValueRow.Builder valueRowBuilder = CollectRep.ValueRow.newBuilder();
             metrics.getAliasFields().forEach(it -> {
-                if (valueMap.containsKey(it)) {
-                    String fieldValue = valueMap.get(it);
-                    if (fieldValue == null) {
-                        valueRowBuilder.addColumns(CommonConstants.NULL_VALUE);
-                    } else {
-                        valueRowBuilder.addColumns(fieldValue);
-                    }
-                } else {
+                String fieldValue = valueMap.get(it);
+                if (fieldValue == null) {
+                    fieldValue = snapshot.values.get(it);
+                }
+                if (fieldValue == null) {
                     valueRowBuilder.addColumns(CommonConstants.NULL_VALUE);
+                } else {
+                    valueRowBuilder.addColumns(fieldValue);
                 }
             });
             builder.addValues(valueRowBuilder.build());
@@ -96,6 +119,44 @@ public class RedisSingleCollectImpl extends AbstractCollect {
         }
     }
 
+    /**
+     * Get the info snapshot of the target in the collection round.
+     * The first metrics group of the round fetches the INFO, the others of the same round reuse it,
+     * a new round replaces the snapshot. A failed fetch is not kept, the next group retries
+     * 获取采集目标在此采集轮次的info快照
+     * 轮次内第一个指标组执行INFO 同轮次其它指标组复用 新轮次替换快照 获取失败的快照不保留 由下一个指标组重试
+     *
+     * @param appId         monitor id
+     * @param redisProtocol redis protocol config
+     * @param roundTime     dispatch time of the collection round, not shared when less than 0
+     * @return info snapshot
+     */
+    private InfoSnapshot getInfoSnapshot(long appId, RedisProtocol redisProtocol, long roundTime) {
+        if (roundTime < 0) {
+            return new InfoSnapshot(roundTime, getConnection(redisProtocol).sync().info());
+        }
+        sweepSnapshots();
+        String key = appId + "-" + redisProtocol.getHost() + ":" + redisProtocol.getPort();
+        InfoSnapshot snapshot = infoSnapshots.compute(key, (k, old) ->
+                old != null && old.roundTime == roundTime ? old : new InfoSnapshot(roundTime));
+        try {
+            snapshot.load(() -> getConnection(redisProtocol).sync().info());
+            return snapshot;
+        } catch (RuntimeException e) {
+            infoSnapshots.remove(key, snapshot);
+            throw e;
+        }
+    }
+
+    private void sweepSnapshots() {
+        long now = System.currentTimeMillis();
+        if (now - lastSweepTime < SNAPSHOT_MAX_AGE) {
+            return;
+        }
+        lastSweepTime = now;
+        infoSnapshots.values().removeIf(snapshot -> now - snapshot.createTime > SNAPSHOT_MAX_AGE);
+    }
+
     /**
      * preCheck params
      */
@@ -159,28 +220,69 @@ public class RedisSingleCollectImpl extends AbstractCollect {
     }
 
     /**
-     * parse redis info
+     * parse redis info into sections, the section name is lower case eg: server clients memory
+     * 解析redis info为各section section名称为小写 例如: server clients memory
      *
      * @param info redis info
-     * @return parsed redis info
+     * @return section name -> field values of the section
      */
-    private Map<String, String> parseInfo(String info) {
-        String[] lines = info.split("\n");
-        Map<String, String> result = new HashMap<>(16);
-        Arrays.stream(lines)
-                .filter(it -> StringUtils.hasText(it) && !it.startsWith("#") && it.contains(":"))
-                .map(this::removeCr)
-                .map(r -> r.split(":"))
-                .forEach(it -> {
-                    if (it.length > 1) {
-                        result.put(it[0], it[1]);
-                    }
-                });
-        return result;
+    static Map<String, Map<String, String>> parseInfo(String info) {
+        Map<String, Map<String, String>> sections = new LinkedHashMap<>(16);
+        Map<String, String> section = new HashMap<>(16);
+        sections.put("", section);
+        for (String line : info.split("\n")) {
+            line = line.replace("\r", "").trim();
+            if (!StringUtils.hasText(line)) {
+                continue;
+            }
+            if (line.startsWith("#")) {
+                section = sections.computeIfAbsent(line.substring(1).trim().toLowerCase(), key -> new HashMap<>(16));
+                continue;
+            }
+            int index = line.indexOf(':');
+            if (index > 0 && index < line.length() - 1) {
+                section.put(line.substring(0, index), line.substring(index + 1));
+            }
+        }
+        return sections;
     }
 
-    private String removeCr(String value) {
-        return value.replace("\r", "");
+    /**
+     * The parsed INFO response of a target in one collection round
+     * 采集目标在一个采集轮次中解析后的INFO响应
+     */
+    private static class InfoSnapshot {
+        private final long roundTime;
+        private final long createTime = System.currentTimeMillis();
+        private volatile Map<String, Map<String, String>> sections;
+        /**
+         * field values of all sections
+         * 所有section的字段值
+         */
+        private volatile Map<String, String> values;
+
+        private InfoSnapshot(long roundTime) {
+            this.roundTime = roundTime;
+        }
+
+        private InfoSnapshot(long roundTime, String info) {
+            this.roundTime = roundTime;
+            parse(info);
+        }
+
+        private synchronized void load(Supplier<String> infoSupplier) {
+            if (sections == null) {
+                parse(infoSupplier.get());
+            }
+        }
+
+        private void parse(String info) {
+            Map<String, Map<String, String>> parsedSections = parseInfo(info);
+            Map<String, String> parsedValues = new HashMap<>(128);
+            parsedSections.values().forEach(parsedValues::putAll);
+            values = parsedValues;
+            sections = parsedSections;
+        }
     }
 
     private static class Singleton {
@@ -25,20 +25,26 @@ import com.usthe.common.entity.job.protocol.SnmpProtocol;
 import com.usthe.common.entity.message.CollectRep;
 import com.usthe.common.util.CommonConstants;
 import lombok.extern.slf4j.Slf4j;
-import org.snmp4j.PDU;
-import org.snmp4j.Snmp;
-import org.snmp4j.mp.SnmpConstants;
-import org.snmp4j.smi.*;
-import org.springframework.util.Assert;
-import org.snmp4j.*;
-import org.snmp4j.fluent.SnmpBuilder;
-import org.snmp4j.fluent.SnmpCompletableFuture;
+import org.snmp4j.Target;
 import org.snmp4j.fluent.TargetBuilder;
+import org.snmp4j.mp.SnmpConstants;
 import org.snmp4j.security.SecurityModel;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.GenericAddress;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.TimeTicks;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.util.TableEvent;
+import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
-import java.util.*;
-import java.util.concurrent.ExecutionException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Snmp protocol collection implementation
@@ -51,6 +57,7 @@ import java.util.concurrent.ExecutionException;
 public class SnmpCollectImpl extends AbstractCollect {
 
     private static final String DEFAULT_PROTOCOL = "udp";
+    private static final String OPERATION_WALK = "walk";
     private static final String FORMAT_PATTERN =
             "{0,choice,0#|1#1 day, |1<{0,number,integer} days, }" +
                     "{1,choice,0#|1#1 hour, |1<{1,number,integer} hours, }" +
@@ -79,20 +86,11 @@ public class SnmpCollectImpl extends AbstractCollect {
         int timeout = CollectUtil.getTimeout(snmpProtocol.getTimeout());
         int snmpVersion = getSnmpVersion(snmpProtocol.getVersion());
         try {
-            SnmpBuilder snmpBuilder = new SnmpBuilder();
-            Snmp snmpService;
-            if (snmpVersion == SnmpConstants.version3) {
-                snmpService = snmpBuilder.udp().v3().usm().threads(1).build();
-            } else if (snmpVersion == SnmpConstants.version1) {
-                snmpService = snmpBuilder.udp().v1().threads(1).build();
-            } else {
-                snmpService = snmpBuilder.udp().v2c().threads(1).build();
-            }
-
+            SnmpSessionManager sessionManager = SnmpSessionManager.getInstance();
             Target<?> target;
             Address targetAddress = GenericAddress.parse(DEFAULT_PROTOCOL + ":" + snmpProtocol.getHost()
                     + "/" + snmpProtocol.getPort());
-            TargetBuilder<?> targetBuilder = snmpBuilder.target(targetAddress);
+            TargetBuilder<?> targetBuilder = sessionManager.targetBuilder(targetAddress);
             if (snmpVersion == SnmpConstants.version3) {
                 target = targetBuilder
                         .user(snmpProtocol.getUsername())
@@ -116,21 +114,20 @@ public class SnmpCollectImpl extends AbstractCollect {
                         .build();
                 target.setSecurityModel(SecurityModel.SECURITY_MODEL_SNMPv2c);
             }
-
-            PDU pdu = targetBuilder.pdu().type(PDU.GET).oids(snmpProtocol.getOids().values().toArray(new String[0])).build();
-            SnmpCompletableFuture snmpRequestFuture = SnmpCompletableFuture.send(snmpService, target, pdu);
-            List<VariableBinding> vbs = snmpRequestFuture.get().getAll();
-            long responseTime = System.currentTimeMillis() - startTime;
             Map<String, String> oidsMap = snmpProtocol.getOids();
+            if (OPERATION_WALK.equalsIgnoreCase(snmpProtocol.getOperation())) {
+                walkTable(builder, sessionManager, target, metrics.getAliasFields(), oidsMap, startTime);
+                return;
+            }
+            List<OID> oids = new ArrayList<>(oidsMap.size());
+            for (String oid : oidsMap.values()) {
+                oids.add(new OID(oid));
+            }
+            List<VariableBinding> vbs = sessionManager.get(target, oids);
+            long responseTime = System.currentTimeMillis() - startTime;
             Map<String, String> oidsValueMap = new HashMap<>(oidsMap.size());
             for (VariableBinding binding : vbs) {
-                Variable variable = binding.getVariable();
-                if (variable instanceof TimeTicks) {
-                    String value = ((TimeTicks) variable).toString(FORMAT_PATTERN);
-                    oidsValueMap.put(binding.getOid().toDottedString(), value);
-                } else {
-                    oidsValueMap.put(binding.getOid().toDottedString(), binding.toValueString());
-                }
+                oidsValueMap.put(binding.getOid().toDottedString(), bindingValue(binding));
             }
             CollectRep.ValueRow.Builder valueRowBuilder = CollectRep.ValueRow.newBuilder();
             for (String alias : metrics.getAliasFields()) {
@@ -147,7 +144,7 @@ public class SnmpCollectImpl extends AbstractCollect {
                 }
             }
             builder.addValues(valueRowBuilder.build());
-        } catch (ExecutionException | InterruptedException ex) {
+        } catch (IOException ex) {
             log.info("[snmp collect] error: {}", ex.getMessage());
             builder.setCode(CollectRep.Code.UN_CONNECTABLE);
             builder.setMsg(ex.getMessage());
@@ -158,6 +155,57 @@ public class SnmpCollectImpl extends AbstractCollect {
         }
     }
 
+    /**
+     * walk the oids as table columns, one value row per table index
+     * 将oid作为表格列遍历 每个表索引一行数据
+     */
+    private void walkTable(CollectRep.MetricsData.Builder builder, SnmpSessionManager sessionManager,
+                           Target<?> target, List<String> aliasFields, Map<String, String> oidsMap,
+                           long startTime) throws IOException {
+        List<OID> columns = new ArrayList<>(aliasFields.size());
+        int[] aliasColumnIndexes = new int[aliasFields.size()];
+        for (int index = 0; index < aliasFields.size(); index++) {
+            String oid = oidsMap.get(aliasFields.get(index));
+            if (oid == null) {
+                aliasColumnIndexes[index] = -1;
+            } else {
+                aliasColumnIndexes[index] = columns.size();
+                columns.add(new OID(oid));
+            }
+        }
+        if (columns.isEmpty()) {
+            return;
+        }
+        List<TableEvent> rows = sessionManager.walk(target, columns);
+        long responseTime = System.currentTimeMillis() - startTime;
+        for (TableEvent row : rows) {
+            VariableBinding[] bindings = row.getColumns();
+            CollectRep.ValueRow.Builder valueRowBuilder = CollectRep.ValueRow.newBuilder();
+            for (int index = 0; index < aliasFields.size(); index++) {
+                int columnIndex = aliasColumnIndexes[index];
+                String value = null;
+                if (CollectorConstants.RESPONSE_TIME.equalsIgnoreCase(aliasFields.get(index))) {
+                    value = Long.toString(responseTime);
+                } else if (columnIndex >= 0 && columnIndex < bindings.length && bindings[columnIndex] != null) {
+                    value = bindingValue(bindings[columnIndex]);
+                }
+                valueRowBuilder.addColumns(value == null ? CommonConstants.NULL_VALUE : value);
+            }
+            builder.addValues(valueRowBuilder.build());
+        }
+    }
+
+    private String bindingValue(VariableBinding binding) {
+        Variable variable = binding.getVariable();
+        if (variable == null || variable.isException()) {
+            return null;
+        }
+        if (variable instanceof TimeTicks) {
+            return ((TimeTicks) variable).toString(FORMAT_PATTERN);
+        }
+        return binding.toValueString();
+    }
+
     private void validateParams(Metrics metrics) throws Exception {
         if (metrics == null || metrics.getSnmp() == null) {
             throw new IllegalArgumentException("Snmp collect must has snmp params");
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.collector.collect.snmp;
+
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.Target;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.fluent.SnmpBuilder;
+import org.snmp4j.fluent.TargetBuilder;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.util.DefaultPDUFactory;
+import org.snmp4j.util.TableEvent;
+import org.snmp4j.util.TableUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared long-lived snmp session, all snmp requests are multiplexed over one udp transport by request id
+ * 共享的长生命周期snmp会话 所有snmp请求按请求ID复用同一个udp传输
+ * <p>
+ * v1 v2c v3(usm) message processing models are all registered, so targets of any version share this session.
+ * 注册了v1 v2c v3(usm)消息处理模型 任意版本的目标共享此会话
+ *
+ * @author tom
+ * @date 2026/10/16 17:40
+ */
+@Slf4j
+public class SnmpSessionManager implements Closeable {
+
+    /**
+     * threads dispatching incoming responses
+     */
+    private static final int DISPATCHER_THREADS = 2;
+
+    /**
+     * max rows per GETBULK response when walking a table
+     */
+    private static final int MAX_ROWS_PER_PDU = 20;
+
+    private final SnmpBuilder snmpBuilder;
+    private final Snmp snmp;
+    private final TableUtils tableUtils;
+
+    SnmpSessionManager() throws IOException {
+        snmpBuilder = new SnmpBuilder();
+        snmp = snmpBuilder.udp().v1().v2c().v3().usm().threads(DISPATCHER_THREADS).build();
+        snmp.listen();
+        tableUtils = new TableUtils(snmp, new DefaultPDUFactory(PDU.GETBULK));
+        tableUtils.setMaxNumRowsPerPDU(MAX_ROWS_PER_PDU);
+        log.info("[snmp] shared snmp session started.");
+    }
+
+    public static SnmpSessionManager getInstance() {
+        return Singleton.INSTANCE;
+    }
+
+    /**
+     * target builder bound to this session, v3 users are registered into the session's usm
+     * @param address target address
+     * @return target builder
+     */
+    public TargetBuilder<?> targetBuilder(Address address) {
+        return snmpBuilder.target(address);
+    }
+
+    /**
+     * GET the oids in one request
+     * @param target target
+     * @param oids oids
+     * @return variable bindings of response
+     * @throws IOException send error or timeout
+     */
+    public List<VariableBinding> get(Target<?> target, List<OID> oids) throws IOException {
+        PDU pdu = DefaultPDUFactory.createPDU(target, PDU.GET);
+        for (OID oid : oids) {
+            pdu.add(new VariableBinding(oid));
+        }
+        ResponseEvent<?> event = snmp.send(pdu, target);
+        PDU response = event == null ? null : event.getResponse();
+        if (response == null) {
+            if (event != null && event.getError() != null) {
+                throw new IOException(event.getError().getMessage(), event.getError());
+            }
+            throw new SocketTimeoutException("snmp request timeout: " + target.getAddress());
+        }
+        if (response.getErrorStatus() != PDU.noError) {
+            throw new IllegalStateException("snmp response error: " + response.getErrorStatusText()
+                    + ", index: " + response.getErrorIndex());
+        }
+        return new ArrayList<>(response.getVariableBindings());
+    }
+
+    /**
+     * walk the table columns, GETBULK for v2c v3 and GETNEXT for v1
+     * @param target target
+     * @param columns column oids of table
+     * @return table rows, columns of row are aligned with param columns and may be null
+     * @throws IOException send error or timeout before any row returned
+     */
+    public List<TableEvent> walk(Target<?> target, List<OID> columns) throws IOException {
+        List<TableEvent> events = tableUtils.getTable(target, columns.toArray(new OID[0]), null, null);
+        List<TableEvent> rows = new ArrayList<>(events.size());
+        for (TableEvent event : events) {
+            if (event.isError()) {
+                if (rows.isEmpty()) {
+                    if (event.getStatus() == TableEvent.STATUS_TIMEOUT) {
+                        throw new SocketTimeoutException("snmp request timeout: " + target.getAddress());
+                    }
+                    throw new IOException("snmp walk error: " + event.getErrorMessage());
+                }
+                log.warn("[snmp] walk {} stopped: {}.", target.getAddress(), event.getErrorMessage());
+                break;
+            }
+            if (event.getColumns() != null) {
+                rows.add(event);
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        snmp.close();
+    }
+
+    private static class Singleton {
+        private static final SnmpSessionManager INSTANCE;
+
+        static {
+            try {
+                INSTANCE = new SnmpSessionManager();
+            } catch (IOException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+}
@@ -55,6 +55,7 @@ public class SshCollectImpl extends AbstractCollect {
     private static final String PARSE_TYPE_ONE_ROW = "oneRow";
     private static final String PARSE_TYPE_MULTI_ROW = "multiRow";
     private static final String PARSE_TYPE_NETCAT = "netcat";
+    private static final String BATCH_DELIMITER_PREFIX = "@@hertzbeat-ssh-batch-";
 
     private SshCollectImpl() {
     }
@@ -101,20 +102,7 @@ public class SshCollectImpl extends AbstractCollect {
                 builder.setCode(CollectRep.Code.FAIL);
                 builder.setMsg("采集数据失败");
             }
-            switch (sshProtocol.getParseType()) {
-                case PARSE_TYPE_NETCAT:
-                    parseResponseDataByNetcat(result, metrics.getAliasFields(), builder, responseTime);
-                    break;
-                case PARSE_TYPE_ONE_ROW:
-                    parseResponseDataByOne(result, metrics.getAliasFields(), builder, responseTime);
-                    break;
-                case PARSE_TYPE_MULTI_ROW:
-                    parseResponseDataByMulti(result, metrics.getAliasFields(), builder, responseTime);
-                    break;
-                default:
-                    parseResponseDataByMulti(result, metrics.getAliasFields(), builder, responseTime);
-                    break;
-            }
+            parseResponseData(result, sshProtocol.getParseType(), metrics.getAliasFields(), builder, responseTime);
         } catch (ConnectException connectException) {
             log.debug(connectException.getMessage());
             builder.setCode(CollectRep.Code.UN_CONNECTABLE);
@@ -131,6 +119,149 @@ public class SshCollectImpl extends AbstractCollect {
     }
 
 
+    /**
+     * Collect the metrics groups of the same host by one exec channel, the scripts are combined with delimiters
+     * and the output is split back to each metrics group
+     * 同一主机的多个指标组共用一个exec通道采集 脚本以分隔符合并执行 输出再按分隔符拆分回各指标组
+     *
+     * @param builders    response builders, one for each metrics group
+     * @param appId       App monitoring ID   应用监控ID
+     * @param app         Application Type  应用类型
+     * @param metricsList Metric group configurations of the same host    同一主机的指标组配置
+     */
+    public void collect(List<CollectRep.MetricsData.Builder> builders, long appId, String app, List<Metrics> metricsList) {
+        long startTime = System.currentTimeMillis();
+        try {
+            for (Metrics metrics : metricsList) {
+                validateParams(metrics);
+            }
+        } catch (Exception e) {
+            builders.forEach(builder -> builder.setCode(CollectRep.Code.FAIL).setMsg(e.getMessage()));
+            return;
+        }
+        SshProtocol sshProtocol = metricsList.get(0).getSsh();
+        // 超时时间默认6000毫秒 连接取各指标组中最大的超时时间 脚本依次执行 等待执行结束取各指标组超时时间之和
+        int timeout = 0;
+        long batchTimeout = 0;
+        for (Metrics metrics : metricsList) {
+            int scriptTimeout = 6000;
+            try {
+                scriptTimeout = Integer.parseInt(metrics.getSsh().getTimeout());
+            } catch (Exception e) {
+                log.warn(e.getMessage());
+            }
+            scriptTimeout = scriptTimeout <= 0 ? 6000 : scriptTimeout;
+            timeout = Math.max(timeout, scriptTimeout);
+            batchTimeout += scriptTimeout;
+        }
+        String delimiter = BATCH_DELIMITER_PREFIX + UUID.randomUUID().toString().replace("-", "");
+        try {
+            ClientSession clientSession = getConnectSession(sshProtocol, timeout);
+            ClientChannel channel = clientSession.createExecChannel(combineScripts(metricsList, delimiter));
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            channel.setOut(response);
+            if (!channel.open().verify(timeout).isOpened()) {
+                throw new Exception("open failed");
+            }
+            List<ClientChannelEvent> list = new ArrayList<>();
+            list.add(ClientChannelEvent.CLOSED);
+            channel.waitFor(list, batchTimeout);
+            Long responseTime = System.currentTimeMillis() - startTime;
+            channel.close();
+            String[] results = splitResults(response.toString(), delimiter, metricsList.size());
+            for (int i = 0; i < metricsList.size(); i++) {
+                Metrics metrics = metricsList.get(i);
+                CollectRep.MetricsData.Builder builder = builders.get(i);
+                String result = results[i];
+                if (!StringUtils.hasText(result)) {
+                    builder.setCode(CollectRep.Code.FAIL);
+                    builder.setMsg("采集数据失败");
+                    continue;
+                }
+                try {
+                    parseResponseData(result, metrics.getSsh().getParseType(), metrics.getAliasFields(), builder, responseTime);
+                } catch (Exception exception) {
+                    log.debug(exception.getMessage());
+                    builder.setCode(CollectRep.Code.FAIL);
+                    builder.setMsg(exception.getMessage());
+                }
+            }
+        } catch (ConnectException connectException) {
+            log.debug(connectException.getMessage());
+            builders.forEach(builder -> builder.setCode(CollectRep.Code.UN_CONNECTABLE)
+                    .setMsg("对端拒绝连接：服务未启动端口监听或防火墙"));
+        } catch (IOException ioException) {
+            log.debug(ioException.getMessage());
+            builders.forEach(builder -> builder.setCode(CollectRep.Code.UN_CONNECTABLE)
+                    .setMsg("对端连接失败 " + ioException.getMessage()));
+        } catch (Exception exception) {
+            log.debug(exception.getMessage());
+            String msg = exception.getMessage() == null ? exception.toString() : exception.getMessage();
+            builders.forEach(builder -> builder.setCode(CollectRep.Code.FAIL).setMsg(msg));
+        }
+    }
+
+    /**
+     * Combine the scripts, every script runs in a subshell after its delimiter line
+     * 合并脚本 每个脚本在其分隔行之后的子shell中执行
+     */
+    static String combineScripts(List<Metrics> metricsList, String delimiter) {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < metricsList.size(); i++) {
+            script.append("echo '").append(delimiter).append(i).append("'\n")
+                    .append("(\n").append(metricsList.get(i).getSsh().getScript()).append("\n)\n");
+        }
+        return script.toString();
+    }
+
+    /**
+     * Split the combined output by the delimiters, the output of the missing scripts is empty.
+     * The delimiter carries a random nonce, so it is matched anywhere: the previous output may not end with a newline
+     * 按分隔符拆分合并的输出 缺失的脚本输出为空
+     * 分隔符带随机数 可在任意位置匹配: 前一个脚本的输出末尾可能没有换行
+     */
+    static String[] splitResults(String output, String delimiter, int size) {
+        String[] results = new String[size];
+        Arrays.fill(results, "");
+        int markerStart = output.indexOf(delimiter);
+        while (markerStart >= 0) {
+            int lineEnd = output.indexOf('\n', markerStart);
+            lineEnd = lineEnd < 0 ? output.length() : lineEnd;
+            int segmentStart = Math.min(lineEnd + 1, output.length());
+            int nextMarker = output.indexOf(delimiter, segmentStart);
+            int segmentEnd = nextMarker < 0 ? output.length() : nextMarker;
+            try {
+                int index = Integer.parseInt(output.substring(markerStart + delimiter.length(), lineEnd).trim());
+                if (index >= 0 && index < size) {
+                    results[index] = output.substring(segmentStart, segmentEnd);
+                }
+            } catch (NumberFormatException e) {
+                log.debug(e.getMessage());
+            }
+            markerStart = nextMarker;
+        }
+        return results;
+    }
+
+    private void parseResponseData(String result, String parseType, List<String> aliasFields,
+                                   CollectRep.MetricsData.Builder builder, Long responseTime) {
+        if (parseType == null) {
+            parseType = PARSE_TYPE_MULTI_ROW;
+        }
+        switch (parseType) {
+            case PARSE_TYPE_NETCAT:
+                parseResponseDataByNetcat(result, aliasFields, builder, responseTime);
+                break;
+            case PARSE_TYPE_ONE_ROW:
+                parseResponseDataByOne(result, aliasFields, builder, responseTime);
+                break;
+            case PARSE_TYPE_MULTI_ROW:
+            default:
+                parseResponseDataByMulti(result, aliasFields, builder, responseTime);
+                break;
+        }
+    }
+
     private void parseResponseDataByNetcat(String result, List<String> aliasFields, CollectRep.MetricsData.Builder builder, Long responseTime) {
         String[] lines = result.split("\n");
         if (lines.length + 1 < aliasFields.size()) {
@@ -18,24 +18,31 @@
 package com.usthe.collector.collect.telnet;
 
 import com.usthe.collector.collect.AbstractCollect;
+import com.usthe.collector.collect.AsyncCollect;
+import com.usthe.collector.collect.common.probe.ReachabilityProber;
 import com.usthe.collector.util.CollectorConstants;
 import com.usthe.common.entity.job.Metrics;
 import com.usthe.common.entity.job.protocol.TelnetProtocol;
 import com.usthe.common.entity.message.CollectRep;
 import com.usthe.common.util.CommonConstants;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.net.telnet.TelnetClient;
 
-import java.io.IOException;
 import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
- * telnet协议采集实现
+ * telnet协议采集实现 - 端口可用性
+ * 由ReachabilityProber非阻塞tcp连接探测 等待期间不占用采集线程
  * @author tom
  * @date 2021/12/4 12:32
  */
 @Slf4j
-public class TelnetCollectImpl extends AbstractCollect {
+public class TelnetCollectImpl extends AbstractCollect implements AsyncCollect {
 
     private TelnetCollectImpl(){}
 
@@ -43,15 +50,18 @@ public class TelnetCollectImpl extends AbstractCollect {
         return TelnetCollectImpl.Singleton.INSTANCE;
     }
 
-
     @Override
     public void collect(CollectRep.MetricsData.Builder builder, long appId, String app, Metrics metrics) {
-        long startTime = System.currentTimeMillis();
+        collectAsync(builder, appId, app, metrics).join();
+    }
+
+    @Override
+    public CompletableFuture<Void> collectAsync(CollectRep.MetricsData.Builder builder, long appId, String app, Metrics metrics) {
         // 简单校验必有参数
         if (metrics == null || metrics.getTelnet() == null) {
             builder.setCode(CollectRep.Code.FAIL);
             builder.setMsg("Telnet collect must has telnet params");
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         TelnetProtocol telnet = metrics.getTelnet();
@@ -62,14 +72,22 @@ public class TelnetCollectImpl extends AbstractCollect {
         } catch (Exception e) {
             log.warn(e.getMessage());
         }
-        TelnetClient telnetClient = null;
+        InetSocketAddress address;
         try {
-            //指明Telnet终端类型，否则会返回来的数据中文会乱码
-            telnetClient = new TelnetClient("vt200");
-            telnetClient.setConnectTimeout(timeout);
-            telnetClient.connect(telnet.getHost(),Integer.parseInt(telnet.getPort()));
-            long responseTime = System.currentTimeMillis() - startTime;
-            if (telnetClient.isConnected()) {
+            address = new InetSocketAddress(InetAddress.getByName(telnet.getHost()), Integer.parseInt(telnet.getPort()));
+        } catch (UnknownHostException unknownHostException) {
+            log.debug(unknownHostException.getMessage());
+            builder.setCode(CollectRep.Code.UN_CONNECTABLE);
+            builder.setMsg("对端连接失败 UnknownHost " + unknownHostException.getMessage());
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            builder.setCode(CollectRep.Code.FAIL);
+            builder.setMsg("IllegalArgument " + e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+        final int finalTimeout = timeout;
+        return ReachabilityProber.getInstance().probeTcp(address, timeout).handle((responseTime, throwable) -> {
+            if (throwable == null) {
                 CollectRep.ValueRow.Builder valueRowBuilder = CollectRep.ValueRow.newBuilder();
                 for (String alias : metrics.getAliasFields()) {
                     if (CollectorConstants.RESPONSE_TIME.equalsIgnoreCase(alias)) {
@@ -79,29 +97,21 @@ public class TelnetCollectImpl extends AbstractCollect {
                     }
                 }
                 builder.addValues(valueRowBuilder.build());
-            } else {
-                builder.setCode(CollectRep.Code.UN_CONNECTABLE);
-                builder.setMsg("对端连接失败，Timeout " + timeout + "ms");
-                return;
+                return null;
             }
-            telnetClient.disconnect();
-        } catch (ConnectException connectException) {
-            log.debug(connectException.getMessage());
-            builder.setCode(CollectRep.Code.UN_CONNECTABLE);
-            builder.setMsg("对端拒绝连接：服务未启动端口监听或防火墙");
-        } catch (IOException ioException) {
-            log.debug(ioException.getMessage());
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+            log.debug(cause.getMessage());
             builder.setCode(CollectRep.Code.UN_CONNECTABLE);
-            builder.setMsg("对端连接失败 " + ioException.getMessage());
-        } finally {
-            if (telnetClient != null) {
-                try {
-                    telnetClient.disconnect();
-                } catch (Exception e) {
-                    log.warn(e.getMessage());
-                }
+            if (cause instanceof ConnectException) {
+                builder.setMsg("对端拒绝连接：服务未启动端口监听或防火墙");
+            } else if (cause instanceof SocketTimeoutException) {
+                builder.setMsg("对端连接失败，Timeout " + finalTimeout + "ms");
+            } else {
+                builder.setMsg("对端连接失败 " + cause.getMessage());
             }
-        }
+            return null;
+        });
     }
 
     private static class Singleton {
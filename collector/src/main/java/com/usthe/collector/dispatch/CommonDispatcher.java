@@ -27,15 +27,16 @@ import com.usthe.collector.util.CollectUtil;
 import com.usthe.common.entity.job.Configmap;
 import com.usthe.common.entity.job.Job;
 import com.usthe.common.entity.job.Metrics;
+import com.usthe.common.entity.job.protocol.SshProtocol;
 import com.usthe.common.entity.message.CollectRep;
 import com.usthe.common.queue.CommonDataQueue;
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import com.usthe.common.util.ValueRowUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -52,11 +53,6 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class CommonDispatcher implements MetricsTaskDispatch, CollectDataDispatch {
 
-    /**
-     * Metric group collection task timeout value
-     * 指标组采集任务超时时间值
-     */
-    private static final long DURATION_TIME = 240_000L;
     private static final Gson GSON = new Gson();
     /**
      * Priority queue of index group collection tasks
@@ -74,29 +70,47 @@ public class CommonDispatcher implements MetricsTaskDispatch, CollectDataDispatc
      */
     private CommonDataQueue commonDataQueue;
     /**
-     * Metric group task and start time mapping map
-     * 指标组任务与开始时间映射map
+     * Dispatch the timeout data of the timed out tasks, keep the time wheel thread from the blocking dispatch
+     * 分发超时任务的超时数据 避免时间轮线程执行可能阻塞的分发
      */
-    private Map<String, MetricsTime> metricsTimeoutMonitorMap;
+    private final ExecutorService timeoutDispatchExecutor;
 
     private final List<UnitConvert> unitConvertList;
 
+    private final WorkerPool workerPool;
+    /**
+     * Whether the ssh metrics groups of the same host are run by one exec channel
+     * 同一主机的ssh指标组是否由一个exec通道执行
+     */
+    private final boolean sshBatchEnabled;
+
     public CommonDispatcher(MetricsCollectorQueue jobRequestQueue,
                             TimerDispatch timerDispatch,
                             CommonDataQueue commonDataQueue,
                             WorkerPool workerPool,
-                            List<UnitConvert> unitConvertList) {
+                            List<UnitConvert> unitConvertList,
+                            DispatchProperties dispatchProperties) {
         this.commonDataQueue = commonDataQueue;
+        this.sshBatchEnabled = dispatchProperties != null && dispatchProperties.getSsh() != null
+                && dispatchProperties.getSsh().isBatchEnabled();
         this.jobRequestQueue = jobRequestQueue;
         this.timerDispatch = timerDispatch;
         this.unitConvertList = unitConvertList;
-        ThreadPoolExecutor poolExecutor = new ThreadPoolExecutor(2, 2, 1,
+        this.workerPool = workerPool;
+        ThreadPoolExecutor poolExecutor = new ThreadPoolExecutor(1, 1, 1,
                 TimeUnit.SECONDS,
                 new SynchronousQueue<>(), r -> {
             Thread thread = new Thread(r);
             thread.setDaemon(true);
             return thread;
         });
+        timeoutDispatchExecutor = new ThreadPoolExecutor(1, 1, 0L,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "metrics-timeout-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
         // Pull the indicator group collection task from the task queue and put it into the thread pool for execution
         // 从任务队列拉取指标组采集任务放入线程池执行
         poolExecutor.execute(() -> {
@@ -125,41 +139,6 @@ public class CommonDispatcher implements MetricsTaskDispatch, CollectDataDispatc
                 }
             }
         });
-        // Monitoring indicator group collection task execution t
-        // 监控指标组采集任务执行时间
-        metricsTimeoutMonitorMap = new ConcurrentHashMap<>(128);
-        poolExecutor.execute(() -> {
-            Thread.currentThread().setName("metrics-task-monitor");
-            while (!Thread.currentThread().isInterrupted()) {
-                try {
-                    // Detect whether the collection unit of each indicator group has timed out for 4 minutes, and if it times out, it will be discarded and an exception will be returned.
-                    // 检测每个指标组采集单元是否超时4分钟,超时则丢弃并返回异常
-                    long deadline = System.currentTimeMillis() - DURATION_TIME;
-                    for (Map.Entry<String, MetricsTime> entry : metricsTimeoutMonitorMap.entrySet()) {
-                        MetricsTime metricsTime = entry.getValue();
-                        if (metricsTime.getStartTime() < deadline) {
-                            // Metric group collection timeout      指标组采集超时
-                            WheelTimerTask timerJob = (WheelTimerTask) metricsTime.getTimeout().task();
-                            CollectRep.MetricsData metricsData = CollectRep.MetricsData.newBuilder()
-                                    .setId(timerJob.getJob().getMonitorId())
-                                    .setApp(timerJob.getJob().getApp())
-                                    .setMetrics(metricsTime.getMetrics().getName())
-                                    .setPriority(metricsTime.getMetrics().getPriority())
-                                    .setTime(System.currentTimeMillis())
-                                    .setCode(CollectRep.Code.TIMEOUT).setMsg("collect timeout").build();
-                            log.error("[Collect Timeout]: \n{}", metricsData);
-                            if (metricsData.getPriority() == 0) {
-                                dispatchCollectData(metricsTime.timeout, metricsTime.getMetrics(), metricsData);
-                            }
-                            metricsTimeoutMonitorMap.remove(entry.getKey());
-                        }
-                    }
-                    Thread.sleep(20000);
-                } catch (Exception e) {
-                    log.error("[Monitor]-{}.", e.getMessage(), e);
-                }
-            }
-        });
     }
 
     @Override
@@ -172,29 +151,25 @@ public class CommonDispatcher implements MetricsTaskDispatch, CollectDataDispatc
         Job job = timerTask.getJob();
         job.constructPriorMetrics();
         Set<Metrics> metricsSet = job.getNextCollectMetrics(null, true);
-        metricsSet.forEach(metrics -> {
-            MetricsCollect metricsCollect = new MetricsCollect(metrics, timeout, this, unitConvertList);
-            jobRequestQueue.addJob(metricsCollect);
-            metricsTimeoutMonitorMap.put(job.getId() + "-" + metrics.getName(),
-                    new MetricsTime(System.currentTimeMillis(), metrics, timeout));
-        });
+        addMetricsCollects(job, metricsSet, timeout);
     }
 
     @Override
     public void dispatchCollectData(Timeout timeout, Metrics metrics, CollectRep.MetricsData metricsData) {
         WheelTimerTask timerJob = (WheelTimerTask) timeout.task();
         Job job = timerJob.getJob();
-        metricsTimeoutMonitorMap.remove(job.getId() + "-" + metrics.getName());
         Set<Metrics> metricsSet = job.getNextCollectMetrics(metrics, false);
         if (job.isCyclic()) {
             // If it is an asynchronous periodic cyclic task, directly send the collected data of the indicator group to the message middleware
             // 若是异步的周期性循环任务,直接发送指标组的采集数据到消息中间件
+            // A bounded queue may block here when its consumers lag, which slows down the collection (backpressure)
+            // 有界队列在消费者滞后时可能在此阻塞 从而减缓采集速度(背压)
             commonDataQueue.sendMetricsData(metricsData);
             if (log.isDebugEnabled()) {
                 log.debug("Cyclic Job: {}",metricsData.getMetrics());
                 for (CollectRep.ValueRow valueRow : metricsData.getValuesList()) {
                     for (CollectRep.Field field : metricsData.getFieldsList()) {
-                        log.debug("Field-->{},Value-->{}", field.getName(), valueRow.getColumns(metricsData.getFieldsList().indexOf(field)));
+                        log.debug("Field-->{},Value-->{}", field.getName(), ValueRowUtil.getColumn(valueRow, metricsData.getFieldsList().indexOf(field)));
                     }
                 }
             }
@@ -224,17 +199,20 @@ public class CommonDispatcher implements MetricsTaskDispatch, CollectDataDispatc
                 // 当前级别指标组执行完成，开始执行下一级别的指标组
                 // use pre collect metrics data to replace next metrics config params
                 Map<String, Configmap> configmap = getConfigmapFromPreCollectData(metricsData);
-                metricsSet.forEach(metricItem -> {
+                List<Metrics> nextMetrics = new ArrayList<>(metricsSet.size());
+                for (Metrics metricItem : metricsSet) {
                     if (configmap != null && !configmap.isEmpty()) {
+                        // only protocol params are replaced, keep the calculation plan of the origin metrics
+                        // 只替换协议参数 沿用原指标组的计算计划
+                        MetricsCalculatePlan calculatePlan = MetricsCalculatePlan.of(metricItem, unitConvertList);
                         JsonElement jsonElement = GSON.toJsonTree(metricItem);
                         CollectUtil.replaceCryPlaceholder(jsonElement, configmap);
                         metricItem = GSON.fromJson(jsonElement, Metrics.class);
+                        metricItem.setCalculatePlan(calculatePlan);
                     }
-                    MetricsCollect metricsCollect = new MetricsCollect(metricItem, timeout, this, unitConvertList);
-                    jobRequestQueue.addJob(metricsCollect);
-                    metricsTimeoutMonitorMap.put(job.getId() + "-" + metricItem.getName(),
-                            new MetricsTime(System.currentTimeMillis(), metricItem, timeout));
-                });
+                    nextMetrics.add(metricItem);
+                }
+                addMetricsCollects(job, nextMetrics, timeout);
             } else {
                 // The list of indicator groups at the current execution level has not been fully executed.
                 // It needs to wait for the execution of other indicator groups of the same level to complete the execution and enter the next level for execution.
@@ -242,34 +220,31 @@ public class CommonDispatcher implements MetricsTaskDispatch, CollectDataDispatc
                 // 需等待其它同级别指标组执行完成后进入下一级别执行
             }
         } else {
-            // If it is a temporary one-time task, you need to wait for the collected data of all indicator groups to be packaged and returned.
-            // Insert the current indicator group data into the job for unified assembly
-            // 若是临时性一次任务,需等待所有指标组的采集数据统一包装返回
-            // 将当前指标组数据插入job里统一组装
-            job.addCollectMetricsData(metricsData);
+            // If it is a temporary one-time task, stream the data of the metrics group to the task listener
+            // 若是临时性一次任务,将指标组数据流式通知任务监听器
             if (log.isDebugEnabled()) {
                 log.debug("One-time Job: {}", metricsData.getMetrics());
                 for (CollectRep.ValueRow valueRow : metricsData.getValuesList()) {
                     for (CollectRep.Field field : metricsData.getFieldsList()) {
-                        log.debug("Field-->{},Value-->{}", field.getName(), valueRow.getColumns(metricsData.getFieldsList().indexOf(field)));
+                        log.debug("Field-->{},Value-->{}", field.getName(), ValueRowUtil.getColumn(valueRow, metricsData.getFieldsList().indexOf(field)));
                     }
                 }
             }
-            if (metricsSet == null) {
-                // The collection and execution of all indicator groups of this job are completed
-                // and the result listener is notified of the combination of all indicator group data
-                // 此Job所有指标组采集执行完成
-                // 将所有指标组数据组合一起通知结果监听器
-                timerDispatch.responseSyncJobData(job.getId(), job.getResponseDataTemp());
+            if (!timerDispatch.responseSyncMetricsData(job.getId(), metricsData)) {
+                // The task has been finished by its deadline or the failed availability, the late data is discarded
+                // 任务已因截止时间或可用性失败而结束 丢弃迟到的数据
+                return;
+            }
+            if (metricsSet == null
+                    || (metrics.getPriority() == (byte) 0 && metricsData.getCode() != CollectRep.Code.SUCCESS)) {
+                // The collection and execution of all indicator groups of this job are completed,
+                // or the availability collection fails, the other indicator groups are not collected (fail fast)
+                // 此Job所有指标组采集执行完成 或可用性采集失败 不再采集其它指标组(快速失败)
+                timerDispatch.responseSyncJobData(job.getId());
             } else if (!metricsSet.isEmpty()) {
                 // The execution of the current level indicator group is completed, and the execution of the next level indicator group starts
                 // 当前级别指标组执行完成，开始执行下一级别的指标组
-                metricsSet.forEach(metricItem -> {
-                    MetricsCollect metricsCollect = new MetricsCollect(metricItem, timeout, this, unitConvertList);
-                    jobRequestQueue.addJob(metricsCollect);
-                    metricsTimeoutMonitorMap.put(job.getId() + "-" + metricItem.getName(),
-                            new MetricsTime(System.currentTimeMillis(), metricItem, timeout));
-                });
+                addMetricsCollects(job, metricsSet, timeout);
             } else {
                 // The list of indicator groups at the current execution level has not been fully executed.
                 // It needs to wait for the execution of other indicator groups of the same level to complete the execution and enter the next level for execution.
@@ -279,6 +254,107 @@ public class CommonDispatcher implements MetricsTaskDispatch, CollectDataDispatc
         }
     }
 
+    /**
+     * Put the metrics groups of the same priority level into the task queue.
+     * When the ssh batch is enabled, the ssh metrics groups of the same host are merged into one collection task
+     * which runs all scripts one after another by one exec channel, avoid opening a channel per metrics group
+     * that saturates the sshd MaxSessions.
+     * 将同一优先级的指标组放入任务队列
+     * 开启ssh批量时 同一主机的ssh指标组合并为一个采集任务 由一个exec通道依次执行所有脚本 避免每个指标组都打开通道占满sshd MaxSessions
+     *
+     * @param job        collect job
+     * @param metricsSet metrics groups of the same priority level    同一优先级的指标组
+     * @param timeout    time wheel timeout
+     */
+    private void addMetricsCollects(Job job, Collection<Metrics> metricsSet, Timeout timeout) {
+        Map<String, List<Metrics>> sshHostMetrics = new LinkedHashMap<>(4);
+        for (Metrics metrics : metricsSet) {
+            SshProtocol ssh = metrics.getSsh();
+            if (sshBatchEnabled && DispatchConstants.PROTOCOL_SSH.equals(metrics.getProtocol()) && ssh != null) {
+                String hostKey = ssh.getHost() + ":" + ssh.getPort() + ":" + ssh.getUsername();
+                sshHostMetrics.computeIfAbsent(hostKey, key -> new ArrayList<>()).add(metrics);
+            } else {
+                addMetricsCollect(new MetricsCollect(metrics, timeout, this, unitConvertList));
+            }
+        }
+        for (List<Metrics> hostMetrics : sshHostMetrics.values()) {
+            if (hostMetrics.size() == 1) {
+                addMetricsCollect(new MetricsCollect(hostMetrics.get(0), timeout, this, unitConvertList));
+            } else {
+                addMetricsCollect(new SshBatchMetricsCollect(hostMetrics, timeout, this, unitConvertList));
+            }
+        }
+    }
+
+    /**
+     * Put the task into the task queue, and schedule its collection timeout on the time wheel.
+     * The tasks of the one-time jobs run in their own worker pool, and time out no later than the job deadline.
+     * 将任务放入任务队列 并在时间轮上调度其采集超时
+     * 一次性任务的采集任务在独立的工作线程池中执行 且不晚于任务截止时间超时
+     *
+     * @param metricsCollect metrics collection task
+     */
+    void addMetricsCollect(MetricsCollect metricsCollect) {
+        long taskTimeout = metricsCollect.getTaskTimeoutMillis();
+        if (!metricsCollect.isCyclic() && metricsCollect.getDeadline() > 0) {
+            taskTimeout = Math.min(taskTimeout, Math.max(0L, metricsCollect.getDeadline() - System.currentTimeMillis()));
+        }
+        metricsCollect.setCollectTimeout(timerDispatch.newTimeout(
+                collectTimeout -> expireMetricsCollect(metricsCollect),
+                taskTimeout, TimeUnit.MILLISECONDS));
+        if (metricsCollect.isCyclic()) {
+            jobRequestQueue.addJob(metricsCollect);
+            return;
+        }
+        try {
+            workerPool.executeTempJob(metricsCollect);
+        } catch (RejectedExecutionException rejected) {
+            // too many one-time tasks, fail this one instead of taking the workers of the cyclic tasks
+            // 一次性任务过多 使此任务失败而不是占用周期性任务的工作线程
+            log.warn("[Dispatcher]-the one-time worker pool is full, reject the metrics task of monitor {}.",
+                    metricsCollect.getMonitorId());
+            if (metricsCollect.expire()) {
+                timeoutDispatchExecutor.execute(() -> dispatchFailedData(metricsCollect, CollectRep.Code.FAIL,
+                        "collector is busy with one-time tasks, try again later"));
+            }
+        }
+    }
+
+    /**
+     * The collection of the task is timeout: interrupt the worker thread to release it,
+     * and dispatch the timeout data so the job goes on to the next metrics groups or the next round
+     * 任务采集超时: 中断工作线程释放它 并分发超时数据使任务继续下一级指标组或下一轮采集
+     *
+     * @param metricsCollect metrics collection task
+     */
+    private void expireMetricsCollect(MetricsCollect metricsCollect) {
+        if (!metricsCollect.expire()) {
+            return;
+        }
+        timeoutDispatchExecutor.execute(() -> dispatchFailedData(metricsCollect, CollectRep.Code.TIMEOUT,
+                "collect timeout"));
+    }
+
+    private void dispatchFailedData(MetricsCollect metricsCollect, CollectRep.Code code, String msg) {
+        Timeout timeout = metricsCollect.getTimeout();
+        WheelTimerTask timerJob = (WheelTimerTask) timeout.task();
+        for (Metrics metrics : metricsCollect.getTaskMetrics()) {
+            CollectRep.MetricsData metricsData = CollectRep.MetricsData.newBuilder()
+                    .setId(timerJob.getJob().getMonitorId())
+                    .setApp(timerJob.getJob().getApp())
+                    .setMetrics(metrics.getName())
+                    .setPriority(metrics.getPriority())
+                    .setTime(System.currentTimeMillis())
+                    .setCode(code).setMsg(msg).build();
+            log.error("[Collect {}]: \n{}", code, metricsData);
+            try {
+                dispatchCollectData(timeout, metrics, metricsData);
+            } catch (Exception e) {
+                log.error("[Collect {}] dispatch error: {}.", code, e.getMessage(), e);
+            }
+        }
+    }
+
     private Map<String, Configmap> getConfigmapFromPreCollectData(CollectRep.MetricsData metricsData) {
         if (metricsData.getValuesCount() <= 0 || metricsData.getFieldsCount() <= 0) {
             return null;
@@ -290,19 +366,11 @@ public class CommonDispatcher implements MetricsTaskDispatch, CollectDataDispatc
         Map<String, Configmap> configmapMap = new HashMap<>(valueRow.getColumnsCount());
         int index = 0;
         for (CollectRep.Field field : metricsData.getFieldsList()) {
-            String value = valueRow.getColumns(index);
+            String value = ValueRowUtil.getColumn(valueRow, index);
             index++;
             Configmap configmap = new Configmap(field.getName(), value, Integer.valueOf(field.getType()).byteValue());
             configmapMap.put(field.getName(), configmap);
         }
         return configmapMap;
     }
-
-    @Data
-    @AllArgsConstructor
-    private static class MetricsTime {
-        private long startTime;
-        private Metrics metrics;
-        private Timeout timeout;
-    }
 }
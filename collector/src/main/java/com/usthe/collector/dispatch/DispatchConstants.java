@@ -118,6 +118,12 @@ public interface DispatchConstants {
     String PARSE_PROMETHEUS_ACCEPT = "application/openmetrics-text; version=0.0.1,text/plain;version=0.0.4;q=0.5,*/*;q=0.1";
     String PARSE_PROMETHEUS_VECTOR = "vector";
     String PARSE_PROMETHEUS_MATRIX = "matrix";
+    /**
+     * Fields of the exporter text exposition format: sample value, sample name, other fields are label names
+     * exporter文本格式的字段: 样本值 样本名称 其它字段为标签名称
+     */
+    String PROMETHEUS_TEXT_VALUE = "value";
+    String PROMETHEUS_TEXT_NAME = "__name__";
 
     // http协议相关 - end //
 }
@@ -43,6 +43,12 @@ public class DispatchProperties {
      */
     private ExportProperties export;
 
+    /**
+     * Ssh collection configuration properties
+     * ssh采集配置属性
+     */
+    private SshProperties ssh;
+
     public EntranceProperties getEntrance() {
         return entrance;
     }
@@ -59,6 +65,37 @@ public class DispatchProperties {
         this.export = export;
     }
 
+    public SshProperties getSsh() {
+        return ssh;
+    }
+
+    public void setSsh(SshProperties ssh) {
+        this.ssh = ssh;
+    }
+
+    /**
+     * Ssh collection configuration properties
+     * ssh采集配置属性
+     */
+    public static class SshProperties {
+        /**
+         * Whether the ssh metrics groups of the same host and priority are run by one exec channel,
+         * default one channel per metrics group. In batch mode the scripts run one after another
+         * and the batch is bounded by the sum of their timeouts.
+         * 同一主机同一优先级的ssh指标组是否由一个exec通道执行 默认每个指标组一个通道
+         * 批量模式下脚本依次执行 批量的超时时间为各脚本超时时间之和
+         */
+        private boolean batchEnabled = false;
+
+        public boolean isBatchEnabled() {
+            return batchEnabled;
+        }
+
+        public void setBatchEnabled(boolean batchEnabled) {
+            this.batchEnabled = batchEnabled;
+        }
+    }
+
     /**
      * Scheduling entry configuration properties
      * The entry can be etcd information, http request, message middleware message request
@@ -72,6 +109,12 @@ public class DispatchProperties {
          */
         private EtcdProperties etcd;
 
+        /**
+         * collector cluster configuration information
+         * 采集器集群配置信息
+         */
+        private ClusterProperties cluster;
+
         public EtcdProperties getEtcd() {
             return etcd;
         }
@@ -80,6 +123,143 @@ public class DispatchProperties {
             this.etcd = etcd;
         }
 
+        public ClusterProperties getCluster() {
+            return cluster;
+        }
+
+        public void setCluster(ClusterProperties cluster) {
+            this.cluster = cluster;
+        }
+
+        public static class ClusterProperties {
+
+            /**
+             * Whether the collectors run in the cluster mode, the jobs are sharded among the alive collectors
+             * 采集器是否以集群模式运行 任务在存活的采集器间分片
+             */
+            private boolean enabled = false;
+
+            /**
+             * Unique collector id in the cluster, default host name + random suffix
+             * 集群中唯一的采集器ID 默认为主机名+随机后缀
+             */
+            private String collectorId;
+
+            /**
+             * Coordination store type: file, memory
+             * 协调存储类型: file(本地文件) memory(进程内)
+             */
+            private String store = "file";
+
+            /**
+             * Directory of the file coordination store, shared by the collectors
+             * 文件协调存储的目录 由各采集器共享
+             */
+            private String dataDir = "./data/dispatch";
+
+            /**
+             * Valid time of the collector registration in seconds
+             * 采集器注册的有效时间 单位秒
+             */
+            private long ttl = 30;
+
+            /**
+             * Interval of the registration renewal in seconds
+             * 采集器注册续期间隔 单位秒
+             */
+            private long heartbeatInterval = 10;
+
+            /**
+             * Interval of the job assignment check in seconds
+             * 任务分配检查间隔 单位秒
+             */
+            private long rebalanceInterval = 5;
+
+            /**
+             * Virtual nodes of each collector on the hash ring
+             * 每个采集器在哈希环上的虚拟节点数
+             */
+            private int virtualNodes = 100;
+
+            /**
+             * Max jobs of a collector relative to the average, bounded load of the consistent hash
+             * 单个采集器任务数相对平均值的上限倍数 一致性哈希的负载上界
+             */
+            private double loadFactor = 1.25;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getCollectorId() {
+                return collectorId;
+            }
+
+            public void setCollectorId(String collectorId) {
+                this.collectorId = collectorId;
+            }
+
+            public String getStore() {
+                return store;
+            }
+
+            public void setStore(String store) {
+                this.store = store;
+            }
+
+            public String getDataDir() {
+                return dataDir;
+            }
+
+            public void setDataDir(String dataDir) {
+                this.dataDir = dataDir;
+            }
+
+            public long getTtl() {
+                return ttl;
+            }
+
+            public void setTtl(long ttl) {
+                this.ttl = ttl;
+            }
+
+            public long getHeartbeatInterval() {
+                return heartbeatInterval;
+            }
+
+            public void setHeartbeatInterval(long heartbeatInterval) {
+                this.heartbeatInterval = heartbeatInterval;
+            }
+
+            public long getRebalanceInterval() {
+                return rebalanceInterval;
+            }
+
+            public void setRebalanceInterval(long rebalanceInterval) {
+                this.rebalanceInterval = rebalanceInterval;
+            }
+
+            public int getVirtualNodes() {
+                return virtualNodes;
+            }
+
+            public void setVirtualNodes(int virtualNodes) {
+                this.virtualNodes = virtualNodes;
+            }
+
+            public double getLoadFactor() {
+                return loadFactor;
+            }
+
+            public void setLoadFactor(double loadFactor) {
+                this.loadFactor = loadFactor;
+            }
+        }
+
         public static class EtcdProperties {
 
             /**
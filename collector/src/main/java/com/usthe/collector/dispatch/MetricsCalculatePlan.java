@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.collector.dispatch;
+
+import com.googlecode.aviator.AviatorEvaluator;
+import com.googlecode.aviator.Expression;
+import com.usthe.collector.dispatch.unit.UnitConvert;
+import com.usthe.collector.util.CollectUtil;
+import com.usthe.common.entity.job.Metrics;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
+import com.usthe.common.util.CommonUtil;
+import com.usthe.common.util.ValueRowUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-compiled calculation plan of one metrics definition
+ * 指标组定义预编译的计算计划
+ * <p>
+ * The calculates and units are parsed once, aviator expressions are compiled once,
+ * alias fields are resolved to column indexes and unit converters are resolved in advance.
+ * The plan is immutable and shared by all collections of this metrics, it is cached on the {@link Metrics}
+ * and rebuilt when the metrics definition changes (a new job or new metrics object).
+ * calculates与units只解析一次 表达式只编译一次 别名字段解析为列下标 单位转换器预先解析
+ * 计划不可变 由此指标组的所有采集共享 缓存在Metrics上 指标组定义变更时(新的job或metrics对象)重新构建
+ *
+ * @author tom
+ * @date 2026/10/16 16:30
+ */
+@Slf4j
+public final class MetricsCalculatePlan {
+
+    private static final int NO_INDEX = -1;
+
+    /**
+     * final fields of the response
+     */
+    private final List<CollectRep.Field> responseFields;
+    private final FieldPlan[] fieldPlans;
+    private final List<UnitConvert> unitConvertList;
+    /**
+     * originUnit->newUnit : matched unit converters, for units only known at collection time
+     */
+    private final Map<String, List<UnitConvert>> dynamicUnitConvertMap = new ConcurrentHashMap<>(8);
+
+    private MetricsCalculatePlan(Metrics metrics, List<UnitConvert> unitConvertList) {
+        this.unitConvertList = unitConvertList == null ? Collections.emptyList() : unitConvertList;
+        List<Metrics.Field> fields = metrics.getFields() == null ? Collections.emptyList() : metrics.getFields();
+        List<String> aliasFields = metrics.getAliasFields() == null ? Collections.emptyList() : metrics.getAliasFields();
+        Map<String, Integer> aliasIndexMap = new HashMap<>(aliasFields.size() * 2);
+        for (int index = 0; index < aliasFields.size(); index++) {
+            aliasIndexMap.put(aliasFields.get(index), index);
+        }
+        // eg: database_pages=Database pages unconventional mapping   非常规映射
+        Map<String, String> fieldAliasMap = new HashMap<>(8);
+        Map<String, Expression> fieldExpressionMap = new HashMap<>(8);
+        if (metrics.getCalculates() != null) {
+            for (String cal : metrics.getCalculates()) {
+                int splitIndex = cal.indexOf("=");
+                if (splitIndex < 0) {
+                    continue;
+                }
+                String field = cal.substring(0, splitIndex).trim();
+                String expressionStr = cal.substring(splitIndex + 1).trim();
+                try {
+                    fieldExpressionMap.put(field, AviatorEvaluator.compile(expressionStr, true));
+                } catch (Exception e) {
+                    fieldAliasMap.put(field, expressionStr);
+                }
+            }
+        }
+        // eg: heap_used=B->MB
+        Map<String, String[]> fieldUnitMap = new HashMap<>(8);
+        if (metrics.getUnits() != null) {
+            for (String unit : metrics.getUnits()) {
+                int equalIndex = unit.indexOf("=");
+                int arrowIndex = unit.indexOf("->");
+                if (equalIndex < 0 || arrowIndex < 0) {
+                    continue;
+                }
+                String field = unit.substring(0, equalIndex).trim();
+                String originUnit = unit.substring(equalIndex + 1, arrowIndex).trim();
+                String newUnit = unit.substring(arrowIndex + 2).trim();
+                fieldUnitMap.put(field, new String[]{originUnit, newUnit});
+            }
+        }
+        List<CollectRep.Field> responseFieldList = new ArrayList<>(fields.size());
+        fieldPlans = new FieldPlan[fields.size()];
+        for (int index = 0; index < fields.size(); index++) {
+            Metrics.Field field = fields.get(index);
+            CollectRep.Field.Builder fieldBuilder = CollectRep.Field.newBuilder();
+            fieldBuilder.setName(field.getField()).setType(field.getType());
+            if (field.getUnit() != null) {
+                fieldBuilder.setUnit(field.getUnit());
+            }
+            responseFieldList.add(fieldBuilder.build());
+
+            String realField = field.getField();
+            Expression expression = fieldExpressionMap.get(realField);
+            String[] variables = null;
+            int[] variableIndexes = null;
+            int aliasIndex = NO_INDEX;
+            if (expression != null) {
+                variables = expression.getVariableFullNames().toArray(new String[0]);
+                variableIndexes = new int[variables.length];
+                for (int i = 0; i < variables.length; i++) {
+                    variableIndexes[i] = aliasIndexMap.getOrDefault(variables[i], NO_INDEX);
+                }
+            } else {
+                String aliasField = fieldAliasMap.getOrDefault(realField, realField);
+                aliasIndex = aliasIndexMap.getOrDefault(aliasField, NO_INDEX);
+            }
+            String[] unitPair = fieldUnitMap.get(realField);
+            List<UnitConvert> unitConverts = unitPair == null ? null : matchUnitConverts(unitPair[0], unitPair[1]);
+            fieldPlans[index] = new FieldPlan(field.getType(), field.getUnit(), field.isInstance(),
+                    expression, variables, variableIndexes, aliasIndex, unitPair, unitConverts);
+        }
+        this.responseFields = Collections.unmodifiableList(responseFieldList);
+    }
+
+    /**
+     * get the calculation plan cached on the metrics, build it when absent
+     * 获取缓存在指标组上的计算计划 不存在则构建
+     * @param metrics metrics definition
+     * @param unitConvertList unit converters
+     * @return calculation plan
+     */
+    public static MetricsCalculatePlan of(Metrics metrics, List<UnitConvert> unitConvertList) {
+        Object plan = metrics.getCalculatePlan();
+        if (plan instanceof MetricsCalculatePlan) {
+            return (MetricsCalculatePlan) plan;
+        }
+        MetricsCalculatePlan calculatePlan = new MetricsCalculatePlan(metrics, unitConvertList);
+        metrics.setCalculatePlan(calculatePlan);
+        return calculatePlan;
+    }
+
+    /**
+     * build a new plan without caching
+     * @param metrics metrics definition
+     * @param unitConvertList unit converters
+     * @return calculation plan
+     */
+    public static MetricsCalculatePlan build(Metrics metrics, List<UnitConvert> unitConvertList) {
+        return new MetricsCalculatePlan(metrics, unitConvertList);
+    }
+
+    /**
+     * Calculate the real fields value according to the alias fields value, calculate instance value
+     * 根据别名字段值计算出真正的指标(fields)值 计算instance实例值
+     * @param collectData collect data, values are alias fields value before and real fields value after
+     */
+    public void calculate(CollectRep.MetricsData.Builder collectData) {
+        collectData.addAllFields(responseFields);
+        List<CollectRep.ValueRow> aliasRowList = collectData.getValuesList();
+        if (aliasRowList == null || aliasRowList.isEmpty()) {
+            return;
+        }
+        aliasRowList = new ArrayList<>(aliasRowList);
+        collectData.clearValues();
+        Map<String, Object> fieldValueMap = new HashMap<>(16);
+        CollectRep.ValueRow.Builder realValueRowBuilder = CollectRep.ValueRow.newBuilder();
+        StringBuilder instanceBuilder = new StringBuilder();
+        double[] numbers = new double[fieldPlans.length];
+        byte[] numberPresence = new byte[(fieldPlans.length + 7) >>> 3];
+        for (CollectRep.ValueRow aliasRow : aliasRowList) {
+            for (int index = 0; index < fieldPlans.length; index++) {
+                FieldPlan fieldPlan = fieldPlans[index];
+                String value = calculateValue(fieldPlan, aliasRow, fieldValueMap);
+                if (value == null) {
+                    value = CommonConstants.NULL_VALUE;
+                }
+                if (fieldPlan.instance && !CommonConstants.NULL_VALUE.equals(value)) {
+                    instanceBuilder.append(value);
+                }
+                // number value is carried as typed number, consumers need not parse it again
+                // 数值以数字类型传输 下游无需再次解析
+                if (CommonConstants.TYPE_NUMBER == fieldPlan.type && !CommonConstants.NULL_VALUE.equals(value)) {
+                    numbers[index] = Double.parseDouble(value);
+                    numberPresence[index >>> 3] |= 1 << (index & 7);
+                    value = "";
+                }
+                realValueRowBuilder.addColumns(value);
+            }
+            ValueRowUtil.setNumbers(realValueRowBuilder, numbers, numberPresence, fieldPlans.length);
+            // set instance         设置实例instance
+            realValueRowBuilder.setInstance(instanceBuilder.toString());
+            collectData.addValues(realValueRowBuilder.build());
+            realValueRowBuilder.clear();
+            instanceBuilder.setLength(0);
+            Arrays.fill(numberPresence, (byte) 0);
+        }
+    }
+
+    private String calculateValue(FieldPlan fieldPlan, CollectRep.ValueRow aliasRow, Map<String, Object> fieldValueMap) {
+        String value = null;
+        String aliasFieldUnit = null;
+        if (fieldPlan.expression != null) {
+            // If there is a calculation expression, calculate the value
+            // 存在计算表达式 则计算值
+            fieldValueMap.clear();
+            for (int i = 0; i < fieldPlan.variables.length; i++) {
+                String aliasValue = aliasValue(aliasRow, fieldPlan.variableIndexes[i]);
+                if (CommonConstants.TYPE_NUMBER == fieldPlan.type) {
+                    // extract double value and unit from aliasField value
+                    CollectUtil.DoubleAndUnit doubleAndUnit = CollectUtil.extractDoubleAndUnitFromStr(aliasValue);
+                    if (doubleAndUnit != null) {
+                        aliasFieldUnit = doubleAndUnit.getUnit();
+                        fieldValueMap.put(fieldPlan.variables[i], doubleAndUnit.getValue());
+                    } else {
+                        fieldValueMap.put(fieldPlan.variables[i], null);
+                    }
+                } else {
+                    fieldValueMap.put(fieldPlan.variables[i], aliasValue);
+                }
+            }
+            try {
+                Object objValue = fieldPlan.expression.execute(fieldValueMap);
+                if (objValue != null) {
+                    value = String.valueOf(objValue);
+                }
+            } catch (Exception e) {
+                log.warn(e.getMessage());
+            }
+        } else {
+            // does not exist then map the alias value
+            // 不存在 则映射别名值
+            value = aliasValue(aliasRow, fieldPlan.aliasIndex);
+            if (CommonConstants.TYPE_NUMBER == fieldPlan.type && value != null) {
+                CollectUtil.DoubleAndUnit doubleAndUnit = CollectUtil.extractDoubleAndUnitFromStr(value);
+                if (doubleAndUnit != null) {
+                    value = String.valueOf(doubleAndUnit.getValue());
+                    aliasFieldUnit = doubleAndUnit.getUnit();
+                } else {
+                    value = null;
+                }
+            }
+        }
+        // 单位处理
+        List<UnitConvert> unitConverts = fieldPlan.unitConverts;
+        String originUnit = fieldPlan.unitPair == null ? null : fieldPlan.unitPair[0];
+        String newUnit = fieldPlan.unitPair == null ? null : fieldPlan.unitPair[1];
+        if (aliasFieldUnit != null) {
+            if (fieldPlan.unitPair != null) {
+                originUnit = aliasFieldUnit;
+                unitConverts = null;
+            } else if (fieldPlan.unit != null && !aliasFieldUnit.equalsIgnoreCase(fieldPlan.unit)) {
+                originUnit = aliasFieldUnit;
+                newUnit = fieldPlan.unit;
+            }
+        }
+        if (value != null && originUnit != null) {
+            if (unitConverts == null) {
+                String left = originUnit;
+                String right = newUnit;
+                unitConverts = dynamicUnitConvertMap.computeIfAbsent(left + "->" + right,
+                        key -> matchUnitConverts(left, right));
+            }
+            for (UnitConvert unitConvert : unitConverts) {
+                value = unitConvert.convert(value, originUnit, newUnit);
+            }
+        }
+        // Handle indicator values that may have units such as 34%, 34Mb, and limit values to 4 decimal places
+        // 处理可能带单位的指标数值 比如 34%, 34Mb，并将数值小数点限制到4位
+        if (CommonConstants.TYPE_NUMBER == fieldPlan.type) {
+            value = CommonUtil.parseDoubleStr(value, fieldPlan.unit);
+        }
+        return value;
+    }
+
+    private List<UnitConvert> matchUnitConverts(String originUnit, String newUnit) {
+        List<UnitConvert> unitConverts = new ArrayList<>(1);
+        for (UnitConvert unitConvert : unitConvertList) {
+            if (unitConvert.checkUnit(originUnit) && unitConvert.checkUnit(newUnit)) {
+                unitConverts.add(unitConvert);
+            }
+        }
+        return unitConverts.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(unitConverts);
+    }
+
+    private static String aliasValue(CollectRep.ValueRow aliasRow, int index) {
+        if (index < 0 || index >= aliasRow.getColumnsCount()) {
+            return null;
+        }
+        String value = aliasRow.getColumns(index);
+        return CommonConstants.NULL_VALUE.equals(value) ? null : value;
+    }
+
+    /**
+     * pre-resolved calculation of one field
+     */
+    private static final class FieldPlan {
+        private final byte type;
+        private final String unit;
+        private final boolean instance;
+        private final Expression expression;
+        private final String[] variables;
+        private final int[] variableIndexes;
+        private final int aliasIndex;
+        private final String[] unitPair;
+        private final List<UnitConvert> unitConverts;
+
+        private FieldPlan(byte type, String unit, boolean instance, Expression expression,
+                          String[] variables, int[] variableIndexes, int aliasIndex,
+                          String[] unitPair, List<UnitConvert> unitConverts) {
+            this.type = type;
+            this.unit = unit;
+            this.instance = instance;
+            this.expression = expression;
+            this.variables = variables;
+            this.variableIndexes = variableIndexes;
+            this.aliasIndex = aliasIndex;
+            this.unitPair = unitPair;
+            this.unitConverts = unitConverts;
+        }
+    }
+}
@@ -17,9 +17,8 @@
 
 package com.usthe.collector.dispatch;
 
-import com.googlecode.aviator.AviatorEvaluator;
-import com.googlecode.aviator.Expression;
 import com.usthe.collector.collect.AbstractCollect;
+import com.usthe.collector.collect.AsyncCollect;
 import com.usthe.collector.collect.database.JdbcCommonCollect;
 import com.usthe.collector.collect.http.HttpCollectImpl;
 import com.usthe.collector.collect.http.SslCertificateCollectImpl;
@@ -36,19 +35,12 @@ import com.usthe.collector.util.CollectUtil;
 import com.usthe.common.entity.job.Job;
 import com.usthe.common.entity.job.Metrics;
 import com.usthe.common.entity.message.CollectRep;
-import com.usthe.common.util.CommonConstants;
-import com.usthe.common.util.CommonUtil;
-import com.usthe.common.util.Pair;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Index group collection
@@ -65,6 +57,18 @@ public class MetricsCollect implements Runnable, Comparable<MetricsCollect> {
      * 调度告警阈值时间 100ms
      */
     private static final long WARN_DISPATCH_TIME = 100;
+    /**
+     * The task timeout is the protocol timeout multiplied by it, for the connect, retries or table walk
+     * 任务超时时间为协议超时时间乘以此系数 留给连接 重试或表遍历
+     */
+    private static final int TASK_TIMEOUT_FACTOR = 3;
+    /**
+     * Extra time of the task timeout, for the waiting in queue and the calculation
+     * 任务超时时间的额外时间 留给队列等待和计算
+     */
+    private static final long TASK_TIMEOUT_GRACE = 5_000L;
+    private static final long MIN_TASK_TIMEOUT = 10_000L;
+    private static final long MAX_TASK_TIMEOUT = 240_000L;
     /**
      * Monitor ID
      * 监控ID
@@ -110,8 +114,33 @@ public class MetricsCollect implements Runnable, Comparable<MetricsCollect> {
      * 指标组采集任务开始执行时间
      */
     protected long startTime;
+    /**
+     * Dispatch time of the job collection round
+     * 任务采集轮次的调度时间
+     */
+    protected long roundTime;
+    /**
+     * Deadline of the one-time job, 0 means no deadline
+     * 一次性任务的截止时间 0表示无截止时间
+     */
+    protected long deadline;
 
     protected List<UnitConvert> unitConvertList;
+    /**
+     * Time wheel timeout of the collection timeout of this task
+     * 此任务采集超时的时间轮timeout
+     */
+    protected volatile Timeout collectTimeout;
+    /**
+     * Whether the task is finished, by its collection or by the timeout
+     * 任务是否已结束 由采集完成或超时
+     */
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    /**
+     * The worker thread running this task
+     * 正在执行此任务的工作线程
+     */
+    private volatile Thread runThread;
 
     public MetricsCollect(Metrics metrics, Timeout timeout,
                           CollectDataDispatch collectDataDispatch,
@@ -125,6 +154,8 @@ public class MetricsCollect implements Runnable, Comparable<MetricsCollect> {
         this.app = job.getApp();
         this.collectDataDispatch = collectDataDispatch;
         this.isCyclic = job.isCyclic();
+        this.roundTime = job.getDispatchTime();
+        this.deadline = job.getDeadline();
         this.unitConvertList = unitConvertList;
         // Temporary one-time tasks are executed with high priority
         // 临时一次性任务执行优先级高
@@ -137,6 +168,29 @@ public class MetricsCollect implements Runnable, Comparable<MetricsCollect> {
 
     @Override
     public void run() {
+        if (finished.get()) {
+            // timed out while waiting in the queue
+            // 在队列中等待时已超时
+            return;
+        }
+        runThread = Thread.currentThread();
+        try {
+            doCollect();
+        } finally {
+            synchronized (this) {
+                runThread = null;
+            }
+            // clear the interrupt of the collection timeout, the worker thread is reused by other tasks
+            // 清除采集超时的中断标记 工作线程会被其它任务复用
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Collect the metrics group and dispatch the response
+     * 采集指标组并分发响应数据
+     */
+    protected void doCollect() {
         this.startTime = System.currentTimeMillis();
         setNewThreadName(monitorId, app, startTime, metrics);
         CollectRep.MetricsData.Builder response = CollectRep.MetricsData.newBuilder();
@@ -185,9 +239,37 @@ public class MetricsCollect implements Runnable, Comparable<MetricsCollect> {
             response.setMsg("not support " + app + ", "
                     + metrics.getName() + ", " + metrics.getProtocol());
             return;
+        } else if (abstractCollect instanceof AsyncCollect) {
+            // Non-blocking collection, the worker thread is released while waiting the peer
+            // 非阻塞采集 等待对端期间释放采集工作线程 完成后在回调中继续处理
+            try {
+                ((AsyncCollect) abstractCollect).collectAsync(response, monitorId, app, metrics)
+                        .whenComplete((result, throwable) -> {
+                            if (throwable != null) {
+                                log.error("[Metrics Collect]: {}.", throwable.getMessage(), throwable);
+                                response.setCode(CollectRep.Code.FAIL);
+                                if (throwable.getMessage() != null) {
+                                    response.setMsg(throwable.getMessage());
+                                }
+                            }
+                            if (finish()) {
+                                completeCollect(metrics, response);
+                            }
+                        });
+            } catch (Exception e) {
+                log.error("[Metrics Collect]: {}.", e.getMessage(), e);
+                response.setCode(CollectRep.Code.FAIL);
+                if (e.getMessage() != null) {
+                    response.setMsg(e.getMessage());
+                }
+                if (finish()) {
+                    completeCollect(metrics, response);
+                }
+            }
+            return;
         } else {
             try {
-                abstractCollect.collect(response, monitorId, app, metrics);
+                abstractCollect.collect(response, monitorId, app, metrics, roundTime);
             } catch (Exception e) {
                 String msg = e.getMessage();
                 if (msg == null && e.getCause() != null) {
@@ -200,6 +282,111 @@ public class MetricsCollect implements Runnable, Comparable<MetricsCollect> {
                 }
             }
         }
+        if (finish()) {
+            completeCollect(metrics, response);
+        }
+    }
+
+    /**
+     * Mark the task finished by its collection, the timeout of the task is cancelled
+     * 标记任务由采集完成 取消任务的超时
+     *
+     * @return false if the task has been finished by the timeout   若任务已因超时结束返回false
+     */
+    protected boolean finish() {
+        if (!finished.compareAndSet(false, true)) {
+            log.info("[Collect Timeout] the late response of {} is discarded.", metrics.getName());
+            return false;
+        }
+        Timeout timeoutTask = collectTimeout;
+        if (timeoutTask != null) {
+            timeoutTask.cancel();
+        }
+        return true;
+    }
+
+    /**
+     * Mark the task finished by the timeout, interrupt the worker thread still running it
+     * 标记任务因超时结束 中断仍在执行它的工作线程
+     *
+     * @return false if the task has been finished by its collection   若任务已采集完成返回false
+     */
+    public boolean expire() {
+        if (!finished.compareAndSet(false, true)) {
+            return false;
+        }
+        synchronized (this) {
+            if (runThread != null) {
+                runThread.interrupt();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Metric groups collected by this task
+     * 此任务采集的指标组
+     *
+     * @return metrics list
+     */
+    public List<Metrics> getTaskMetrics() {
+        return Collections.singletonList(metrics);
+    }
+
+    /**
+     * Collection timeout of this task: the protocol timeout of the metrics group with the retries and connect time,
+     * bounded by {@link #MIN_TASK_TIMEOUT} and {@link #MAX_TASK_TIMEOUT}
+     * 此任务的采集超时时间: 指标组协议超时时间加上重试与连接的时间 限制在最小最大值之间
+     *
+     * @return timeout millis
+     */
+    public long getTaskTimeoutMillis() {
+        long taskTimeout = getTaskProtocolTimeout() * TASK_TIMEOUT_FACTOR + TASK_TIMEOUT_GRACE;
+        return Math.min(MAX_TASK_TIMEOUT, Math.max(MIN_TASK_TIMEOUT, taskTimeout));
+    }
+
+    /**
+     * Protocol timeout of this task, the largest of its metrics groups which are collected in parallel
+     * 此任务的协议超时时间 并行采集的指标组中最大的超时时间
+     *
+     * @return timeout millis
+     */
+    protected long getTaskProtocolTimeout() {
+        long protocolTimeout = 0;
+        for (Metrics item : getTaskMetrics()) {
+            protocolTimeout = Math.max(protocolTimeout, getProtocolTimeout(item));
+        }
+        return protocolTimeout;
+    }
+
+    protected static long getProtocolTimeout(Metrics metrics) {
+        String protocolTimeout = null;
+        if (metrics.getHttp() != null) {
+            protocolTimeout = metrics.getHttp().getTimeout();
+        } else if (metrics.getIcmp() != null) {
+            protocolTimeout = metrics.getIcmp().getTimeout();
+        } else if (metrics.getTelnet() != null) {
+            protocolTimeout = metrics.getTelnet().getTimeout();
+        } else if (metrics.getJdbc() != null) {
+            protocolTimeout = metrics.getJdbc().getTimeout();
+        } else if (metrics.getSsh() != null) {
+            protocolTimeout = metrics.getSsh().getTimeout();
+        } else if (metrics.getRedis() != null) {
+            protocolTimeout = metrics.getRedis().getTimeout();
+        } else if (metrics.getSnmp() != null) {
+            protocolTimeout = metrics.getSnmp().getTimeout();
+        }
+        return CollectUtil.getTimeout(protocolTimeout);
+    }
+
+    /**
+     * Calculate the collected response and dispatch it
+     * 计算采集结果并分发
+     *
+     * @param metrics  Metric group configuration    指标组配置
+     * @param response collect response
+     */
+    protected void completeCollect(Metrics metrics, CollectRep.MetricsData.Builder response) {
         // Alias attribute expression replacement calculation
         // 别名属性表达式替换计算
         if (fastFailed()) {
@@ -223,166 +410,9 @@ public class MetricsCollect implements Runnable, Comparable<MetricsCollect> {
      */
     private void calculateFields(Metrics metrics, CollectRep.MetricsData.Builder collectData) {
         collectData.setPriority(metrics.getPriority());
-        List<CollectRep.Field> fieldList = new LinkedList<>();
-        for (Metrics.Field field : metrics.getFields()) {
-            CollectRep.Field.Builder fieldBuilder = CollectRep.Field.newBuilder();
-            fieldBuilder.setName(field.getField()).setType(field.getType());
-            if (field.getUnit() != null) {
-                fieldBuilder.setUnit(field.getUnit());
-            }
-            fieldList.add(fieldBuilder.build());
-        }
-        collectData.addAllFields(fieldList);
-        List<CollectRep.ValueRow> aliasRowList = collectData.getValuesList();
-        if (aliasRowList == null || aliasRowList.isEmpty()) {
-            return;
-        }
-        collectData.clearValues();
-        // Preprocess calculates first      先预处理 calculates
-        if (metrics.getCalculates() == null) {
-            metrics.setCalculates(Collections.emptyList());
-        }
-        // eg: database_pages=Database pages unconventional mapping   非常规映射
-        Map<String, String> fieldAliasMap = new HashMap<>(8);
-        Map<String, Expression> fieldExpressionMap = metrics.getCalculates()
-                .stream()
-                .map(cal -> {
-                    int splitIndex = cal.indexOf("=");
-                    String field = cal.substring(0, splitIndex).trim();
-                    String expressionStr = cal.substring(splitIndex + 1).trim();
-                    Expression expression = null;
-                    try {
-                        expression = AviatorEvaluator.compile(expressionStr, true);
-                    } catch (Exception e) {
-                        fieldAliasMap.put(field, expressionStr);
-                        return null;
-                    }
-                    return new Object[]{field, expression};
-                })
-                .filter(Objects::nonNull)
-                .collect(Collectors.toMap(arr -> (String) arr[0], arr -> (Expression) arr[1]));
-
-        if (metrics.getUnits() == null) {
-            metrics.setUnits(Collections.emptyList());
-        }
-        Map<String, Pair<String, String>> fieldUnitMap = metrics.getUnits()
-                .stream()
-                .map(unit -> {
-                    int equalIndex = unit.indexOf("=");
-                    int arrowIndex = unit.indexOf("->");
-                    if (equalIndex < 0 || arrowIndex < 0) {
-                        return null;
-                    }
-                    String field = unit.substring(0, equalIndex).trim();
-                    String originUnit = unit.substring(equalIndex + 1, arrowIndex).trim();
-                    String newUnit = unit.substring(arrowIndex + 2).trim();
-                    return new Object[]{field, Pair.of(originUnit, newUnit)};
-                })
-                .filter(Objects::nonNull)
-                .collect(Collectors.toMap(arr -> (String) arr[0], arr -> (Pair<String, String>) arr[1]));
-
-        List<Metrics.Field> fields = metrics.getFields();
-        List<String> aliasFields = metrics.getAliasFields();
-        Map<String, String> aliasFieldValueMap = new HashMap<>(16);
-        Map<String, Object> fieldValueMap = new HashMap<>(16);
-        CollectRep.ValueRow.Builder realValueRowBuilder = CollectRep.ValueRow.newBuilder();
-        for (CollectRep.ValueRow aliasRow : aliasRowList) {
-            for (int aliasIndex = 0; aliasIndex < aliasFields.size(); aliasIndex++) {
-                String aliasFieldValue = aliasRow.getColumns(aliasIndex);
-                if (!CommonConstants.NULL_VALUE.equals(aliasFieldValue)) {
-                    aliasFieldValueMap.put(aliasFields.get(aliasIndex), aliasFieldValue);
-                } else {
-                    aliasFieldValueMap.put(aliasFields.get(aliasIndex), null);
-                }
-            }
-            StringBuilder instanceBuilder = new StringBuilder();
-            for (Metrics.Field field : fields) {
-                String realField = field.getField();
-                Expression expression = fieldExpressionMap.get(realField);
-                String value = null;
-                String aliasFieldUnit = null;
-                if (expression != null) {
-                    // If there is a calculation expression, calculate the value
-                    // 存在计算表达式 则计算值
-                    if (CommonConstants.TYPE_NUMBER == field.getType()) {
-                        for (String variable : expression.getVariableFullNames()) {
-                            // extract double value and unit from aliasField value
-                            CollectUtil.DoubleAndUnit doubleAndUnit = CollectUtil
-                                    .extractDoubleAndUnitFromStr(aliasFieldValueMap.get(variable));
-                            if (doubleAndUnit != null) {
-                                Double doubleValue = doubleAndUnit.getValue();
-                                aliasFieldUnit = doubleAndUnit.getUnit();
-                                fieldValueMap.put(variable, doubleValue);
-                            } else {
-                                fieldValueMap.put(variable, null);
-                            }
-                        }
-                    } else {
-                        for (String variable : expression.getVariableFullNames()) {
-                            String strValue = aliasFieldValueMap.get(variable);
-                            fieldValueMap.put(variable, strValue);
-                        }
-                    }
-                    try {
-                        Object objValue = expression.execute(fieldValueMap);
-                        if (objValue != null) {
-                            value = String.valueOf(objValue);
-                        }
-                    } catch (Exception e) {
-                        log.warn(e.getMessage());
-                    }
-                } else {
-                    // does not exist then map the alias value
-                    // 不存在 则映射别名值
-                    String aliasField = fieldAliasMap.get(realField);
-                    if (aliasField != null) {
-                        value = aliasFieldValueMap.get(aliasField);
-                    } else {
-                        value = aliasFieldValueMap.get(realField);
-                    }
-                    if (CommonConstants.TYPE_NUMBER == field.getType() && value != null) {
-                        CollectUtil.DoubleAndUnit doubleAndUnit = CollectUtil
-                                .extractDoubleAndUnitFromStr(value);
-                        value = String.valueOf(doubleAndUnit.getValue());
-                        aliasFieldUnit = doubleAndUnit.getUnit();
-                    }
-                }
-                // 单位处理
-                Pair<String, String> unitPair = fieldUnitMap.get(realField);
-                if (aliasFieldUnit != null) {
-                    if (unitPair != null) {
-                        unitPair.setLeft(aliasFieldUnit);
-                    } else if (field.getUnit() != null && !aliasFieldUnit.equalsIgnoreCase(field.getUnit())) {
-                        unitPair = Pair.of(aliasFieldUnit, field.getUnit());
-                    }
-                }
-                if (value != null && unitPair != null) {
-                    for (UnitConvert unitConvert : unitConvertList) {
-                        if (unitConvert.checkUnit(unitPair.getLeft()) && unitConvert.checkUnit(unitPair.getRight())) {
-                            value = unitConvert.convert(value, unitPair.getLeft(), unitPair.getRight());
-                        }
-                    }
-                }
-                // Handle indicator values that may have units such as 34%, 34Mb, and limit values to 4 decimal places
-                // 处理可能带单位的指标数值 比如 34%, 34Mb，并将数值小数点限制到4位
-                if (CommonConstants.TYPE_NUMBER == field.getType()) {
-                    value = CommonUtil.parseDoubleStr(value, field.getUnit());
-                }
-                if (value == null) {
-                    value = CommonConstants.NULL_VALUE;
-                }
-                realValueRowBuilder.addColumns(value);
-                fieldValueMap.clear();
-                if (field.isInstance() && !CommonConstants.NULL_VALUE.equals(value)) {
-                    instanceBuilder.append(value);
-                }
-            }
-            aliasFieldValueMap.clear();
-            // set instance         设置实例instance
-            realValueRowBuilder.setInstance(instanceBuilder.toString());
-            collectData.addValues(realValueRowBuilder.build());
-            realValueRowBuilder.clear();
-        }
+        // calculates, units and alias fields are compiled once and cached on the metrics
+        // calculates units 别名字段只编译一次 缓存在指标组上
+        MetricsCalculatePlan.of(metrics, unitConvertList).calculate(collectData);
     }
 
     private boolean fastFailed() {
@@ -405,7 +435,7 @@ public class MetricsCollect implements Runnable, Comparable<MetricsCollect> {
         return builder.build();
     }
 
-    private void setNewThreadName(long monitorId, String app, long startTime, Metrics metrics) {
+    protected void setNewThreadName(long monitorId, String app, long startTime, Metrics metrics) {
         String builder = monitorId + "-" + app + "-" + metrics.getName() +
                 "-" + String.valueOf(startTime).substring(9);
         Thread.currentThread().setName(builder);
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.collector.dispatch;
+
+import com.usthe.collector.collect.ssh.SshCollectImpl;
+import com.usthe.collector.dispatch.timer.Timeout;
+import com.usthe.collector.dispatch.unit.UnitConvert;
+import com.usthe.common.entity.job.Metrics;
+import com.usthe.common.entity.message.CollectRep;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ssh metrics groups collection of the same host and priority, all scripts are run one after another by one exec channel
+ * 同一主机同一优先级的ssh指标组采集 所有脚本由一个exec通道依次执行
+ *
+ * @author tom
+ * @date 2026/10/16 19:40
+ */
+@Slf4j
+public class SshBatchMetricsCollect extends MetricsCollect {
+
+    /**
+     * Metric group configurations of the same host
+     * 同一主机的指标组配置
+     */
+    private final List<Metrics> batchMetrics;
+
+    public SshBatchMetricsCollect(List<Metrics> batchMetrics, Timeout timeout,
+                                  CollectDataDispatch collectDataDispatch,
+                                  List<UnitConvert> unitConvertList) {
+        super(batchMetrics.get(0), timeout, collectDataDispatch, unitConvertList);
+        this.batchMetrics = batchMetrics;
+    }
+
+    @Override
+    public List<Metrics> getTaskMetrics() {
+        return batchMetrics;
+    }
+
+    /**
+     * The scripts run one after another in the channel, the batch is bounded by the sum of their timeouts
+     * 脚本在通道中依次执行 批量的超时时间为各脚本超时时间之和
+     */
+    @Override
+    protected long getTaskProtocolTimeout() {
+        long protocolTimeout = 0;
+        for (Metrics item : batchMetrics) {
+            protocolTimeout += getProtocolTimeout(item);
+        }
+        return protocolTimeout;
+    }
+
+    @Override
+    protected void doCollect() {
+        this.startTime = System.currentTimeMillis();
+        setNewThreadName(monitorId, app, startTime, metrics);
+        List<CollectRep.MetricsData.Builder> responses = new ArrayList<>(batchMetrics.size());
+        for (Metrics item : batchMetrics) {
+            CollectRep.MetricsData.Builder response = CollectRep.MetricsData.newBuilder();
+            response.setApp(app);
+            response.setId(monitorId);
+            response.setMetrics(item.getName());
+            responses.add(response);
+        }
+        try {
+            SshCollectImpl.getInstance().collect(responses, monitorId, app, batchMetrics);
+        } catch (Exception e) {
+            String msg = e.getMessage();
+            if (msg == null && e.getCause() != null) {
+                msg = e.getCause().getMessage();
+            }
+            log.error("[Metrics Collect]: {}.", msg, e);
+            for (CollectRep.MetricsData.Builder response : responses) {
+                response.setCode(CollectRep.Code.FAIL);
+                if (msg != null) {
+                    response.setMsg(msg);
+                }
+            }
+        }
+        if (!finish()) {
+            return;
+        }
+        for (int i = 0; i < batchMetrics.size(); i++) {
+            completeCollect(batchMetrics.get(i), responses.get(i));
+        }
+    }
+}
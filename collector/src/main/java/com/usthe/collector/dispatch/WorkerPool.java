@@ -22,6 +22,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
@@ -39,10 +40,24 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class WorkerPool implements DisposableBean {
 
+    /**
+     * Worker threads and waiting tasks of the one-time collection tasks, eg: monitor detect
+     * 一次性采集任务(例如监控探测)的工作线程数与等待任务数
+     */
+    private static final int TEMP_WORKER_SIZE = 16;
+    private static final int TEMP_QUEUE_SIZE = 256;
+
     private ThreadPoolExecutor workerExecutor;
 
+    /**
+     * Separate worker budget of the one-time collection tasks, detect storms can not starve the cyclic collection
+     * 一次性采集任务的独立工作线程 探测风暴不会饿死周期性采集
+     */
+    private ThreadPoolExecutor tempWorkerExecutor;
+
     public WorkerPool() {
         initWorkExecutor();
+        initTempWorkExecutor();
     }
 
     private void initWorkExecutor() {
@@ -64,6 +79,25 @@ public class WorkerPool implements DisposableBean {
                 new ThreadPoolExecutor.AbortPolicy());
     }
 
+    private void initTempWorkExecutor() {
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setUncaughtExceptionHandler((thread, throwable) -> {
+                    log.error("tempWorkerExecutor has uncaughtException.");
+                    log.error(throwable.getMessage(), throwable);
+                })
+                .setDaemon(true)
+                .setNameFormat("collect-temp-worker-%d")
+                .build();
+        tempWorkerExecutor = new ThreadPoolExecutor(TEMP_WORKER_SIZE,
+                TEMP_WORKER_SIZE,
+                10,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(TEMP_QUEUE_SIZE),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+        tempWorkerExecutor.allowCoreThreadTimeOut(true);
+    }
+
     /**
      * Run the collection task thread
      * 运行采集任务线程
@@ -75,10 +109,24 @@ public class WorkerPool implements DisposableBean {
         workerExecutor.execute(runnable);
     }
 
+    /**
+     * Run the collection task of the one-time job
+     * 运行一次性任务的采集任务
+     *
+     * @param runnable Task     任务
+     * @throws RejectedExecutionException when the one-time workers and queue are full     一次性任务线程与队列已满
+     */
+    public void executeTempJob(Runnable runnable) throws RejectedExecutionException {
+        tempWorkerExecutor.execute(runnable);
+    }
+
     @Override
     public void destroy() throws Exception {
         if (workerExecutor != null) {
             workerExecutor.shutdownNow();
         }
+        if (tempWorkerExecutor != null) {
+            tempWorkerExecutor.shutdownNow();
+        }
     }
 }
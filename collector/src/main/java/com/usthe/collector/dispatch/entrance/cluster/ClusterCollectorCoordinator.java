@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.collector.dispatch.entrance.cluster;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.usthe.collector.dispatch.DispatchProperties;
+import com.usthe.collector.dispatch.timer.TimerDispatch;
+import com.usthe.common.entity.job.Job;
+import com.usthe.common.util.GsonUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collector cluster coordinator, shards the cyclic jobs among the alive collectors
+ * 采集器集群协调器 在存活的采集器间分片周期性采集任务
+ * <p>
+ * The collector registers itself in the coordination store and renews the registration periodically.
+ * The cyclic jobs are written to the store instead of the local timer, every collector assigns all the jobs
+ * to the alive collectors by the consistent hash and only schedules the jobs assigned to itself.
+ * 采集器在协调存储中注册并定期续期; 周期性任务写入协调存储而不是本地时间轮
+ * 每个采集器通过一致性哈希将全部任务分配到存活的采集器 只调度分配给自己的任务
+ *
+ * @author tom
+ * @date 2026/10/16 23:10
+ */
+@Component
+@ConditionalOnProperty(prefix = "collector.dispatch.entrance.cluster",
+        name = "enabled", havingValue = "true")
+@Slf4j
+public class ClusterCollectorCoordinator implements DisposableBean {
+
+    private static final String STORE_MEMORY = "memory";
+    /**
+     * The job changes in this delay are coalesced into one rebalance, eg: all the jobs submitted at startup
+     * 此延迟内的任务变更合并为一次重新分配 例如启动时提交的全部任务
+     */
+    private static final long REBALANCE_DELAY = 500L;
+
+    private final String collectorId;
+    private final CoordinationStore coordinationStore;
+    private final ConsistentHashAssigner assigner;
+    private final TimerDispatch timerDispatch;
+    private final long ttl;
+    /**
+     * the jobs scheduled by this collector, job id - job content
+     * 本采集器调度中的任务 任务ID - 任务内容
+     */
+    private final Map<Long, String> ownedJobs = new HashMap<>(1024);
+    private final AtomicBoolean rebalancePending = new AtomicBoolean(false);
+    private ScheduledExecutorService coordinatorExecutor;
+
+    public ClusterCollectorCoordinator(DispatchProperties dispatchProperties, TimerDispatch timerDispatch)
+            throws IOException {
+        this(clusterProperties(dispatchProperties), timerDispatch);
+    }
+
+    private ClusterCollectorCoordinator(DispatchProperties.EntranceProperties.ClusterProperties properties,
+                                        TimerDispatch timerDispatch) throws IOException {
+        this(properties.getCollectorId() == null || properties.getCollectorId().isEmpty()
+                        ? defaultCollectorId() : properties.getCollectorId(),
+                STORE_MEMORY.equalsIgnoreCase(properties.getStore()) ? new MemoryCoordinationStore()
+                        : new LocalFileCoordinationStore(new File(properties.getDataDir())),
+                new ConsistentHashAssigner(properties.getVirtualNodes(), properties.getLoadFactor()),
+                timerDispatch, TimeUnit.SECONDS.toMillis(properties.getTtl()));
+        start(properties.getHeartbeatInterval(), properties.getRebalanceInterval());
+    }
+
+    ClusterCollectorCoordinator(String collectorId, CoordinationStore coordinationStore,
+                                ConsistentHashAssigner assigner, TimerDispatch timerDispatch, long ttl) {
+        this.collectorId = collectorId;
+        this.coordinationStore = coordinationStore;
+        this.assigner = assigner;
+        this.timerDispatch = timerDispatch;
+        this.ttl = ttl;
+    }
+
+    private static DispatchProperties.EntranceProperties.ClusterProperties clusterProperties(
+            DispatchProperties dispatchProperties) {
+        if (dispatchProperties == null || dispatchProperties.getEntrance() == null
+                || dispatchProperties.getEntrance().getCluster() == null) {
+            log.error("init error, please config collector cluster props in application.yml");
+            throw new IllegalArgumentException("please config collector cluster props");
+        }
+        return dispatchProperties.getEntrance().getCluster();
+    }
+
+    private static String defaultCollectorId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "collector";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    private void start(long heartbeatInterval, long rebalanceInterval) throws IOException {
+        coordinationStore.registerCollector(collectorId, ttl);
+        coordinatorExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setUncaughtExceptionHandler((thread, throwable) -> {
+                    log.error("collector cluster coordinator has uncaughtException.");
+                    log.error(throwable.getMessage(), throwable);
+                })
+                .setDaemon(true)
+                .setNameFormat("collector-cluster-coordinator")
+                .build());
+        coordinatorExecutor.scheduleWithFixedDelay(this::heartbeat, heartbeatInterval, heartbeatInterval,
+                TimeUnit.SECONDS);
+        coordinatorExecutor.scheduleWithFixedDelay(this::rebalanceQuietly, 0, rebalanceInterval, TimeUnit.SECONDS);
+        log.info("[cluster] collector {} joined the cluster.", collectorId);
+    }
+
+    private void heartbeat() {
+        try {
+            coordinationStore.registerCollector(collectorId, ttl);
+        } catch (Exception e) {
+            log.error("[cluster] collector {} renew registration error: {}", collectorId, e.getMessage());
+        }
+    }
+
+    private void rebalanceQuietly() {
+        try {
+            rebalance();
+        } catch (Exception e) {
+            log.error("[cluster] collector {} rebalance error: {}", collectorId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * assign the jobs in the store to the alive collectors, start the newly owned jobs and stop the moved ones
+     * 将存储中的任务分配给存活的采集器 启动新分配给本采集器的任务 停止已迁移的任务
+     *
+     * @throws IOException when the store is not available, the owned jobs keep running
+     */
+    synchronized void rebalance() throws IOException {
+        Set<String> collectors = coordinationStore.getAliveCollectors();
+        if (!collectors.contains(collectorId)) {
+            // the registration expired, long gc pause or store outage, register again
+            // 注册已过期(长时间GC或存储不可用) 重新注册
+            coordinationStore.registerCollector(collectorId, ttl);
+            collectors = new HashSet<>(collectors);
+            collectors.add(collectorId);
+        }
+        Map<Long, String> jobs = coordinationStore.getJobs();
+        Map<Long, String> assignment = assigner.assign(jobs.keySet(), collectors);
+        int stopped = 0;
+        Iterator<Map.Entry<Long, String>> iterator = ownedJobs.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, String> entry = iterator.next();
+            if (!collectorId.equals(assignment.get(entry.getKey()))) {
+                timerDispatch.deleteJob(entry.getKey(), true);
+                iterator.remove();
+                stopped++;
+            }
+        }
+        int started = 0;
+        for (Map.Entry<Long, String> entry : assignment.entrySet()) {
+            if (!collectorId.equals(entry.getValue())) {
+                continue;
+            }
+            Long jobId = entry.getKey();
+            String content = jobs.get(jobId);
+            if (content.equals(ownedJobs.get(jobId))) {
+                continue;
+            }
+            Job job;
+            try {
+                job = GsonUtil.fromJson(content, Job.class);
+            } catch (Exception e) {
+                log.error("[cluster] illegal job {} in the store: {}", jobId, e.getMessage());
+                continue;
+            }
+            if (ownedJobs.containsKey(jobId)) {
+                timerDispatch.deleteJob(jobId, true);
+            }
+            job.setId(jobId);
+            job.setCyclic(true);
+            // spread the first collection of the taken over jobs in the interval
+            // 将接管任务的首次采集分散在采集间隔内
+            long interval = Math.max(1L, job.getInterval());
+            timerDispatch.addCyclicJob(job, Math.floorMod(jobId, interval), TimeUnit.SECONDS);
+            ownedJobs.put(jobId, content);
+            started++;
+        }
+        if (started > 0 || stopped > 0) {
+            log.info("[cluster] collector {} of {} collectors owns {} of {} jobs, started {}, stopped {}.",
+                    collectorId, collectors.size(), ownedJobs.size(), jobs.size(), started, stopped);
+        }
+    }
+
+    /**
+     * add or update a cyclic job of the cluster, the unchanged job keeps running with its stored timestamp
+     * 新增或更新集群的周期性任务 未变化的任务保留已存储的时间戳继续运行
+     *
+     * @param job job
+     */
+    public void submitJob(Job job) {
+        try {
+            String stored = coordinationStore.getJob(job.getId());
+            if (stored != null) {
+                long timestamp = job.getTimestamp();
+                try {
+                    job.setTimestamp(GsonUtil.fromJson(stored, Job.class).getTimestamp());
+                } catch (Exception e) {
+                    log.warn("[cluster] illegal job {} in the store, replace it: {}", job.getId(), e.getMessage());
+                }
+                if (stored.equals(GsonUtil.toJson(job))) {
+                    return;
+                }
+                job.setTimestamp(timestamp);
+            }
+            coordinationStore.putJob(job.getId(), GsonUtil.toJson(job));
+        } catch (IOException e) {
+            log.error("[cluster] submit job {} error: {}", job.getId(), e.getMessage());
+            throw new IllegalStateException("collector cluster store is not available: " + e.getMessage(), e);
+        }
+        triggerRebalance();
+    }
+
+    /**
+     * cancel a cyclic job of the cluster
+     * 取消集群的周期性任务
+     *
+     * @param jobId job id
+     */
+    public void cancelJob(long jobId) {
+        try {
+            coordinationStore.deleteJob(jobId);
+        } catch (IOException e) {
+            log.error("[cluster] cancel job {} error: {}", jobId, e.getMessage());
+            throw new IllegalStateException("collector cluster store is not available: " + e.getMessage(), e);
+        }
+        triggerRebalance();
+    }
+
+    private void triggerRebalance() {
+        if (coordinatorExecutor == null || coordinatorExecutor.isShutdown()) {
+            return;
+        }
+        if (rebalancePending.compareAndSet(false, true)) {
+            coordinatorExecutor.schedule(() -> {
+                // the changes after here trigger the next rebalance
+                // 此后的变更触发下一次重新分配
+                rebalancePending.set(false);
+                rebalanceQuietly();
+            }, REBALANCE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public String getCollectorId() {
+        return collectorId;
+    }
+
+    public synchronized Set<Long> getOwnedJobs() {
+        return Collections.unmodifiableSet(new HashSet<>(ownedJobs.keySet()));
+    }
+
+    /**
+     * leave the cluster, the jobs are taken over by the other collectors at their next rebalance
+     * 离开集群 任务在其他采集器下次重新分配时被接管
+     */
+    @Override
+    public void destroy() throws Exception {
+        if (coordinatorExecutor != null) {
+            coordinatorExecutor.shutdownNow();
+        }
+        synchronized (this) {
+            ownedJobs.keySet().forEach(jobId -> timerDispatch.deleteJob(jobId, true));
+            ownedJobs.clear();
+        }
+        coordinationStore.unregisterCollector(collectorId);
+        log.info("[cluster] collector {} left the cluster.", collectorId);
+    }
+}
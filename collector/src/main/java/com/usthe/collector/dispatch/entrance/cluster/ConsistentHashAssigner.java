@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.collector.dispatch.entrance.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Job assignment by consistent hashing with bounded loads
+ * 基于有界负载一致性哈希的任务分配
+ * <p>
+ * Each collector has virtual nodes on the hash ring, a job goes clockwise from its hash to the first collector
+ * not full, a collector is full when it has ceil(loadFactor * jobs / collectors) jobs.
+ * Only about 1/n of the jobs move when a collector joins or leaves, no collector exceeds the bound.
+ * The result only depends on the inputs, every collector gets the same assignment from the same store view.
+ * 每个采集器在哈希环上有若干虚拟节点 任务从自身哈希位置顺时针找到第一个未满的采集器
+ * 采集器任务数达到 ceil(负载因子 * 任务数 / 采集器数) 即为满; 采集器加入或离开时只有约1/n的任务迁移 且任何采集器不超过上界
+ * 结果只取决于输入 各采集器从相同的存储视图得到相同的分配
+ *
+ * @author tom
+ * @date 2026/10/16 23:10
+ */
+public class ConsistentHashAssigner {
+
+    private final int virtualNodes;
+    private final double loadFactor;
+
+    public ConsistentHashAssigner(int virtualNodes, double loadFactor) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtual nodes must be positive");
+        }
+        if (loadFactor < 1D) {
+            throw new IllegalArgumentException("load factor can not be less than 1");
+        }
+        this.virtualNodes = virtualNodes;
+        this.loadFactor = loadFactor;
+    }
+
+    /**
+     * assign the jobs to the collectors
+     * 分配任务到采集器
+     *
+     * @param jobIds job ids
+     * @param collectors collector ids
+     * @return job id - collector id, empty when no collector
+     */
+    public Map<Long, String> assign(Collection<Long> jobIds, Collection<String> collectors) {
+        Map<Long, String> assignment = new HashMap<>(jobIds.size());
+        if (collectors.isEmpty() || jobIds.isEmpty()) {
+            return assignment;
+        }
+        NavigableMap<Long, String> ring = new TreeMap<>();
+        for (String collector : collectors) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // the collector with the smaller id wins the rare hash collision, independent of the input order
+                ring.merge(hash(collector + "#" + i), collector, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        }
+        int capacity = (int) Math.ceil(loadFactor * jobIds.size() / collectors.size());
+        Map<String, Integer> loads = new HashMap<>(collectors.size());
+        // place the jobs in a fixed order, the jobs placed earlier take the free slots first
+        // 按固定顺序放置任务 先放置的任务优先占用空位
+        TreeMap<Long, Long> jobsByHash = new TreeMap<>();
+        for (Long jobId : new TreeSet<>(jobIds)) {
+            long jobHash = hash(String.valueOf(jobId));
+            while (jobsByHash.containsKey(jobHash) && !jobsByHash.get(jobHash).equals(jobId)) {
+                jobHash++;
+            }
+            jobsByHash.put(jobHash, jobId);
+        }
+        for (Map.Entry<Long, Long> job : jobsByHash.entrySet()) {
+            Map.Entry<Long, String> node = ring.ceilingEntry(job.getKey());
+            while (true) {
+                if (node == null) {
+                    node = ring.firstEntry();
+                }
+                if (loads.getOrDefault(node.getValue(), 0) < capacity) {
+                    break;
+                }
+                node = ring.higherEntry(node.getKey());
+            }
+            loads.merge(node.getValue(), 1, Integer::sum);
+            assignment.put(job.getValue(), node.getValue());
+        }
+        return assignment;
+    }
+
+    /**
+     * 64 bit FNV-1a hash with the murmur3 finalizer, stable across the processes
+     * 64位FNV-1a哈希加murmur3混合 跨进程稳定
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9a63fe1a5d7L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
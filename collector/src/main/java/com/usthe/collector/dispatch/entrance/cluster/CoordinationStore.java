@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.collector.dispatch.entrance.cluster;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Coordination store of the collector cluster, keeps the collector registrations and the jobs
+ * 采集器集群的协调存储 保存采集器注册信息与采集任务
+ * <p>
+ * The registrations expire without renewal, like the etcd lease, the jobs are kept until deleted.
+ * 注册信息不续期则过期(类似etcd租约) 任务在删除前一直保留
+ *
+ * @author tom
+ * @date 2026/10/16 23:10
+ */
+public interface CoordinationStore {
+
+    /**
+     * register the collector or renew its registration
+     * 注册采集器或续期
+     *
+     * @param collectorId collector id
+     * @param ttl valid time millis
+     * @throws IOException when the store is not available
+     */
+    void registerCollector(String collectorId, long ttl) throws IOException;
+
+    /**
+     * remove the registration of the collector
+     * 注销采集器
+     *
+     * @param collectorId collector id
+     * @throws IOException when the store is not available
+     */
+    void unregisterCollector(String collectorId) throws IOException;
+
+    /**
+     * get the collectors whose registration is not expired
+     * 获取注册未过期的采集器
+     *
+     * @return collector ids
+     * @throws IOException when the store is not available
+     */
+    Set<String> getAliveCollectors() throws IOException;
+
+    /**
+     * add or replace a job
+     * 新增或替换任务
+     *
+     * @param jobId job id
+     * @param job job content
+     * @throws IOException when the store is not available
+     */
+    void putJob(long jobId, String job) throws IOException;
+
+    /**
+     * get a job
+     * 获取任务
+     *
+     * @param jobId job id
+     * @return job content, null when not exist
+     * @throws IOException when the store is not available
+     */
+    String getJob(long jobId) throws IOException;
+
+    /**
+     * delete a job
+     * 删除任务
+     *
+     * @param jobId job id
+     * @throws IOException when the store is not available
+     */
+    void deleteJob(long jobId) throws IOException;
+
+    /**
+     * get all the jobs
+     * 获取全部任务
+     *
+     * @return job id - job content
+     * @throws IOException when the store is not available
+     */
+    Map<Long, String> getJobs() throws IOException;
+}
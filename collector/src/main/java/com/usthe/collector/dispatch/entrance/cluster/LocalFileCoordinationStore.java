@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.collector.dispatch.entrance.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Coordination store in a local directory, shared by the collectors on the same host or a shared file system
+ * 基于本地目录的协调存储 由同一主机或共享文件系统上的采集器共享
+ * <p>
+ * collector/{collectorId}: registration expire time; job/{jobId}.json: job content.
+ * Every file is written to a temp file and moved into place, readers never see a partial file.
+ * collector/{采集器ID}: 注册过期时间; job/{任务ID}.json: 任务内容; 文件先写临时文件再移动 读取不会看到写了一半的文件
+ *
+ * @author tom
+ * @date 2026/10/16 23:10
+ */
+@Slf4j
+public class LocalFileCoordinationStore implements CoordinationStore {
+
+    private static final String COLLECTOR_DIR = "collector";
+    private static final String JOB_DIR = "job";
+    private static final String JOB_FILE_SUFFIX = ".json";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final File collectorDir;
+    private final File jobDir;
+    private final LongSupplier clock;
+    /**
+     * job file name - cached job, the unchanged files are not read again
+     * 任务文件名 - 缓存的任务 未修改的文件不重复读取
+     */
+    private final Map<String, CachedJob> jobCache = new ConcurrentHashMap<>(1024);
+
+    public LocalFileCoordinationStore(File dataDir) throws IOException {
+        this(dataDir, System::currentTimeMillis);
+    }
+
+    public LocalFileCoordinationStore(File dataDir, LongSupplier clock) throws IOException {
+        this.collectorDir = new File(dataDir, COLLECTOR_DIR);
+        this.jobDir = new File(dataDir, JOB_DIR);
+        this.clock = clock;
+        Files.createDirectories(collectorDir.toPath());
+        Files.createDirectories(jobDir.toPath());
+    }
+
+    @Override
+    public void registerCollector(String collectorId, long ttl) throws IOException {
+        write(new File(collectorDir, collectorId), String.valueOf(clock.getAsLong() + ttl));
+    }
+
+    @Override
+    public void unregisterCollector(String collectorId) throws IOException {
+        Files.deleteIfExists(new File(collectorDir, collectorId).toPath());
+    }
+
+    @Override
+    public Set<String> getAliveCollectors() throws IOException {
+        Set<String> collectors = new HashSet<>(16);
+        File[] files = collectorDir.listFiles((dir, name) -> !name.endsWith(TEMP_FILE_SUFFIX));
+        if (files == null) {
+            throw new IOException("can not list the collector directory " + collectorDir);
+        }
+        long now = clock.getAsLong();
+        for (File file : files) {
+            String content = read(file);
+            if (content == null) {
+                continue;
+            }
+            try {
+                if (Long.parseLong(content.trim()) > now) {
+                    collectors.add(file.getName());
+                }
+            } catch (NumberFormatException e) {
+                log.warn("[cluster] illegal collector registration file {}, ignore it.", file.getName());
+            }
+        }
+        return collectors;
+    }
+
+    @Override
+    public void putJob(long jobId, String job) throws IOException {
+        write(new File(jobDir, jobId + JOB_FILE_SUFFIX), job);
+    }
+
+    @Override
+    public String getJob(long jobId) throws IOException {
+        return read(new File(jobDir, jobId + JOB_FILE_SUFFIX));
+    }
+
+    @Override
+    public void deleteJob(long jobId) throws IOException {
+        Files.deleteIfExists(new File(jobDir, jobId + JOB_FILE_SUFFIX).toPath());
+    }
+
+    @Override
+    public Map<Long, String> getJobs() throws IOException {
+        String[] names = jobDir.list((dir, name) -> name.endsWith(JOB_FILE_SUFFIX));
+        if (names == null) {
+            throw new IOException("can not list the job directory " + jobDir);
+        }
+        Map<Long, String> jobs = new HashMap<>(names.length);
+        Set<String> existNames = new HashSet<>(names.length);
+        for (String name : names) {
+            long jobId;
+            try {
+                jobId = Long.parseLong(name.substring(0, name.length() - JOB_FILE_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            Path path = new File(jobDir, name).toPath();
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            // the job file is replaced by a move, the file key changes on every write
+            // 任务文件通过移动替换 每次写入文件标识都会变化
+            String version = attributes.fileKey() + ":" + attributes.lastModifiedTime().toMillis()
+                    + ":" + attributes.size();
+            CachedJob cachedJob = jobCache.get(name);
+            if (cachedJob == null || !cachedJob.version.equals(version)) {
+                String content = read(path.toFile());
+                if (content == null) {
+                    continue;
+                }
+                cachedJob = new CachedJob(version, content);
+                jobCache.put(name, cachedJob);
+            }
+            existNames.add(name);
+            jobs.put(jobId, cachedJob.content);
+        }
+        jobCache.keySet().retainAll(existNames);
+        return jobs;
+    }
+
+    private void write(File file, String content) throws IOException {
+        Path temp = new File(file.getParentFile(), file.getName() + "." + Thread.currentThread().getId()
+                + TEMP_FILE_SUFFIX).toPath();
+        Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @return file content, null when the file is not exist or deleted concurrently
+     */
+    private String read(File file) throws IOException {
+        try {
+            return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static final class CachedJob {
+        private final String version;
+        private final String content;
+
+        private CachedJob(String version, String content) {
+            this.version = version;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.collector.dispatch.entrance.cluster;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * In-process coordination store, the collectors in the same process share one instance
+ * 进程内协调存储 同一进程中的采集器共享一个实例
+ *
+ * @author tom
+ * @date 2026/10/16 23:10
+ */
+public class MemoryCoordinationStore implements CoordinationStore {
+
+    /**
+     * collector id - registration expire time
+     */
+    private final Map<String, Long> collectors = new ConcurrentHashMap<>(16);
+    private final Map<Long, String> jobs = new ConcurrentHashMap<>(1024);
+    private final LongSupplier clock;
+
+    public MemoryCoordinationStore() {
+        this(System::currentTimeMillis);
+    }
+
+    public MemoryCoordinationStore(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void registerCollector(String collectorId, long ttl) {
+        collectors.put(collectorId, clock.getAsLong() + ttl);
+    }
+
+    @Override
+    public void unregisterCollector(String collectorId) {
+        collectors.remove(collectorId);
+    }
+
+    @Override
+    public Set<String> getAliveCollectors() {
+        long now = clock.getAsLong();
+        return collectors.entrySet().stream()
+                .filter(entry -> entry.getValue() > now)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public void putJob(long jobId, String job) {
+        jobs.put(jobId, job);
+    }
+
+    @Override
+    public String getJob(long jobId) {
+        return jobs.get(jobId);
+    }
+
+    @Override
+    public void deleteJob(long jobId) {
+        jobs.remove(jobId);
+    }
+
+    @Override
+    public Map<Long, String> getJobs() {
+        return new HashMap<>(jobs);
+    }
+}
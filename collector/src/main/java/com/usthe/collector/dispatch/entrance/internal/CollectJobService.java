@@ -17,6 +17,7 @@
 
 package com.usthe.collector.dispatch.entrance.internal;
 
+import com.usthe.collector.dispatch.entrance.cluster.ClusterCollectorCoordinator;
 import com.usthe.collector.dispatch.timer.TimerDispatch;
 import com.usthe.common.entity.job.Job;
 import com.usthe.common.entity.message.CollectRep;
@@ -29,6 +30,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Collection job management provides api interface
@@ -40,35 +42,91 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class CollectJobService {
 
+    /**
+     * default deadline of the one-time collection task
+     * 一次性采集任务的默认截止时间
+     */
+    private static final long DEFAULT_SYNC_JOB_TIMEOUT = 30_000L;
+    private static final long SYNC_JOB_WAIT_GRACE = 2_000L;
+
     @Autowired
     private TimerDispatch timerDispatch;
 
     /**
-     * Execute a one-time collection task and get the collected data response
-     * 执行一次性采集任务,获取采集数据响应
+     * present in the cluster mode, the cyclic jobs are sharded among the collectors by it
+     * 集群模式下存在 周期性任务由其在采集器间分片
+     */
+    @Autowired(required = false)
+    private ClusterCollectorCoordinator clusterCollectorCoordinator;
+
+    /**
+     * Execute a one-time collection task and get the collected data response, within the default deadline
+     * 执行一次性采集任务,获取采集数据响应 在默认截止时间内
      *
      * @param job Collect task details  采集任务详情
      * @return Collection results       采集结果
      */
     public List<CollectRep.MetricsData> collectSyncJobData(Job job) {
-        final List<CollectRep.MetricsData> metricsData = new LinkedList<>();
+        return collectSyncJobData(job, DEFAULT_SYNC_JOB_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Execute a one-time collection task and get the collected data response.
+     * It returns when all the metrics groups are collected, the availability metrics group fails, or the deadline
+     * is reached with the metrics groups collected so far.
+     * 执行一次性采集任务,获取采集数据响应
+     * 所有指标组采集完成 可用性指标组失败 或到达截止时间(返回已采集的指标组)时返回
+     *
+     * @param job      Collect task details  采集任务详情
+     * @param timeout  deadline of the task  任务截止时间
+     * @param timeUnit time unit             时间单位
+     * @return Collection results       采集结果
+     */
+    public List<CollectRep.MetricsData> collectSyncJobData(Job job, long timeout, TimeUnit timeUnit) {
+        final AtomicReference<List<CollectRep.MetricsData>> metricsData = new AtomicReference<>(new LinkedList<>());
         final CountDownLatch countDownLatch = new CountDownLatch(1);
         CollectResponseEventListener listener = new CollectResponseEventListener() {
             @Override
             public void response(List<CollectRep.MetricsData> responseMetrics) {
                 if (responseMetrics != null) {
-                    metricsData.addAll(responseMetrics);
+                    metricsData.set(responseMetrics);
                 }
                 countDownLatch.countDown();
             }
         };
-        timerDispatch.addJob(job, listener);
+        collectStreamJobData(job, timeout, timeUnit, listener);
         try {
-            countDownLatch.await(100, TimeUnit.SECONDS);
-        } catch (Exception e) {
-            log.info("The sync task runs for 100 seconds with no response and returns");
+            // the deadline is checked by the time wheel, wait a tick more
+            // 截止时间由时间轮检查 多等待一个刻度
+            if (!countDownLatch.await(timeUnit.toMillis(timeout) + SYNC_JOB_WAIT_GRACE, TimeUnit.MILLISECONDS)) {
+                log.info("The sync task runs for {}ms with no response and returns.", timeUnit.toMillis(timeout));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        return metricsData;
+        return metricsData.get();
+    }
+
+    /**
+     * Execute a one-time collection task, the data of each metrics group is streamed to the listener
+     * as soon as it is collected, then the listener gets the response of the whole task.
+     * 执行一次性采集任务 每个指标组的数据采集完成即流式通知监听器 之后监听器获得整个任务的响应
+     *
+     * @param job      Collect task details  采集任务详情
+     * @param timeout  deadline of the task  任务截止时间
+     * @param timeUnit time unit             时间单位
+     * @param listener response listener    响应监听器
+     * @return long Job ID      任务ID
+     */
+    public long collectStreamJobData(Job job, long timeout, TimeUnit timeUnit, CollectResponseEventListener listener) {
+        if (job.getId() == 0L) {
+            // the concurrent detect tasks are told apart by the job id
+            // 并发的探测任务通过任务ID区分
+            job.setId(SnowFlakeIdGenerator.generateId());
+        }
+        job.setDeadline(System.currentTimeMillis() + timeUnit.toMillis(timeout));
+        timerDispatch.addJob(job, listener);
+        return job.getId();
     }
 
     /**
@@ -83,10 +141,38 @@ public class CollectJobService {
             long jobId = SnowFlakeIdGenerator.generateId();
             job.setId(jobId);
         }
+        if (clusterCollectorCoordinator != null) {
+            clusterCollectorCoordinator.submitJob(job);
+            return job.getId();
+        }
         timerDispatch.addJob(job, null);
         return job.getId();
     }
 
+    /**
+     * Issue periodic asynchronous collection tasks, the first collection runs after the initial delay
+     * 下发周期性异步采集任务 首次采集在初始延迟之后执行
+     *
+     * @param job          Collect task details      采集任务详情
+     * @param initialDelay Initial delay of the first collection      首次采集的延迟时间
+     * @param timeUnit     Time unit of delay        时间单位
+     * @return long Job ID      任务ID
+     */
+    public long addAsyncCollectJob(Job job, long initialDelay, TimeUnit timeUnit) {
+        if (job.getId() == 0L) {
+            long jobId = SnowFlakeIdGenerator.generateId();
+            job.setId(jobId);
+        }
+        if (clusterCollectorCoordinator != null) {
+            // the owner collector spreads the first collection itself
+            // 由所属采集器自行分散首次采集时间
+            clusterCollectorCoordinator.submitJob(job);
+            return job.getId();
+        }
+        timerDispatch.addCyclicJob(job, initialDelay, timeUnit);
+        return job.getId();
+    }
+
     /**
      * Update the periodic asynchronous collection tasks that have been delivered
      * 更新已经下发的周期性异步采集任务
@@ -94,6 +180,10 @@ public class CollectJobService {
      * @param modifyJob Collect task details        采集任务详情
      */
     public void updateAsyncCollectJob(Job modifyJob) {
+        if (clusterCollectorCoordinator != null) {
+            clusterCollectorCoordinator.submitJob(modifyJob);
+            return;
+        }
         timerDispatch.deleteJob(modifyJob.getId(), true);
         timerDispatch.addJob(modifyJob, null);
     }
@@ -105,6 +195,10 @@ public class CollectJobService {
      * @param jobId Job ID      任务ID
      */
     public void cancelAsyncCollectJob(Long jobId) {
+        if (clusterCollectorCoordinator != null) {
+            clusterCollectorCoordinator.cancelJob(jobId);
+            return;
+        }
         timerDispatch.deleteJob(jobId, true);
     }
 
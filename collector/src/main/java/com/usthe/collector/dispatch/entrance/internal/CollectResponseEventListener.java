@@ -23,8 +23,9 @@ import java.util.EventListener;
 import java.util.List;
 
 /**
- * One-time collection task response result listener
- * 一次性采集任务响应结果监听器
+ * One-time collection task response result listener, the metrics groups are streamed by {@link #onMetrics}
+ * before the {@link #response} of the whole task
+ * 一次性采集任务响应结果监听器 各指标组结果先通过onMetrics流式通知 最后通过response通知整个任务结果
  * @author tomsun28
  * @date 2021/11/16 10:09
  */
@@ -36,4 +37,11 @@ public interface CollectResponseEventListener extends EventListener {
      * @param responseMetrics Response Metrics
      */
     default void response(List<CollectRep.MetricsData> responseMetrics) {}
+
+    /**
+     * Result notification of one metrics group, as soon as it is collected
+     * 单个指标组采集完成即通知其结果
+     * @param metricsData Metrics data
+     */
+    default void onMetrics(CollectRep.MetricsData metricsData) {}
 }
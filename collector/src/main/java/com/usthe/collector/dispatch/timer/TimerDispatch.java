@@ -22,7 +22,6 @@ import com.usthe.collector.dispatch.entrance.internal.CollectResponseEventListen
 import com.usthe.common.entity.job.Job;
 import com.usthe.common.entity.message.CollectRep;
 
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -42,6 +41,16 @@ public interface TimerDispatch {
      */
     void addJob(Job addJob, CollectResponseEventListener eventListener);
 
+    /**
+     * Add new cyclic job, the first collection is scheduled after the initial delay instead of one interval
+     * 增加新的周期性job 首次调度在初始延迟之后而不是一个采集间隔之后
+     *
+     * @param addJob       cyclic job
+     * @param initialDelay 首次调度的延迟时间
+     * @param timeUnit     时间单位
+     */
+    void addCyclicJob(Job addJob, long initialDelay, TimeUnit timeUnit);
+
     /**
      * 调度循环周期性job
      *
@@ -51,6 +60,17 @@ public interface TimerDispatch {
      */
     void cyclicJob(WheelTimerTask timerTask, long interval, TimeUnit timeUnit);
 
+    /**
+     * Schedule a one-shot timer task, eg: the collection timeout of the metrics group task
+     * 调度一次性定时任务 例如指标组采集任务的超时
+     *
+     * @param task     timer task
+     * @param delay    delay time  延迟时间
+     * @param timeUnit 时间单位
+     * @return timeout handle, can be cancelled   可取消的timeout
+     */
+    Timeout newTimeout(TimerTask task, long delay, TimeUnit timeUnit);
+
     /**
      * Delete existing job
      * 删除存在的job
@@ -62,10 +82,20 @@ public interface TimerDispatch {
     void deleteJob(long jobId, boolean isCyclic);
 
     /**
-     * 一次性同步采集任务采集结果通知监听器
+     * Stream the data of a metrics group to the listener of the one-time task
+     * 将指标组数据流式通知一次性任务的监听器
+     *
+     * @param jobId       jobId
+     * @param metricsData 指标组采集数据
+     * @return false if the task has been finished, the data is discarded   任务已结束返回false 数据被丢弃
+     */
+    boolean responseSyncMetricsData(long jobId, CollectRep.MetricsData metricsData);
+
+    /**
+     * Finish the one-time task and notify the listener with the collected data
+     * 结束一次性任务 并将已采集的数据通知监听器
      *
-     * @param jobId            jobId
-     * @param metricsDataTemps 采集结果数据
+     * @param jobId jobId
      */
-    void responseSyncJobData(long jobId, List<CollectRep.MetricsData> metricsDataTemps);
+    void responseSyncJobData(long jobId);
 }
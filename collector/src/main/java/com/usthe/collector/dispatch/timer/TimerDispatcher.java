@@ -22,6 +22,8 @@ import com.usthe.common.entity.job.Job;
 import com.usthe.common.entity.message.CollectRep;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -50,11 +52,11 @@ public class TimerDispatcher implements TimerDispatch {
      */
     private Map<Long, Timeout> currentTempTaskMap;
     /**
-     * One-time task response listener holds
-     * 一次性任务响应监听器持有
-     * jobId - listener
+     * Running one-time tasks, holds the response listener and the collected data
+     * 运行中的一次性任务 持有响应监听器与已采集数据
+     * jobId - sync job
      */
-    private Map<Long, CollectResponseEventListener> eventListeners;
+    private Map<Long, SyncJob> syncJobs;
 
     public TimerDispatcher() {
         this.wheelTimer = new HashedWheelTimer(r -> {
@@ -64,7 +66,7 @@ public class TimerDispatcher implements TimerDispatch {
         }, 1, TimeUnit.SECONDS, 512);
         this.currentCyclicTaskMap = new ConcurrentHashMap<>(1024);
         this.currentTempTaskMap = new ConcurrentHashMap<>(64);
-        eventListeners = new ConcurrentHashMap<>(64);
+        syncJobs = new ConcurrentHashMap<>(64);
     }
 
     @Override
@@ -74,12 +76,28 @@ public class TimerDispatcher implements TimerDispatch {
             Timeout timeout = wheelTimer.newTimeout(timerJob, addJob.getInterval(), TimeUnit.SECONDS);
             currentCyclicTaskMap.put(addJob.getId(), timeout);
         } else {
+            long jobId = addJob.getId();
+            SyncJob syncJob = new SyncJob(eventListener);
+            syncJobs.put(jobId, syncJob);
+            if (addJob.getDeadline() > 0) {
+                // respond with the data collected so far when the deadline is reached
+                // 到达截止时间时以已采集的数据响应
+                long delay = Math.max(0L, addJob.getDeadline() - System.currentTimeMillis());
+                syncJob.deadlineTimeout = wheelTimer.newTimeout(timeout -> responseSyncJobData(jobId),
+                        delay, TimeUnit.MILLISECONDS);
+            }
             Timeout timeout = wheelTimer.newTimeout(timerJob, 0, TimeUnit.SECONDS);
-            currentTempTaskMap.put(addJob.getId(), timeout);
-            eventListeners.put(addJob.getId(), eventListener);
+            currentTempTaskMap.put(jobId, timeout);
         }
     }
 
+    @Override
+    public void addCyclicJob(Job addJob, long initialDelay, TimeUnit timeUnit) {
+        WheelTimerTask timerJob = new WheelTimerTask(addJob);
+        Timeout timeout = wheelTimer.newTimeout(timerJob, initialDelay, timeUnit);
+        currentCyclicTaskMap.put(addJob.getId(), timeout);
+    }
+
     @Override
     public void cyclicJob(WheelTimerTask timerTask, long interval, TimeUnit timeUnit) {
         Long jobId = timerTask.getJob().getId();
@@ -90,6 +108,11 @@ public class TimerDispatcher implements TimerDispatch {
         }
     }
 
+    @Override
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit timeUnit) {
+        return wheelTimer.newTimeout(task, delay, timeUnit);
+    }
+
     @Override
     public void deleteJob(long jobId, boolean isCyclic) {
         if (isCyclic) {
@@ -102,15 +125,60 @@ public class TimerDispatcher implements TimerDispatch {
             if (timeout != null) {
                 timeout.cancel();
             }
+            responseSyncJobData(jobId);
+        }
+    }
+
+    @Override
+    public boolean responseSyncMetricsData(long jobId, CollectRep.MetricsData metricsData) {
+        SyncJob syncJob = syncJobs.get(jobId);
+        if (syncJob == null) {
+            return false;
+        }
+        synchronized (syncJob) {
+            if (syncJob.finished) {
+                return false;
+            }
+            syncJob.metricsData.add(metricsData);
+            if (syncJob.listener != null) {
+                syncJob.listener.onMetrics(metricsData);
+            }
         }
+        return true;
     }
 
     @Override
-    public void responseSyncJobData(long jobId, List<CollectRep.MetricsData> metricsDataTemps) {
+    public void responseSyncJobData(long jobId) {
         currentTempTaskMap.remove(jobId);
-        CollectResponseEventListener eventListener = eventListeners.remove(jobId);
-        if (eventListener != null) {
-            eventListener.response(metricsDataTemps);
+        SyncJob syncJob = syncJobs.remove(jobId);
+        if (syncJob == null) {
+            return;
+        }
+        if (syncJob.deadlineTimeout != null) {
+            syncJob.deadlineTimeout.cancel();
+        }
+        List<CollectRep.MetricsData> metricsData;
+        synchronized (syncJob) {
+            syncJob.finished = true;
+            metricsData = new ArrayList<>(syncJob.metricsData);
+        }
+        if (syncJob.listener != null) {
+            syncJob.listener.response(metricsData);
+        }
+    }
+
+    /**
+     * Running one-time task, the data is streamed to the listener until it is finished
+     * 运行中的一次性任务 结束前数据流式通知监听器
+     */
+    private static final class SyncJob {
+        private final CollectResponseEventListener listener;
+        private final List<CollectRep.MetricsData> metricsData = new LinkedList<>();
+        private volatile Timeout deadlineTimeout;
+        private boolean finished;
+
+        private SyncJob(CollectResponseEventListener listener) {
+            this.listener = listener;
         }
     }
 }
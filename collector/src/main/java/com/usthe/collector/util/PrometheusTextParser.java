@@ -17,32 +17,354 @@
 
 package com.usthe.collector.util;
 
-import java.util.HashMap;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * prometheus-format-text parser
+ * Streaming parser of the prometheus text exposition format (and the openmetrics text format samples).
+ * Lines are read into a reused buffer, samples of other metric families are skipped without allocation,
+ * and only the requested labels of the requested family are materialized.
+ * 流式解析prometheus文本格式 逐行读入复用的缓冲区 非目标指标族的样本不分配对象直接跳过 只提取目标指标族的指定标签
+ * <p>
+ * eg: http_requests_total{method="post",code="200"} 1027 1395066363000
+ *
  * @author tom
  * @date 2022/1/9 14:12
  */
+@Slf4j
 public class PrometheusTextParser {
 
+    /**
+     * sample name suffixes of a metric family: counter, histogram, summary, openmetrics
+     */
+    private static final String[] FAMILY_SAMPLE_SUFFIXES = {"_total", "_bucket", "_count", "_sum", "_created",
+            "_gcount", "_gsum", "_info"};
+
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    private static final int INIT_LINE_LENGTH = 256;
+    /**
+     * longer lines are skipped, keep the line buffer bounded
+     */
+    private static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+    private static final String VALUE_KEY = "value";
+
+    /**
+     * Handle one sample of the projected family
+     * the lists are reused between samples, copy them when retained
+     */
+    public interface SampleHandler {
+        /**
+         * handle sample
+         * @param name sample name eg: http_requests_total, rpc_duration_seconds_bucket
+         * @param labelNames label names
+         * @param labelValues label values aligned with label names, null when the sample has no this label
+         * @param value sample value text eg: 1027, 1.5e-3, NaN, +Inf
+         */
+        void onSample(String name, List<String> labelNames, List<String> labelValues, String value);
+    }
+
+    private final String family;
+    private final List<String> projectLabels;
+    private final SampleHandler handler;
+
+    private final char[] readBuffer = new char[READ_BUFFER_SIZE];
+    private char[] line = new char[INIT_LINE_LENGTH];
+    private int lineLength;
+    private boolean lineOverflow;
+    private final StringBuilder unescapeBuilder = new StringBuilder(64);
+    private final List<String> labelNames;
+    private final List<String> labelValues;
+
+    private PrometheusTextParser(String family, List<String> projectLabels, SampleHandler handler) {
+        this.family = family;
+        this.projectLabels = projectLabels;
+        this.handler = handler;
+        if (projectLabels != null) {
+            this.labelNames = projectLabels;
+            this.labelValues = Arrays.asList(new String[projectLabels.size()]);
+        } else {
+            this.labelNames = new ArrayList<>(8);
+            this.labelValues = new ArrayList<>(8);
+        }
+    }
+
+    /**
+     * Stream parse the prometheus text, handle the samples of the family
+     * 流式解析prometheus文本 处理指定指标族的样本
+     * @param reader text reader, eg: the http entity stream
+     * @param family metric family name, null means all families
+     * @param labels labels to project, null means all labels of the sample
+     * @param handler sample handler
+     * @throws IOException read error
+     */
+    public static void parse(Reader reader, String family, List<String> labels, SampleHandler handler) throws IOException {
+        new PrometheusTextParser(family, labels, handler).parse(reader);
+    }
+
     /**
      * 解析prometheusText
      * @param content 待解析文本内容
-     * @return eg:[{'name': 'tom', 'speed': '433'},{'name': 'lili', 'speed': '543'},{'name': 'sam', 'speed': '643'}]
+     * @return sample name - samples eg: {'http_requests_total': [{'method': 'post', 'code': '200', 'value': 1027.0}]}
      */
     public static Map<String, List<Map<String, Object>>> parsePrometheusText(String content) {
-        String[] lines = content.split("\n");
-        Map<String, List<Map<String, Object>>> parseResult = new HashMap<>(8);
-        for (String lineTmp : lines) {
-            String line = lineTmp.trim();
-            if (line.length() == 0 || line.startsWith("#")) {
+        Map<String, List<Map<String, Object>>> parseResult = new LinkedHashMap<>(8);
+        if (content == null) {
+            return parseResult;
+        }
+        try {
+            parse(new StringReader(content), null, null, (name, labelNames, labelValues, value) -> {
+                Map<String, Object> sample = new LinkedHashMap<>(labelNames.size() + 1);
+                for (int i = 0; i < labelNames.size(); i++) {
+                    sample.put(labelNames.get(i), labelValues.get(i));
+                }
+                sample.put(VALUE_KEY, parseValue(value));
+                parseResult.computeIfAbsent(name, key -> new ArrayList<>()).add(sample);
+            });
+        } catch (IOException e) {
+            log.warn(e.getMessage());
+        }
+        return parseResult;
+    }
+
+    /**
+     * parse sample value text, NaN +Inf -Inf supported
+     * @param value value text
+     * @return double value, null when illegal
+     */
+    public static Double parseValue(String value) {
+        if (value == null) {
+            return null;
+        }
+        switch (value) {
+            case "+Inf":
+            case "Inf":
+                return Double.POSITIVE_INFINITY;
+            case "-Inf":
+                return Double.NEGATIVE_INFINITY;
+            case "NaN":
+                return Double.NaN;
+            default:
+                try {
+                    return Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+        }
+    }
+
+    private void parse(Reader reader) throws IOException {
+        int read;
+        while ((read = reader.read(readBuffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = readBuffer[i];
+                if (c == '\n') {
+                    endLine();
+                } else if (!lineOverflow) {
+                    appendLine(c);
+                }
+            }
+        }
+        endLine();
+    }
+
+    private void appendLine(char c) {
+        if (lineLength == line.length) {
+            if (line.length >= MAX_LINE_LENGTH) {
+                lineOverflow = true;
+                return;
+            }
+            line = Arrays.copyOf(line, Math.min(line.length << 1, MAX_LINE_LENGTH));
+        }
+        line[lineLength++] = c;
+    }
+
+    private void endLine() {
+        try {
+            if (lineOverflow) {
+                log.warn("[prometheus text] skip line longer than {}.", MAX_LINE_LENGTH);
+            } else {
+                parseLine();
+            }
+        } catch (RuntimeException e) {
+            log.debug("[prometheus text] skip illegal line: {}.", new String(line, 0, lineLength));
+        } finally {
+            lineLength = 0;
+            lineOverflow = false;
+        }
+    }
+
+    private void parseLine() {
+        int end = lineLength;
+        while (end > 0 && (line[end - 1] == '\r' || line[end - 1] == ' ' || line[end - 1] == '\t')) {
+            end--;
+        }
+        int pos = skipWhitespace(0, end);
+        // empty line, # HELP, # TYPE, comment
+        if (pos >= end || line[pos] == '#') {
+            return;
+        }
+        int nameStart = pos;
+        while (pos < end && isNameChar(line[pos])) {
+            pos++;
+        }
+        int nameEnd = pos;
+        if (nameEnd == nameStart || !matchFamily(nameStart, nameEnd)) {
+            return;
+        }
+        clearLabels();
+        pos = skipWhitespace(pos, end);
+        if (pos < end && line[pos] == '{') {
+            pos = parseLabels(pos + 1, end);
+        }
+        pos = skipWhitespace(pos, end);
+        int valueStart = pos;
+        while (pos < end && line[pos] != ' ' && line[pos] != '\t') {
+            pos++;
+        }
+        if (valueStart == pos) {
+            return;
+        }
+        // the optional timestamp is ignored, collect time is used
+        handler.onSample(new String(line, nameStart, nameEnd - nameStart), labelNames, labelValues,
+                new String(line, valueStart, pos - valueStart));
+    }
+
+    private boolean matchFamily(int nameStart, int nameEnd) {
+        if (family == null) {
+            return true;
+        }
+        int familyLength = family.length();
+        int nameLength = nameEnd - nameStart;
+        if (nameLength < familyLength) {
+            return false;
+        }
+        for (int i = 0; i < familyLength; i++) {
+            if (line[nameStart + i] != family.charAt(i)) {
+                return false;
+            }
+        }
+        if (nameLength == familyLength) {
+            return true;
+        }
+        int suffixStart = nameStart + familyLength;
+        for (String suffix : FAMILY_SAMPLE_SUFFIXES) {
+            if (regionEquals(suffixStart, nameEnd, suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int parseLabels(int pos, int end) {
+        while (pos < end) {
+            pos = skipWhitespace(pos, end);
+            if (pos < end && line[pos] == ',') {
+                pos++;
                 continue;
             }
-            
+            if (pos >= end || line[pos] == '}') {
+                return pos + 1;
+            }
+            int nameStart = pos;
+            while (pos < end && isNameChar(line[pos])) {
+                pos++;
+            }
+            int nameEnd = pos;
+            pos = skipWhitespace(pos, end);
+            if (pos >= end || line[pos] != '=') {
+                throw new IllegalArgumentException("illegal label");
+            }
+            pos = skipWhitespace(pos + 1, end);
+            if (pos >= end || line[pos] != '"') {
+                throw new IllegalArgumentException("illegal label value");
+            }
+            pos++;
+            int labelIndex = projectLabelIndex(nameStart, nameEnd);
+            boolean keep = projectLabels == null || labelIndex >= 0;
+            if (keep) {
+                unescapeBuilder.setLength(0);
+            }
+            boolean closed = false;
+            while (pos < end) {
+                char c = line[pos++];
+                if (c == '\\' && pos < end) {
+                    char escaped = line[pos++];
+                    if (keep) {
+                        unescapeBuilder.append(escaped == 'n' ? '\n' : escaped);
+                    }
+                } else if (c == '"') {
+                    closed = true;
+                    break;
+                } else if (keep) {
+                    unescapeBuilder.append(c);
+                }
+            }
+            if (!closed) {
+                throw new IllegalArgumentException("unclosed label value");
+            }
+            if (projectLabels == null) {
+                labelNames.add(new String(line, nameStart, nameEnd - nameStart));
+                labelValues.add(unescapeBuilder.toString());
+            } else if (labelIndex >= 0) {
+                labelValues.set(labelIndex, unescapeBuilder.toString());
+            }
+        }
+        throw new IllegalArgumentException("unclosed labels");
+    }
+
+    private int projectLabelIndex(int nameStart, int nameEnd) {
+        if (projectLabels == null) {
+            return -1;
+        }
+        for (int i = 0; i < projectLabels.size(); i++) {
+            if (regionEquals(nameStart, nameEnd, projectLabels.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void clearLabels() {
+        if (projectLabels == null) {
+            labelNames.clear();
+            labelValues.clear();
+        } else {
+            for (int i = 0; i < labelValues.size(); i++) {
+                labelValues.set(i, null);
+            }
+        }
+    }
+
+    private boolean regionEquals(int start, int end, String value) {
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (line[start + i] != value.charAt(i)) {
+                return false;
+            }
         }
-        return null;
+        return true;
+    }
+
+    private int skipWhitespace(int pos, int end) {
+        while (pos < end && (line[pos] == ' ' || line[pos] == '\t')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == ':';
     }
 }
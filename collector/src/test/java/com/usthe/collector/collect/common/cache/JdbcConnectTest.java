@@ -0,0 +1,75 @@
+package com.usthe.collector.collect.common.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link JdbcConnect}
+ */
+class JdbcConnectTest {
+
+    private JdbcConnect jdbcConnect;
+
+    @BeforeEach
+    void setUp() {
+        jdbcConnect = new JdbcConnect("jdbc:h2:mem:jdbc_connect_test;DB_CLOSE_DELAY=-1", "sa", "", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcConnect.close();
+    }
+
+    @Test
+    void borrowReuseConnectionAndStatement() throws SQLException {
+        JdbcConnect.PooledConnection first = jdbcConnect.borrow(1000);
+        PreparedStatement statement = first.prepareStatement("SELECT 1", 3000, 10);
+        jdbcConnect.release(first, null);
+        JdbcConnect.PooledConnection second = jdbcConnect.borrow(1000);
+        assertSame(first, second);
+        assertSame(statement, second.prepareStatement("SELECT 1", 3000, 10));
+        jdbcConnect.release(second, null);
+        assertEquals(1, jdbcConnect.getCreatedCount());
+    }
+
+    @Test
+    void borrowValidateConnection() throws SQLException {
+        JdbcConnect.PooledConnection broken = jdbcConnect.borrow(1000);
+        broken.getConnection().close();
+        jdbcConnect.release(broken, null);
+        JdbcConnect.PooledConnection pooledConnection = jdbcConnect.borrow(1000);
+        assertNotSame(broken, pooledConnection);
+        assertTrue(pooledConnection.getConnection().isValid(1));
+        jdbcConnect.release(pooledConnection, null);
+        assertEquals(2, jdbcConnect.getCreatedCount());
+    }
+
+    @Test
+    void borrowBounded() throws SQLException {
+        JdbcConnect.PooledConnection first = jdbcConnect.borrow(1000);
+        JdbcConnect.PooledConnection second = jdbcConnect.borrow(1000);
+        assertThrows(SQLTimeoutException.class, () -> jdbcConnect.borrow(100));
+        jdbcConnect.release(first, null);
+        JdbcConnect.PooledConnection third = jdbcConnect.borrow(100);
+        assertSame(first, third);
+        jdbcConnect.release(second, null);
+        jdbcConnect.release(third, null);
+    }
+
+    @Test
+    void releaseDiscardBrokenConnection() throws SQLException {
+        JdbcConnect.PooledConnection pooledConnection = jdbcConnect.borrow(1000);
+        jdbcConnect.release(pooledConnection, new SQLException("Communications link failure", "08S01"));
+        assertTrue(pooledConnection.getConnection().isClosed());
+        JdbcConnect.PooledConnection newConnection = jdbcConnect.borrow(1000);
+        assertNotSame(pooledConnection, newConnection);
+        jdbcConnect.release(newConnection, null);
+    }
+}
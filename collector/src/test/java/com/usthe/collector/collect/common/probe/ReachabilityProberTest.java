@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.collector.collect.common.probe;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link ReachabilityProber}
+ */
+class ReachabilityProberTest {
+
+    private ReachabilityProber prober;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        prober = new ReachabilityProber();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        prober.close();
+    }
+
+    @Test
+    void probeTcpListeningPort() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            Long responseTime = prober.probeTcp(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                    serverSocket.getLocalPort()), 3000).get(5, TimeUnit.SECONDS);
+            assertNotNull(responseTime);
+            assertTrue(responseTime >= 0);
+        }
+    }
+
+    @Test
+    void probeTcpClosedPort() throws Exception {
+        int closedPort;
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            closedPort = serverSocket.getLocalPort();
+        }
+        CompletableFuture<Long> future = prober.probeTcp(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), closedPort), 3000);
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof ConnectException);
+    }
+
+    @Test
+    void probeIcmpLoopback() throws Exception {
+        // the loopback answers the echo request
+        Long responseTime = prober.probeIcmp(InetAddress.getLoopbackAddress(), 3000).get(5, TimeUnit.SECONDS);
+        assertNotNull(responseTime);
+    }
+
+    @Test
+    void probeIcmpBusy() throws Exception {
+        prober.close();
+        prober = new ReachabilityProber(1, 1);
+        // the single thread and queue slot are held while the others come
+        InetAddress address = InetAddress.getByName("192.0.2.1");
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(prober.probeIcmp(address, 2000));
+        }
+        int busy = 0;
+        for (CompletableFuture<Long> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                // busy or not reachable by the echo request, never probed by another way
+                assertTrue(e.getCause() instanceof IOException || e.getCause() instanceof RejectedExecutionException);
+                if (e.getCause() instanceof RejectedExecutionException) {
+                    busy++;
+                }
+            }
+        }
+        assertTrue(busy > 0);
+    }
+
+    @Test
+    void probeThousandsInFlight() throws Exception {
+        int probeNum = 2000;
+        int threadsBefore = Thread.activeCount();
+        int closedPort;
+        try (ServerSocket closed = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            closedPort = closed.getLocalPort();
+        }
+        try (ServerSocket serverSocket = new ServerSocket(0, probeNum, InetAddress.getLoopbackAddress())) {
+            List<CompletableFuture<Long>> openFutures = new ArrayList<>(probeNum / 2);
+            List<CompletableFuture<Long>> closedFutures = new ArrayList<>(probeNum / 2);
+            for (int i = 0; i < probeNum / 2; i++) {
+                openFutures.add(prober.probeTcp(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                        serverSocket.getLocalPort()), 5000));
+                closedFutures.add(prober.probeTcp(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                        closedPort), 5000));
+            }
+            CompletableFuture.allOf(openFutures.toArray(new CompletableFuture[0]))
+                    .get(30, TimeUnit.SECONDS);
+            for (CompletableFuture<Long> future : closedFutures) {
+                ExecutionException exception = assertThrows(ExecutionException.class,
+                        () -> future.get(30, TimeUnit.SECONDS));
+                assertTrue(exception.getCause() instanceof ConnectException);
+            }
+        }
+        // all probes run on the selector thread and the bounded callback pool, no thread per probe
+        assertTrue(Thread.activeCount() - threadsBefore <= 1 + ReachabilityProber.CALLBACK_THREADS);
+    }
+
+    @Test
+    void probeAfterClose() throws Exception {
+        prober.close();
+        CompletableFuture<Long> future = prober.probeTcp(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 80), 1000);
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof IOException);
+    }
+}
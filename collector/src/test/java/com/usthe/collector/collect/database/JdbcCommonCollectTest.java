@@ -1,9 +1,21 @@
 package com.usthe.collector.collect.database;
 
+import com.usthe.collector.collect.common.cache.CacheIdentifier;
 import com.usthe.collector.collect.common.cache.CommonCache;
-import org.junit.jupiter.api.BeforeEach;
+import com.usthe.collector.collect.common.cache.JdbcConnect;
+import com.usthe.common.entity.job.Metrics;
+import com.usthe.common.entity.job.protocol.JdbcProtocol;
+import com.usthe.common.entity.message.CollectRep;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -11,11 +23,78 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class JdbcCommonCollectTest {
 
-    @BeforeEach
-    void setUp() {
+    private static final String URL = "jdbc:h2:mem:jdbc_collect_test;DB_CLOSE_DELAY=-1";
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE status (status_name VARCHAR(64), status_value VARCHAR(64))");
+            statement.execute("INSERT INTO status VALUES ('threads_connected', '12'), ('uptime', '3600')");
+            statement.execute("CREATE ALIAS SLEEP FOR 'java.lang.Thread.sleep'");
+        }
     }
 
     @Test
     void getInstance() {
+        assertSame(JdbcCommonCollect.getInstance(), JdbcCommonCollect.getInstance());
+    }
+
+    @Test
+    void collect() {
+        CollectRep.MetricsData.Builder builder = collect("oneRow",
+                "SELECT status_value AS threads_connected FROM status WHERE status_name = 'threads_connected'",
+                "threads_connected", "responseTime");
+        assertEquals(CollectRep.Code.SUCCESS, builder.getCode(), builder.getMsg());
+        assertEquals("12", builder.getValues(0).getColumns(0));
+
+        builder = collect("multiRow", "SELECT status_name, status_value FROM status ORDER BY status_name",
+                "status_name", "status_value");
+        assertEquals(2, builder.getValuesCount());
+        assertEquals(Arrays.asList("threads_connected", "12"), builder.getValues(0).getColumnsList());
+
+        builder = collect("columns", "SELECT status_name, status_value FROM status", "uptime", "threads_connected");
+        assertEquals(Arrays.asList("3600", "12"), builder.getValues(0).getColumnsList());
+
+        builder = collect("oneRow", "SELECT * FROM not_exist", "value");
+        assertEquals(CollectRep.Code.FAIL, builder.getCode());
+    }
+
+    @Test
+    void collectReuseConnections() {
+        for (int i = 0; i < 200; i++) {
+            CollectRep.MetricsData.Builder builder = collect("multiRow", "SELECT status_name, status_value FROM status",
+                "status_name", "status_value");
+            assertEquals(CollectRep.Code.SUCCESS, builder.getCode(), builder.getMsg());
+        }
+        JdbcConnect jdbcConnect = (JdbcConnect) CommonCache.getInstance().getCache(CacheIdentifier.builder()
+                .ip(URL).username("sa").password("").build(), false).orElseThrow(IllegalStateException::new);
+        assertTrue(jdbcConnect.getCreatedCount() <= JdbcConnect.DEFAULT_MAX_CONNECTIONS);
+    }
+
+    @Test
+    void collectNotBlockedByStalledQuery() throws Exception {
+        CompletableFuture<CollectRep.MetricsData.Builder> stalled = CompletableFuture.supplyAsync(
+                () -> collect("oneRow", "SELECT SLEEP(2000) AS slept", "slept"));
+        Thread.sleep(200);
+        long startTime = System.currentTimeMillis();
+        CollectRep.MetricsData.Builder builder = collect("multiRow", "SELECT status_name, status_value FROM status",
+                "status_name", "status_value");
+        long costTime = System.currentTimeMillis() - startTime;
+        assertEquals(CollectRep.Code.SUCCESS, builder.getCode(), builder.getMsg());
+        assertTrue(costTime < 1500, "the other metrics group waits the stalled query " + costTime + "ms");
+        assertEquals(CollectRep.Code.SUCCESS, stalled.get(10, TimeUnit.SECONDS).getCode());
+    }
+
+    private CollectRep.MetricsData.Builder collect(String queryType, String sql, String... aliasFields) {
+        Metrics metrics = new Metrics();
+        metrics.setName("status");
+        metrics.setProtocol("jdbc");
+        metrics.setAliasFields(Arrays.asList(aliasFields));
+        metrics.setJdbc(JdbcProtocol.builder().url(URL).username("sa").password("")
+                .timeout("6000").queryType(queryType).sql(sql).build());
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder();
+        JdbcCommonCollect.getInstance().collect(builder, 1L, "h2", metrics);
+        return builder;
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,29 @@
 package com.usthe.collector.collect.jmx;
 
-import com.usthe.collector.collect.common.cache.CommonCache;
+import com.usthe.common.entity.job.Metrics;
+import com.usthe.common.entity.job.protocol.JmxProtocol;
+import com.usthe.common.entity.message.CollectRep;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+import javax.management.remote.MBeanServerForwarder;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -12,19 +31,139 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class JmxCollectImplTest {
 
+    private Registry registry;
+    private JMXConnectorServer connectorServer;
+    private MBeanServer mBeanServer;
+    private int port;
+    /**
+     * mbean server method -> invocation count
+     */
+    private final Map<String, Integer> invocations = new ConcurrentHashMap<>();
+
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+        registry = LocateRegistry.createRegistry(port);
+        mBeanServer = MBeanServerFactory.newMBeanServer();
+        for (int i = 1; i <= 3; i++) {
+            mBeanServer.registerMBean(new Pool("pool" + i), new ObjectName("hertzbeat:type=Pool,name=pool" + i));
+        }
+        JMXServiceURL url = new JMXServiceURL("service:jmx:rmi:///jndi/rmi://127.0.0.1:" + port + "/jmxrmi");
+        connectorServer = JMXConnectorServerFactory.newJMXConnectorServer(url, null, mBeanServer);
+        connectorServer.setMBeanServerForwarder(countingForwarder());
+        connectorServer.start();
     }
 
     @AfterEach
-    void tearDown() {
+    void tearDown() throws Exception {
+        connectorServer.stop();
+        UnicastRemoteObject.unexportObject(registry, true);
     }
 
     @Test
     void getInstance() {
+        assertSame(JmxCollectImpl.getInstance(), JmxCollectImpl.getInstance());
     }
 
     @Test
-    void collect() {
+    void collect() throws Exception {
+        Metrics metrics = new Metrics();
+        metrics.setName("pool");
+        metrics.setProtocol("jmx");
+        metrics.setAliasFields(Arrays.asList("Name", "Size"));
+        metrics.setJmx(JmxProtocol.builder().host("127.0.0.1").port(String.valueOf(port))
+                .objectName("hertzbeat:type=Pool,*").build());
+
+        CollectRep.MetricsData.Builder builder = collect(metrics);
+        assertEquals(CollectRep.Code.SUCCESS, builder.getCode(), builder.getMsg());
+        assertEquals(3, builder.getValuesCount());
+        int queryNames = count("queryNames");
+        assertEquals(3, count("getMBeanInfo"));
+        assertEquals(3, count("getAttributes"));
+
+        // steady state: only one batched getAttributes per ObjectName, no metadata query
+        for (int round = 2; round <= 4; round++) {
+            builder = collect(metrics);
+            assertEquals(3, builder.getValuesCount());
+            assertEquals(round * 3, count("getAttributes"));
+        }
+        assertEquals(queryNames, count("queryNames"));
+        assertEquals(3, count("getMBeanInfo"));
+
+        // refreshed incrementally by the registration notifications
+        mBeanServer.registerMBean(new Pool("pool4"), new ObjectName("hertzbeat:type=Pool,name=pool4"));
+        mBeanServer.unregisterMBean(new ObjectName("hertzbeat:type=Pool,name=pool1"));
+        long deadline = System.currentTimeMillis() + 10_000;
+        boolean refreshed = false;
+        while (!refreshed && System.currentTimeMillis() < deadline) {
+            builder = collect(metrics);
+            refreshed = builder.getValuesList().stream().anyMatch(row -> "pool4".equals(row.getColumns(0)))
+                    && builder.getValuesList().stream().noneMatch(row -> "pool1".equals(row.getColumns(0)));
+            if (!refreshed) {
+                Thread.sleep(100);
+            }
+        }
+        assertTrue(refreshed);
+        assertEquals(3, builder.getValuesCount());
+        assertEquals(queryNames, count("queryNames"));
+        assertEquals(4, count("getMBeanInfo"));
+    }
+
+    private CollectRep.MetricsData.Builder collect(Metrics metrics) {
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder();
+        JmxCollectImpl.getInstance().collect(builder, 1L, "jvm", metrics);
+        return builder;
+    }
+
+    private int count(String method) {
+        return invocations.getOrDefault(method, 0);
+    }
+
+    private MBeanServerForwarder countingForwarder() {
+        MBeanServer[] target = new MBeanServer[1];
+        return (MBeanServerForwarder) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{MBeanServerForwarder.class}, (proxy, method, args) -> {
+                    if ("setMBeanServer".equals(method.getName())) {
+                        target[0] = (MBeanServer) args[0];
+                        return null;
+                    }
+                    if ("getMBeanServer".equals(method.getName())) {
+                        return target[0];
+                    }
+                    invocations.merge(method.getName(), 1, Integer::sum);
+                    try {
+                        return method.invoke(target[0], args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    public interface PoolMBean {
+
+        String getName();
+
+        int getSize();
+    }
+
+    public static class Pool implements PoolMBean {
+
+        private final String name;
+
+        public Pool(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getSize() {
+            return 8;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,27 @@
 package com.usthe.collector.collect.redis;
 
-import com.usthe.collector.collect.common.cache.CommonCache;
+import com.usthe.common.entity.job.Metrics;
+import com.usthe.common.entity.job.protocol.RedisProtocol;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -11,15 +29,195 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class RedisSingleCollectImplTest {
 
+    private static final String INFO = "# Server\r\nredis_version:6.2.6\r\nredis_mode:standalone\r\ntcp_port:6379\r\n\r\n"
+            + "# Clients\r\nconnected_clients:12\r\nblocked_clients:0\r\n\r\n"
+            + "# Memory\r\nused_memory:1048576\r\nused_memory_human:1.00M\r\n\r\n"
+            + "# Replication\r\nrole:master\r\nmaster_host:fe80::1\r\n\r\n"
+            + "# Keyspace\r\ndb0:keys=10,expires=0,avg_ttl=0\r\n";
+
+    private FakeRedisServer redisServer;
+
     @BeforeEach
-    void setUp() {
+    void setUp() throws IOException {
+        redisServer = new FakeRedisServer();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        redisServer.close();
     }
 
     @Test
     void getInstance() {
+        assertSame(RedisSingleCollectImpl.getInstance(), RedisSingleCollectImpl.getInstance());
     }
 
     @Test
     void collect() {
+        Metrics metrics = buildMetrics("clients", "connected_clients", "blocked_clients", "unknown");
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder();
+
+        RedisSingleCollectImpl.getInstance().collect(builder, 1L, "redis", metrics);
+
+        assertEquals(CollectRep.Code.SUCCESS, builder.getCode(), builder.getMsg());
+        assertEquals(Arrays.asList("12", "0", CommonConstants.NULL_VALUE), builder.getValues(0).getColumnsList());
+    }
+
+    @Test
+    void collectShareInfoInRound() {
+        List<Metrics> metricsList = Arrays.asList(
+                buildMetrics("server", "redis_version", "tcp_port"),
+                buildMetrics("clients", "connected_clients"),
+                buildMetrics("memory", "used_memory", "used_memory_human"),
+                buildMetrics("replication", "role", "master_host"),
+                buildMetrics("keyspace", "db0"));
+        long monitorId = 2L;
+        long roundTime = System.currentTimeMillis();
+        List<CollectRep.MetricsData.Builder> builders = new ArrayList<>();
+        for (Metrics metrics : metricsList) {
+            CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder();
+            RedisSingleCollectImpl.getInstance().collect(builder, monitorId, "redis", metrics, roundTime);
+            builders.add(builder);
+        }
+        // one INFO for all metrics groups of the round
+        assertEquals(1, redisServer.infoCount.get());
+        builders.forEach(builder -> assertEquals(CollectRep.Code.SUCCESS, builder.getCode(), builder.getMsg()));
+        assertEquals(Arrays.asList("6.2.6", "6379"), builders.get(0).getValues(0).getColumnsList());
+        assertEquals(Arrays.asList("1048576", "1.00M"), builders.get(2).getValues(0).getColumnsList());
+        assertEquals(Arrays.asList("master", "fe80::1"), builders.get(3).getValues(0).getColumnsList());
+        assertEquals("keys=10,expires=0,avg_ttl=0", builders.get(4).getValues(0).getColumns(0));
+
+        // a new round fetches a new snapshot
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder();
+        RedisSingleCollectImpl.getInstance().collect(builder, monitorId, "redis", metricsList.get(0), roundTime + 1);
+        assertEquals(2, redisServer.infoCount.get());
+        assertEquals(CollectRep.Code.SUCCESS, builder.getCode(), builder.getMsg());
+    }
+
+    @Test
+    void parseInfo() {
+        Map<String, Map<String, String>> sections = RedisSingleCollectImpl.parseInfo(INFO);
+        assertEquals("6.2.6", sections.get("server").get("redis_version"));
+        assertEquals("12", sections.get("clients").get("connected_clients"));
+        assertEquals("fe80::1", sections.get("replication").get("master_host"));
+        assertEquals("keys=10,expires=0,avg_ttl=0", sections.get("keyspace").get("db0"));
+        assertNull(sections.get("server").get("connected_clients"));
+    }
+
+    private Metrics buildMetrics(String name, String... aliasFields) {
+        RedisProtocol redisProtocol = RedisProtocol.builder()
+                .host("127.0.0.1").port(String.valueOf(redisServer.getPort())).timeout("3000").build();
+        Metrics metrics = new Metrics();
+        metrics.setName(name);
+        metrics.setProtocol("redis");
+        metrics.setRedis(redisProtocol);
+        metrics.setAliasFields(Arrays.asList(aliasFields));
+        return metrics;
+    }
+
+    /**
+     * embedded fake RESP server, answers INFO with a fixed response
+     */
+    private static class FakeRedisServer {
+
+        private final ServerSocket serverSocket;
+        private final AtomicInteger infoCount = new AtomicInteger();
+
+        private FakeRedisServer() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptThread = new Thread(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket socket = serverSocket.accept();
+                        Thread connectionThread = new Thread(() -> serve(socket));
+                        connectionThread.setDaemon(true);
+                        connectionThread.start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+        }
+
+        private int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void serve(Socket socket) {
+            try (Socket client = socket) {
+                InputStream in = new BufferedInputStream(client.getInputStream());
+                OutputStream out = client.getOutputStream();
+                List<String> command;
+                while ((command = readCommand(in)) != null) {
+                    String name = command.isEmpty() ? "" : command.get(0).toUpperCase();
+                    String reply;
+                    switch (name) {
+                        case "INFO":
+                            infoCount.incrementAndGet();
+                            byte[] info = INFO.getBytes(StandardCharsets.UTF_8);
+                            reply = "$" + info.length + "\r\n" + INFO + "\r\n";
+                            break;
+                        case "PING":
+                            reply = "+PONG\r\n";
+                            break;
+                        case "HELLO":
+                            reply = "-ERR unknown command 'HELLO'\r\n";
+                            break;
+                        default:
+                            reply = "+OK\r\n";
+                            break;
+                    }
+                    out.write(reply.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            } catch (IOException ignored) {
+            }
+        }
+
+        private List<String> readCommand(InputStream in) throws IOException {
+            String header = readLine(in);
+            if (header == null || !header.startsWith("*")) {
+                return null;
+            }
+            int size = Integer.parseInt(header.substring(1));
+            List<String> command = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String lengthLine = readLine(in);
+                if (lengthLine == null) {
+                    return null;
+                }
+                int length = Integer.parseInt(lengthLine.substring(1));
+                byte[] bytes = new byte[length + 2];
+                int read = 0;
+                while (read < bytes.length) {
+                    int count = in.read(bytes, read, bytes.length - read);
+                    if (count < 0) {
+                        return null;
+                    }
+                    read += count;
+                }
+                command.add(new String(bytes, 0, length, StandardCharsets.UTF_8));
+            }
+            return command;
+        }
+
+        private String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    int length = line.length();
+                    return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+                }
+                line.append((char) b);
+            }
+            return null;
+        }
+
+        private void close() throws IOException {
+            serverSocket.close();
+        }
     }
-}
\ No newline at end of file
+}
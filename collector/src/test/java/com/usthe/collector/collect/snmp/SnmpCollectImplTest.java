@@ -1,9 +1,41 @@
 package com.usthe.collector.collect.snmp;
 
-import com.usthe.collector.collect.common.cache.CommonCache;
+import com.usthe.common.entity.job.Metrics;
+import com.usthe.common.entity.job.protocol.SnmpProtocol;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.snmp4j.CommandResponder;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.mp.StatusInformation;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.Counter32;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -12,19 +44,204 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class SnmpCollectImplTest {
 
+    private static final String SYS_NAME = "1.3.6.1.2.1.1.5.0";
+    private static final String SYS_SERVICES = "1.3.6.1.2.1.1.7.0";
+    private static final String IF_DESCR = "1.3.6.1.2.1.2.2.1.2";
+    private static final String IF_IN_OCTETS = "1.3.6.1.2.1.2.2.1.10";
+    private static final int IF_NUMBER = 50;
+
+    private FakeSnmpAgent agent;
+
+    /**
+     * in-process snmp agent stand-in, answers GET GETNEXT GETBULK from a sorted mib
+     */
+    private static class FakeSnmpAgent implements CommandResponder, Closeable {
+        private final TreeMap<OID, Variable> mib = new TreeMap<>();
+        private final DefaultUdpTransportMapping transport;
+        private final Snmp snmp;
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private FakeSnmpAgent() throws IOException {
+            transport = new DefaultUdpTransportMapping(new UdpAddress("127.0.0.1/0"));
+            snmp = new Snmp(transport);
+            snmp.addCommandResponder(this);
+            snmp.listen();
+        }
+
+        private int port() {
+            return transport.getListenAddress().getPort();
+        }
+
+        @Override
+        public <A extends Address> void processPdu(CommandResponderEvent<A> event) {
+            PDU request = event.getPDU();
+            if (request == null) {
+                return;
+            }
+            requests.incrementAndGet();
+            PDU response = (PDU) request.clone();
+            response.clear();
+            response.setType(PDU.RESPONSE);
+            response.setRequestID(request.getRequestID());
+            response.setErrorStatus(PDU.noError);
+            response.setErrorIndex(0);
+            List<? extends VariableBinding> bindings = request.getVariableBindings();
+            if (request.getType() == PDU.GET) {
+                for (VariableBinding binding : bindings) {
+                    Variable value = mib.get(binding.getOid());
+                    response.add(new VariableBinding(binding.getOid(), value == null ? Null.noSuchObject : value));
+                }
+            } else if (request.getType() == PDU.GETNEXT) {
+                for (VariableBinding binding : bindings) {
+                    response.add(next(binding.getOid()));
+                }
+            } else if (request.getType() == PDU.GETBULK) {
+                int nonRepeaters = Math.min(request.getNonRepeaters(), bindings.size());
+                for (int i = 0; i < nonRepeaters; i++) {
+                    response.add(next(bindings.get(i).getOid()));
+                }
+                List<OID> current = new ArrayList<>();
+                for (int i = nonRepeaters; i < bindings.size(); i++) {
+                    current.add(bindings.get(i).getOid());
+                }
+                for (int repetition = 0; repetition < request.getMaxRepetitions(); repetition++) {
+                    for (int i = 0; i < current.size(); i++) {
+                        VariableBinding next = next(current.get(i));
+                        response.add(next);
+                        current.set(i, next.getOid());
+                    }
+                }
+            }
+            try {
+                event.getMessageDispatcher().returnResponsePdu(event.getMessageProcessingModel(),
+                        event.getSecurityModel(), event.getSecurityName(), event.getSecurityLevel(), response,
+                        event.getMaxSizeResponsePDU(), event.getStateReference(), new StatusInformation());
+                event.setProcessed(true);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private VariableBinding next(OID oid) {
+            Map.Entry<OID, Variable> entry = mib.higherEntry(oid);
+            if (entry == null) {
+                return new VariableBinding(oid, Null.endOfMibView);
+            }
+            return new VariableBinding(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void close() throws IOException {
+            snmp.close();
+        }
+    }
+
     @BeforeEach
-    void setUp() {
+    void setUp() throws IOException {
+        agent = new FakeSnmpAgent();
+        agent.mib.put(new OID(SYS_NAME), new OctetString("switch-01"));
+        agent.mib.put(new OID(SYS_SERVICES), new Integer32(72));
+        for (int i = 1; i <= IF_NUMBER; i++) {
+            agent.mib.put(new OID(IF_DESCR + "." + i), new OctetString("eth" + i));
+            // the last interface has no counter
+            if (i != IF_NUMBER) {
+                agent.mib.put(new OID(IF_IN_OCTETS + "." + i), new Counter32(i * 1000L));
+            }
+        }
     }
 
     @AfterEach
-    void tearDown() {
+    void tearDown() throws IOException {
+        agent.close();
+    }
+
+    private Metrics metrics(int port, String operation, List<String> aliasFields, Map<String, String> oids) {
+        Metrics metrics = new Metrics();
+        metrics.setName("test");
+        metrics.setAliasFields(aliasFields);
+        metrics.setSnmp(SnmpProtocol.builder().host("127.0.0.1").port(String.valueOf(port))
+                .version("1").community("public").timeout("1000").operation(operation).oids(oids).build());
+        return metrics;
+    }
+
+    private Metrics scalarMetrics(int port) {
+        Map<String, String> oids = new LinkedHashMap<>();
+        oids.put("name", SYS_NAME);
+        oids.put("services", SYS_SERVICES);
+        oids.put("location", "1.3.6.1.2.1.1.6.0");
+        return metrics(port, null, Arrays.asList("name", "services", "location", "responseTime"), oids);
     }
 
     @Test
     void getInstance() {
+        assertSame(SnmpCollectImpl.getInstance(), SnmpCollectImpl.getInstance());
+        assertSame(SnmpSessionManager.getInstance(), SnmpSessionManager.getInstance());
     }
 
     @Test
     void collect() {
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder();
+        SnmpCollectImpl.getInstance().collect(builder, 1L, "test", scalarMetrics(agent.port()));
+        assertEquals(CollectRep.Code.SUCCESS, builder.getCode());
+        assertEquals(1, builder.getValuesCount());
+        CollectRep.ValueRow row = builder.getValues(0);
+        assertEquals("switch-01", row.getColumns(0));
+        assertEquals("72", row.getColumns(1));
+        assertEquals(CommonConstants.NULL_VALUE, row.getColumns(2));
+        assertEquals(1, agent.requests.get());
+    }
+
+    @Test
+    void walkTable() {
+        Map<String, String> oids = new LinkedHashMap<>();
+        oids.put("descr", IF_DESCR);
+        oids.put("inOctets", IF_IN_OCTETS);
+        Metrics metrics = metrics(agent.port(), "walk", Arrays.asList("descr", "responseTime", "inOctets"), oids);
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder();
+        SnmpCollectImpl.getInstance().collect(builder, 1L, "test", metrics);
+        assertEquals(CollectRep.Code.SUCCESS, builder.getCode());
+        assertEquals(IF_NUMBER, builder.getValuesCount());
+        assertEquals("eth1", builder.getValues(0).getColumns(0));
+        assertEquals("1000", builder.getValues(0).getColumns(2));
+        assertEquals("eth" + IF_NUMBER, builder.getValues(IF_NUMBER - 1).getColumns(0));
+        assertEquals(CommonConstants.NULL_VALUE, builder.getValues(IF_NUMBER - 1).getColumns(2));
+        // GETBULK fetch many rows per round-trip, not one request per cell
+        assertTrue(agent.requests.get() < IF_NUMBER / 5, "requests: " + agent.requests.get());
+    }
+
+    @Test
+    void concurrentRequestsShareOneSession() throws Exception {
+        int threadsBefore = Thread.activeCount();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<CollectRep.MetricsData.Builder>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(executor.submit(() -> {
+                CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder();
+                SnmpCollectImpl.getInstance().collect(builder, 1L, "test", scalarMetrics(agent.port()));
+                return builder;
+            }));
+        }
+        for (Future<CollectRep.MetricsData.Builder> future : futures) {
+            CollectRep.MetricsData.Builder builder = future.get();
+            assertEquals(CollectRep.Code.SUCCESS, builder.getCode());
+            assertEquals("switch-01", builder.getValues(0).getColumns(0));
+        }
+        executor.shutdown();
+        assertEquals(200, agent.requests.get());
+        // no transport or dispatcher thread per collection
+        assertTrue(Thread.activeCount() - threadsBefore <= 8 + 4, "threads: " + Thread.activeCount());
+    }
+
+    @Test
+    void timeout() throws Exception {
+        int closedPort;
+        try (DatagramSocket socket = new DatagramSocket()) {
+            closedPort = socket.getLocalPort();
+        }
+        Metrics metrics = scalarMetrics(closedPort);
+        metrics.getSnmp().setTimeout("200");
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder();
+        SnmpCollectImpl.getInstance().collect(builder, 1L, "test", metrics);
+        assertEquals(CollectRep.Code.UN_CONNECTABLE, builder.getCode());
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,29 @@
 package com.usthe.collector.collect.ssh;
 
-import com.usthe.collector.collect.common.cache.CommonCache;
+import com.usthe.common.entity.job.Metrics;
+import com.usthe.common.entity.job.protocol.SshProtocol;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
+import org.apache.sshd.common.channel.Channel;
+import org.apache.sshd.common.channel.ChannelListener;
+import org.apache.sshd.server.Environment;
+import org.apache.sshd.server.ExitCallback;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.command.Command;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -12,19 +31,189 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class SshCollectImplTest {
 
+    private SshServer sshServer;
+
+    private final AtomicInteger openedChannels = new AtomicInteger();
+
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
+        sshServer = SshServer.setUpDefaultServer();
+        sshServer.setHost("127.0.0.1");
+        sshServer.setPort(0);
+        sshServer.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+        sshServer.setPasswordAuthenticator((username, password, session) -> "hertzbeat".equals(password));
+        sshServer.setCommandFactory((channel, command) -> new ShellCommand(command));
+        sshServer.addChannelListener(new ChannelListener() {
+            @Override
+            public void channelOpenSuccess(Channel channel) {
+                openedChannels.incrementAndGet();
+            }
+        });
+        sshServer.start();
     }
 
     @AfterEach
-    void tearDown() {
+    void tearDown() throws Exception {
+        sshServer.stop(true);
     }
 
     @Test
     void getInstance() {
+        assertSame(SshCollectImpl.getInstance(), SshCollectImpl.getInstance());
     }
 
     @Test
     void collect() {
+        Metrics metrics = buildMetrics("basic", "echo hertzbeat; echo 3", "oneRow", "hostname", "cores");
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder();
+
+        SshCollectImpl.getInstance().collect(builder, 1L, "linux", metrics);
+
+        assertEquals(CollectRep.Code.SUCCESS, builder.getCode());
+        assertEquals(Arrays.asList("hertzbeat", "3"), builder.getValues(0).getColumnsList());
+    }
+
+    @Test
+    void collectBatch() {
+        List<Metrics> metricsList = Arrays.asList(
+                buildMetrics("basic", "echo hertzbeat; echo 3", "oneRow", "hostname", "cores"),
+                buildMetrics("disk", "printf 'filesystem used\\n/dev/sda1 10\\n/dev/sda2 20\\n'", "multiRow",
+                        "filesystem", "used", "responseTime"),
+                buildMetrics("memory", "echo total=1024; printf free=512", "netcat", "total", "free", "cached"),
+                buildMetrics("broken", "exit 1", "oneRow", "value"));
+
+        int channelsBefore = openedChannels.get();
+        List<CollectRep.MetricsData.Builder> singleBuilders = new ArrayList<>();
+        for (Metrics metrics : metricsList) {
+            CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder();
+            SshCollectImpl.getInstance().collect(builder, 1L, "linux", metrics);
+            singleBuilders.add(builder);
+        }
+        int singleChannels = openedChannels.get() - channelsBefore;
+
+        channelsBefore = openedChannels.get();
+        List<CollectRep.MetricsData.Builder> batchBuilders = new ArrayList<>();
+        metricsList.forEach(metrics -> batchBuilders.add(CollectRep.MetricsData.newBuilder()));
+        SshCollectImpl.getInstance().collect(batchBuilders, 1L, "linux", metricsList);
+        int batchChannels = openedChannels.get() - channelsBefore;
+        // one channel per metrics group, one channel for the whole batch
+        assertEquals(metricsList.size(), singleChannels);
+        assertEquals(1, batchChannels);
+        assertEquals(Arrays.asList("hertzbeat", "3"), batchBuilders.get(0).getValues(0).getColumnsList());
+        assertEquals(2, batchBuilders.get(1).getValuesCount());
+        assertEquals(Arrays.asList("/dev/sda2", "20"), batchBuilders.get(1).getValues(1).getColumnsList().subList(0, 2));
+        assertEquals(Arrays.asList("1024", "512", CommonConstants.NULL_VALUE), batchBuilders.get(2).getValues(0).getColumnsList());
+        assertEquals(CollectRep.Code.FAIL, batchBuilders.get(3).getCode());
+        // the batch output is demultiplexed to the same data as the single collection
+        for (int i = 0; i < 3; i++) {
+            assertEquals(CollectRep.Code.SUCCESS, batchBuilders.get(i).getCode());
+            assertEquals(singleBuilders.get(i).getValuesCount(), batchBuilders.get(i).getValuesCount());
+        }
+        assertEquals(singleBuilders.get(0).getValuesList(), batchBuilders.get(0).getValuesList());
+        assertEquals(singleBuilders.get(2).getValuesList(), batchBuilders.get(2).getValuesList());
+    }
+
+    @Test
+    void splitResults() {
+        String delimiter = "@@delimiter-";
+        String output = delimiter + "0\nline1\nline2\n" + delimiter + "1\nvalue" + delimiter + "3\nlast\n";
+        String[] results = SshCollectImpl.splitResults(output, delimiter, 4);
+        assertArrayEquals(new String[]{"line1\nline2\n", "value", "", "last\n"}, results);
+        assertArrayEquals(new String[]{"", ""}, SshCollectImpl.splitResults("", delimiter, 2));
+    }
+
+    @Test
+    void combineScripts() {
+        String script = SshCollectImpl.combineScripts(Collections.singletonList(
+                buildMetrics("basic", "hostname", "oneRow", "hostname")), "@@delimiter-");
+        assertEquals("echo '@@delimiter-0'\n(\nhostname\n)\n", script);
+    }
+
+    private Metrics buildMetrics(String name, String script, String parseType, String... aliasFields) {
+        SshProtocol sshProtocol = SshProtocol.builder()
+                .host("127.0.0.1").port(String.valueOf(sshServer.getPort()))
+                .username("hertzbeat").password("hertzbeat").timeout("5000")
+                .script(script).parseType(parseType).build();
+        Metrics metrics = new Metrics();
+        metrics.setName(name);
+        metrics.setProtocol("ssh");
+        metrics.setSsh(sshProtocol);
+        metrics.setAliasFields(Arrays.asList(aliasFields));
+        return metrics;
+    }
+
+    /**
+     * exec command run by the local shell
+     */
+    private static class ShellCommand implements Command {
+
+        private final String command;
+        private OutputStream out;
+        private OutputStream err;
+        private ExitCallback callback;
+        private Thread thread;
+
+        private ShellCommand(String command) {
+            this.command = command;
+        }
+
+        @Override
+        public void setInputStream(InputStream in) {
+        }
+
+        @Override
+        public void setOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void setErrorStream(OutputStream err) {
+            this.err = err;
+        }
+
+        @Override
+        public void setExitCallback(ExitCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void start(ChannelSession channel, Environment env) {
+            thread = new Thread(() -> {
+                int exitValue = 1;
+                try {
+                    Process process = new ProcessBuilder("/bin/sh", "-c", command).start();
+                    byte[] output = readAll(process.getInputStream());
+                    readAll(process.getErrorStream());
+                    exitValue = process.waitFor();
+                    out.write(output);
+                    out.flush();
+                } catch (Exception e) {
+                    try {
+                        err.write(String.valueOf(e.getMessage()).getBytes());
+                        err.flush();
+                    } catch (Exception ignored) {
+                    }
+                }
+                callback.onExit(exitValue);
+            });
+            thread.start();
+        }
+
+        @Override
+        public void destroy(ChannelSession channel) {
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        private static byte[] readAll(InputStream inputStream) throws Exception {
+            java.io.ByteArrayOutputStream buffer = new java.io.ByteArrayOutputStream();
+            byte[] bytes = new byte[1024];
+            int read;
+            while ((read = inputStream.read(bytes)) != -1) {
+                buffer.write(bytes, 0, read);
+            }
+            return buffer.toByteArray();
+        }
     }
-}
\ No newline at end of file
+}
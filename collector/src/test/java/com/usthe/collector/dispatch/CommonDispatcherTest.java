@@ -1,25 +1,239 @@
 package com.usthe.collector.dispatch;
 
-import com.usthe.collector.collect.common.cache.CommonCache;
+import com.usthe.collector.dispatch.timer.Timeout;
+import com.usthe.collector.dispatch.timer.TimerDispatcher;
+import com.usthe.collector.dispatch.timer.WheelTimerTask;
+import com.usthe.common.entity.job.Job;
+import com.usthe.common.entity.job.Metrics;
+import com.usthe.common.entity.job.protocol.HttpProtocol;
+import com.usthe.common.entity.job.protocol.SshProtocol;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.queue.CommonDataQueue;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 /**
  * Test case for {@link CommonDispatcher}
  */
 class CommonDispatcherTest {
 
+    private static final int TASK_COUNT = 20;
+
+    private CommonDispatcher commonDispatcher;
+    private TimerDispatcher timerDispatcher;
+    private CommonDataQueue commonDataQueue;
+    private WorkerPool workerPool;
+    private Timeout timeout;
+
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger released = new AtomicInteger();
+
     @BeforeEach
     void setUp() {
+        timerDispatcher = spy(new TimerDispatcher());
+        commonDataQueue = mock(CommonDataQueue.class);
+        workerPool = new WorkerPool();
+        commonDispatcher = new CommonDispatcher(new MetricsCollectorQueue(), timerDispatcher,
+                commonDataQueue, workerPool, Collections.emptyList(), new DispatchProperties());
+
+        Job job = mock(Job.class);
+        when(job.isCyclic()).thenReturn(true);
+        when(job.getMonitorId()).thenReturn(1L);
+        when(job.getApp()).thenReturn("linux");
+        when(job.getInterval()).thenReturn(600L);
+        when(job.getDispatchTime()).thenReturn(System.currentTimeMillis());
+        WheelTimerTask timerTask = mock(WheelTimerTask.class);
+        when(timerTask.getJob()).thenReturn(job);
+        timeout = mock(Timeout.class);
+        when(timeout.task()).thenReturn(timerTask);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        workerPool.destroy();
     }
 
     @Test
-    void dispatchMetricsTask() {
+    void collectTimeout() throws Exception {
+        List<HungMetricsCollect> collects = new ArrayList<>(TASK_COUNT);
+        for (int i = 0; i < TASK_COUNT; i++) {
+            HungMetricsCollect collect = new HungMetricsCollect(buildMetrics("hung" + i, (byte) 1), timeout, commonDispatcher);
+            collects.add(collect);
+            commonDispatcher.addMetricsCollect(collect);
+        }
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (released.get() < TASK_COUNT && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        // every hung worker thread is interrupted and returned to the pool
+        assertEquals(TASK_COUNT, started.get());
+        assertEquals(TASK_COUNT, released.get());
+
+        // the timeout data is dispatched and the round goes on, even the priority is not 0
+        ArgumentCaptor<CollectRep.MetricsData> captor = ArgumentCaptor.forClass(CollectRep.MetricsData.class);
+        verify(commonDataQueue, timeout(5000).times(TASK_COUNT)).sendMetricsData(captor.capture());
+        for (CollectRep.MetricsData metricsData : captor.getAllValues()) {
+            assertEquals(CollectRep.Code.TIMEOUT, metricsData.getCode());
+            assertEquals(1, metricsData.getPriority());
+        }
+        verify(timerDispatcher, times(TASK_COUNT)).cyclicJob(any(), anyLong(), any());
+        // the late completions are discarded
+        for (HungMetricsCollect collect : collects) {
+            assertFalse(collect.finish());
+        }
+    }
+
+    @Test
+    void collectFinishCancelTimeout() {
+        HungMetricsCollect collect = new HungMetricsCollect(buildMetrics("quick", (byte) 0), timeout, commonDispatcher);
+        collect.setCollectTimeout(timerDispatcher.newTimeout(t -> { }, 1, TimeUnit.HOURS));
+
+        assertTrue(collect.finish());
+        assertTrue(collect.getCollectTimeout().isCancelled());
+        assertFalse(collect.expire());
+    }
+
+    @Test
+    void getTaskTimeoutMillis() {
+        Metrics http = buildMetrics("http", (byte) 0);
+        http.setHttp(HttpProtocol.builder().timeout("6000").build());
+        assertEquals(23_000L, new MetricsCollect(http, timeout, commonDispatcher, null).getTaskTimeoutMillis());
+
+        Metrics fast = buildMetrics("fast", (byte) 0);
+        fast.setHttp(HttpProtocol.builder().timeout("100").build());
+        assertEquals(10_000L, new MetricsCollect(fast, timeout, commonDispatcher, null).getTaskTimeoutMillis());
+
+        Metrics ssh = buildMetrics("ssh", (byte) 1);
+        ssh.setSsh(SshProtocol.builder().timeout("200000").build());
+        assertEquals(240_000L, new MetricsCollect(ssh, timeout, commonDispatcher, null).getTaskTimeoutMillis());
+
+        // the batch scripts run one after another, bounded by the sum of their timeouts
+        Metrics cpu = buildMetrics("cpu", (byte) 1);
+        cpu.setSsh(SshProtocol.builder().timeout("6000").build());
+        Metrics memory = buildMetrics("memory", (byte) 1);
+        memory.setSsh(SshProtocol.builder().timeout("6000").build());
+        assertEquals(41_000L, new SshBatchMetricsCollect(Arrays.asList(cpu, memory), timeout,
+                commonDispatcher, null).getTaskTimeoutMillis());
     }
 
     @Test
-    void dispatchCollectData() {
+    void oneTimeJobFailFast() {
+        Metrics availability = buildMetrics("availability", (byte) 0);
+        Job job = oneTimeJob(0L);
+        when(job.getNextCollectMetrics(availability, false))
+                .thenReturn(Collections.singleton(buildMetrics("cpu", (byte) 1)));
+        Timeout oneTimeTimeout = jobTimeout(job);
+        doReturn(true).when(timerDispatcher).responseSyncMetricsData(eq(7L), any());
+
+        // the availability fails, the other metrics groups are not collected
+        commonDispatcher.dispatchCollectData(oneTimeTimeout, availability, CollectRep.MetricsData.newBuilder()
+                .setMetrics("availability").setCode(CollectRep.Code.UN_CONNECTABLE).build());
+        verify(timerDispatcher).responseSyncJobData(7L);
+        verify(timerDispatcher, never()).newTimeout(any(), anyLong(), any());
+        verify(commonDataQueue, never()).sendMetricsData(any());
+
+        // the data after the job finished is discarded
+        doReturn(false).when(timerDispatcher).responseSyncMetricsData(eq(7L), any());
+        commonDispatcher.dispatchCollectData(oneTimeTimeout, availability, CollectRep.MetricsData.newBuilder()
+                .setMetrics("availability").setCode(CollectRep.Code.SUCCESS).build());
+        verify(timerDispatcher, times(1)).responseSyncJobData(7L);
+        verify(timerDispatcher, never()).newTimeout(any(), anyLong(), any());
+    }
+
+    @Test
+    void oneTimeJobDeadline() throws Exception {
+        Job job = oneTimeJob(System.currentTimeMillis() + 500L);
+        when(job.getNextCollectMetrics(any(), eq(false))).thenReturn(null);
+        doReturn(true).when(timerDispatcher).responseSyncMetricsData(eq(7L), any());
+        HungMetricsCollect collect = new HungMetricsCollect(buildMetrics("hung", (byte) 1), jobTimeout(job),
+                commonDispatcher) {
+            @Override
+            public long getTaskTimeoutMillis() {
+                return 60_000L;
+            }
+        };
+        commonDispatcher.addMetricsCollect(collect);
+
+        // the task times out at the job deadline instead of its own timeout
+        ArgumentCaptor<CollectRep.MetricsData> captor = ArgumentCaptor.forClass(CollectRep.MetricsData.class);
+        verify(timerDispatcher, timeout(3000)).responseSyncMetricsData(eq(7L), captor.capture());
+        assertEquals(CollectRep.Code.TIMEOUT, captor.getValue().getCode());
+        verify(timerDispatcher, timeout(1000)).responseSyncJobData(7L);
+        long deadline = System.currentTimeMillis() + 1000;
+        while (released.get() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, released.get());
+        // one-time tasks run in their own worker pool
+        assertTrue(collect.runThreadName.startsWith("collect-temp-worker"));
+    }
+
+    private Job oneTimeJob(long deadline) {
+        Job job = mock(Job.class);
+        when(job.getId()).thenReturn(7L);
+        when(job.isCyclic()).thenReturn(false);
+        when(job.getMonitorId()).thenReturn(1L);
+        when(job.getApp()).thenReturn("linux");
+        when(job.getDeadline()).thenReturn(deadline);
+        return job;
+    }
+
+    private Timeout jobTimeout(Job job) {
+        WheelTimerTask timerTask = mock(WheelTimerTask.class);
+        when(timerTask.getJob()).thenReturn(job);
+        Timeout jobTimeout = mock(Timeout.class);
+        when(jobTimeout.task()).thenReturn(timerTask);
+        return jobTimeout;
+    }
+
+    private Metrics buildMetrics(String name, byte priority) {
+        Metrics metrics = new Metrics();
+        metrics.setName(name);
+        metrics.setPriority(priority);
+        return metrics;
+    }
+
+    /**
+     * collection task blocked until it is interrupted
+     */
+    private class HungMetricsCollect extends MetricsCollect {
+
+        private volatile String runThreadName;
+
+        private HungMetricsCollect(Metrics metrics, Timeout timeout, CollectDataDispatch collectDataDispatch) {
+            super(metrics, timeout, collectDataDispatch, Collections.emptyList());
+        }
+
+        @Override
+        protected void doCollect() {
+            runThreadName = Thread.currentThread().getName();
+            started.incrementAndGet();
+            try {
+                Thread.sleep(Long.MAX_VALUE);
+            } catch (InterruptedException e) {
+                released.incrementAndGet();
+            }
+        }
+
+        @Override
+        public long getTaskTimeoutMillis() {
+            return 1500L;
+        }
     }
-}
\ No newline at end of file
+}
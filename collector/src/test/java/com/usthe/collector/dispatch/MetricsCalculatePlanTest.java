@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.collector.dispatch;
+
+import com.usthe.collector.dispatch.unit.UnitConvert;
+import com.usthe.collector.dispatch.unit.impl.DataSizeConvert;
+import com.usthe.common.entity.job.Metrics;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
+import com.usthe.common.util.ValueRowUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link MetricsCalculatePlan}
+ */
+class MetricsCalculatePlanTest {
+
+    private final List<UnitConvert> unitConvertList = Collections.singletonList(new DataSizeConvert());
+
+    private Metrics metrics() {
+        Metrics metrics = new Metrics();
+        metrics.setName("memory");
+        metrics.setPriority((byte) 1);
+        metrics.setFields(Arrays.asList(
+                new Metrics.Field("name", CommonConstants.TYPE_STRING, true, null),
+                new Metrics.Field("used", CommonConstants.TYPE_NUMBER, false, "MB"),
+                new Metrics.Field("total", CommonConstants.TYPE_NUMBER, false, null),
+                new Metrics.Field("usage", CommonConstants.TYPE_NUMBER, false, "%"),
+                new Metrics.Field("pages", CommonConstants.TYPE_NUMBER, false, null)));
+        metrics.setAliasFields(Arrays.asList("name", "used", "total", "Database pages"));
+        metrics.setCalculates(Arrays.asList("usage=used/total*100", "pages=Database pages"));
+        metrics.setUnits(Collections.singletonList("used=B->MB"));
+        return metrics;
+    }
+
+    private CollectRep.MetricsData.Builder collectData(String[]... rows) {
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder();
+        for (String[] row : rows) {
+            builder.addValues(CollectRep.ValueRow.newBuilder().addAllColumns(Arrays.asList(row)).build());
+        }
+        return builder;
+    }
+
+    @Test
+    void calculate() {
+        CollectRep.MetricsData.Builder collectData = collectData(
+                new String[]{"host1", "3MB", "4194304", "10"},
+                new String[]{"host2", "2097152", "4194304", "12"},
+                new String[]{"host3", CommonConstants.NULL_VALUE, "4194304", CommonConstants.NULL_VALUE});
+        MetricsCalculatePlan.of(metrics(), unitConvertList).calculate(collectData);
+
+        assertEquals(5, collectData.getFieldsCount());
+        assertEquals("used", collectData.getFields(1).getName());
+        assertEquals("MB", collectData.getFields(1).getUnit());
+        assertEquals(3, collectData.getValuesCount());
+
+        CollectRep.ValueRow row = collectData.getValues(0);
+        assertEquals("host1", row.getInstance());
+        assertEquals(Arrays.asList("host1", "3", "4194304", "0.0001", "10"), ValueRowUtil.getColumns(row));
+        // the unit of the alias value must not leak into the next row
+        row = collectData.getValues(1);
+        assertEquals("host2", row.getInstance());
+        assertEquals(Arrays.asList("host2", "2", "4194304", "50", "12"), ValueRowUtil.getColumns(row));
+        // number fields are carried as typed numbers
+        assertEquals("", row.getColumns(1));
+        assertEquals(2d, row.getNumbers(1));
+        assertFalse(ValueRowUtil.hasNumber(row, 0));
+        row = collectData.getValues(2);
+        assertEquals(CommonConstants.NULL_VALUE, ValueRowUtil.getColumn(row, 1));
+        assertEquals(CommonConstants.NULL_VALUE, ValueRowUtil.getColumn(row, 4));
+        assertFalse(ValueRowUtil.hasNumber(row, 1));
+        assertNull(ValueRowUtil.getNumber(row, 1));
+        assertEquals(4194304d, ValueRowUtil.getNumber(row, 2));
+    }
+
+    @Test
+    void cachedOnMetrics() {
+        Metrics metrics = metrics();
+        MetricsCalculatePlan plan = MetricsCalculatePlan.of(metrics, unitConvertList);
+        assertSame(plan, metrics.getCalculatePlan());
+        assertSame(plan, MetricsCalculatePlan.of(metrics, unitConvertList));
+        // a new metrics definition build a new plan
+        assertNotSame(plan, MetricsCalculatePlan.of(metrics(), unitConvertList));
+    }
+
+    @Test
+    void cachedPlanSameAsCompiled() {
+        int rows = 50;
+        String[][] aliasRows = new String[rows][];
+        for (int i = 0; i < rows; i++) {
+            aliasRows[i] = new String[]{"host" + i, String.valueOf(i * 1048576L), "4194304", String.valueOf(i)};
+        }
+        Metrics metrics = metrics();
+        MetricsCalculatePlan cachedPlan = MetricsCalculatePlan.of(metrics, unitConvertList);
+        for (int i = 0; i < 3; i++) {
+            // the cached plan is reused across collections and gives the same values as a freshly compiled one
+            CollectRep.MetricsData.Builder compiled = collectData(aliasRows);
+            MetricsCalculatePlan.build(metrics, unitConvertList).calculate(compiled);
+            CollectRep.MetricsData.Builder cached = collectData(aliasRows);
+            MetricsCalculatePlan.of(metrics, unitConvertList).calculate(cached);
+            assertSame(cachedPlan, metrics.getCalculatePlan());
+            assertEquals(compiled.build(), cached.build());
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.usthe.collector.dispatch.entrance.cluster;
+
+import com.usthe.collector.dispatch.timer.TimerDispatch;
+import com.usthe.common.entity.job.Job;
+import com.usthe.common.util.GsonUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for {@link ClusterCollectorCoordinator}
+ */
+class ClusterCollectorCoordinatorTest {
+
+    private static final long TTL = 30000L;
+
+    private final AtomicLong clock = new AtomicLong(100000L);
+    private MemoryCoordinationStore store;
+    private List<ClusterCollectorCoordinator> coordinators;
+    private List<TimerDispatch> timerDispatches;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        store = new MemoryCoordinationStore(clock::get);
+        coordinators = new ArrayList<>();
+        timerDispatches = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            TimerDispatch timerDispatch = mock(TimerDispatch.class);
+            timerDispatches.add(timerDispatch);
+            coordinators.add(new ClusterCollectorCoordinator("collector-" + i, store,
+                    new ConsistentHashAssigner(100, 1.25), timerDispatch, TTL));
+            store.registerCollector("collector-" + i, TTL);
+        }
+        for (int i = 0; i < 60; i++) {
+            coordinators.get(0).submitJob(job(1000L + i, 60L));
+        }
+    }
+
+    @Test
+    void jobsSharded() throws Exception {
+        rebalanceAll();
+        Set<Long> owned = new HashSet<>();
+        for (int i = 0; i < coordinators.size(); i++) {
+            Set<Long> jobIds = coordinators.get(i).getOwnedJobs();
+            assertFalse(jobIds.isEmpty());
+            assertTrue(jobIds.size() <= 25);
+            for (Long jobId : jobIds) {
+                assertTrue(owned.add(jobId), "job " + jobId + " owned by two collectors");
+            }
+            ArgumentCaptor<Job> captor = ArgumentCaptor.forClass(Job.class);
+            verify(timerDispatches.get(i), times(jobIds.size()))
+                    .addCyclicJob(captor.capture(), anyLong(), eq(TimeUnit.SECONDS));
+            for (Job job : captor.getAllValues()) {
+                assertTrue(jobIds.contains(job.getId()));
+                assertTrue(job.isCyclic());
+                assertEquals(60L, job.getInterval());
+            }
+        }
+        assertEquals(60, owned.size());
+
+        // nothing changes without the store changes
+        rebalanceAll();
+        for (TimerDispatch timerDispatch : timerDispatches) {
+            verify(timerDispatch, never()).deleteJob(anyLong(), anyBoolean());
+        }
+    }
+
+    @Test
+    void collectorLeaveAndExpire() throws Exception {
+        rebalanceAll();
+        Set<Long> leftJobs = coordinators.get(2).getOwnedJobs();
+        Set<Long> keptJobs = coordinators.get(0).getOwnedJobs();
+        coordinators.get(2).destroy();
+        for (Long jobId : leftJobs) {
+            verify(timerDispatches.get(2)).deleteJob(jobId, true);
+        }
+        coordinators.get(0).rebalance();
+        coordinators.get(1).rebalance();
+        assertEquals(60, coordinators.get(0).getOwnedJobs().size() + coordinators.get(1).getOwnedJobs().size());
+        // the jobs of the alive collectors are not moved between them
+        assertTrue(coordinators.get(0).getOwnedJobs().containsAll(keptJobs));
+
+        // collector-1 stops renewing, its registration expires
+        clock.addAndGet(TTL + 1);
+        coordinators.get(0).rebalance();
+        assertEquals(60, coordinators.get(0).getOwnedJobs().size());
+        assertEquals(Collections.singleton("collector-0"), store.getAliveCollectors());
+    }
+
+    @Test
+    void jobUpdateAndCancel() throws Exception {
+        rebalanceAll();
+        long jobId = 1000L;
+        int owner = 0;
+        while (!coordinators.get(owner).getOwnedJobs().contains(jobId)) {
+            owner++;
+        }
+        coordinators.get(owner).submitJob(job(jobId, 120L));
+        rebalanceAll();
+        verify(timerDispatches.get(owner)).deleteJob(jobId, true);
+        ArgumentCaptor<Job> captor = ArgumentCaptor.forClass(Job.class);
+        verify(timerDispatches.get(owner), atLeastOnce()).addCyclicJob(captor.capture(), anyLong(), any());
+        assertEquals(120L, captor.getValue().getInterval());
+
+        coordinators.get(owner).cancelJob(jobId);
+        rebalanceAll();
+        verify(timerDispatches.get(owner), times(2)).deleteJob(jobId, true);
+        assertFalse(coordinators.get(owner).getOwnedJobs().contains(jobId));
+        assertEquals(59, store.getJobs().size());
+    }
+
+    @Test
+    void unchangedJobResubmitted() throws Exception {
+        rebalanceAll();
+        long jobId = 1000L;
+        String stored = store.getJob(jobId);
+        // the monitors are submitted again with a new timestamp at restart
+        Job job = job(jobId, 60L);
+        job.setTimestamp(System.currentTimeMillis());
+        coordinators.get(0).submitJob(job);
+        assertEquals(stored, store.getJob(jobId));
+        rebalanceAll();
+        for (TimerDispatch timerDispatch : timerDispatches) {
+            verify(timerDispatch, never()).deleteJob(anyLong(), anyBoolean());
+        }
+    }
+
+    private void rebalanceAll() throws Exception {
+        for (ClusterCollectorCoordinator coordinator : coordinators) {
+            coordinator.rebalance();
+        }
+    }
+
+    private static Job job(long id, long interval) {
+        Job job = GsonUtil.fromJson("{\"app\":\"website\",\"metrics\":[],\"configmap\":[]}", Job.class);
+        job.setId(id);
+        job.setMonitorId(id);
+        job.setInterval(interval);
+        job.setCyclic(true);
+        return job;
+    }
+}
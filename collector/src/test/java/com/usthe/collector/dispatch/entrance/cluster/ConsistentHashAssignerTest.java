@@ -0,0 +1,95 @@
+package com.usthe.collector.dispatch.entrance.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link ConsistentHashAssigner}
+ */
+class ConsistentHashAssignerTest {
+
+    private final ConsistentHashAssigner assigner = new ConsistentHashAssigner(100, 1.25);
+
+    @Test
+    void boundedLoad() {
+        List<Long> jobIds = jobIds(1000);
+        Map<Long, String> assignment = assigner.assign(jobIds, Arrays.asList("c1", "c2", "c3", "c4", "c5"));
+        assertEquals(1000, assignment.size());
+        Map<String, Integer> loads = loads(assignment);
+        assertEquals(5, loads.size());
+        for (int load : loads.values()) {
+            assertTrue(load <= 250, "load " + load + " exceeds the bound");
+        }
+    }
+
+    @Test
+    void deterministic() {
+        List<Long> jobIds = jobIds(500);
+        Map<Long, String> assignment = assigner.assign(jobIds, Arrays.asList("c1", "c2", "c3"));
+        List<Long> shuffledJobIds = new ArrayList<>(jobIds);
+        Collections.shuffle(shuffledJobIds);
+        assertEquals(assignment, new ConsistentHashAssigner(100, 1.25)
+                .assign(shuffledJobIds, new LinkedHashSet<>(Arrays.asList("c3", "c1", "c2"))));
+    }
+
+    @Test
+    void minimalMovement() {
+        List<Long> jobIds = jobIds(1000);
+        Map<Long, String> before = assigner.assign(jobIds, Arrays.asList("c1", "c2", "c3", "c4"));
+
+        // join: about 1/5 of the jobs move, mostly to the new collector
+        Map<Long, String> joined = assigner.assign(jobIds, Arrays.asList("c1", "c2", "c3", "c4", "c5"));
+        int moved = 0;
+        for (Long jobId : jobIds) {
+            if (!before.get(jobId).equals(joined.get(jobId))) {
+                moved++;
+            }
+        }
+        int toNewCollector = loads(joined).get("c5");
+        assertTrue(moved < 1000 * 0.3, "moved " + moved);
+        assertTrue(toNewCollector > 1000 * 0.1 && moved - toNewCollector < toNewCollector / 2,
+                "moved " + moved + " to the new " + toNewCollector);
+
+        // leave: the jobs of the left collector move, the others mostly stay
+        Map<Long, String> left = assigner.assign(jobIds, Arrays.asList("c1", "c2", "c4"));
+        int otherMoved = 0;
+        for (Long jobId : jobIds) {
+            if (!"c3".equals(before.get(jobId)) && !before.get(jobId).equals(left.get(jobId))) {
+                otherMoved++;
+            }
+        }
+        assertTrue(otherMoved < 1000 * 0.1, "moved " + otherMoved);
+        assertFalse(left.containsValue("c3"));
+    }
+
+    @Test
+    void noCollector() {
+        assertTrue(assigner.assign(jobIds(10), Collections.emptyList()).isEmpty());
+        assertTrue(assigner.assign(Collections.emptyList(), Collections.singletonList("c1")).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashAssigner(100, 0.5));
+    }
+
+    private static List<Long> jobIds(int size) {
+        List<Long> jobIds = new ArrayList<>(size);
+        long jobId = 1006744734234656L;
+        for (int i = 0; i < size; i++) {
+            jobIds.add(jobId + i * 4096L);
+        }
+        return jobIds;
+    }
+
+    private static Map<String, Integer> loads(Map<Long, String> assignment) {
+        Map<String, Integer> loads = new HashMap<>(8);
+        assignment.values().forEach(collector -> loads.merge(collector, 1, Integer::sum));
+        return loads;
+    }
+}
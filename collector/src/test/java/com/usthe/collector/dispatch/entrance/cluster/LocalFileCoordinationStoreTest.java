@@ -0,0 +1,60 @@
+package com.usthe.collector.dispatch.entrance.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link LocalFileCoordinationStore}
+ */
+class LocalFileCoordinationStoreTest {
+
+    @TempDir
+    File dataDir;
+
+    @Test
+    void collectors() throws Exception {
+        AtomicLong clock = new AtomicLong(1000L);
+        LocalFileCoordinationStore store1 = new LocalFileCoordinationStore(dataDir, clock::get);
+        LocalFileCoordinationStore store2 = new LocalFileCoordinationStore(dataDir, clock::get);
+        store1.registerCollector("c1", 100L);
+        store2.registerCollector("c2", 300L);
+        assertEquals(new HashSet<>(Arrays.asList("c1", "c2")), store1.getAliveCollectors());
+
+        // c1 does not renew its registration
+        clock.set(1200L);
+        store2.registerCollector("c2", 300L);
+        assertEquals(new HashSet<>(Arrays.asList("c2")), store1.getAliveCollectors());
+
+        store2.unregisterCollector("c2");
+        assertTrue(store1.getAliveCollectors().isEmpty());
+    }
+
+    @Test
+    void jobs() throws Exception {
+        LocalFileCoordinationStore store1 = new LocalFileCoordinationStore(dataDir);
+        LocalFileCoordinationStore store2 = new LocalFileCoordinationStore(dataDir);
+        store1.putJob(1L, "{\"interval\":60}");
+        store1.putJob(2L, "{\"interval\":120}");
+        Map<Long, String> jobs = store2.getJobs();
+        assertEquals(2, jobs.size());
+        assertEquals("{\"interval\":60}", jobs.get(1L));
+
+        // the replaced job is read again, the same length as before
+        store1.putJob(1L, "{\"interval\":90}");
+        store1.deleteJob(2L);
+        jobs = store2.getJobs();
+        assertEquals(1, jobs.size());
+        assertEquals("{\"interval\":90}", jobs.get(1L));
+
+        // no temp file left
+        assertEquals(1, new File(dataDir, "job").list().length);
+    }
+}
@@ -1,38 +1,95 @@
 package com.usthe.collector.dispatch.entrance.internal;
 
-import com.usthe.collector.collect.common.cache.CommonCache;
-import org.junit.jupiter.api.AfterEach;
-import org.junit.jupiter.api.BeforeEach;
+import com.usthe.collector.dispatch.timer.TimerDispatch;
+import com.usthe.common.entity.job.Job;
+import com.usthe.common.entity.message.CollectRep;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 /**
  * Test case for {@link CollectJobService}
  */
+@ExtendWith(MockitoExtension.class)
 class CollectJobServiceTest {
 
-    @BeforeEach
-    void setUp() {
-    }
+    @InjectMocks
+    private CollectJobService collectJobService;
 
-    @AfterEach
-    void tearDown() {
-    }
+    @Mock
+    private TimerDispatch timerDispatch;
 
     @Test
     void collectSyncJobData() {
+        CollectRep.MetricsData availability = CollectRep.MetricsData.newBuilder().setMetrics("availability")
+                .setCode(CollectRep.Code.SUCCESS).build();
+        doAnswer(invocation -> {
+            CollectResponseEventListener listener = invocation.getArgument(1);
+            listener.onMetrics(availability);
+            listener.response(Collections.singletonList(availability));
+            return null;
+        }).when(timerDispatch).addJob(any(), any());
+
+        Job job = new Job();
+        long start = System.currentTimeMillis();
+        List<CollectRep.MetricsData> metricsData = collectJobService.collectSyncJobData(job, 5, TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList(availability), metricsData);
+        // every one-time job has its own id and deadline
+        assertNotEquals(0L, job.getId());
+        assertTrue(job.getDeadline() >= start + 5000L && job.getDeadline() <= System.currentTimeMillis() + 5000L);
     }
 
     @Test
-    void addAsyncCollectJob() {
+    void collectSyncJobDataNoResponse() {
+        long start = System.currentTimeMillis();
+        List<CollectRep.MetricsData> metricsData = collectJobService.collectSyncJobData(new Job(), 10,
+                TimeUnit.MILLISECONDS);
+        assertTrue(metricsData.isEmpty());
+        assertTrue(System.currentTimeMillis() - start < 5000L);
     }
 
     @Test
-    void updateAsyncCollectJob() {
+    void collectStreamJobData() {
+        List<CollectRep.MetricsData> streamed = new ArrayList<>();
+        CollectResponseEventListener listener = new CollectResponseEventListener() {
+            @Override
+            public void onMetrics(CollectRep.MetricsData metricsData) {
+                streamed.add(metricsData);
+            }
+        };
+        Job job = new Job();
+        job.setId(100L);
+        assertEquals(100L, collectJobService.collectStreamJobData(job, 1, TimeUnit.SECONDS, listener));
+        ArgumentCaptor<CollectResponseEventListener> captor = ArgumentCaptor.forClass(CollectResponseEventListener.class);
+        verify(timerDispatch).addJob(eq(job), captor.capture());
+        captor.getValue().onMetrics(CollectRep.MetricsData.getDefaultInstance());
+        assertEquals(1, streamed.size());
+    }
+
+    @Test
+    void addAsyncCollectJob() {
+        Job job = new Job();
+        job.setCyclic(true);
+        long jobId = collectJobService.addAsyncCollectJob(job, 10, TimeUnit.SECONDS);
+        assertNotEquals(0L, jobId);
+        verify(timerDispatch).addCyclicJob(job, 10, TimeUnit.SECONDS);
     }
 
     @Test
     void cancelAsyncCollectJob() {
+        collectJobService.cancelAsyncCollectJob(100L);
+        verify(timerDispatch).deleteJob(100L, true);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package com.usthe.collector.dispatch.timer;
+
+import com.usthe.collector.dispatch.MetricsTaskDispatch;
+import com.usthe.collector.dispatch.entrance.internal.CollectResponseEventListener;
+import com.usthe.common.entity.job.Job;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.support.SpringContextHolder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for the one-time jobs of {@link TimerDispatcher}
+ */
+class TimerDispatcherTest {
+
+    private TimerDispatcher timerDispatcher;
+    private final List<CollectRep.MetricsData> streamed = new CopyOnWriteArrayList<>();
+    private final List<List<CollectRep.MetricsData>> responses = new CopyOnWriteArrayList<>();
+    private final CountDownLatch responseLatch = new CountDownLatch(1);
+    private final CollectResponseEventListener listener = new CollectResponseEventListener() {
+        @Override
+        public void onMetrics(CollectRep.MetricsData metricsData) {
+            streamed.add(metricsData);
+        }
+
+        @Override
+        public void response(List<CollectRep.MetricsData> responseMetrics) {
+            responses.add(responseMetrics);
+            responseLatch.countDown();
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        ApplicationContext applicationContext = mock(ApplicationContext.class);
+        when(applicationContext.getBean(MetricsTaskDispatch.class)).thenReturn(mock(MetricsTaskDispatch.class));
+        new SpringContextHolder().setApplicationContext(applicationContext);
+        timerDispatcher = new TimerDispatcher();
+    }
+
+    @Test
+    void streamAndResponse() {
+        timerDispatcher.addJob(job(1L, 0L), listener);
+        assertTrue(timerDispatcher.responseSyncMetricsData(1L, metricsData("availability")));
+        assertTrue(timerDispatcher.responseSyncMetricsData(1L, metricsData("cpu")));
+        assertEquals(2, streamed.size());
+        assertTrue(responses.isEmpty());
+
+        timerDispatcher.responseSyncJobData(1L);
+        assertEquals(1, responses.size());
+        assertEquals("cpu", responses.get(0).get(1).getMetrics());
+
+        // the late data and the repeated finish are discarded
+        assertFalse(timerDispatcher.responseSyncMetricsData(1L, metricsData("memory")));
+        timerDispatcher.responseSyncJobData(1L);
+        assertEquals(2, streamed.size());
+        assertEquals(1, responses.size());
+    }
+
+    @Test
+    void deadline() throws Exception {
+        long start = System.currentTimeMillis();
+        timerDispatcher.addJob(job(2L, start + 500L), listener);
+        assertTrue(timerDispatcher.responseSyncMetricsData(2L, metricsData("availability")));
+
+        // respond with the data collected so far, the wheel ticks every second
+        assertTrue(responseLatch.await(3, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - start >= 500L);
+        assertEquals(1, responses.get(0).size());
+        assertFalse(timerDispatcher.responseSyncMetricsData(2L, metricsData("cpu")));
+    }
+
+    @Test
+    void deleteJob() {
+        timerDispatcher.addJob(job(3L, 0L), listener);
+        timerDispatcher.deleteJob(3L, false);
+        assertEquals(Collections.emptyList(), responses.get(0));
+    }
+
+    private static Job job(long id, long deadline) {
+        Job job = new Job();
+        job.setId(id);
+        job.setCyclic(false);
+        job.setDeadline(deadline);
+        job.setConfigmap(new ArrayList<>());
+        job.setMetrics(new ArrayList<>());
+        return job;
+    }
+
+    private static CollectRep.MetricsData metricsData(String metrics) {
+        return CollectRep.MetricsData.newBuilder().setMetrics(metrics).setCode(CollectRep.Code.SUCCESS).build();
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.collector.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link PrometheusTextParser}
+ */
+class PrometheusTextParserTest {
+
+    private static final String EXPORTER_TEXT = "# HELP http_requests_total The total number of HTTP requests.\n"
+            + "# TYPE http_requests_total counter\n"
+            + "http_requests_total{method=\"post\",code=\"200\"} 1027 1395066363000\n"
+            + "http_requests_total{method=\"post\",code=\"400\"}    3 1395066363000\r\n"
+            + "\n"
+            + "# Escaping in label values:\n"
+            + "msdos_file_access_time_seconds{path=\"C:\\\\DIR\\\\FILE.TXT\",error=\"Cannot find file:\\n\\\"FILE.TXT\\\"\"} 1.458255915e9\n"
+            + "# Minimalistic line:\n"
+            + "metric_without_timestamp_and_labels 12.47\n"
+            + "# A weird metric from before the epoch:\n"
+            + "something_weird{problem=\"division by zero\"} +Inf -3982045\n"
+            + "# TYPE http_request_duration_seconds histogram\n"
+            + "http_request_duration_seconds_bucket{le=\"0.05\"} 24054\n"
+            + "http_request_duration_seconds_bucket{le=\"0.1\",} 33444\n"
+            + "http_request_duration_seconds_bucket{le=\"+Inf\"} 144320\n"
+            + "http_request_duration_seconds_sum 53423\n"
+            + "http_request_duration_seconds_count 144320\n"
+            + "# TYPE rpc_duration_seconds summary\n"
+            + "rpc_duration_seconds{quantile=\"0.5\"} 4773\n"
+            + "rpc_duration_seconds{quantile=\"0.99\"} NaN\n"
+            + "rpc_duration_seconds_sum 1.7560473e+07\n"
+            + "rpc_duration_seconds_count 2693";
+
+    private static class Sample {
+        private final String name;
+        private final List<String> labels;
+        private final String value;
+
+        private Sample(String name, List<String> labels, String value) {
+            this.name = name;
+            this.labels = new ArrayList<>(labels);
+            this.value = value;
+        }
+    }
+
+    private List<Sample> parse(Reader reader, String family, List<String> labels) throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        PrometheusTextParser.parse(reader, family, labels,
+                (name, labelNames, labelValues, value) -> samples.add(new Sample(name, labelValues, value)));
+        return samples;
+    }
+
+    @Test
+    void parseCounter() throws IOException {
+        List<Sample> samples = parse(new StringReader(EXPORTER_TEXT), "http_requests", Arrays.asList("code", "path"));
+        assertEquals(2, samples.size());
+        assertEquals("http_requests_total", samples.get(0).name);
+        assertEquals(Arrays.asList("200", null), samples.get(0).labels);
+        assertEquals("1027", samples.get(0).value);
+        assertEquals(Arrays.asList("400", null), samples.get(1).labels);
+        assertEquals("3", samples.get(1).value);
+    }
+
+    @Test
+    void parseHistogramAndSummary() throws IOException {
+        List<Sample> histogram = parse(new StringReader(EXPORTER_TEXT), "http_request_duration_seconds",
+                Collections.singletonList("le"));
+        assertEquals(5, histogram.size());
+        assertEquals("http_request_duration_seconds_bucket", histogram.get(1).name);
+        assertEquals("0.1", histogram.get(1).labels.get(0));
+        assertEquals("+Inf", histogram.get(2).labels.get(0));
+        assertEquals("http_request_duration_seconds_count", histogram.get(4).name);
+        assertNull(histogram.get(4).labels.get(0));
+
+        List<Sample> summary = parse(new StringReader(EXPORTER_TEXT), "rpc_duration_seconds",
+                Collections.singletonList("quantile"));
+        assertEquals(4, summary.size());
+        assertEquals("NaN", summary.get(1).value);
+        assertTrue(Double.isNaN(PrometheusTextParser.parseValue(summary.get(1).value)));
+        assertEquals(1.7560473e+07, PrometheusTextParser.parseValue(summary.get(2).value));
+    }
+
+    @Test
+    void parseEscapesAndSpecialValues() throws IOException {
+        List<Sample> samples = parse(new StringReader(EXPORTER_TEXT), "msdos_file_access_time_seconds",
+                Arrays.asList("path", "error"));
+        assertEquals(1, samples.size());
+        assertEquals("C:\\DIR\\FILE.TXT", samples.get(0).labels.get(0));
+        assertEquals("Cannot find file:\n\"FILE.TXT\"", samples.get(0).labels.get(1));
+        samples = parse(new StringReader(EXPORTER_TEXT), "something_weird", null);
+        assertEquals("+Inf", samples.get(0).value);
+        assertEquals(Double.POSITIVE_INFINITY, PrometheusTextParser.parseValue(samples.get(0).value));
+    }
+
+    @Test
+    void parsePrometheusText() {
+        Map<String, List<Map<String, Object>>> result = PrometheusTextParser.parsePrometheusText(EXPORTER_TEXT);
+        assertEquals(10, result.size());
+        assertEquals(2, result.get("http_requests_total").size());
+        assertEquals("post", result.get("http_requests_total").get(0).get("method"));
+        assertEquals(1027.0, result.get("http_requests_total").get(0).get("value"));
+        assertEquals(12.47, result.get("metric_without_timestamp_and_labels").get(0).get("value"));
+        assertTrue(PrometheusTextParser.parsePrometheusText(null).isEmpty());
+    }
+
+    @Test
+    void skipIllegalLines() throws IOException {
+        String text = "broken_metric{code=\"200 1\nbroken_metric{code=\"200\"}\nbroken_metric{code=\"500\"} 2\n";
+        List<Sample> samples = parse(new StringReader(text), "broken_metric", Collections.singletonList("code"));
+        assertEquals(1, samples.size());
+        assertEquals("500", samples.get(0).labels.get(0));
+    }
+
+    /**
+     * exporter dump generated on the fly by repeating one block, nothing is materialized
+     */
+    private static class ExporterDumpStream extends InputStream {
+        private final byte[] block;
+        private final long size;
+        private long position;
+
+        private ExporterDumpStream(byte[] block, int repeat) {
+            this.block = block;
+            this.size = (long) block.length * repeat;
+        }
+
+        @Override
+        public int read() {
+            return position < size ? block[(int) (position++ % block.length)] : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position >= size) {
+                return -1;
+            }
+            int blockOffset = (int) (position % block.length);
+            int read = Math.min(length, block.length - blockOffset);
+            System.arraycopy(block, blockOffset, buffer, offset, read);
+            position += read;
+            return read;
+        }
+    }
+
+    @Test
+    void parseLargeDumpWithBoundedMemory() throws IOException {
+        StringBuilder block = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            block.append("# HELP node_network_receive_bytes_total Network device statistic receive_bytes.\n")
+                    .append("node_network_receive_bytes_total{device=\"veth").append(i)
+                    .append("\",namespace=\"default\",pod=\"app-").append(i).append("\"} 1.234567e+09\n");
+        }
+        block.append("jvm_memory_used_bytes{area=\"heap\",id=\"G1 Eden Space\"} 1.048576E7\n")
+                .append("jvm_memory_used_bytes{area=\"nonheap\",id=\"Metaspace\"} 6.5E7\n");
+        byte[] blockBytes = block.toString().getBytes(StandardCharsets.UTF_8);
+        int repeat = 12 * 1024 * 1024 / blockBytes.length + 1;
+        ExporterDumpStream dump = new ExporterDumpStream(blockBytes, repeat);
+        assertTrue(dump.size > 10 * 1024 * 1024);
+
+        List<String> labels = Collections.singletonList("area");
+        long[] counter = new long[2];
+        PrometheusTextParser.SampleHandler handler = (name, labelNames, labelValues, value) -> {
+            counter[0]++;
+            if ("heap".equals(labelValues.get(0))) {
+                counter[1]++;
+            }
+        };
+        // warm up
+        PrometheusTextParser.parse(new InputStreamReader(new ExporterDumpStream(blockBytes, 10), StandardCharsets.UTF_8),
+                "jvm_memory_used_bytes", labels, handler);
+        counter[0] = 0;
+        counter[1] = 0;
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        PrometheusTextParser.parse(new InputStreamReader(dump, StandardCharsets.UTF_8),
+                "jvm_memory_used_bytes", labels, handler);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertEquals(2L * repeat, counter[0]);
+        assertEquals(repeat, counter[1]);
+        if (threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled()) {
+            // skipped families allocate nothing, only the projected samples do
+            assertTrue(allocated < dump.size / 10, "allocated " + allocated + " bytes for " + dump.size + " bytes dump");
+        }
+    }
+}
@@ -60,6 +60,11 @@ public class CommonProperties {
 
         private QueueType type = QueueType.Memory;
 
+        /**
+         * disk spill queue properties, used when type is Disk_Spill
+         */
+        private SpillQueueProperties spill = new SpillQueueProperties();
+
         public QueueType getType() {
             return type;
         }
@@ -67,11 +72,136 @@ public class CommonProperties {
         public void setType(QueueType type) {
             this.type = type;
         }
+
+        public SpillQueueProperties getSpill() {
+            return spill;
+        }
+
+        public void setSpill(SpillQueueProperties spill) {
+            this.spill = spill;
+        }
+    }
+
+    public static class SpillQueueProperties {
+
+        /**
+         * local dir of the spilled segment files
+         * 溢写分段文件存放的本地目录
+         */
+        private String dataDir = "./data/queue";
+
+        /**
+         * max bytes of one segment file, roll to a new segment when exceeded
+         * 单个分段文件的最大字节数 超过后滚动到新分段
+         */
+        private long segmentSize = 64 * 1024 * 1024L;
+
+        /**
+         * metrics data consumer: alerter
+         */
+        private SpillConsumerProperties alerter = new SpillConsumerProperties();
+
+        /**
+         * metrics data consumer: persistent storage
+         */
+        private SpillConsumerProperties persistentStorage = new SpillConsumerProperties();
+
+        /**
+         * metrics data consumer: real-time storage
+         */
+        private SpillConsumerProperties realTimeStorage = new SpillConsumerProperties();
+
+        public String getDataDir() {
+            return dataDir;
+        }
+
+        public void setDataDir(String dataDir) {
+            this.dataDir = dataDir;
+        }
+
+        public long getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(long segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public SpillConsumerProperties getAlerter() {
+            return alerter;
+        }
+
+        public void setAlerter(SpillConsumerProperties alerter) {
+            this.alerter = alerter;
+        }
+
+        public SpillConsumerProperties getPersistentStorage() {
+            return persistentStorage;
+        }
+
+        public void setPersistentStorage(SpillConsumerProperties persistentStorage) {
+            this.persistentStorage = persistentStorage;
+        }
+
+        public SpillConsumerProperties getRealTimeStorage() {
+            return realTimeStorage;
+        }
+
+        public void setRealTimeStorage(SpillConsumerProperties realTimeStorage) {
+            this.realTimeStorage = realTimeStorage;
+        }
+    }
+
+    public static class SpillConsumerProperties {
+
+        /**
+         * max metrics data count buffered in memory, spill to disk when exceeded
+         * 内存中缓冲的最大指标数据条数 超过后溢写到磁盘
+         */
+        private int memoryCapacity = 10000;
+
+        /**
+         * max unconsumed bytes on disk, producers are blocked when exceeded
+         * 磁盘上未消费的最大字节数 超过后阻塞生产者
+         */
+        private long maxDiskSize = 1024 * 1024 * 1024L;
+
+        /**
+         * max time in ms a producer is blocked by backpressure, data is dropped after that
+         * 生产者被背压阻塞的最长时间 单位毫秒 超时后丢弃数据
+         */
+        private long blockTimeout = 2000L;
+
+        public int getMemoryCapacity() {
+            return memoryCapacity;
+        }
+
+        public void setMemoryCapacity(int memoryCapacity) {
+            this.memoryCapacity = memoryCapacity;
+        }
+
+        public long getMaxDiskSize() {
+            return maxDiskSize;
+        }
+
+        public void setMaxDiskSize(long maxDiskSize) {
+            this.maxDiskSize = maxDiskSize;
+        }
+
+        public long getBlockTimeout() {
+            return blockTimeout;
+        }
+
+        public void setBlockTimeout(long blockTimeout) {
+            this.blockTimeout = blockTimeout;
+        }
     }
 
     public static enum QueueType {
         /** in memory **/
         Memory,
+        /** bounded memory, spill to local disk **/
+        Disk_Spill,
         /** kafka **/
         Kafka,
         /** rabbit mq **/
@@ -19,7 +19,6 @@ package com.usthe.common.entity.job;
 
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.usthe.common.entity.message.CollectRep;
 import com.usthe.common.util.GsonUtil;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -47,7 +46,7 @@ import java.util.stream.Collectors;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Slf4j
 public class Job {
 
@@ -112,6 +111,13 @@ public class Job {
     @JsonIgnore
     private transient long dispatchTime;
 
+    /**
+     * collector use - deadline timestamp of the one-time task, 0 means no deadline
+     * collector使用 - 一次性任务的截止时间戳 0表示无截止时间
+     */
+    @JsonIgnore
+    private transient long deadline;
+
     /**
      * collector use - task version, this field is not stored in etcd
      * collector使用 - 任务版本,此字段不存储于etcd
@@ -132,13 +138,6 @@ public class Job {
     @JsonIgnore
     private transient List<Set<Metrics>> priorMetrics;
 
-    /**
-     * collector use - Temporarily store one-time task indicator group response data
-     * collector使用 - 临时存储一次性任务指标组响应数据
-     */
-    @JsonIgnore
-    private transient List<CollectRep.MetricsData> responseDataTemp;
-
     /**
      * collector uses - construct to initialize metrics group execution view
      * collector使用 - 构造初始化指标组执行视图
@@ -221,13 +220,6 @@ public class Job {
         }
     }
 
-    public void addCollectMetricsData(CollectRep.MetricsData metricsData) {
-        if (responseDataTemp == null) {
-            responseDataTemp = new LinkedList<>();
-        }
-        responseDataTemp.add(metricsData);
-    }
-
     @Override
     public Job clone() {
         // deep clone   深度克隆
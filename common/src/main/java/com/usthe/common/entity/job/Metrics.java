@@ -17,6 +17,7 @@
 
 package com.usthe.common.entity.job;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.usthe.common.entity.job.protocol.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -37,7 +38,7 @@ import java.util.Objects;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Metrics {
 
     /**
@@ -133,6 +134,14 @@ public class Metrics {
      */
     private SnmpProtocol snmp;
 
+    /**
+     * collector use - pre-compiled calculation plan of fields, aliasFields, calculates and units,
+     * not serialized, rebuilt when the metrics definition changes
+     * 采集器使用-预编译的指标计算计划 不序列化 指标组定义变更时重新构建
+     */
+    @JsonIgnore
+    private transient Object calculatePlan;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -79,11 +79,12 @@ public class HttpProtocol {
      * default - 自有的数据解析规则
      * json_path 自定义jsonPath脚本 https://www.jsonpath.cn/
      * xml_path 自定义xmlPath脚本
-     * prometheus Prometheus数据规则
+     * prometheus Prometheus数据规则 exporter文本格式响应时按指标族流式解析
      */
     private String parseType;
     /**
      * 数据解析脚本 当解析方式为 jsonPath or xmlPath时存在
+     * 解析方式为prometheus且响应为exporter文本格式时 为要采集的指标族名称 为空时使用指标组名称
      */
     private String parseScript;
     /**
@@ -69,6 +69,13 @@ public class SnmpProtocol {
      * password(optional)
      */
     private String privPassphrase;
+    /**
+     * operation: get | walk, default get
+     * get: GET the scalar oids, one row
+     * walk: walk the oids as table columns by GETBULK (GETNEXT for v1), one row per table index
+     * 操作类型 get获取标量oid为一行数据 walk将oid作为表格列遍历 每个表索引一行数据
+     */
+    private String operation;
     /**
      * oid map
      */
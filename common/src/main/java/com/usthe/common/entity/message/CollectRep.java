@@ -3534,6 +3534,49 @@ public final class CollectRep {
      */
     com.google.protobuf.ByteString
     getColumnsBytes(int index);
+
+    /**
+     * <pre>
+     * number field values parsed by collector, aligned with columns
+     * 数字类型指标的数值 与columns按下标对齐
+     * </pre>
+     *
+     * <code>repeated double numbers = 3;</code>
+     * @return A list containing the numbers.
+     */
+    java.util.List<java.lang.Double> getNumbersList();
+    /**
+     * <pre>
+     * number field values parsed by collector, aligned with columns
+     * 数字类型指标的数值 与columns按下标对齐
+     * </pre>
+     *
+     * <code>repeated double numbers = 3;</code>
+     * @return The count of numbers.
+     */
+    int getNumbersCount();
+    /**
+     * <pre>
+     * number field values parsed by collector, aligned with columns
+     * 数字类型指标的数值 与columns按下标对齐
+     * </pre>
+     *
+     * <code>repeated double numbers = 3;</code>
+     * @param index The index of the element to return.
+     * @return The numbers at the given index.
+     */
+    double getNumbers(int index);
+
+    /**
+     * <pre>
+     * presence bitmap of numbers, bit i set means numbers[i] is the value of column i and columns[i] is empty
+     * numbers的存在位图 第i位为1表示第i列的值为numbers[i] 此时columns[i]为空
+     * </pre>
+     *
+     * <code>bytes number_presence = 4;</code>
+     * @return The numberPresence.
+     */
+    com.google.protobuf.ByteString getNumberPresence();
   }
   /**
    * Protobuf type {@code com.usthe.common.entity.message.ValueRow}
@@ -3550,6 +3593,8 @@ public final class CollectRep {
     private ValueRow() {
       instance_ = "";
       columns_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+      numbers_ = emptyDoubleList();
+      numberPresence_ = com.google.protobuf.ByteString.EMPTY;
     }
 
     @java.lang.Override
@@ -3598,6 +3643,32 @@ public final class CollectRep {
               columns_.add(s);
               break;
             }
+            case 25: {
+              if (!((mutable_bitField0_ & 0x00000002) != 0)) {
+                numbers_ = newDoubleList();
+                mutable_bitField0_ |= 0x00000002;
+              }
+              numbers_.addDouble(input.readDouble());
+              break;
+            }
+            case 26: {
+              int length = input.readRawVarint32();
+              int limit = input.pushLimit(length);
+              if (!((mutable_bitField0_ & 0x00000002) != 0) && input.getBytesUntilLimit() > 0) {
+                numbers_ = newDoubleList();
+                mutable_bitField0_ |= 0x00000002;
+              }
+              while (input.getBytesUntilLimit() > 0) {
+                numbers_.addDouble(input.readDouble());
+              }
+              input.popLimit(limit);
+              break;
+            }
+            case 34: {
+
+              numberPresence_ = input.readBytes();
+              break;
+            }
             default: {
               if (!parseUnknownField(
                       input, unknownFields, extensionRegistry, tag)) {
@@ -3618,6 +3689,9 @@ public final class CollectRep {
         if (((mutable_bitField0_ & 0x00000001) != 0)) {
           columns_ = columns_.getUnmodifiableView();
         }
+        if (((mutable_bitField0_ & 0x00000002) != 0)) {
+          numbers_.makeImmutable(); // C
+        }
         this.unknownFields = unknownFields.build();
         makeExtensionsImmutable();
       }
@@ -3732,6 +3806,65 @@ public final class CollectRep {
       return columns_.getByteString(index);
     }
 
+    public static final int NUMBERS_FIELD_NUMBER = 3;
+    private com.google.protobuf.Internal.DoubleList numbers_;
+    /**
+     * <pre>
+     * number field values parsed by collector, aligned with columns
+     * 数字类型指标的数值 与columns按下标对齐
+     * </pre>
+     *
+     * <code>repeated double numbers = 3;</code>
+     * @return A list containing the numbers.
+     */
+    @java.lang.Override
+    public java.util.List<java.lang.Double>
+    getNumbersList() {
+      return numbers_;
+    }
+    /**
+     * <pre>
+     * number field values parsed by collector, aligned with columns
+     * 数字类型指标的数值 与columns按下标对齐
+     * </pre>
+     *
+     * <code>repeated double numbers = 3;</code>
+     * @return The count of numbers.
+     */
+    public int getNumbersCount() {
+      return numbers_.size();
+    }
+    /**
+     * <pre>
+     * number field values parsed by collector, aligned with columns
+     * 数字类型指标的数值 与columns按下标对齐
+     * </pre>
+     *
+     * <code>repeated double numbers = 3;</code>
+     * @param index The index of the element to return.
+     * @return The numbers at the given index.
+     */
+    public double getNumbers(int index) {
+      return numbers_.getDouble(index);
+    }
+    private int numbersMemoizedSerializedSize = -1;
+
+    public static final int NUMBER_PRESENCE_FIELD_NUMBER = 4;
+    private com.google.protobuf.ByteString numberPresence_;
+    /**
+     * <pre>
+     * presence bitmap of numbers, bit i set means numbers[i] is the value of column i and columns[i] is empty
+     * numbers的存在位图 第i位为1表示第i列的值为numbers[i] 此时columns[i]为空
+     * </pre>
+     *
+     * <code>bytes number_presence = 4;</code>
+     * @return The numberPresence.
+     */
+    @java.lang.Override
+    public com.google.protobuf.ByteString getNumberPresence() {
+      return numberPresence_;
+    }
+
     private byte memoizedIsInitialized = -1;
     @java.lang.Override
     public final boolean isInitialized() {
@@ -3746,12 +3879,23 @@ public final class CollectRep {
     @java.lang.Override
     public void writeTo(com.google.protobuf.CodedOutputStream output)
             throws java.io.IOException {
+      getSerializedSize();
       if (!com.google.protobuf.GeneratedMessageV3.isStringEmpty(instance_)) {
         com.google.protobuf.GeneratedMessageV3.writeString(output, 1, instance_);
       }
       for (int i = 0; i < columns_.size(); i++) {
         com.google.protobuf.GeneratedMessageV3.writeString(output, 2, columns_.getRaw(i));
       }
+      if (getNumbersList().size() > 0) {
+        output.writeUInt32NoTag(26);
+        output.writeUInt32NoTag(numbersMemoizedSerializedSize);
+      }
+      for (int i = 0; i < numbers_.size(); i++) {
+        output.writeDoubleNoTag(numbers_.getDouble(i));
+      }
+      if (!numberPresence_.isEmpty()) {
+        output.writeBytes(4, numberPresence_);
+      }
       unknownFields.writeTo(output);
     }
 
@@ -3772,6 +3916,21 @@ public final class CollectRep {
         size += dataSize;
         size += 1 * getColumnsList().size();
       }
+      {
+        int dataSize = 0;
+        dataSize = 8 * getNumbersList().size();
+        size += dataSize;
+        if (!getNumbersList().isEmpty()) {
+          size += 1;
+          size += com.google.protobuf.CodedOutputStream
+                  .computeInt32SizeNoTag(dataSize);
+        }
+        numbersMemoizedSerializedSize = dataSize;
+      }
+      if (!numberPresence_.isEmpty()) {
+        size += com.google.protobuf.CodedOutputStream
+                .computeBytesSize(4, numberPresence_);
+      }
       size += unknownFields.getSerializedSize();
       memoizedSize = size;
       return size;
@@ -3791,6 +3950,10 @@ public final class CollectRep {
               .equals(other.getInstance())) return false;
       if (!getColumnsList()
               .equals(other.getColumnsList())) return false;
+      if (!getNumbersList()
+              .equals(other.getNumbersList())) return false;
+      if (!getNumberPresence()
+              .equals(other.getNumberPresence())) return false;
       if (!unknownFields.equals(other.unknownFields)) return false;
       return true;
     }
@@ -3808,6 +3971,12 @@ public final class CollectRep {
         hash = (37 * hash) + COLUMNS_FIELD_NUMBER;
         hash = (53 * hash) + getColumnsList().hashCode();
       }
+      if (getNumbersCount() > 0) {
+        hash = (37 * hash) + NUMBERS_FIELD_NUMBER;
+        hash = (53 * hash) + getNumbersList().hashCode();
+      }
+      hash = (37 * hash) + NUMBER_PRESENCE_FIELD_NUMBER;
+      hash = (53 * hash) + getNumberPresence().hashCode();
       hash = (29 * hash) + unknownFields.hashCode();
       memoizedHashCode = hash;
       return hash;
@@ -3945,6 +4114,10 @@ public final class CollectRep {
 
         columns_ = com.google.protobuf.LazyStringArrayList.EMPTY;
         bitField0_ = (bitField0_ & ~0x00000001);
+        numbers_ = emptyDoubleList();
+        bitField0_ = (bitField0_ & ~0x00000002);
+        numberPresence_ = com.google.protobuf.ByteString.EMPTY;
+
         return this;
       }
 
@@ -3978,6 +4151,12 @@ public final class CollectRep {
           bitField0_ = (bitField0_ & ~0x00000001);
         }
         result.columns_ = columns_;
+        if (((bitField0_ & 0x00000002) != 0)) {
+          numbers_.makeImmutable();
+          bitField0_ = (bitField0_ & ~0x00000002);
+        }
+        result.numbers_ = numbers_;
+        result.numberPresence_ = numberPresence_;
         onBuilt();
         return result;
       }
@@ -4040,6 +4219,19 @@ public final class CollectRep {
           }
           onChanged();
         }
+        if (!other.numbers_.isEmpty()) {
+          if (numbers_.isEmpty()) {
+            numbers_ = other.numbers_;
+            bitField0_ = (bitField0_ & ~0x00000002);
+          } else {
+            ensureNumbersIsMutable();
+            numbers_.addAll(other.numbers_);
+          }
+          onChanged();
+        }
+        if (other.getNumberPresence() != com.google.protobuf.ByteString.EMPTY) {
+          setNumberPresence(other.getNumberPresence());
+        }
         this.mergeUnknownFields(other.unknownFields);
         onChanged();
         return this;
@@ -4311,6 +4503,169 @@ public final class CollectRep {
         onChanged();
         return this;
       }
+
+      private com.google.protobuf.Internal.DoubleList numbers_ = emptyDoubleList();
+      private void ensureNumbersIsMutable() {
+        if (!((bitField0_ & 0x00000002) != 0)) {
+          numbers_ = mutableCopy(numbers_);
+          bitField0_ |= 0x00000002;
+        }
+      }
+      /**
+       * <pre>
+       * number field values parsed by collector, aligned with columns
+       * 数字类型指标的数值 与columns按下标对齐
+       * </pre>
+       *
+       * <code>repeated double numbers = 3;</code>
+       * @return A list containing the numbers.
+       */
+      public java.util.List<java.lang.Double>
+      getNumbersList() {
+        return ((bitField0_ & 0x00000002) != 0) ?
+                java.util.Collections.unmodifiableList(numbers_) : numbers_;
+      }
+      /**
+       * <pre>
+       * number field values parsed by collector, aligned with columns
+       * 数字类型指标的数值 与columns按下标对齐
+       * </pre>
+       *
+       * <code>repeated double numbers = 3;</code>
+       * @return The count of numbers.
+       */
+      public int getNumbersCount() {
+        return numbers_.size();
+      }
+      /**
+       * <pre>
+       * number field values parsed by collector, aligned with columns
+       * 数字类型指标的数值 与columns按下标对齐
+       * </pre>
+       *
+       * <code>repeated double numbers = 3;</code>
+       * @param index The index of the element to return.
+       * @return The numbers at the given index.
+       */
+      public double getNumbers(int index) {
+        return numbers_.getDouble(index);
+      }
+      /**
+       * <pre>
+       * number field values parsed by collector, aligned with columns
+       * 数字类型指标的数值 与columns按下标对齐
+       * </pre>
+       *
+       * <code>repeated double numbers = 3;</code>
+       * @param index The index to set the value at.
+       * @param value The numbers to set.
+       * @return This builder for chaining.
+       */
+      public Builder setNumbers(
+              int index, double value) {
+        ensureNumbersIsMutable();
+        numbers_.setDouble(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * number field values parsed by collector, aligned with columns
+       * 数字类型指标的数值 与columns按下标对齐
+       * </pre>
+       *
+       * <code>repeated double numbers = 3;</code>
+       * @param value The numbers to add.
+       * @return This builder for chaining.
+       */
+      public Builder addNumbers(double value) {
+        ensureNumbersIsMutable();
+        numbers_.addDouble(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * number field values parsed by collector, aligned with columns
+       * 数字类型指标的数值 与columns按下标对齐
+       * </pre>
+       *
+       * <code>repeated double numbers = 3;</code>
+       * @param values The numbers to add.
+       * @return This builder for chaining.
+       */
+      public Builder addAllNumbers(
+              java.lang.Iterable<? extends java.lang.Double> values) {
+        ensureNumbersIsMutable();
+        com.google.protobuf.AbstractMessageLite.Builder.addAll(
+                values, numbers_);
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * number field values parsed by collector, aligned with columns
+       * 数字类型指标的数值 与columns按下标对齐
+       * </pre>
+       *
+       * <code>repeated double numbers = 3;</code>
+       * @return This builder for chaining.
+       */
+      public Builder clearNumbers() {
+        numbers_ = emptyDoubleList();
+        bitField0_ = (bitField0_ & ~0x00000002);
+        onChanged();
+        return this;
+      }
+
+      private com.google.protobuf.ByteString numberPresence_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <pre>
+       * presence bitmap of numbers, bit i set means numbers[i] is the value of column i and columns[i] is empty
+       * numbers的存在位图 第i位为1表示第i列的值为numbers[i] 此时columns[i]为空
+       * </pre>
+       *
+       * <code>bytes number_presence = 4;</code>
+       * @return The numberPresence.
+       */
+      @java.lang.Override
+      public com.google.protobuf.ByteString getNumberPresence() {
+        return numberPresence_;
+      }
+      /**
+       * <pre>
+       * presence bitmap of numbers, bit i set means numbers[i] is the value of column i and columns[i] is empty
+       * numbers的存在位图 第i位为1表示第i列的值为numbers[i] 此时columns[i]为空
+       * </pre>
+       *
+       * <code>bytes number_presence = 4;</code>
+       * @param value The numberPresence to set.
+       * @return This builder for chaining.
+       */
+      public Builder setNumberPresence(com.google.protobuf.ByteString value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+
+        numberPresence_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * presence bitmap of numbers, bit i set means numbers[i] is the value of column i and columns[i] is empty
+       * numbers的存在位图 第i位为1表示第i列的值为numbers[i] 此时columns[i]为空
+       * </pre>
+       *
+       * <code>bytes number_presence = 4;</code>
+       * @return This builder for chaining.
+       */
+      public Builder clearNumberPresence() {
+
+        numberPresence_ = getDefaultInstance().getNumberPresence();
+        onChanged();
+        return this;
+      }
       @java.lang.Override
       public final Builder setUnknownFields(
               final com.google.protobuf.UnknownFieldSet unknownFields) {
@@ -4397,8 +4752,9 @@ public final class CollectRep {
                     "mon.entity.message.Field\0229\n\006values\030\t \003(\013" +
                     "2).com.usthe.common.entity.message.Value" +
                     "Row\"1\n\005Field\022\014\n\004name\030\001 \001(\t\022\014\n\004type\030\002 \001(\r" +
-                    "\022\014\n\004unit\030\003 \001(\t\"-\n\010ValueRow\022\020\n\010instance\030\001" +
-                    " \001(\t\022\017\n\007columns\030\002 \003(\t*b\n\004Code\022\013\n\007SUCCESS" +
+                    "\022\014\n\004unit\030\003 \001(\t\"W\n\010ValueRow\022\020\n\010instance\030\001" +
+                    " \001(\t\022\017\n\007columns\030\002 \003(\t\022\017\n\007numbers\030\003 \003(" +
+                    "\001\022\027\n\017number_presence\030\004 \001(\014*b\n\004Code\022\013\n\007SUCCESS" +
                     "\020\000\022\020\n\014UN_AVAILABLE\020\001\022\020\n\014UN_REACHABLE\020\002\022\022" +
                     "\n\016UN_CONNECTABLE\020\003\022\010\n\004FAIL\020\004\022\013\n\007TIMEOUT\020" +
                     "\005b\006proto3"
@@ -4424,7 +4780,7 @@ public final class CollectRep {
     internal_static_com_usthe_common_entity_message_ValueRow_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
             internal_static_com_usthe_common_entity_message_ValueRow_descriptor,
-            new java.lang.String[] { "Instance", "Columns", });
+            new java.lang.String[] { "Instance", "Columns", "Numbers", "NumberPresence", });
   }
 
   // @@protoc_insertion_point(outer_class_scope)
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.common.queue.impl;
+
+import com.usthe.common.config.CommonProperties;
+import com.usthe.common.entity.alerter.Alert;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.queue.CommonDataQueue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded collect data queue, each consumer has its own memory buffer and spills to local segment files when it lags.
+ * Producers are blocked (backpressure) when the consumer's disk limit is reached.
+ * 有界采集数据队列 每个消费者有独立的内存缓冲 消费滞后时溢写到本地分段文件 磁盘达到上限后阻塞生产者
+ *
+ * @author tom
+ * @date 2026/10/16 10:12
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "common.queue", name = "type", havingValue = "Disk_Spill")
+@Slf4j
+public class DiskSpillCommonDataQueue implements CommonDataQueue, DisposableBean {
+
+    private final LinkedBlockingQueue<Alert> alertDataQueue;
+    private final SpillableMetricsDataChannel metricsDataToAlertChannel;
+    private final SpillableMetricsDataChannel metricsDataToPersistentStorageChannel;
+    private final SpillableMetricsDataChannel metricsDataToMemoryStorageChannel;
+
+    public DiskSpillCommonDataQueue(CommonProperties commonProperties) throws IOException {
+        CommonProperties.SpillQueueProperties properties = null;
+        if (commonProperties != null && commonProperties.getQueue() != null) {
+            properties = commonProperties.getQueue().getSpill();
+        }
+        if (properties == null) {
+            properties = new CommonProperties.SpillQueueProperties();
+        }
+        Path dataDir = Paths.get(properties.getDataDir());
+        alertDataQueue = new LinkedBlockingQueue<>();
+        metricsDataToAlertChannel = new SpillableMetricsDataChannel("alerter",
+                dataDir.resolve("alerter"), properties.getSegmentSize(), properties.getAlerter());
+        metricsDataToPersistentStorageChannel = new SpillableMetricsDataChannel("persistent-storage",
+                dataDir.resolve("persistent-storage"), properties.getSegmentSize(), properties.getPersistentStorage());
+        metricsDataToMemoryStorageChannel = new SpillableMetricsDataChannel("real-time-storage",
+                dataDir.resolve("real-time-storage"), properties.getSegmentSize(), properties.getRealTimeStorage());
+        log.info("[spill queue] init disk spill common data queue in {}.", dataDir.toAbsolutePath());
+    }
+
+    @Override
+    public void addAlertData(Alert alert) {
+        alertDataQueue.offer(alert);
+    }
+
+    @Override
+    public Alert pollAlertData() throws InterruptedException {
+        return alertDataQueue.poll(2, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public CollectRep.MetricsData pollAlertMetricsData() throws InterruptedException {
+        return metricsDataToAlertChannel.poll(2, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public CollectRep.MetricsData pollPersistentStorageMetricsData() throws InterruptedException {
+        return metricsDataToPersistentStorageChannel.poll(2, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public CollectRep.MetricsData pollRealTimeStorageMetricsData() throws InterruptedException {
+        return metricsDataToMemoryStorageChannel.poll(2, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Send metrics data to every consumer channel.
+     * This may block the caller (the collector dispatcher) up to the configured block timeout
+     * when a consumer's memory and disk are both full.
+     * 发送指标数据到每个消费者通道 当消费者内存与磁盘都满时 会阻塞调用方(采集调度器)直到配置的阻塞超时
+     * @param metricsData metrics data
+     */
+    @Override
+    public void sendMetricsData(CollectRep.MetricsData metricsData) {
+        metricsDataToAlertChannel.offer(metricsData);
+        metricsDataToPersistentStorageChannel.offer(metricsData);
+        metricsDataToMemoryStorageChannel.offer(metricsData);
+    }
+
+    @Override
+    public void destroy() {
+        alertDataQueue.clear();
+        metricsDataToAlertChannel.close();
+        metricsDataToPersistentStorageChannel.close();
+        metricsDataToMemoryStorageChannel.close();
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.common.queue.impl;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.usthe.common.config.CommonProperties;
+import com.usthe.common.entity.message.CollectRep;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded metrics data channel of one consumer.
+ * Data is buffered in memory first, when the memory buffer is full it is appended to local segment files,
+ * when the unconsumed bytes on disk reach the limit the producer is blocked.
+ * 单个消费者的有界指标数据通道
+ * 数据优先缓冲在内存 内存满后追加写入本地分段文件 磁盘未消费字节数达到上限后阻塞生产者
+ * <p>
+ * Record format in segment: [int length][protobuf bytes].
+ * Data in memory is always older than data on disk, so the consume order is FIFO.
+ * The unconsumed data in memory is written to the head segment when closed, so it survives restarts.
+ *
+ * @author tom
+ * @date 2026/10/16 10:12
+ */
+@Slf4j
+final class SpillableMetricsDataChannel implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int RECORD_HEADER_SIZE = 4;
+    private static final int DROP_LOG_INTERVAL = 1000;
+
+    private final String name;
+    private final Path dir;
+    private final long segmentSize;
+    private final int memoryCapacity;
+    private final long maxDiskSize;
+    private final long blockTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private final ArrayDeque<CollectRep.MetricsData> memoryBuffer;
+    /**
+     * segment sequences on disk in ascending order, head is the read segment, tail is the write segment
+     */
+    private final ArrayDeque<Long> segmentSequences = new ArrayDeque<>();
+    private final ByteBuffer headerBuffer = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+    private FileChannel writeChannel;
+    private long writeSequence;
+    private long writeSize;
+    private FileChannel readChannel;
+    private long readPosition;
+    /**
+     * unconsumed bytes on disk
+     */
+    private long diskSize;
+    private long spilledCount;
+    private long droppedCount;
+
+    SpillableMetricsDataChannel(String name, Path dir, long segmentSize,
+                                CommonProperties.SpillConsumerProperties properties) throws IOException {
+        this.name = name;
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.memoryCapacity = Math.max(1, properties.getMemoryCapacity());
+        this.maxDiskSize = Math.max(0, properties.getMaxDiskSize());
+        this.blockTimeout = Math.max(0, properties.getBlockTimeout());
+        this.memoryBuffer = new ArrayDeque<>(Math.min(memoryCapacity, 1024));
+        Files.createDirectories(dir);
+        recoverSegments();
+    }
+
+    /**
+     * offer metrics data, block when memory and disk are both full
+     * @param metricsData metrics data
+     * @return false if dropped after block timeout
+     */
+    boolean offer(CollectRep.MetricsData metricsData) {
+        byte[] bytes = null;
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(blockTimeout);
+            while (true) {
+                if (diskSize == 0 && memoryBuffer.size() < memoryCapacity) {
+                    memoryBuffer.offer(metricsData);
+                    notEmpty.signal();
+                    return true;
+                }
+                if (bytes == null) {
+                    bytes = metricsData.toByteArray();
+                }
+                if (diskSize + RECORD_HEADER_SIZE + bytes.length <= maxDiskSize) {
+                    append(bytes);
+                    spilledCount++;
+                    notEmpty.signal();
+                    return true;
+                }
+                if (nanos <= 0) {
+                    onDropped();
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            onDropped();
+            return false;
+        } catch (IOException e) {
+            log.error("[spill queue]-{} write segment error: {}.", name, e.getMessage(), e);
+            onDropped();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * poll metrics data
+     * @param timeout timeout
+     * @param unit timeout unit
+     * @return metrics data, null when timeout
+     * @throws InterruptedException when interrupted
+     */
+    CollectRep.MetricsData poll(long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            long nanos = unit.toNanos(timeout);
+            while (true) {
+                CollectRep.MetricsData metricsData = memoryBuffer.poll();
+                if (metricsData == null && diskSize > 0) {
+                    try {
+                        metricsData = readFromDisk();
+                    } catch (IOException e) {
+                        log.error("[spill queue]-{} read segment error, skip it: {}.", name, e.getMessage(), e);
+                        skipReadSegment();
+                    }
+                    if (metricsData == null) {
+                        continue;
+                    }
+                }
+                if (metricsData != null) {
+                    notFull.signal();
+                    return metricsData;
+                }
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int memorySize() {
+        lock.lock();
+        try {
+            return memoryBuffer.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long diskSize() {
+        lock.lock();
+        try {
+            return diskSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long spilledCount() {
+        lock.lock();
+        try {
+            return spilledCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long droppedCount() {
+        lock.lock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Persist the unconsumed data in memory and the unread part of the head segment
+     * into a new head segment, so that the next start reads from position 0 in the same order.
+     * 将内存中未消费数据与头部分段未读部分写入新的头部分段 下次启动从0位置按原顺序读取
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closeChannel(writeChannel);
+            writeChannel = null;
+            if (memoryBuffer.isEmpty() && readPosition == 0) {
+                closeChannel(readChannel);
+                readChannel = null;
+                return;
+            }
+            long headSequence = segmentSequences.isEmpty() ? writeSequence + 1 : segmentSequences.peekFirst() - 1;
+            Path headPath = segmentPath(headSequence);
+            try (FileChannel channel = FileChannel.open(headPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (CollectRep.MetricsData metricsData : memoryBuffer) {
+                    writeRecord(channel, metricsData.toByteArray());
+                }
+                if (readChannel != null) {
+                    long position = readPosition;
+                    long size = readChannel.size();
+                    while (position < size) {
+                        position += readChannel.transferTo(position, size - position, channel);
+                    }
+                    closeChannel(readChannel);
+                    readChannel = null;
+                    Files.deleteIfExists(segmentPath(segmentSequences.pollFirst()));
+                }
+                channel.force(true);
+            }
+            memoryBuffer.clear();
+            readPosition = 0;
+            log.info("[spill queue]-{} persist unconsumed data to {}.", name, headPath);
+        } catch (IOException e) {
+            log.error("[spill queue]-{} persist unconsumed data error: {}.", name, e.getMessage(), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recoverSegments() throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                try {
+                    sequences.add(Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("[spill queue]-{} ignore unknown file {}.", name, path);
+                }
+            }
+        }
+        Collections.sort(sequences);
+        for (Long sequence : sequences) {
+            segmentSequences.addLast(sequence);
+            diskSize += Files.size(segmentPath(sequence));
+        }
+        if (!sequences.isEmpty()) {
+            writeSequence = sequences.get(sequences.size() - 1);
+        }
+        if (diskSize == 0) {
+            resetSegments();
+        } else {
+            log.info("[spill queue]-{} recover {} segments, {} bytes unconsumed.", name, sequences.size(), diskSize);
+        }
+    }
+
+    private void append(byte[] bytes) throws IOException {
+        if (writeChannel == null || writeSize >= segmentSize) {
+            rollSegment();
+        }
+        int recordSize = writeRecord(writeChannel, bytes);
+        writeSize += recordSize;
+        diskSize += recordSize;
+    }
+
+    private void rollSegment() throws IOException {
+        closeChannel(writeChannel);
+        writeSequence = segmentSequences.isEmpty() ? writeSequence + 1 : segmentSequences.peekLast() + 1;
+        writeChannel = FileChannel.open(segmentPath(writeSequence), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSequences.addLast(writeSequence);
+        writeSize = 0;
+    }
+
+    private CollectRep.MetricsData readFromDisk() throws IOException {
+        if (readChannel == null) {
+            readChannel = FileChannel.open(segmentPath(segmentSequences.peekFirst()), StandardOpenOption.READ);
+        }
+        long size = readChannel.size();
+        if (readPosition + RECORD_HEADER_SIZE <= size) {
+            headerBuffer.clear();
+            readFully(readChannel, headerBuffer, readPosition);
+            int length = headerBuffer.getInt(0);
+            if (length >= 0 && readPosition + RECORD_HEADER_SIZE + length <= size) {
+                ByteBuffer body = ByteBuffer.allocate(length);
+                readFully(readChannel, body, readPosition + RECORD_HEADER_SIZE);
+                readPosition += RECORD_HEADER_SIZE + length;
+                diskSize -= RECORD_HEADER_SIZE + length;
+                if (diskSize <= 0) {
+                    resetSegments();
+                }
+                try {
+                    return CollectRep.MetricsData.parseFrom(body.array());
+                } catch (InvalidProtocolBufferException e) {
+                    log.error("[spill queue]-{} parse record error, skip it: {}.", name, e.getMessage());
+                    return null;
+                }
+            }
+        }
+        // reach the end or a broken tail of the read segment, the write segment is never read to the end here
+        // because diskSize would be 0 and the segments are reset
+        skipReadSegment();
+        return null;
+    }
+
+    private void skipReadSegment() {
+        Long sequence = segmentSequences.pollFirst();
+        if (sequence == null) {
+            resetSegments();
+            return;
+        }
+        try {
+            long size = readChannel == null ? Files.size(segmentPath(sequence)) : readChannel.size();
+            diskSize -= size - readPosition;
+            closeChannel(readChannel);
+            if (writeChannel != null && sequence == writeSequence) {
+                closeChannel(writeChannel);
+                writeChannel = null;
+            }
+            Files.deleteIfExists(segmentPath(sequence));
+        } catch (IOException e) {
+            log.error("[spill queue]-{} delete segment {} error: {}.", name, sequence, e.getMessage());
+        }
+        readChannel = null;
+        readPosition = 0;
+        if (diskSize <= 0 || segmentSequences.isEmpty()) {
+            resetSegments();
+        }
+    }
+
+    private void resetSegments() {
+        closeChannel(readChannel);
+        closeChannel(writeChannel);
+        readChannel = null;
+        writeChannel = null;
+        for (Long sequence : segmentSequences) {
+            try {
+                Files.deleteIfExists(segmentPath(sequence));
+            } catch (IOException e) {
+                log.error("[spill queue]-{} delete segment {} error: {}.", name, sequence, e.getMessage());
+            }
+        }
+        segmentSequences.clear();
+        readPosition = 0;
+        writeSize = 0;
+        diskSize = 0;
+    }
+
+    private void onDropped() {
+        droppedCount++;
+        if (droppedCount % DROP_LOG_INTERVAL == 1) {
+            log.warn("[spill queue]-{} is full, consumer is too slow, {} metrics data dropped.", name, droppedCount);
+        }
+    }
+
+    private Path segmentPath(long sequence) {
+        return dir.resolve(sequence + SEGMENT_SUFFIX);
+    }
+
+    private static int writeRecord(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + bytes.length);
+        buffer.putInt(bytes.length).put(bytes).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return RECORD_HEADER_SIZE + bytes.length;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("unexpected end of segment");
+            }
+        }
+    }
+
+    private static void closeChannel(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.common.util;
+
+import com.google.protobuf.ByteString;
+import com.usthe.common.entity.message.CollectRep;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read and write the typed number columns of {@link CollectRep.ValueRow}
+ * 读写采集数据行的数值类型列
+ * <p>
+ * A number column is carried in numbers[i] with the presence bit i set and an empty columns[i].
+ * Rows without typed numbers (old data) are read from the string columns.
+ * 数值列存放在numbers[i]中 同时存在位图第i位置1 columns[i]为空
+ * 没有数值列的数据行(旧数据)从字符串列读取
+ *
+ * @author tom
+ * @date 2026/10/16 17:10
+ */
+public final class ValueRowUtil {
+
+    private ValueRowUtil() {}
+
+    /**
+     * whether column index is carried as a typed number
+     * @param valueRow value row
+     * @param index column index
+     * @return true when typed number exists
+     */
+    public static boolean hasNumber(CollectRep.ValueRowOrBuilder valueRow, int index) {
+        if (index < 0 || index >= valueRow.getNumbersCount()) {
+            return false;
+        }
+        ByteString presence = valueRow.getNumberPresence();
+        int byteIndex = index >>> 3;
+        return byteIndex < presence.size() && (presence.byteAt(byteIndex) & (1 << (index & 7))) != 0;
+    }
+
+    /**
+     * get the number value of column, parse the string column when no typed number
+     * @param valueRow value row
+     * @param index column index
+     * @return number value, null when no value
+     */
+    public static Double getNumber(CollectRep.ValueRowOrBuilder valueRow, int index) {
+        if (hasNumber(valueRow, index)) {
+            return valueRow.getNumbers(index);
+        }
+        if (index < 0 || index >= valueRow.getColumnsCount()) {
+            return null;
+        }
+        return CommonUtil.parseStrDouble(valueRow.getColumns(index));
+    }
+
+    /**
+     * get the string value of column, typed number is formatted
+     * @param valueRow value row
+     * @param index column index
+     * @return string value
+     */
+    public static String getColumn(CollectRep.ValueRowOrBuilder valueRow, int index) {
+        if (hasNumber(valueRow, index)) {
+            return formatNumber(valueRow.getNumbers(index));
+        }
+        return valueRow.getColumns(index);
+    }
+
+    /**
+     * get the string values of all columns, typed numbers are formatted
+     * @param valueRow value row
+     * @return string values
+     */
+    public static List<String> getColumns(CollectRep.ValueRowOrBuilder valueRow) {
+        if (valueRow.getNumbersCount() == 0) {
+            return valueRow.getColumnsList();
+        }
+        List<String> columns = new ArrayList<>(valueRow.getColumnsCount());
+        for (int index = 0; index < valueRow.getColumnsCount(); index++) {
+            columns.add(getColumn(valueRow, index));
+        }
+        return columns;
+    }
+
+    /**
+     * set the typed numbers of a row whose columns are added
+     * @param builder value row builder
+     * @param numbers number values aligned with columns
+     * @param presence presence bitmap, bit i set means numbers[i] is valid
+     * @param columns column count
+     */
+    public static void setNumbers(CollectRep.ValueRow.Builder builder, double[] numbers, byte[] presence, int columns) {
+        int lastIndex = -1;
+        for (int index = columns - 1; index >= 0; index--) {
+            if ((presence[index >>> 3] & (1 << (index & 7))) != 0) {
+                lastIndex = index;
+                break;
+            }
+        }
+        if (lastIndex < 0) {
+            return;
+        }
+        for (int index = 0; index <= lastIndex; index++) {
+            builder.addNumbers(numbers[index]);
+        }
+        builder.setNumberPresence(ByteString.copyFrom(presence, 0, (lastIndex >>> 3) + 1));
+    }
+
+    /**
+     * format number value same as {@link CommonUtil#parseDoubleStr(String, String)}
+     * @param value number
+     * @return plain string
+     */
+    public static String formatNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return String.valueOf(value);
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+}
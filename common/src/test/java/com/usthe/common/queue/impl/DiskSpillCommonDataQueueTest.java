@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.common.queue.impl;
+
+import com.usthe.common.config.CommonProperties;
+import com.usthe.common.entity.message.CollectRep;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link DiskSpillCommonDataQueue}
+ */
+class DiskSpillCommonDataQueueTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CommonProperties.SpillConsumerProperties consumerProperties(int memoryCapacity, long maxDiskSize,
+                                                                       long blockTimeout) {
+        CommonProperties.SpillConsumerProperties properties = new CommonProperties.SpillConsumerProperties();
+        properties.setMemoryCapacity(memoryCapacity);
+        properties.setMaxDiskSize(maxDiskSize);
+        properties.setBlockTimeout(blockTimeout);
+        return properties;
+    }
+
+    private CollectRep.MetricsData metricsData(long id) {
+        return CollectRep.MetricsData.newBuilder()
+                .setId(id).setApp("linux").setMetrics("cpu").setTime(System.currentTimeMillis())
+                .addFields(CollectRep.Field.newBuilder().setName("usage").setType(0).build())
+                .addValues(CollectRep.ValueRow.newBuilder().addColumns(String.valueOf(id)).build())
+                .build();
+    }
+
+    @Test
+    void spillAndPollInOrder() throws Exception {
+        SpillableMetricsDataChannel channel = new SpillableMetricsDataChannel("test", tempDir.resolve("order"),
+                1024, consumerProperties(10, 1024 * 1024, 0));
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(channel.offer(metricsData(i)));
+        }
+        assertEquals(10, channel.memorySize());
+        assertEquals(990, channel.spilledCount());
+        for (int i = 0; i < 1000; i++) {
+            CollectRep.MetricsData data = channel.poll(1, TimeUnit.SECONDS);
+            assertNotNull(data);
+            assertEquals(i, data.getId());
+        }
+        assertNull(channel.poll(10, TimeUnit.MILLISECONDS));
+        assertEquals(0, channel.diskSize());
+        channel.close();
+    }
+
+    @Test
+    void surviveRestart() throws Exception {
+        Path dir = tempDir.resolve("restart");
+        SpillableMetricsDataChannel channel = new SpillableMetricsDataChannel("test", dir,
+                256, consumerProperties(10, 1024 * 1024, 0));
+        for (int i = 0; i < 100; i++) {
+            channel.offer(metricsData(i));
+        }
+        // consume part of the memory buffer and part of the head segment
+        for (int i = 0; i < 25; i++) {
+            assertEquals(i, channel.poll(1, TimeUnit.SECONDS).getId());
+        }
+        channel.close();
+
+        SpillableMetricsDataChannel recovered = new SpillableMetricsDataChannel("test", dir,
+                256, consumerProperties(10, 1024 * 1024, 0));
+        assertTrue(recovered.diskSize() > 0);
+        for (int i = 25; i < 100; i++) {
+            CollectRep.MetricsData data = recovered.poll(1, TimeUnit.SECONDS);
+            assertNotNull(data);
+            assertEquals(i, data.getId());
+        }
+        assertNull(recovered.poll(10, TimeUnit.MILLISECONDS));
+        recovered.close();
+    }
+
+    @Test
+    void dropWhenDiskFull() throws Exception {
+        SpillableMetricsDataChannel channel = new SpillableMetricsDataChannel("test", tempDir.resolve("drop"),
+                1024, consumerProperties(5, 0, 0));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(channel.offer(metricsData(i)));
+        }
+        assertFalse(channel.offer(metricsData(5)));
+        assertEquals(1, channel.droppedCount());
+        channel.close();
+    }
+
+    @Test
+    void slowConsumerLoad() throws Exception {
+        int producers = 8;
+        int perProducer = 5000;
+        int memoryCapacity = 100;
+        long maxDiskSize = 64 * 1024;
+        SpillableMetricsDataChannel channel = new SpillableMetricsDataChannel("load", tempDir.resolve("load"),
+                16 * 1024, consumerProperties(memoryCapacity, maxDiskSize, 50));
+        ExecutorService executor = Executors.newFixedThreadPool(producers + 1);
+        CountDownLatch producerLatch = new CountDownLatch(producers);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicLong maxDiskSeen = new AtomicLong();
+        AtomicInteger maxMemorySeen = new AtomicInteger();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            executor.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    if (channel.offer(metricsData(base + i))) {
+                        accepted.incrementAndGet();
+                    }
+                }
+                producerLatch.countDown();
+            });
+        }
+        AtomicInteger consumed = new AtomicInteger();
+        executor.execute(() -> {
+            try {
+                while (true) {
+                    CollectRep.MetricsData data = channel.poll(500, TimeUnit.MILLISECONDS);
+                    maxDiskSeen.accumulateAndGet(channel.diskSize(), Math::max);
+                    maxMemorySeen.accumulateAndGet(channel.memorySize(), Math::max);
+                    if (data == null) {
+                        if (producerLatch.getCount() == 0) {
+                            return;
+                        }
+                        continue;
+                    }
+                    consumed.incrementAndGet();
+                    // slow consumer
+                    if (consumed.get() % 100 == 0) {
+                        Thread.sleep(1);
+                    }
+                }
+            } catch (InterruptedException ignored) {
+            }
+        });
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+        assertEquals(accepted.get(), consumed.get());
+        assertEquals(producers * perProducer, accepted.get() + channel.droppedCount());
+        assertTrue(maxMemorySeen.get() <= memoryCapacity);
+        assertTrue(maxDiskSeen.get() <= maxDiskSize);
+        channel.close();
+    }
+
+    @Test
+    void sendMetricsData() throws Exception {
+        CommonProperties commonProperties = new CommonProperties();
+        CommonProperties.DataQueueProperties queueProperties = new CommonProperties.DataQueueProperties();
+        queueProperties.getSpill().setDataDir(tempDir.resolve("queue").toString());
+        commonProperties.setQueue(queueProperties);
+        DiskSpillCommonDataQueue queue = new DiskSpillCommonDataQueue(commonProperties);
+        queue.sendMetricsData(metricsData(1));
+        assertEquals(1, queue.pollAlertMetricsData().getId());
+        assertEquals(1, queue.pollPersistentStorageMetricsData().getId());
+        assertEquals(1, queue.pollRealTimeStorageMetricsData().getId());
+        queue.destroy();
+    }
+}
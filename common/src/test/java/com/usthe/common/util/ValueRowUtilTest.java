@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.common.util;
+
+import com.usthe.common.entity.message.CollectRep;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link ValueRowUtil}
+ */
+class ValueRowUtilTest {
+
+    private static final int COLUMNS = 12;
+
+    private CollectRep.ValueRow stringRow(int seed) {
+        CollectRep.ValueRow.Builder builder = CollectRep.ValueRow.newBuilder().setInstance("disk" + seed);
+        builder.addColumns("disk" + seed);
+        for (int index = 1; index < COLUMNS; index++) {
+            builder.addColumns(CommonUtil.parseDoubleStr(String.valueOf(seed * 1048576.1234 + index * 1000), null));
+        }
+        return builder.build();
+    }
+
+    private CollectRep.ValueRow typedRow(int seed) {
+        CollectRep.ValueRow.Builder builder = CollectRep.ValueRow.newBuilder().setInstance("disk" + seed);
+        double[] numbers = new double[COLUMNS];
+        byte[] presence = new byte[(COLUMNS + 7) >>> 3];
+        builder.addColumns("disk" + seed);
+        for (int index = 1; index < COLUMNS; index++) {
+            String value = CommonUtil.parseDoubleStr(String.valueOf(seed * 1048576.1234 + index * 1000), null);
+            numbers[index] = Double.parseDouble(value);
+            presence[index >>> 3] |= 1 << (index & 7);
+            builder.addColumns("");
+        }
+        ValueRowUtil.setNumbers(builder, numbers, presence, COLUMNS);
+        return builder.build();
+    }
+
+    @Test
+    void readTypedAndStringRow() throws Exception {
+        CollectRep.ValueRow stringRow = stringRow(3);
+        CollectRep.ValueRow typedRow = CollectRep.ValueRow.parseFrom(typedRow(3).toByteArray());
+        assertFalse(ValueRowUtil.hasNumber(stringRow, 1));
+        assertFalse(ValueRowUtil.hasNumber(typedRow, 0));
+        assertTrue(ValueRowUtil.hasNumber(typedRow, COLUMNS - 1));
+        assertEquals(ValueRowUtil.getColumns(stringRow), ValueRowUtil.getColumns(typedRow));
+        for (int index = 1; index < COLUMNS; index++) {
+            assertEquals(ValueRowUtil.getNumber(stringRow, index), ValueRowUtil.getNumber(typedRow, index));
+        }
+        assertNull(ValueRowUtil.getNumber(typedRow, COLUMNS));
+    }
+
+    @Test
+    void trailingStringColumnsHaveNoNumber() {
+        CollectRep.ValueRow.Builder builder = CollectRep.ValueRow.newBuilder();
+        double[] numbers = new double[3];
+        byte[] presence = new byte[1];
+        numbers[0] = 1.5;
+        presence[0] = 1;
+        builder.addAllColumns(Arrays.asList("", "a", CommonConstants.NULL_VALUE));
+        ValueRowUtil.setNumbers(builder, numbers, presence, 3);
+        CollectRep.ValueRow row = builder.build();
+        assertEquals(1, row.getNumbersCount());
+        assertEquals(Arrays.asList("1.5", "a", CommonConstants.NULL_VALUE), ValueRowUtil.getColumns(row));
+        assertNull(ValueRowUtil.getNumber(row, 2));
+
+        builder.clear().addColumns("a");
+        ValueRowUtil.setNumbers(builder, new double[1], new byte[1], 1);
+        assertEquals(0, builder.build().getNumbersCount());
+        assertTrue(builder.build().getNumberPresence().isEmpty());
+    }
+
+    @Test
+    void typedRowsSmallerWithSameValues() throws Exception {
+        int rows = 1000;
+        CollectRep.MetricsData.Builder stringData = CollectRep.MetricsData.newBuilder();
+        CollectRep.MetricsData.Builder typedData = CollectRep.MetricsData.newBuilder();
+        for (int i = 0; i < rows; i++) {
+            stringData.addValues(stringRow(i));
+            typedData.addValues(typedRow(i));
+        }
+        byte[] stringBytes = stringData.build().toByteArray();
+        byte[] typedBytes = typedData.build().toByteArray();
+        assertTrue(typedBytes.length < stringBytes.length);
+        // the typed numbers are fixed width, the size does not grow with the digits of the value
+        assertEquals(typedRow(1).getSerializedSize(), typedRow(9).getSerializedSize());
+        assertEquals(readAll(stringBytes), readAll(typedBytes));
+    }
+
+    private double readAll(byte[] bytes) throws Exception {
+        CollectRep.MetricsData metricsData = CollectRep.MetricsData.parseFrom(bytes);
+        double sum = 0;
+        for (CollectRep.ValueRow valueRow : metricsData.getValuesList()) {
+            for (int index = 1; index < valueRow.getColumnsCount(); index++) {
+                Double value = ValueRowUtil.getNumber(valueRow, index);
+                sum += value == null ? 0 : value;
+            }
+        }
+        return sum;
+    }
+}
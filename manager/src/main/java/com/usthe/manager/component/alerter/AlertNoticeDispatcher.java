@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.manager.component.alerter;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.usthe.common.entity.alerter.Alert;
+import com.usthe.common.entity.manager.NoticeReceiver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Asynchronous alarm notification pipeline, decoupled from the alarm storage
+ * 异步告警通知管道 与告警入库解耦
+ * <p>
+ * alert -> bounded match queue -> receiver lane (at most {@link #RECEIVER_CONCURRENCY} in flight, bounded pending)
+ * -> notify channel executor of the receiver type -> retry with jittered backoff when failed
+ * 告警 -> 有界匹配队列 -> 接收人通道(限制并发与排队数) -> 对应通知类型的执行线程池 -> 失败时随机退避重试
+ *
+ * @author tom
+ * @date 2026/10/16 20:10
+ */
+@Slf4j
+public class AlertNoticeDispatcher {
+
+    /**
+     * Capacity of the alarms waiting for the receiver matching
+     * 等待匹配接收人的告警队列容量
+     */
+    private static final int MATCH_QUEUE_CAPACITY = 1024;
+    /**
+     * Max notifications of one receiver sent at the same time
+     * 单个接收人同时发送的最大通知数
+     */
+    static final int RECEIVER_CONCURRENCY = 2;
+    /**
+     * Max notifications of one receiver waiting to be sent, the newer is discarded when full
+     * 单个接收人等待发送的最大通知数 满时丢弃新通知
+     */
+    private static final int RECEIVER_QUEUE_CAPACITY = 256;
+    /**
+     * Threads of a notify channel, eg: webhook, email
+     * 每种通知渠道的线程数
+     */
+    private static final int CHANNEL_THREADS = 4;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_RETRY_BASE_DELAY = 1000L;
+
+    private final Map<Byte, AlertNotifyHandler> alertNotifyHandlerMap;
+    private final Function<Alert, List<NoticeReceiver>> receiverMatcher;
+    private final long retryBaseDelay;
+    private final ThreadPoolExecutor matchExecutor;
+    private final Map<Byte, ExecutorService> channelExecutors = new ConcurrentHashMap<>(8);
+    private final Map<String, ReceiverLane> receiverLanes = new ConcurrentHashMap<>(16);
+    private final ScheduledExecutorService retryScheduler;
+
+    public AlertNoticeDispatcher(Map<Byte, AlertNotifyHandler> alertNotifyHandlerMap,
+                                 Function<Alert, List<NoticeReceiver>> receiverMatcher) {
+        this(alertNotifyHandlerMap, receiverMatcher, DEFAULT_RETRY_BASE_DELAY);
+    }
+
+    AlertNoticeDispatcher(Map<Byte, AlertNotifyHandler> alertNotifyHandlerMap,
+                          Function<Alert, List<NoticeReceiver>> receiverMatcher,
+                          long retryBaseDelay) {
+        this.alertNotifyHandlerMap = alertNotifyHandlerMap;
+        this.receiverMatcher = receiverMatcher;
+        this.retryBaseDelay = retryBaseDelay;
+        this.matchExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MATCH_QUEUE_CAPACITY),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("alert-notify-match-%d").build(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryScheduler = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("alert-notify-retry-%d").build());
+    }
+
+    /**
+     * Put the alarm into the notification pipeline, never blocks the caller
+     * 将告警放入通知管道 不阻塞调用方
+     *
+     * @param alert alarm
+     * @return false when the pipeline is full and the alarm notification is discarded    管道已满丢弃时返回false
+     */
+    public boolean dispatch(Alert alert) {
+        try {
+            matchExecutor.execute(() -> {
+                try {
+                    List<NoticeReceiver> receivers = receiverMatcher.apply(alert);
+                    if (receivers == null) {
+                        return;
+                    }
+                    for (NoticeReceiver receiver : receivers) {
+                        dispatch(receiver, alert);
+                    }
+                } catch (Exception e) {
+                    log.error("[AlertNotice] match receivers error: {}.", e.getMessage(), e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("[AlertNotice] the notify queue is full, discard the notification of alert: {}.", alert.getContent());
+            return false;
+        }
+    }
+
+    private void dispatch(NoticeReceiver receiver, Alert alert) {
+        if (receiver == null || receiver.getType() == null || !alertNotifyHandlerMap.containsKey(receiver.getType())) {
+            log.warn("[AlertNotice] no notify handler of receiver: {}.", receiver);
+            return;
+        }
+        String laneKey = receiver.getType() + ":" + receiver.getId();
+        ReceiverLane lane = receiverLanes.computeIfAbsent(laneKey, key -> new ReceiverLane());
+        lane.offer(new NoticeTask(lane, receiver, alert));
+    }
+
+    private ExecutorService getChannelExecutor(byte type) {
+        return channelExecutors.computeIfAbsent(type, key -> {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(CHANNEL_THREADS, CHANNEL_THREADS,
+                    60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("alert-notify-" + key + "-%d").build());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        });
+    }
+
+    /**
+     * retry delay: exponential backoff with jitter (0.5x - 1.5x), avoid retry storms to the same receiver
+     * 重试延迟: 指数退避并加随机抖动 避免对同一接收人集中重试
+     */
+    private long retryDelay(int attempt) {
+        long backoff = retryBaseDelay << (attempt - 1);
+        return (long) (backoff * (0.5 + ThreadLocalRandom.current().nextDouble()));
+    }
+
+    public void shutdown() {
+        matchExecutor.shutdownNow();
+        retryScheduler.shutdownNow();
+        channelExecutors.values().forEach(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * notifications of one receiver, limit its concurrency so a slow receiver only holds its own permits
+     * 单个接收人的通知 限制其并发 慢接收人只占用自己的并发额度
+     */
+    private class ReceiverLane {
+        private final Queue<NoticeTask> pending = new ArrayDeque<>();
+        private int running;
+
+        private void offer(NoticeTask task) {
+            synchronized (this) {
+                if (running >= RECEIVER_CONCURRENCY) {
+                    if (pending.size() >= RECEIVER_QUEUE_CAPACITY) {
+                        log.warn("[AlertNotice] too many notifications waiting for receiver {}, discard alert: {}.",
+                                task.receiver.getName(), task.alert.getContent());
+                    } else {
+                        pending.offer(task);
+                    }
+                    return;
+                }
+                running++;
+            }
+            task.submit();
+        }
+
+        private void complete() {
+            NoticeTask next;
+            synchronized (this) {
+                next = pending.poll();
+                if (next == null) {
+                    running--;
+                    return;
+                }
+            }
+            next.submit();
+        }
+    }
+
+    private class NoticeTask implements Runnable {
+        private final ReceiverLane lane;
+        private final NoticeReceiver receiver;
+        private final Alert alert;
+        private int attempts;
+
+        private NoticeTask(ReceiverLane lane, NoticeReceiver receiver, Alert alert) {
+            this.lane = lane;
+            this.receiver = receiver;
+            this.alert = alert;
+        }
+
+        private void submit() {
+            try {
+                getChannelExecutor(receiver.getType()).execute(this);
+            } catch (RejectedExecutionException e) {
+                log.warn("[AlertNotice] notify channel is shutdown, discard alert: {}.", alert.getContent());
+            }
+        }
+
+        @Override
+        public void run() {
+            attempts++;
+            try {
+                alertNotifyHandlerMap.get(receiver.getType()).send(receiver, alert);
+            } catch (Exception e) {
+                if (attempts < MAX_ATTEMPTS) {
+                    long delay = retryDelay(attempts);
+                    log.warn("[AlertNotice] send to receiver {} failed: {}, retry after {}ms.",
+                            receiver.getName(), e.getMessage(), delay);
+                    try {
+                        // the lane permit is kept during the retry backoff
+                        // 重试退避期间保持接收人并发额度
+                        retryScheduler.schedule(this::submit, delay, TimeUnit.MILLISECONDS);
+                        return;
+                    } catch (RejectedExecutionException rejected) {
+                        log.warn("[AlertNotice] retry scheduler is shutdown.");
+                    }
+                } else {
+                    log.warn("[AlertNotice] send to receiver {} failed after {} attempts: {}.",
+                            receiver.getName(), attempts, e.getMessage());
+                }
+            }
+            lane.complete();
+        }
+    }
+}
@@ -23,8 +23,8 @@ import com.usthe.alert.AlerterWorkerPool;
 import com.usthe.common.entity.alerter.Alert;
 import com.usthe.common.entity.manager.NoticeReceiver;
 import com.usthe.manager.service.NoticeConfigService;
-import com.usthe.manager.support.exception.AlertNoticeException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Component;
 
@@ -33,14 +33,16 @@ import java.util.Map;
 
 /**
  * Alarm information storage and distribution
+ * The notification is sent by the {@link AlertNoticeDispatcher} asynchronously, slow receivers never delay the storage
  * 告警信息入库分发
+ * 通知由AlertNoticeDispatcher异步发送 慢接收人不会拖慢告警入库
  *
  * @author tom
  * @date 2021/12/10 12:58
  */
 @Component
 @Slf4j
-public class DispatcherAlarm implements InitializingBean {
+public class DispatcherAlarm implements InitializingBean, DisposableBean {
     private static final int DISPATCH_THREADS = 3;
 
     private final AlerterWorkerPool workerPool;
@@ -48,6 +50,7 @@ public class DispatcherAlarm implements InitializingBean {
     private final NoticeConfigService noticeConfigService;
     private final AlertStoreHandler alertStoreHandler;
     private final Map<Byte, AlertNotifyHandler> alertNotifyHandlerMap;
+    private final AlertNoticeDispatcher alertNoticeDispatcher;
 
     public DispatcherAlarm(AlerterWorkerPool workerPool,
                            CommonDataQueue dataQueue,
@@ -60,6 +63,7 @@ public class DispatcherAlarm implements InitializingBean {
         this.alertStoreHandler = alertStoreHandler;
         alertNotifyHandlerMap = Maps.newHashMapWithExpectedSize(alertNotifyHandlerList.size());
         alertNotifyHandlerList.forEach(r -> alertNotifyHandlerMap.put(r.type(), r));
+        alertNoticeDispatcher = new AlertNoticeDispatcher(alertNotifyHandlerMap, this::matchReceiverByNoticeRules);
     }
 
     @Override
@@ -71,8 +75,13 @@ public class DispatcherAlarm implements InitializingBean {
         }
     }
 
+    @Override
+    public void destroy() throws Exception {
+        alertNoticeDispatcher.shutdown();
+    }
+
     /**
-     * send alert msg to receiver
+     * send alert msg to receiver synchronously
      * @param receiver receiver
      * @param alert alert msg
      * @return send success or failed
@@ -91,7 +100,6 @@ public class DispatcherAlarm implements InitializingBean {
     }
 
     private List<NoticeReceiver> matchReceiverByNoticeRules(Alert alert) {
-        // todo use cache 使用缓存
         return noticeConfigService.getReceiverFilterRule(alert);
     }
 
@@ -105,24 +113,13 @@ public class DispatcherAlarm implements InitializingBean {
                     if (alert != null) {
                         // Determining alarm type storage   判断告警类型入库
                         alertStoreHandler.store(alert);
-                        // 通知分发
-                        sendNotify(alert);
+                        // Notification distribution, asynchronous   通知异步分发
+                        alertNoticeDispatcher.dispatch(alert);
                     }
                 } catch (InterruptedException e) {
                     log.error(e.getMessage());
-                }
-            }
-        }
-
-        private void sendNotify(Alert alert) {
-            // Forward configured email WeChat webhook
-            List<NoticeReceiver> receivers = matchReceiverByNoticeRules(alert);
-            // todo Send notification here temporarily single thread     发送通知这里暂时单线程
-            for (NoticeReceiver receiver : receivers) {
-                try {
-                    sendNoticeMsg(receiver, alert);
-                } catch (AlertNoticeException e) {
-                    log.warn("DispatchTask sendNoticeMsg error, message: {}", e.getMessage());
+                } catch (Exception e) {
+                    log.error("DispatchTask store alert error: {}", e.getMessage(), e);
                 }
             }
         }
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.manager.component.alerter;
+
+import com.usthe.common.entity.alerter.Alert;
+import com.usthe.common.entity.manager.NoticeReceiver;
+import com.usthe.common.entity.manager.NoticeRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable in-memory index of the enabled notice rules, the receivers are joined in advance
+ * 已启用通知策略的不可变内存索引 预先关联接收人
+ * <p>
+ * A rule matches the alert when it forwards all, or the alert priority is in its priorities (if any)
+ * and one of its tags (if any) equals the tag of the alert.
+ * The rules are indexed by tag name and value, the rules without tags by priority,
+ * so the matching only visits the rules that may match.
+ * 策略匹配告警: 转发所有, 或告警级别在其级别列表中(若有)且其任一标签与告警标签相等(若有)
+ * 有标签的策略按标签名和值索引 无标签的策略按告警级别索引 匹配只访问可能匹配的策略
+ *
+ * @author tom
+ * @date 2026/10/16 20:40
+ */
+public final class NoticeRuleIndex {
+
+    public static final NoticeRuleIndex EMPTY = new NoticeRuleIndex(Collections.emptyList(), Collections.emptyList());
+
+    /**
+     * receivers of the filter all rules
+     * 转发所有的策略的接收人
+     */
+    private final List<NoticeReceiver> forwardAllReceivers;
+    /**
+     * rules without tags, without priorities
+     * 无标签且无级别过滤的策略
+     */
+    private final List<IndexedRule> anyPriorityRules;
+    /**
+     * rules without tags: priority -> rules
+     * 无标签的策略: 告警级别 -> 策略
+     */
+    private final Map<Byte, List<IndexedRule>> priorityRules;
+    /**
+     * rules with tags: tag name -> tag value -> rules
+     * 有标签的策略: 标签名 -> 标签值 -> 策略
+     */
+    private final Map<String, Map<String, List<IndexedRule>>> tagRules;
+
+    public NoticeRuleIndex(List<NoticeRule> rules, List<NoticeReceiver> receivers) {
+        Map<Long, NoticeReceiver> receiverMap = new HashMap<>(receivers.size());
+        for (NoticeReceiver receiver : receivers) {
+            receiverMap.put(receiver.getId(), receiver);
+        }
+        Map<Long, NoticeReceiver> forwardAll = new LinkedHashMap<>(8);
+        List<IndexedRule> anyPriority = new ArrayList<>();
+        Map<Byte, List<IndexedRule>> byPriority = new HashMap<>(8);
+        Map<String, Map<String, List<IndexedRule>>> byTag = new HashMap<>(16);
+        for (NoticeRule rule : rules) {
+            NoticeReceiver receiver = receiverMap.get(rule.getReceiverId());
+            if (!rule.isEnable() || receiver == null) {
+                continue;
+            }
+            if (rule.isFilterAll()) {
+                forwardAll.put(receiver.getId(), receiver);
+                continue;
+            }
+            Set<Byte> priorities = null;
+            if (rule.getPriorities() != null && !rule.getPriorities().isEmpty()) {
+                priorities = new HashSet<>(rule.getPriorities());
+                priorities.remove(null);
+            }
+            IndexedRule indexedRule = new IndexedRule(receiver, priorities);
+            if (rule.getTags() != null && !rule.getTags().isEmpty()) {
+                for (NoticeRule.TagItem tagItem : rule.getTags()) {
+                    byTag.computeIfAbsent(tagItem.getName(), key -> new HashMap<>(8))
+                            .computeIfAbsent(tagItem.getValue(), key -> new ArrayList<>()).add(indexedRule);
+                }
+            } else if (priorities == null) {
+                anyPriority.add(indexedRule);
+            } else {
+                for (Byte priority : priorities) {
+                    byPriority.computeIfAbsent(priority, key -> new ArrayList<>()).add(indexedRule);
+                }
+            }
+        }
+        this.forwardAllReceivers = new ArrayList<>(forwardAll.values());
+        this.anyPriorityRules = anyPriority;
+        this.priorityRules = byPriority;
+        this.tagRules = byTag;
+    }
+
+    /**
+     * Match the receivers of the alert, no database access
+     * 匹配告警的通知接收人 不访问数据库
+     *
+     * @param alert alert
+     * @return receivers, no duplicate     去重的接收人
+     */
+    public List<NoticeReceiver> match(Alert alert) {
+        Map<Long, NoticeReceiver> receivers = new LinkedHashMap<>(8);
+        for (NoticeReceiver receiver : forwardAllReceivers) {
+            receivers.put(receiver.getId(), receiver);
+        }
+        addReceivers(receivers, anyPriorityRules, null);
+        addReceivers(receivers, priorityRules.get(alert.getPriority()), null);
+        Map<String, String> tags = alert.getTags();
+        if (tags != null && !tagRules.isEmpty()) {
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                Map<String, List<IndexedRule>> valueRules = tagRules.get(tag.getKey());
+                if (valueRules != null) {
+                    addReceivers(receivers, valueRules.get(tag.getValue()), alert.getPriority());
+                }
+            }
+        }
+        return new ArrayList<>(receivers.values());
+    }
+
+    private void addReceivers(Map<Long, NoticeReceiver> receivers, List<IndexedRule> rules, Byte priority) {
+        if (rules == null) {
+            return;
+        }
+        for (IndexedRule rule : rules) {
+            if (priority == null || rule.priorities == null || rule.priorities.contains(priority)) {
+                receivers.putIfAbsent(rule.receiver.getId(), rule.receiver);
+            }
+        }
+    }
+
+    private static final class IndexedRule {
+        private final NoticeReceiver receiver;
+        /**
+         * null means no priority filter
+         */
+        private final Set<Byte> priorities;
+
+        private IndexedRule(NoticeReceiver receiver, Set<Byte> priorities) {
+            this.receiver = receiver;
+            this.priorities = priorities;
+        }
+    }
+}
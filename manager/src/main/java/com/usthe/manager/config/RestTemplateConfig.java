@@ -17,23 +17,39 @@
 
 package com.usthe.manager.config;
 
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.ClientHttpRequestFactory;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 /**
  * restTemplate config
- * todo 连接池
+ * The requests share a keep-alive connection pool, avoid a tcp(tls) handshake per alarm notification
+ * 请求共用keep-alive连接池 避免每条告警通知都进行tcp(tls)握手
  * @author tom
  * @date 2021/12/18 08:46
  */
 @Configuration
 public class RestTemplateConfig {
 
+    private static final int MAX_TOTAL_CONNECTIONS = 200;
+    /**
+     * max connections of one host, eg: dingTalk webhook
+     * 单个主机的最大连接数
+     */
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 20;
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 5000;
+    private static final long IDLE_CONNECTION_TIMEOUT = 30L;
+
     @Bean
     public RestTemplate restTemplate(ClientHttpRequestFactory factory){
         RestTemplate restTemplate = new RestTemplate(factory);
@@ -42,11 +58,25 @@ public class RestTemplateConfig {
     }
 
     @Bean
-    public ClientHttpRequestFactory simpleClientHttpRequestFactory(){
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(5000);
-        factory.setReadTimeout(5000);
-        return factory;
+    public ClientHttpRequestFactory clientHttpRequestFactory(){
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_TOTAL_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        // the server may close the idle keep-alive connection, check before reuse
+        // 服务端可能关闭空闲的keep-alive连接 复用前检查
+        connectionManager.setValidateAfterInactivity(2000);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT)
+                .setSocketTimeout(READ_TIMEOUT)
+                .setConnectionRequestTimeout(CONNECT_TIMEOUT)
+                .build();
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_CONNECTION_TIMEOUT, TimeUnit.SECONDS)
+                .build();
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
     }
 
 }
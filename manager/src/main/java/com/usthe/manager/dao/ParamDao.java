@@ -20,6 +20,7 @@ package com.usthe.manager.dao;
 import com.usthe.common.entity.manager.Param;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -40,6 +41,15 @@ public interface ParamDao extends JpaRepository<Param, Long> {
      */
     List<Param> findParamsByMonitorId(long monitorId);
 
+    /**
+     * Query the parameters associated with the monitoring ID list in one query
+     * 一次查询与监控ID列表关联的参数列表
+     *
+     * @param monitorIds Monitoring ID List     监控ID列表
+     * @return list of parameter values     参数值列表
+     */
+    List<Param> findParamsByMonitorIdIn(Collection<Long> monitorIds);
+
     /**
      * Remove the parameter list associated with the monitoring ID based on it
      * 根据监控ID删除与之关联的参数列表
@@ -22,7 +22,6 @@ import com.usthe.common.entity.job.Configmap;
 import com.usthe.common.entity.job.Job;
 import com.usthe.common.entity.manager.Monitor;
 import com.usthe.common.entity.manager.Param;
-import com.usthe.common.util.GsonUtil;
 import com.usthe.manager.dao.MonitorDao;
 import com.usthe.manager.dao.ParamDao;
 import lombok.extern.slf4j.Slf4j;
@@ -31,12 +30,19 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * 采集任务调度初始化
+ * 批量查询监控参数 并行构造下发采集任务 各任务首次采集时间在其采集间隔内均匀错开 避免时间轮同一刻集中触发
  * @author tom
  * @date 2022/2/1 16:24
  */
@@ -45,6 +51,11 @@ import java.util.stream.Collectors;
 @Slf4j
 public class JobSchedulerInit implements CommandLineRunner {
 
+    /**
+     * 单次批量查询参数的监控数量上限 控制in列表长度
+     */
+    private static final int PARAM_QUERY_BATCH_SIZE = 1000;
+
     @Autowired
     private AppService appService;
 
@@ -59,28 +70,130 @@ public class JobSchedulerInit implements CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
+        long startTime = System.currentTimeMillis();
         // 读取数据库已经添加应用 构造采集任务
         List<Monitor> monitors = monitorDao.findMonitorsByStatusNotInAndAndJobIdNotNull(Arrays.asList((byte)0, (byte)4));
-        for (Monitor monitor : monitors) {
+        if (monitors == null || monitors.isEmpty()) {
+            return;
+        }
+        Map<Long, List<Configmap>> monitorConfigmaps = queryMonitorConfigmaps(monitors);
+        long[] initialDelays = staggerInitialDelays(monitors);
+        AtomicInteger scheduledNum = new AtomicInteger();
+        long maxInitialDelay = 0L;
+        for (long initialDelay : initialDelays) {
+            maxInitialDelay = Math.max(maxInitialDelay, initialDelay);
+        }
+        // 并行构造下发采集任务
+        IntStream.range(0, monitors.size()).parallel().forEach(index -> {
+            Monitor monitor = monitors.get(index);
             try {
-                // 构造采集任务Job实体
-                Job appDefine = appService.getAppDefine(monitor.getApp());
-                // todo 这里暂时是深拷贝处理
-                appDefine = GsonUtil.fromJson(GsonUtil.toJson(appDefine), Job.class);
-                appDefine.setId(monitor.getJobId());
-                appDefine.setMonitorId(monitor.getId());
-                appDefine.setInterval(monitor.getIntervals());
-                appDefine.setCyclic(true);
-                appDefine.setTimestamp(System.currentTimeMillis());
-                List<Param> params = paramDao.findParamsByMonitorId(monitor.getId());
-                List<Configmap> configmaps = params.stream().map(param ->
-                        new Configmap(param.getField(), param.getValue(), param.getType())).collect(Collectors.toList());
-                appDefine.setConfigmap(configmaps);
+                Job appDefine = constructJob(monitor, monitorConfigmaps);
                 // 下发采集任务
-                collectJobService.addAsyncCollectJob(appDefine);
+                collectJobService.addAsyncCollectJob(appDefine, initialDelays[index], TimeUnit.MILLISECONDS);
+                scheduledNum.incrementAndGet();
             } catch (Exception e) {
                 log.error("init monitor job: {} error,continue next monitor", monitor, e);
             }
+        });
+        long initCost = System.currentTimeMillis() - startTime;
+        log.info("[job init] {}/{} monitor jobs scheduled in {}ms, first collection of all jobs within {}ms after startup.",
+                scheduledNum.get(), monitors.size(), initCost, initCost + maxInitialDelay);
+    }
+
+    /**
+     * Reschedule the collect jobs of the app with its reloaded define
+     * 监控定义热加载后 以新定义重新调度该类型监控的采集任务
+     * @param app monitor type
+     */
+    public void rescheduleAppJobs(String app) {
+        List<Monitor> monitors = monitorDao.findMonitorsByAppEquals(app);
+        if (monitors == null) {
+            return;
+        }
+        monitors = monitors.stream()
+                .filter(monitor -> monitor.getJobId() != null && monitor.getStatus() != 0 && monitor.getStatus() != 4)
+                .collect(Collectors.toList());
+        if (monitors.isEmpty()) {
+            return;
+        }
+        Map<Long, List<Configmap>> monitorConfigmaps = queryMonitorConfigmaps(monitors);
+        long[] initialDelays = staggerInitialDelays(monitors);
+        int rescheduledNum = 0;
+        for (int index = 0; index < monitors.size(); index++) {
+            Monitor monitor = monitors.get(index);
+            try {
+                Job appDefine = constructJob(monitor, monitorConfigmaps);
+                collectJobService.cancelAsyncCollectJob(monitor.getJobId());
+                collectJobService.addAsyncCollectJob(appDefine, initialDelays[index], TimeUnit.MILLISECONDS);
+                rescheduledNum++;
+            } catch (Exception e) {
+                log.error("reschedule monitor job: {} error,continue next monitor", monitor, e);
+            }
+        }
+        log.info("[job reschedule] {}/{} monitor jobs of app {} rescheduled.", rescheduledNum, monitors.size(), app);
+    }
+
+    /**
+     * 构造采集任务Job实体 getAppDefine返回模板的拷贝
+     * @param monitor monitor
+     * @param monitorConfigmaps monitorId - configmap list
+     * @return job
+     */
+    private Job constructJob(Monitor monitor, Map<Long, List<Configmap>> monitorConfigmaps) {
+        Job appDefine = appService.getAppDefine(monitor.getApp());
+        appDefine.setId(monitor.getJobId());
+        appDefine.setMonitorId(monitor.getId());
+        appDefine.setInterval(monitor.getIntervals());
+        appDefine.setCyclic(true);
+        appDefine.setTimestamp(System.currentTimeMillis());
+        appDefine.setConfigmap(monitorConfigmaps.getOrDefault(monitor.getId(), new ArrayList<>()));
+        return appDefine;
+    }
+
+    /**
+     * 分批批量查询监控参数 按监控ID分组
+     * @param monitors monitors
+     * @return monitorId - configmap list
+     */
+    private Map<Long, List<Configmap>> queryMonitorConfigmaps(List<Monitor> monitors) {
+        Map<Long, List<Configmap>> monitorConfigmaps = new HashMap<>(monitors.size());
+        for (int from = 0; from < monitors.size(); from += PARAM_QUERY_BATCH_SIZE) {
+            List<Long> monitorIds = monitors.subList(from, Math.min(from + PARAM_QUERY_BATCH_SIZE, monitors.size()))
+                    .stream().map(Monitor::getId).collect(Collectors.toList());
+            List<Param> params = paramDao.findParamsByMonitorIdIn(monitorIds);
+            if (params == null) {
+                continue;
+            }
+            for (Param param : params) {
+                monitorConfigmaps.computeIfAbsent(param.getMonitorId(), key -> new ArrayList<>(8))
+                        .add(new Configmap(param.getField(), param.getValue(), param.getType()));
+            }
+        }
+        return monitorConfigmaps;
+    }
+
+    /**
+     * 计算各监控首次采集的延迟时间 相同采集间隔的监控在间隔内均匀错开
+     * @param monitors monitors
+     * @return initial delay millis, aligned with monitors
+     */
+    static long[] staggerInitialDelays(List<Monitor> monitors) {
+        long[] initialDelays = new long[monitors.size()];
+        Map<Integer, List<Integer>> intervalIndexes = new HashMap<>(8);
+        for (int index = 0; index < monitors.size(); index++) {
+            Integer intervals = monitors.get(index).getIntervals();
+            intervalIndexes.computeIfAbsent(intervals, key -> new ArrayList<>()).add(index);
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : intervalIndexes.entrySet()) {
+            if (entry.getKey() == null || entry.getKey() <= 0) {
+                continue;
+            }
+            long intervalMillis = TimeUnit.SECONDS.toMillis(entry.getKey());
+            List<Integer> indexes = entry.getValue();
+            for (int order = 0; order < indexes.size(); order++) {
+                initialDelays[indexes.get(order)] = intervalMillis * order / indexes.size();
+            }
         }
+        return initialDelays;
     }
 }
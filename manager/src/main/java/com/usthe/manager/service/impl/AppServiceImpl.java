@@ -19,14 +19,18 @@ package com.usthe.manager.service.impl;
 
 import com.usthe.common.entity.job.Job;
 import com.usthe.common.entity.job.Metrics;
+import com.usthe.common.util.GsonUtil;
 import com.usthe.manager.dao.ParamDefineDao;
 import com.usthe.manager.pojo.dto.Hierarchy;
 import com.usthe.manager.pojo.dto.ParamDefineDto;
 import com.usthe.common.entity.manager.ParamDefine;
 import com.usthe.manager.service.AppService;
+import com.usthe.manager.service.JobSchedulerInit;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.annotation.Order;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
@@ -40,6 +44,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
@@ -49,6 +59,10 @@ import java.util.stream.Collectors;
  * 监控类型管理实现
  * TODO temporarily stores the monitoring configuration and parameter configuration in memory and then stores it in the
  * 暂时将监控配置和参数配置存放内存 之后存入数据库
+ * The app definitions are immutable templates, a job is instantiated by a structural copy instead of a json round trip.
+ * When loaded from the define directory, the changed definition files are reloaded and the jobs of the app rescheduled.
+ * 监控定义为不可变模板 通过结构化拷贝而非json序列化实例化job
+ * 从定义目录加载时 监听定义文件变更 热加载并重新调度该类型监控的采集任务
  *
  * @author tomsun28
  * @date 2021/11/14 17:17
@@ -56,14 +70,30 @@ import java.util.stream.Collectors;
 @Service
 @Order(value = 1)
 @Slf4j
-public class AppServiceImpl implements AppService, CommandLineRunner {
+public class AppServiceImpl implements AppService, CommandLineRunner, DisposableBean {
 
-    private final Map<String, Job> appDefines = new ConcurrentHashMap<>();
+    /**
+     * Wait for the editor to finish writing the definition file
+     * 等待编辑器写完定义文件
+     */
+    private static final long RELOAD_DEBOUNCE_TIME = 500L;
+
+    /**
+     * app - immutable app define template, the whole map is replaced when reloaded
+     * 监控类型 - 不可变的监控定义模板 热加载时整体替换
+     */
+    private volatile Map<String, Job> appDefines = Collections.emptyMap();
     private final Map<String, List<ParamDefine>> paramDefines = new ConcurrentHashMap<>();
 
+    private Thread appDefineWatcher;
+
     @Autowired
     private ParamDefineDao paramDefineDao;
 
+    @Autowired
+    @Lazy
+    private JobSchedulerInit jobSchedulerInit;
+
     @Override
     public List<ParamDefine> getAppParamDefines(String app) {
         List<ParamDefine> params = paramDefines.get(app);
@@ -79,7 +109,26 @@ public class AppServiceImpl implements AppService, CommandLineRunner {
         if (appDefine == null) {
             throw new IllegalArgumentException("The app " + app + " not support.");
         }
-        return appDefine.clone();
+        return instantiate(appDefine);
+    }
+
+    /**
+     * Instantiate a job from the template: the job and its metrics are copied, the definitions inside
+     * (fields, protocols...) are shared, they are never modified in place, the collector replaces them by new objects
+     * 由模板实例化job: 拷贝job和指标组对象 共享其内部定义(字段,协议等) 这些定义不会被原地修改 采集器会替换为新对象
+     *
+     * @param template app define template
+     * @return job
+     */
+    static Job instantiate(Job template) {
+        List<Metrics> metrics = null;
+        if (template.getMetrics() != null) {
+            metrics = new ArrayList<>(template.getMetrics().size());
+            for (Metrics item : template.getMetrics()) {
+                metrics.add(item.toBuilder().build());
+            }
+        }
+        return template.toBuilder().metrics(metrics).build();
     }
 
     @Override
@@ -174,6 +223,7 @@ public class AppServiceImpl implements AppService, CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
+        Map<String, Job> appDefines = new HashMap<>(64);
         boolean loadFromFile = true;
         final List<InputStream> inputStreams = new LinkedList<>();
         // 读取app定义配置加载到内存中 define/app/*.yml
@@ -229,6 +279,10 @@ public class AppServiceImpl implements AppService, CommandLineRunner {
                 });
             }
         }
+        this.appDefines = Collections.unmodifiableMap(appDefines);
+        if (loadFromFile) {
+            startAppDefineWatcher(directory);
+        }
 
         // 读取监控参数定义配置加载到数据库中 define/param/*.yml
         if (loadFromFile) {
@@ -264,4 +318,106 @@ public class AppServiceImpl implements AppService, CommandLineRunner {
             }
         }
     }
+
+    @Override
+    public void destroy() throws Exception {
+        if (appDefineWatcher != null) {
+            appDefineWatcher.interrupt();
+        }
+    }
+
+    private void startAppDefineWatcher(File directory) {
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            directory.toPath().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            appDefineWatcher = new Thread(new AppDefineWatchTask(directory.toPath(), watchService), "app-define-watcher");
+            appDefineWatcher.setDaemon(true);
+            appDefineWatcher.start();
+        } catch (Exception e) {
+            log.error("watch define app directory {} error, hot reload is disabled: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Reload the app define file, replace the template and reschedule the jobs of the app
+     * 重新加载监控定义文件 替换模板并重新调度该类型监控的采集任务
+     *
+     * @param appFile app define file
+     * @return reloaded app, null when nothing changed or the file is invalid    未变更或文件无效时返回null
+     */
+    synchronized String reloadAppDefine(File appFile) {
+        String fileName = appFile.getName();
+        if (!appFile.isFile() || !(fileName.endsWith(".yml") || fileName.endsWith(".yaml"))) {
+            return null;
+        }
+        Job app;
+        try (FileInputStream fileInputStream = new FileInputStream(appFile)) {
+            app = new Yaml().loadAs(fileInputStream, Job.class);
+        } catch (Exception e) {
+            log.error("reload define app file {} error, keep the previous define: {}", fileName, e.getMessage());
+            return null;
+        }
+        if (app == null || app.getApp() == null || app.getMetrics() == null || app.getMetrics().isEmpty()) {
+            log.error("reload define app file {} error, app or metrics is empty, keep the previous define.", fileName);
+            return null;
+        }
+        String appName = app.getApp().toLowerCase();
+        Job previous = appDefines.get(appName);
+        if (previous != null && GsonUtil.toJson(previous).equals(GsonUtil.toJson(app))) {
+            return null;
+        }
+        Map<String, Job> reloadedDefines = new HashMap<>(appDefines);
+        reloadedDefines.put(appName, app);
+        appDefines = Collections.unmodifiableMap(reloadedDefines);
+        log.info("reload define app {} from file {}.", appName, fileName);
+        if (previous != null && jobSchedulerInit != null) {
+            jobSchedulerInit.rescheduleAppJobs(appName);
+        }
+        return appName;
+    }
+
+    private class AppDefineWatchTask implements Runnable {
+
+        private final Path directory;
+        private final WatchService watchService;
+
+        private AppDefineWatchTask(Path directory, WatchService watchService) {
+            this.directory = directory;
+            this.watchService = watchService;
+        }
+
+        @Override
+        public void run() {
+            try (WatchService service = watchService) {
+                while (!Thread.currentThread().isInterrupted()) {
+                    WatchKey watchKey = service.take();
+                    // editors write a file by several events, collect them for a while
+                    // 编辑器写文件会产生多个事件 收集一段时间内的变更
+                    Thread.sleep(RELOAD_DEBOUNCE_TIME);
+                    Set<Path> changedFiles = new LinkedHashSet<>();
+                    while (watchKey != null) {
+                        for (WatchEvent<?> event : watchKey.pollEvents()) {
+                            if (event.kind() != StandardWatchEventKinds.OVERFLOW) {
+                                changedFiles.add(directory.resolve((Path) event.context()));
+                            }
+                        }
+                        watchKey.reset();
+                        watchKey = service.poll();
+                    }
+                    for (Path changedFile : changedFiles) {
+                        try {
+                            reloadAppDefine(changedFile.toFile());
+                        } catch (Exception e) {
+                            log.error("reload define app file {} error: {}", changedFile, e.getMessage(), e);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("define app watcher error: {}", e.getMessage(), e);
+            }
+        }
+    }
 }
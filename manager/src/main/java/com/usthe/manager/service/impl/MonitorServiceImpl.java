@@ -18,7 +18,9 @@
 package com.usthe.manager.service.impl;
 
 import com.usthe.alert.dao.AlertDefineBindDao;
+import com.usthe.alert.service.impl.AlertDefineCache;
 import com.usthe.collector.dispatch.entrance.internal.CollectJobService;
+import com.usthe.collector.dispatch.entrance.internal.CollectResponseEventListener;
 import com.usthe.common.entity.job.Configmap;
 import com.usthe.common.entity.job.Job;
 import com.usthe.common.entity.job.Metrics;
@@ -51,6 +53,10 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -65,6 +71,18 @@ import java.util.stream.Collectors;
 public class MonitorServiceImpl implements MonitorService {
 
     private static final Long MONITOR_ID_TMP = 1000000000L;
+    /**
+     * detect deadline when the monitor has no protocol timeout param
+     * 监控无协议超时参数时的探测截止时间
+     */
+    private static final long DEFAULT_DETECT_TIMEOUT = 10_000L;
+    private static final long MAX_DETECT_TIMEOUT = 30_000L;
+    /**
+     * time over the protocol timeout for the dispatch of the detect task and the time wheel tick
+     * 协议超时之外留给探测任务调度和时间轮刻度的时间
+     */
+    private static final long DETECT_TIMEOUT_GRACE = 2_000L;
+    private static final String TIMEOUT_PARAM_FIELD = "timeout";
 
     @Autowired
     private AppService appService;
@@ -81,6 +99,9 @@ public class MonitorServiceImpl implements MonitorService {
     @Autowired
     private AlertDefineBindDao alertDefineBindDao;
 
+    @Autowired
+    private AlertDefineCache alertDefineCache;
+
     @Override
     @Transactional(readOnly = true)
     public void detectMonitor(Monitor monitor, List<Param> params) throws MonitorDetectException {
@@ -100,15 +121,64 @@ public class MonitorServiceImpl implements MonitorService {
         List<Metrics> availableMetrics = appDefine.getMetrics().stream()
                 .filter(item -> item.getPriority() == 0).collect(Collectors.toList());
         appDefine.setMetrics(availableMetrics);
-        List<CollectRep.MetricsData> collectRep = collectJobService.collectSyncJobData(appDefine);
+        // Return as soon as the availability metrics is collected, within the deadline sized by the protocol timeout
+        // 可用性指标组采集完成即返回 截止时间由协议超时时间决定
+        long detectTimeout = detectTimeout(params);
+        CompletableFuture<CollectRep.MetricsData> availableFuture = new CompletableFuture<>();
+        collectJobService.collectStreamJobData(appDefine, detectTimeout, TimeUnit.MILLISECONDS,
+                new CollectResponseEventListener() {
+                    @Override
+                    public void onMetrics(CollectRep.MetricsData metricsData) {
+                        if (metricsData.getPriority() == 0) {
+                            availableFuture.complete(metricsData);
+                        }
+                    }
+
+                    @Override
+                    public void response(List<CollectRep.MetricsData> responseMetrics) {
+                        availableFuture.complete(responseMetrics == null || responseMetrics.isEmpty()
+                                ? null : responseMetrics.get(0));
+                    }
+                });
+        CollectRep.MetricsData availableData;
+        try {
+            availableData = availableFuture.get(detectTimeout + DETECT_TIMEOUT_GRACE, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new MonitorDetectException("No collector response in " + detectTimeout + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MonitorDetectException("Detect interrupted");
+        } catch (ExecutionException e) {
+            throw new MonitorDetectException(e.getMessage());
+        }
         // If the detection result fails, a detection exception is thrown
         // 判断探测结果 失败则抛出探测异常
-        if (collectRep == null || collectRep.isEmpty()) {
+        if (availableData == null) {
             throw new MonitorDetectException("No collector response");
         }
-        if (collectRep.get(0).getCode() != CollectRep.Code.SUCCESS) {
-            throw new MonitorDetectException(collectRep.get(0).getMsg());
+        if (availableData.getCode() != CollectRep.Code.SUCCESS) {
+            throw new MonitorDetectException(availableData.getMsg());
+        }
+    }
+
+    /**
+     * the detect deadline: the protocol timeout param and a grace, the default when no such param
+     * 探测截止时间: 协议超时参数加上余量 无该参数时使用默认值
+     */
+    private long detectTimeout(List<Param> params) {
+        for (Param param : params) {
+            if (TIMEOUT_PARAM_FIELD.equals(param.getField()) && param.getValue() != null) {
+                try {
+                    long timeout = Long.parseLong(param.getValue().trim());
+                    if (timeout > 0) {
+                        return Math.min(timeout + DETECT_TIMEOUT_GRACE, MAX_DETECT_TIMEOUT);
+                    }
+                } catch (NumberFormatException e) {
+                    log.debug("illegal timeout param: {}.", param.getValue());
+                }
+            }
         }
+        return DEFAULT_DETECT_TIMEOUT;
     }
 
     @Override
@@ -405,6 +475,7 @@ public class MonitorServiceImpl implements MonitorService {
             monitorDao.deleteById(id);
             paramDao.deleteParamsByMonitorId(id);
             alertDefineBindDao.deleteAlertDefineMonitorBindsByMonitorIdEquals(id);
+            alertDefineCache.evictMonitor(id);
             collectJobService.cancelAsyncCollectJob(monitor.getJobId());
         }
     }
@@ -419,6 +490,7 @@ public class MonitorServiceImpl implements MonitorService {
             alertDefineBindDao.deleteAlertDefineMonitorBindsByMonitorIdIn(monitors.stream()
                     .map(Monitor::getId).collect(Collectors.toList()));
             for (Monitor monitor : monitors) {
+                alertDefineCache.evictMonitor(monitor.getId());
                 collectJobService.cancelAsyncCollectJob(monitor.getJobId());
             }
         }
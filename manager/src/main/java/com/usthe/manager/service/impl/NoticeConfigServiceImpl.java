@@ -20,6 +20,7 @@ package com.usthe.manager.service.impl;
 import com.usthe.common.entity.alerter.Alert;
 import com.usthe.common.util.CommonConstants;
 import com.usthe.manager.component.alerter.DispatcherAlarm;
+import com.usthe.manager.component.alerter.NoticeRuleIndex;
 import com.usthe.manager.dao.NoticeReceiverDao;
 import com.usthe.manager.dao.NoticeRuleDao;
 import com.usthe.common.entity.manager.NoticeReceiver;
@@ -31,11 +32,11 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
-import java.util.Objects;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 消息通知配置实现
@@ -62,6 +63,18 @@ public class NoticeConfigServiceImpl implements NoticeConfigService {
     @Lazy
     private DispatcherAlarm dispatcherAlarm;
 
+    /**
+     * In-memory index of the enabled notice rules, null when it needs to be rebuilt
+     * 已启用通知策略的内存索引 为null时需重建
+     */
+    private volatile NoticeRuleIndex noticeRuleIndex;
+    /**
+     * Increased when the rules or receivers changed, the index loaded before the change is not kept
+     * 通知策略或接收人变更时自增 变更前加载的索引不会被保留
+     */
+    private final AtomicLong noticeRuleVersion = new AtomicLong();
+    private final Object noticeRuleIndexLock = new Object();
+
     @Override
     public List<NoticeReceiver> getNoticeReceivers(Specification<NoticeReceiver> specification) {
         return noticeReceiverDao.findAll(specification);
@@ -75,67 +88,80 @@ public class NoticeConfigServiceImpl implements NoticeConfigService {
     @Override
     public void addReceiver(NoticeReceiver noticeReceiver) {
         noticeReceiverDao.save(noticeReceiver);
+        invalidateNoticeRuleIndex();
     }
 
     @Override
     public void editReceiver(NoticeReceiver noticeReceiver) {
         noticeReceiverDao.save(noticeReceiver);
+        invalidateNoticeRuleIndex();
     }
 
     @Override
     public void deleteReceiver(Long receiverId) {
         noticeReceiverDao.deleteById(receiverId);
+        invalidateNoticeRuleIndex();
     }
 
     @Override
     public void addNoticeRule(NoticeRule noticeRule) {
         noticeRuleDao.save(noticeRule);
+        invalidateNoticeRuleIndex();
     }
 
     @Override
     public void editNoticeRule(NoticeRule noticeRule) {
         noticeRuleDao.save(noticeRule);
+        invalidateNoticeRuleIndex();
     }
 
     @Override
     public void deleteNoticeRule(Long ruleId) {
         noticeRuleDao.deleteById(ruleId);
+        invalidateNoticeRuleIndex();
     }
 
     @Override
     public List<NoticeReceiver> getReceiverFilterRule(Alert alert) {
-        // todo use cache   使用缓存
-        List<NoticeRule> rules = noticeRuleDao.findNoticeRulesByEnableTrue();
-
-        // The temporary rule is to forward all, and then implement more matching rules: alarm status selection, monitoring type selection, etc.
-        // 规则是全部转发, 告警状态选择, 监控类型选择等(按照tags标签和告警级别过滤匹配)
-        Set<Long> filterReceivers = rules.stream()
-                .filter(rule -> {
-                    if (rule.isFilterAll()) {
-                        return true;
-                    }
-                    // filter priorities
-                    if (rule.getPriorities() != null && !rule.getPriorities().isEmpty()) {
-                        boolean priorityMatch = rule.getPriorities().stream().anyMatch(item -> item != null && item == alert.getPriority());
-                        if (!priorityMatch) {
-                            return false;
-                        }
-                    }
-                    // filter tags
-                    if (rule.getTags() != null && !rule.getTags().isEmpty()) {
-                        return rule.getTags().stream().anyMatch(tagItem -> {
-                            if (!alert.getTags().containsKey(tagItem.getName())) {
-                                return false;
-                            }
-                            String alertTagValue = alert.getTags().get(tagItem.getName());
-                            return Objects.equals(tagItem.getValue(), alertTagValue);
-                        });
-                    }
-                    return true;
-                })
-                .map(NoticeRule::getReceiverId)
-                .collect(Collectors.toSet());
-        return noticeReceiverDao.findAllById(filterReceivers);
+        NoticeRuleIndex index = noticeRuleIndex;
+        if (index == null) {
+            index = loadNoticeRuleIndex();
+        }
+        return index.match(alert);
+    }
+
+    private NoticeRuleIndex loadNoticeRuleIndex() {
+        synchronized (noticeRuleIndexLock) {
+            NoticeRuleIndex index = noticeRuleIndex;
+            if (index != null) {
+                return index;
+            }
+            long version = noticeRuleVersion.get();
+            index = new NoticeRuleIndex(noticeRuleDao.findNoticeRulesByEnableTrue(), noticeReceiverDao.findAll());
+            if (version == noticeRuleVersion.get()) {
+                noticeRuleIndex = index;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * The rules or receivers changed, drop the index after the transaction committed, the next matching rebuilds it
+     * 通知策略或接收人变更 事务提交后丢弃索引 由下一次匹配重建
+     */
+    private void invalidateNoticeRuleIndex() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    noticeRuleVersion.incrementAndGet();
+                    noticeRuleIndex = null;
+                }
+            });
+        } else {
+            noticeRuleVersion.incrementAndGet();
+            noticeRuleIndex = null;
+        }
     }
 
     @Override
@@ -0,0 +1,122 @@
+package com.usthe.manager.component.alerter;
+
+import com.usthe.common.entity.alerter.Alert;
+import com.usthe.common.entity.manager.NoticeReceiver;
+import com.usthe.manager.support.exception.AlertNoticeException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link AlertNoticeDispatcher}
+ */
+class AlertNoticeDispatcherTest {
+
+    private static final byte WEBHOOK_TYPE = 2;
+
+    private AlertNoticeDispatcher alertNoticeDispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (alertNoticeDispatcher != null) {
+            alertNoticeDispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void retryWhenFailed() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch sent = new CountDownLatch(1);
+        alertNoticeDispatcher = create(receiver -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new AlertNoticeException("Http StatusCode 502");
+            }
+            sent.countDown();
+        }, Collections.singletonList(receiver(1L)));
+
+        assertTrue(alertNoticeDispatcher.dispatch(new Alert()));
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void giveUpAfterMaxAttempts() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        alertNoticeDispatcher = create(receiver -> {
+            attempts.incrementAndGet();
+            throw new AlertNoticeException("Http StatusCode 500");
+        }, Collections.singletonList(receiver(1L)));
+
+        alertNoticeDispatcher.dispatch(new Alert());
+        Thread.sleep(500);
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void slowReceiverIsolated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastSent = new CountDownLatch(5);
+        Map<Long, AtomicInteger> running = new ConcurrentHashMap<>();
+        AtomicInteger slowMaxRunning = new AtomicInteger();
+        alertNoticeDispatcher = create(receiver -> {
+            if (receiver.getId() == 1L) {
+                int current = running.computeIfAbsent(1L, key -> new AtomicInteger()).incrementAndGet();
+                slowMaxRunning.accumulateAndGet(current, Math::max);
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+                running.get(1L).decrementAndGet();
+            } else {
+                fastSent.countDown();
+            }
+        }, Arrays.asList(receiver(1L), receiver(2L)));
+
+        for (int i = 0; i < 5; i++) {
+            alertNoticeDispatcher.dispatch(new Alert());
+        }
+        // the blocked receiver holds only its own concurrency permits
+        assertTrue(fastSent.await(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 1000;
+        while (slowMaxRunning.get() < AlertNoticeDispatcher.RECEIVER_CONCURRENCY && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(AlertNoticeDispatcher.RECEIVER_CONCURRENCY, slowMaxRunning.get());
+        release.countDown();
+    }
+
+    private AlertNoticeDispatcher create(Sender sender, List<NoticeReceiver> receivers) {
+        Map<Byte, AlertNotifyHandler> handlerMap = new HashMap<>(2);
+        handlerMap.put(WEBHOOK_TYPE, new AlertNotifyHandler() {
+            @Override
+            public void send(NoticeReceiver receiver, Alert alert) {
+                sender.send(receiver);
+            }
+
+            @Override
+            public byte type() {
+                return WEBHOOK_TYPE;
+            }
+        });
+        return new AlertNoticeDispatcher(handlerMap, alert -> receivers, 10L);
+    }
+
+    private NoticeReceiver receiver(Long id) {
+        return NoticeReceiver.builder().id(id).name("receiver-" + id).type(WEBHOOK_TYPE).build();
+    }
+
+    private interface Sender {
+        void send(NoticeReceiver receiver);
+    }
+}
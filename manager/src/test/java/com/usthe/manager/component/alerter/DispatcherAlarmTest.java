@@ -1,25 +1,140 @@
 package com.usthe.manager.component.alerter;
 
-import com.usthe.manager.service.TagService;
+import com.sun.net.httpserver.HttpServer;
+import com.usthe.alert.AlerterWorkerPool;
+import com.usthe.common.entity.alerter.Alert;
+import com.usthe.common.entity.manager.NoticeReceiver;
+import com.usthe.common.queue.CommonDataQueue;
+import com.usthe.manager.config.RestTemplateConfig;
+import com.usthe.manager.service.NoticeConfigService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 /**
  * Test case for {@link DispatcherAlarm}
  */
 class DispatcherAlarmTest {
 
+    private static final int ALERT_COUNT = 10;
+    private static final long SLOW_RESPONSE_TIME = 300L;
+
+    private HttpServer slowServer;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    private final BlockingQueue<Alert> alertQueue = new LinkedBlockingQueue<>();
+    private final AtomicInteger stored = new AtomicInteger();
+    private DispatcherAlarm dispatcherAlarm;
+
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
+        slowServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 50);
+        slowServer.setExecutor(Executors.newCachedThreadPool());
+        slowServer.createContext("/hook", exchange -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            try {
+                Thread.sleep(SLOW_RESPONSE_TIME);
+            } catch (InterruptedException ignored) {
+            }
+            concurrent.decrementAndGet();
+            requests.incrementAndGet();
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        slowServer.start();
+
+        RestTemplateConfig restTemplateConfig = new RestTemplateConfig();
+        RestTemplate restTemplate = restTemplateConfig.restTemplate(restTemplateConfig.clientHttpRequestFactory());
+        AlertNotifyHandler webHookHandler = new AlertNotifyHandler() {
+            @Override
+            public void send(NoticeReceiver receiver, Alert alert) {
+                restTemplate.postForEntity(receiver.getHookUrl(), alert, String.class);
+            }
+
+            @Override
+            public byte type() {
+                return 2;
+            }
+        };
+        NoticeReceiver receiver = NoticeReceiver.builder().id(1L).name("slow").type((byte) 2)
+                .hookUrl("http://127.0.0.1:" + slowServer.getAddress().getPort() + "/hook").build();
+
+        CommonDataQueue dataQueue = mock(CommonDataQueue.class);
+        when(dataQueue.pollAlertData()).thenAnswer(invocation -> alertQueue.poll(100, TimeUnit.MILLISECONDS));
+        NoticeConfigService noticeConfigService = mock(NoticeConfigService.class);
+        when(noticeConfigService.getReceiverFilterRule(any())).thenReturn(Collections.singletonList(receiver));
+        AlertStoreHandler alertStoreHandler = alert -> stored.incrementAndGet();
+
+        dispatcherAlarm = new DispatcherAlarm(new AlerterWorkerPool(), dataQueue, noticeConfigService,
+                alertStoreHandler, Collections.singletonList(webHookHandler));
+        dispatcherAlarm.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        dispatcherAlarm.destroy();
+        slowServer.stop(0);
     }
 
     @Test
-    void afterPropertiesSet() {
+    void storeNotDelayedBySlowNotify() throws Exception {
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < ALERT_COUNT; i++) {
+            alertQueue.add(Alert.builder().content("alert-" + i).build());
+        }
+        while (stored.get() < ALERT_COUNT && System.currentTimeMillis() - startTime < 5000) {
+            Thread.sleep(10);
+        }
+        long storeTime = System.currentTimeMillis() - startTime;
+        assertEquals(ALERT_COUNT, stored.get());
+        // all alerts are stored before the slow receiver has answered a few notifications
+        assertTrue(requests.get() < ALERT_COUNT / 2, "stored in " + storeTime + "ms");
+
+        while (requests.get() < ALERT_COUNT && System.currentTimeMillis() - startTime < 15000) {
+            Thread.sleep(50);
+        }
+        // every alert is notified exactly once, the successful notifications are not retried
+        assertEquals(ALERT_COUNT, requests.get());
+        Thread.sleep(SLOW_RESPONSE_TIME);
+        assertEquals(ALERT_COUNT, requests.get());
+        // per receiver concurrency limit, the keep-alive connections are reused
+        assertTrue(maxConcurrent.get() <= AlertNoticeDispatcher.RECEIVER_CONCURRENCY);
+        assertTrue(clientPorts.size() <= AlertNoticeDispatcher.RECEIVER_CONCURRENCY, "connections: " + clientPorts);
     }
 
     @Test
     void sendNoticeMsg() {
+        assertFalse(dispatcherAlarm.sendNoticeMsg(null, new Alert()));
+        assertFalse(dispatcherAlarm.sendNoticeMsg(NoticeReceiver.builder().type((byte) 5).build(), new Alert()));
+
+        NoticeReceiver receiver = NoticeReceiver.builder().type((byte) 2)
+                .hookUrl("http://127.0.0.1:" + slowServer.getAddress().getPort() + "/hook").build();
+        assertTrue(dispatcherAlarm.sendNoticeMsg(receiver, new Alert()));
+        assertEquals(1, requests.get());
     }
-}
\ No newline at end of file
+}
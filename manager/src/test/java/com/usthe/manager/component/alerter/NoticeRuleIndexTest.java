@@ -0,0 +1,130 @@
+package com.usthe.manager.component.alerter;
+
+import com.usthe.common.entity.alerter.Alert;
+import com.usthe.common.entity.manager.NoticeReceiver;
+import com.usthe.common.entity.manager.NoticeRule;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link NoticeRuleIndex}
+ */
+class NoticeRuleIndexTest {
+
+    @Test
+    void match() {
+        List<NoticeReceiver> receivers = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            receivers.add(NoticeReceiver.builder().id(id).name("receiver-" + id).type((byte) 2).build());
+        }
+        List<NoticeRule> rules = Arrays.asList(
+                rule(1L, 1L, false, Collections.singletonList((byte) 0), null),
+                rule(2L, 2L, false, null, Collections.singletonList(new NoticeRule.TagItem("app", "mysql"))),
+                rule(3L, 3L, false, Arrays.asList((byte) 0, (byte) 1),
+                        Arrays.asList(new NoticeRule.TagItem("app", "redis"), new NoticeRule.TagItem("env", "prod"))),
+                rule(4L, 4L, true, null, null),
+                // receiver deleted
+                rule(5L, 9L, true, null, null),
+                // no priorities and no tags, matches every alert
+                rule(6L, 5L, false, Collections.emptyList(), Collections.emptyList()));
+        NoticeRuleIndex index = new NoticeRuleIndex(rules, receivers);
+
+        assertEquals(ids(1, 4, 5), ids(index.match(alert((byte) 0, "app", "linux"))));
+        assertEquals(ids(2, 4, 5), ids(index.match(alert((byte) 2, "app", "mysql"))));
+        assertEquals(ids(3, 4, 5), ids(index.match(alert((byte) 1, "env", "prod"))));
+        assertEquals(ids(4, 5), ids(index.match(alert((byte) 2, "env", "prod"))));
+        assertEquals(ids(1, 4, 5), ids(index.match(Alert.builder().priority((byte) 0).build())));
+        assertTrue(NoticeRuleIndex.EMPTY.match(alert((byte) 0, "app", "mysql")).isEmpty());
+    }
+
+    @Test
+    void matchSameAsFilter() {
+        Random random = new Random(7);
+        List<NoticeReceiver> receivers = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            receivers.add(NoticeReceiver.builder().id(id).name("receiver-" + id).type((byte) 2).build());
+        }
+        List<NoticeRule> rules = new ArrayList<>();
+        for (long id = 1; id <= 200; id++) {
+            List<Byte> priorities = random.nextBoolean() ? null
+                    : Arrays.asList((byte) random.nextInt(3), (byte) random.nextInt(3));
+            List<NoticeRule.TagItem> tags = null;
+            if (random.nextBoolean()) {
+                tags = new ArrayList<>();
+                for (int i = random.nextInt(3); i >= 0; i--) {
+                    tags.add(new NoticeRule.TagItem("tag" + random.nextInt(5), "value" + random.nextInt(5)));
+                }
+            }
+            rules.add(rule(id, 1L + random.nextInt(55), random.nextInt(20) == 0, priorities, tags));
+        }
+        NoticeRuleIndex index = new NoticeRuleIndex(rules, receivers);
+        for (int i = 0; i < 1000; i++) {
+            Map<String, String> tags = new HashMap<>(4);
+            for (int j = random.nextInt(4); j > 0; j--) {
+                tags.put("tag" + random.nextInt(5), "value" + random.nextInt(5));
+            }
+            Alert alert = Alert.builder().priority((byte) random.nextInt(3)).tags(tags).build();
+            assertEquals(filter(rules, receivers, alert), ids(index.match(alert)));
+        }
+    }
+
+    /**
+     * the matching of the rules loaded from database one by one
+     */
+    private Set<Long> filter(List<NoticeRule> rules, List<NoticeReceiver> receivers, Alert alert) {
+        Set<Long> receiverIds = rules.stream()
+                .filter(rule -> {
+                    if (rule.isFilterAll()) {
+                        return true;
+                    }
+                    if (rule.getPriorities() != null && !rule.getPriorities().isEmpty()) {
+                        boolean priorityMatch = rule.getPriorities().stream().anyMatch(item -> item != null && item == alert.getPriority());
+                        if (!priorityMatch) {
+                            return false;
+                        }
+                    }
+                    if (rule.getTags() != null && !rule.getTags().isEmpty()) {
+                        return rule.getTags().stream().anyMatch(tagItem -> alert.getTags().containsKey(tagItem.getName())
+                                && Objects.equals(tagItem.getValue(), alert.getTags().get(tagItem.getName())));
+                    }
+                    return true;
+                })
+                .map(NoticeRule::getReceiverId)
+                .collect(Collectors.toSet());
+        return receivers.stream().map(NoticeReceiver::getId).filter(receiverIds::contains).collect(Collectors.toSet());
+    }
+
+    private NoticeRule rule(Long id, Long receiverId, boolean filterAll, List<Byte> priorities, List<NoticeRule.TagItem> tags) {
+        return NoticeRule.builder().id(id).name("rule-" + id).receiverId(receiverId).enable(true)
+                .filterAll(filterAll).priorities(priorities).tags(tags).build();
+    }
+
+    private Alert alert(byte priority, String tagName, String tagValue) {
+        return Alert.builder().priority(priority).tags(Collections.singletonMap(tagName, tagValue)).build();
+    }
+
+    private Set<Long> ids(long... ids) {
+        Set<Long> set = new HashSet<>();
+        for (long id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    private Set<Long> ids(List<NoticeReceiver> receivers) {
+        return receivers.stream().map(NoticeReceiver::getId).collect(Collectors.toSet());
+    }
+}
@@ -1,37 +1,117 @@
 package com.usthe.manager.service;
 
-import com.usthe.manager.controller.NoticeConfigController;
+import com.usthe.common.entity.job.Job;
+import com.usthe.manager.service.impl.AppServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
 
 /**
  * Test case for {@link AppService}
  */
+@ExtendWith(MockitoExtension.class)
 class AppServiceTest {
 
+    @InjectMocks
+    private AppServiceImpl appService;
+
+    @Mock
+    private JobSchedulerInit jobSchedulerInit;
+
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
+        appService.run();
     }
 
     @Test
     void getAppParamDefines() {
+        assertTrue(appService.getAppParamDefines("not-exist").isEmpty());
     }
 
     @Test
     void getAppDefine() {
+        Job job = appService.getAppDefine("api");
+        assertEquals("api", job.getApp());
+        assertFalse(job.getMetrics().isEmpty());
+
+        // the job is a copy of the template, modify it does not change the template
+        job.setId(10L);
+        job.setConfigmap(new ArrayList<>());
+        job.getMetrics().get(0).setPriority((byte) 9);
+        job.setMetrics(new ArrayList<>());
+        Job another = appService.getAppDefine("api");
+        assertNotSame(job, another);
+        assertEquals(0L, another.getId());
+        assertFalse(another.getConfigmap().isEmpty());
+        assertFalse(another.getMetrics().isEmpty());
+        assertNotEquals(Byte.valueOf((byte) 9), another.getMetrics().get(0).getPriority());
+
+        assertThrows(IllegalArgumentException.class, () -> appService.getAppDefine("not-exist"));
     }
 
     @Test
     void getAppDefineMetricNames() {
+        List<String> metricNames = appService.getAppDefineMetricNames("api");
+        assertTrue(metricNames.contains("summary"));
+        assertThrows(IllegalArgumentException.class, () -> appService.getAppDefineMetricNames("not-exist"));
     }
 
     @Test
     void getI18nResources() {
+        Map<String, String> resources = appService.getI18nResources("en-US");
+        assertEquals("HTTP API", resources.get("monitor.app.api"));
     }
 
     @Test
     void getAllAppHierarchy() {
+        assertTrue(appService.getAllAppHierarchy("en-US").stream().anyMatch(hierarchy -> "api".equals(hierarchy.getValue())));
+    }
+
+    @Test
+    void reloadAppDefine(@TempDir Path defineDir) throws Exception {
+        Method reload = AppServiceImpl.class.getDeclaredMethod("reloadAppDefine", File.class);
+        reload.setAccessible(true);
+        Job before = appService.getAppDefine("api");
+
+        File appFile = defineDir.resolve("app-api.yml").toFile();
+        Files.write(appFile.toPath(), ("category: service\n" + "app: api\n" + "metrics:\n"
+                + "  - name: reloaded\n" + "    priority: 0\n" + "    protocol: http\n").getBytes(StandardCharsets.UTF_8));
+        assertEquals("api", reload.invoke(appService, appFile));
+        Job after = appService.getAppDefine("api");
+        assertEquals(1, after.getMetrics().size());
+        assertEquals("reloaded", after.getMetrics().get(0).getName());
+        // the job instantiated before is not affected
+        assertNotEquals("reloaded", before.getMetrics().get(0).getName());
+        verify(jobSchedulerInit).rescheduleAppJobs("api");
+
+        // unchanged define, no reschedule
+        assertNull(reload.invoke(appService, appFile));
+        // broken define keeps the previous template
+        Files.write(appFile.toPath(), "app: api\nmetrics: [\n".getBytes(StandardCharsets.UTF_8));
+        assertNull(reload.invoke(appService, appFile));
+        assertEquals("reloaded", appService.getAppDefine("api").getMetrics().get(0).getName());
+        // new app, nothing to reschedule
+        File newAppFile = defineDir.resolve("app-new.yml").toFile();
+        Files.write(newAppFile.toPath(), "app: new\nmetrics:\n  - name: basic\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals("new", reload.invoke(appService, newAppFile));
+        assertEquals("basic", appService.getAppDefine("new").getMetrics().get(0).getName());
+        verify(jobSchedulerInit, times(1)).rescheduleAppJobs(anyString());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.manager.service;
+
+import com.usthe.collector.dispatch.entrance.internal.CollectJobService;
+import com.usthe.common.entity.job.Job;
+import com.usthe.common.entity.manager.Monitor;
+import com.usthe.common.entity.manager.Param;
+import com.usthe.manager.dao.MonitorDao;
+import com.usthe.manager.dao.ParamDao;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for {@link JobSchedulerInit}
+ */
+@ExtendWith(MockitoExtension.class)
+class JobSchedulerInitTest {
+
+    @InjectMocks
+    private JobSchedulerInit jobSchedulerInit;
+
+    @Mock
+    private AppService appService;
+
+    @Mock
+    private CollectJobService collectJobService;
+
+    @Mock
+    private MonitorDao monitorDao;
+
+    @Mock
+    private ParamDao paramDao;
+
+    @Test
+    void run() throws Exception {
+        int monitorNum = 2500;
+        List<Monitor> monitors = new ArrayList<>(monitorNum);
+        for (long id = 1; id <= monitorNum; id++) {
+            monitors.add(Monitor.builder().id(id).jobId(id * 10).app("linux").intervals(id % 5 == 0 ? 120 : 60).build());
+        }
+        when(monitorDao.findMonitorsByStatusNotInAndAndJobIdNotNull(anyList())).thenReturn(monitors);
+        when(paramDao.findParamsByMonitorIdIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> monitorIds = invocation.getArgument(0);
+            return monitorIds.stream()
+                    .flatMap(id -> Arrays.asList(
+                            Param.builder().monitorId(id).field("host").value("10.0.0." + id).type((byte) 1).build(),
+                            Param.builder().monitorId(id).field("port").value("22").type((byte) 0).build()).stream())
+                    .collect(Collectors.toList());
+        });
+        when(appService.getAppDefine("linux")).thenAnswer(invocation -> Job.builder().app("linux").build());
+        Map<Long, Job> scheduledJobs = new ConcurrentHashMap<>(monitorNum);
+        Map<Long, Long> initialDelays = new ConcurrentHashMap<>(monitorNum);
+        when(collectJobService.addAsyncCollectJob(any(Job.class), anyLong(), eq(TimeUnit.MILLISECONDS)))
+                .thenAnswer(invocation -> {
+                    Job job = invocation.getArgument(0);
+                    scheduledJobs.put(job.getMonitorId(), job);
+                    initialDelays.put(job.getMonitorId(), invocation.getArgument(1));
+                    return job.getId();
+                });
+
+        jobSchedulerInit.run();
+
+        // one bulk param query per batch instead of one query per monitor
+        verify(paramDao, times(3)).findParamsByMonitorIdIn(anyCollection());
+        verify(paramDao, never()).findParamsByMonitorId(anyLong());
+        assertEquals(monitorNum, scheduledJobs.size());
+        Job job = scheduledJobs.get(7L);
+        assertEquals(70L, job.getId());
+        assertEquals(60L, job.getInterval());
+        assertTrue(job.isCyclic());
+        assertEquals(2, job.getConfigmap().size());
+        assertEquals("10.0.0.7", job.getConfigmap().get(0).getValue());
+        // first collections are spread over the interval, not fired at once
+        long immediate = initialDelays.values().stream().filter(delay -> delay == 0L).count();
+        assertEquals(2, immediate);
+        assertTrue(initialDelays.values().stream().allMatch(delay -> delay >= 0 && delay < TimeUnit.SECONDS.toMillis(120)));
+        assertTrue(initialDelays.values().stream().distinct().count() > monitorNum / 2);
+    }
+
+    @Test
+    void runSkipBrokenMonitor() throws Exception {
+        List<Monitor> monitors = Arrays.asList(
+                Monitor.builder().id(1L).jobId(10L).app("unknown").intervals(60).build(),
+                Monitor.builder().id(2L).jobId(20L).app("linux").intervals(60).build());
+        when(monitorDao.findMonitorsByStatusNotInAndAndJobIdNotNull(anyList())).thenReturn(monitors);
+        when(paramDao.findParamsByMonitorIdIn(anyCollection())).thenReturn(new ArrayList<>());
+        when(appService.getAppDefine("unknown")).thenThrow(new IllegalArgumentException("The app unknown not support."));
+        when(appService.getAppDefine("linux")).thenAnswer(invocation -> Job.builder().app("linux").build());
+
+        jobSchedulerInit.run();
+
+        verify(collectJobService, times(1)).addAsyncCollectJob(argThat(job -> job.getMonitorId() == 2L),
+                eq(30000L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void rescheduleAppJobs() {
+        List<Monitor> monitors = Arrays.asList(
+                Monitor.builder().id(1L).jobId(10L).app("linux").status((byte) 1).intervals(60).build(),
+                Monitor.builder().id(2L).jobId(20L).app("linux").status((byte) 0).intervals(60).build(),
+                Monitor.builder().id(3L).app("linux").status((byte) 1).intervals(60).build(),
+                Monitor.builder().id(4L).jobId(40L).app("linux").status((byte) 2).intervals(60).build());
+        when(monitorDao.findMonitorsByAppEquals("linux")).thenReturn(monitors);
+        when(paramDao.findParamsByMonitorIdIn(anyCollection())).thenReturn(new ArrayList<>());
+        when(appService.getAppDefine("linux")).thenAnswer(invocation -> Job.builder().app("linux").build());
+
+        jobSchedulerInit.rescheduleAppJobs("linux");
+
+        // paused monitors and monitors without job are not scheduled
+        verify(collectJobService).cancelAsyncCollectJob(10L);
+        verify(collectJobService).cancelAsyncCollectJob(40L);
+        verify(collectJobService, times(2)).cancelAsyncCollectJob(anyLong());
+        verify(collectJobService).addAsyncCollectJob(argThat(job -> job.getId() == 10L), eq(0L), eq(TimeUnit.MILLISECONDS));
+        verify(collectJobService).addAsyncCollectJob(argThat(job -> job.getId() == 40L), eq(30000L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void staggerInitialDelays() {
+        List<Monitor> monitors = Arrays.asList(
+                Monitor.builder().id(1L).intervals(60).build(),
+                Monitor.builder().id(2L).intervals(120).build(),
+                Monitor.builder().id(3L).intervals(60).build(),
+                Monitor.builder().id(4L).intervals(60).build(),
+                Monitor.builder().id(5L).build(),
+                Monitor.builder().id(6L).intervals(60).build());
+        assertArrayEquals(new long[]{0L, 0L, 15000L, 30000L, 0L, 45000L}, JobSchedulerInit.staggerInitialDelays(monitors));
+    }
+}
@@ -1,16 +1,40 @@
 package com.usthe.manager.service;
 
-import com.usthe.manager.controller.NoticeConfigController;
+import com.usthe.common.entity.alerter.Alert;
+import com.usthe.common.entity.manager.NoticeReceiver;
+import com.usthe.common.entity.manager.NoticeRule;
+import com.usthe.manager.dao.NoticeReceiverDao;
+import com.usthe.manager.dao.NoticeRuleDao;
+import com.usthe.manager.service.impl.NoticeConfigServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 /**
  * Test case for {@link NoticeConfigService}
  */
+@ExtendWith(MockitoExtension.class)
 class NoticeConfigServiceTest {
 
+    @InjectMocks
+    private NoticeConfigServiceImpl noticeConfigService;
+
+    @Mock
+    private NoticeReceiverDao noticeReceiverDao;
+
+    @Mock
+    private NoticeRuleDao noticeRuleDao;
+
     @BeforeEach
     void setUp() {
     }
@@ -49,6 +73,35 @@ class NoticeConfigServiceTest {
 
     @Test
     void getReceiverFilterRule() {
+        NoticeReceiver critical = NoticeReceiver.builder().id(1L).name("critical").type((byte) 2).build();
+        NoticeReceiver all = NoticeReceiver.builder().id(2L).name("all").type((byte) 2).build();
+        NoticeRule criticalRule = NoticeRule.builder().id(1L).receiverId(1L).enable(true).filterAll(false)
+                .priorities(Collections.singletonList((byte) 0)).build();
+        NoticeRule allRule = NoticeRule.builder().id(2L).receiverId(2L).enable(true).filterAll(true).build();
+        when(noticeRuleDao.findNoticeRulesByEnableTrue()).thenReturn(Collections.singletonList(criticalRule));
+        when(noticeReceiverDao.findAll()).thenReturn(Arrays.asList(critical, all));
+
+        Alert alert = Alert.builder().priority((byte) 0).build();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Collections.singletonList(critical), noticeConfigService.getReceiverFilterRule(alert));
+        }
+        // matched in memory, the rules and receivers are loaded only once
+        verify(noticeRuleDao, times(1)).findNoticeRulesByEnableTrue();
+        verify(noticeReceiverDao, times(1)).findAll();
+
+        // the index is rebuilt after the rules changed
+        when(noticeRuleDao.findNoticeRulesByEnableTrue()).thenReturn(Arrays.asList(criticalRule, allRule));
+        noticeConfigService.addNoticeRule(allRule);
+        List<NoticeReceiver> receivers = noticeConfigService.getReceiverFilterRule(alert);
+        assertEquals(Arrays.asList(all, critical), receivers);
+        assertEquals(Collections.singletonList(all),
+                noticeConfigService.getReceiverFilterRule(Alert.builder().priority((byte) 2).build()));
+        verify(noticeRuleDao, times(2)).findNoticeRulesByEnableTrue();
+
+        // the rules of the deleted receiver are not matched
+        when(noticeReceiverDao.findAll()).thenReturn(Collections.singletonList(critical));
+        noticeConfigService.deleteReceiver(2L);
+        assertEquals(Collections.singletonList(critical), noticeConfigService.getReceiverFilterRule(alert));
     }
 
     @Test
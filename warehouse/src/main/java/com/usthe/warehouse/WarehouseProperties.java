@@ -20,6 +20,10 @@ package com.usthe.warehouse;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * 数据仓储配置属性
  * @author tom
@@ -39,6 +43,12 @@ public class WarehouseProperties {
      */
     private StoreProperties store;
 
+    /**
+     * real time metrics stream properties
+     * 实时指标数据推送配置属性
+     */
+    private StreamProperties stream = new StreamProperties();
+
     public EntranceProperties getEntrance() {
         return entrance;
     }
@@ -55,6 +65,14 @@ public class WarehouseProperties {
         this.store = store;
     }
 
+    public StreamProperties getStream() {
+        return stream;
+    }
+
+    public void setStream(StreamProperties stream) {
+        this.stream = stream;
+    }
+
     /**
      * 数据入口配置属性
      * 入口可以是从kafka rabbitmq rocketmq等消息中间件获取数据
@@ -145,6 +163,14 @@ public class WarehouseProperties {
          * TdEngine配置信息
          */
         private TdEngineProperties tdEngine;
+        /**
+         * 内存存储配置信息
+         */
+        private MemoryProperties memory;
+        /**
+         * 本地嵌入式时序存储配置信息
+         */
+        private LocalTsdbProperties localTsdb;
 
         public InfluxdbProperties getInfluxdb() {
             return influxdb;
@@ -170,6 +196,234 @@ public class WarehouseProperties {
             this.tdEngine = tdEngine;
         }
 
+        public MemoryProperties getMemory() {
+            return memory;
+        }
+
+        public void setMemory(MemoryProperties memory) {
+            this.memory = memory;
+        }
+
+        public LocalTsdbProperties getLocalTsdb() {
+            return localTsdb;
+        }
+
+        public void setLocalTsdb(LocalTsdbProperties localTsdb) {
+            this.localTsdb = localTsdb;
+        }
+
+        public static class LocalTsdbProperties {
+            /**
+             * Whether the embedded local time series store is enabled
+             * 本地嵌入式时序存储是否启动
+             */
+            private boolean enabled = false;
+            /**
+             * data directory
+             * 数据目录
+             */
+            private String dataDir = "./data/tsdb";
+            /**
+             * time(s) the data kept
+             * 数据保留时长(秒)
+             */
+            private long retention = 604800;
+            /**
+             * max time span(s) of a chunk file, the expired data is deleted by chunk file
+             * 单个分片文件的最大时间跨度(秒) 过期数据按分片文件删除
+             */
+            private long chunkDuration = 86400;
+            /**
+             * chunk file size(bytes)
+             * 分片文件大小(字节)
+             */
+            private int chunkSize = 64 * 1024 * 1024;
+            /**
+             * max samples of a block
+             * 单个块的最大采样点数
+             */
+            private int blockSamples = 120;
+            /**
+             * max time(s) the samples kept in memory before written to the chunk file
+             * 采样点写入分片文件前在内存中的最长时间(秒)
+             */
+            private long blockFlushInterval = 1800;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getDataDir() {
+                return dataDir;
+            }
+
+            public void setDataDir(String dataDir) {
+                this.dataDir = dataDir;
+            }
+
+            public long getRetention() {
+                return retention;
+            }
+
+            public void setRetention(long retention) {
+                this.retention = retention;
+            }
+
+            public long getChunkDuration() {
+                return chunkDuration;
+            }
+
+            public void setChunkDuration(long chunkDuration) {
+                this.chunkDuration = chunkDuration;
+            }
+
+            public int getChunkSize() {
+                return chunkSize;
+            }
+
+            public void setChunkSize(int chunkSize) {
+                this.chunkSize = chunkSize;
+            }
+
+            public int getBlockSamples() {
+                return blockSamples;
+            }
+
+            public void setBlockSamples(int blockSamples) {
+                this.blockSamples = blockSamples;
+            }
+
+            public long getBlockFlushInterval() {
+                return blockFlushInterval;
+            }
+
+            public void setBlockFlushInterval(long blockFlushInterval) {
+                this.blockFlushInterval = blockFlushInterval;
+            }
+        }
+
+        public static class MemoryProperties {
+            /**
+             * 内存数据存储是否启动
+             */
+            private boolean enabled = true;
+            /**
+             * 内存近期历史数据配置
+             */
+            private HistoryProperties history = new HistoryProperties();
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public HistoryProperties getHistory() {
+                return history;
+            }
+
+            public void setHistory(HistoryProperties history) {
+                this.history = history;
+            }
+        }
+
+        public static class HistoryProperties {
+            /**
+             * Whether keep the recent history of the number metrics in memory
+             * 是否在内存中保留数值指标的近期历史数据
+             */
+            private boolean enabled = true;
+            /**
+             * max series(monitor + metrics + metric + instance) kept in memory, bound the memory used
+             * 内存中保留的最大序列数(监控+指标组+指标+实例) 限制内存占用
+             */
+            private int maxSeries = 4000;
+            /**
+             * raw samples kept of each series
+             * 每个序列保留的原始采样点数
+             */
+            private int rawDepth = 360;
+            /**
+             * downsampling tiers of each series
+             * 每个序列的降采样层级
+             */
+            private List<HistoryTier> tiers = new ArrayList<>(Collections.singletonList(new HistoryTier(300, 86400)));
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMaxSeries() {
+                return maxSeries;
+            }
+
+            public void setMaxSeries(int maxSeries) {
+                this.maxSeries = maxSeries;
+            }
+
+            public int getRawDepth() {
+                return rawDepth;
+            }
+
+            public void setRawDepth(int rawDepth) {
+                this.rawDepth = rawDepth;
+            }
+
+            public List<HistoryTier> getTiers() {
+                return tiers;
+            }
+
+            public void setTiers(List<HistoryTier> tiers) {
+                this.tiers = tiers;
+            }
+        }
+
+        public static class HistoryTier {
+            /**
+             * aggregate window(s) of the tier
+             * 聚合时间窗口(秒)
+             */
+            private long resolution;
+            /**
+             * time(s) kept of the tier
+             * 保留时长(秒)
+             */
+            private long retention;
+
+            public HistoryTier() {}
+
+            public HistoryTier(long resolution, long retention) {
+                this.resolution = resolution;
+                this.retention = retention;
+            }
+
+            public long getResolution() {
+                return resolution;
+            }
+
+            public void setResolution(long resolution) {
+                this.resolution = resolution;
+            }
+
+            public long getRetention() {
+                return retention;
+            }
+
+            public void setRetention(long retention) {
+                this.retention = retention;
+            }
+        }
+
         public static class InfluxdbProperties {
             /**
              * influxdb数据存储是否启动
@@ -258,6 +512,33 @@ public class WarehouseProperties {
              * auto create table's string column define max length : NCHAR(200)
              */
             private int tableStrColumnDefineMaxLength = 200;
+            /**
+             * max rows of one batch insert
+             */
+            private int batchSize = 1000;
+            /**
+             * max wait time(ms) of the rows in one batch before flush
+             */
+            private long batchInterval = 1000;
+            /**
+             * max sql length of one batch insert, should be less than tdengine server maxSQLLength(default 65480)
+             */
+            private int maxSqlLength = 65000;
+            /**
+             * about points returned of each instance by the history interval query, the aggregate window is derived from it
+             * 历史聚合查询每个实例约返回的点数 聚合时间窗口由其推算
+             */
+            private int historyPoints = 200;
+            /**
+             * time(s) the history query result cached, 0 means no cache
+             * 历史查询结果的缓存时长(秒) 0表示不缓存
+             */
+            private long queryCacheTtl = 10;
+            /**
+             * max parallel queries of the instances of one history interval query
+             * 单次历史聚合查询中各实例查询的最大并行数
+             */
+            private int queryParallelism = 4;
 
             public boolean isEnabled() {
                 return enabled;
@@ -306,6 +587,54 @@ public class WarehouseProperties {
             public void setTableStrColumnDefineMaxLength(int tableStrColumnDefineMaxLength) {
                 this.tableStrColumnDefineMaxLength = tableStrColumnDefineMaxLength;
             }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getBatchInterval() {
+                return batchInterval;
+            }
+
+            public void setBatchInterval(long batchInterval) {
+                this.batchInterval = batchInterval;
+            }
+
+            public int getMaxSqlLength() {
+                return maxSqlLength;
+            }
+
+            public void setMaxSqlLength(int maxSqlLength) {
+                this.maxSqlLength = maxSqlLength;
+            }
+
+            public int getHistoryPoints() {
+                return historyPoints;
+            }
+
+            public void setHistoryPoints(int historyPoints) {
+                this.historyPoints = historyPoints;
+            }
+
+            public long getQueryCacheTtl() {
+                return queryCacheTtl;
+            }
+
+            public void setQueryCacheTtl(long queryCacheTtl) {
+                this.queryCacheTtl = queryCacheTtl;
+            }
+
+            public int getQueryParallelism() {
+                return queryParallelism;
+            }
+
+            public void setQueryParallelism(int queryParallelism) {
+                this.queryParallelism = queryParallelism;
+            }
         }
 
         public static class RedisProperties {
@@ -325,6 +654,21 @@ public class WarehouseProperties {
              * redis 访问密码
              */
             private String password;
+            /**
+             * max fields(monitor metrics) of one batch write
+             * 单批写入的最大字段数(监控指标组)
+             */
+            private int batchSize = 500;
+            /**
+             * max wait time(ms) of the data in one batch before flush
+             * 数据在批次中刷写前的最长等待时间(毫秒)
+             */
+            private long batchInterval = 100;
+            /**
+             * compress the value larger than it(bytes), 0 means no compression
+             * 压缩大于该字节数的值 0表示不压缩
+             */
+            private int compressThreshold = 0;
 
             public boolean isEnabled() {
                 return enabled;
@@ -357,7 +701,89 @@ public class WarehouseProperties {
             public void setPassword(String password) {
                 this.password = password;
             }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getBatchInterval() {
+                return batchInterval;
+            }
+
+            public void setBatchInterval(long batchInterval) {
+                this.batchInterval = batchInterval;
+            }
+
+            public int getCompressThreshold() {
+                return compressThreshold;
+            }
+
+            public void setCompressThreshold(int compressThreshold) {
+                this.compressThreshold = compressThreshold;
+            }
         }
     }
 
+    /**
+     * real time metrics stream properties
+     * 实时指标数据推送配置属性
+     */
+    public static class StreamProperties {
+        /**
+         * max clients subscribed at the same time
+         * 同时订阅的最大客户端数
+         */
+        private int maxSubscribers = 200;
+        /**
+         * max updates queued of a client, the oldest is dropped when a slow client is full
+         * 单个客户端的最大排队更新数 慢客户端队列满时丢弃最旧的更新
+         */
+        private int queueSize = 32;
+        /**
+         * heartbeat interval(s), also used to find the closed clients
+         * 心跳间隔(秒) 同时用于发现已断开的客户端
+         */
+        private long heartbeatInterval = 15;
+        /**
+         * time(s) a subscription kept, the client reconnects after it
+         * 订阅连接的保持时长(秒) 超时后由客户端重连
+         */
+        private long timeout = 1800;
+
+        public int getMaxSubscribers() {
+            return maxSubscribers;
+        }
+
+        public void setMaxSubscribers(int maxSubscribers) {
+            this.maxSubscribers = maxSubscribers;
+        }
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        public void setQueueSize(int queueSize) {
+            this.queueSize = queueSize;
+        }
+
+        public long getHeartbeatInterval() {
+            return heartbeatInterval;
+        }
+
+        public void setHeartbeatInterval(long heartbeatInterval) {
+            this.heartbeatInterval = heartbeatInterval;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+    }
 }
@@ -22,11 +22,13 @@ import com.usthe.common.entity.dto.Message;
 import com.usthe.common.entity.dto.MetricsData;
 import com.usthe.common.entity.dto.MetricsHistoryData;
 import com.usthe.common.entity.dto.Value;
-import com.usthe.common.entity.dto.ValueRow;
 import com.usthe.common.entity.message.CollectRep;
 import com.usthe.common.util.CommonConstants;
+import com.usthe.warehouse.store.LocalTsdbDataStorage;
 import com.usthe.warehouse.store.MemoryDataStorage;
+import com.usthe.warehouse.store.MemoryHistoryStore;
 import com.usthe.warehouse.store.TdEngineDataStorage;
+import com.usthe.warehouse.stream.RealTimeMetricsPublisher;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -37,13 +39,17 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 import static com.usthe.common.util.CommonConstants.FAIL_CODE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 
 /**
  * 指标数据查询接口
@@ -58,6 +64,11 @@ public class MetricsDataController {
 
     private static final Integer METRIC_FULL_LENGTH = 3;
     private static final String TDENGINE = "tdengine";
+    private static final String LOCAL_TSDB = "local-tsdb";
+    /**
+     * any storage providing the history data, memory history, tdengine or local tsdb
+     */
+    private static final String HISTORY = "history";
 
     @Autowired
     private MemoryDataStorage memoryDataStorage;
@@ -65,18 +76,24 @@ public class MetricsDataController {
     @Autowired(required = false)
     private TdEngineDataStorage tdEngineDataStorage;
 
+    @Autowired(required = false)
+    private LocalTsdbDataStorage localTsdbDataStorage;
+
+    @Autowired
+    private RealTimeMetricsPublisher metricsPublisher;
+
     @GetMapping("/api/warehouse/storage/status")
     @Operation(summary = "Query Warehouse Storage Server Status", description = "查询仓储下存储服务的可用性状态")
     public ResponseEntity<Message<Void>> getWarehouseStorageServerStatus(
-            @Parameter(description = "Storage Type", example = "Tdengine")
+            @Parameter(description = "Storage Type, history means any storage of the history data", example = "history")
             @RequestParam String storage) {
         boolean available = true;
         if (TDENGINE.equalsIgnoreCase(storage)) {
-            if (tdEngineDataStorage == null) {
-                available = false;
-            } else {
-                available = tdEngineDataStorage.isServerAvailable();
-            }
+            available = isTdEngineAvailable();
+        } else if (LOCAL_TSDB.equalsIgnoreCase(storage)) {
+            available = localTsdbDataStorage != null;
+        } else if (HISTORY.equalsIgnoreCase(storage)) {
+            available = memoryDataStorage.isHistoryEnabled() || localTsdbDataStorage != null || isTdEngineAvailable();
         }
         if (available) {
             return ResponseEntity.ok(Message.<Void>builder().build());
@@ -85,6 +102,16 @@ public class MetricsDataController {
         }
     }
 
+    @GetMapping("/api/warehouse/storage/memory")
+    @Operation(summary = "Query Memory History Statistics", description = "查询内存近期历史数据的序列数与内存占用")
+    public ResponseEntity<Message<MemoryHistoryStore.HistoryStats>> getMemoryHistoryStats() {
+        MemoryHistoryStore.HistoryStats stats = memoryDataStorage.getHistoryStats();
+        if (stats == null) {
+            return ResponseEntity.ok(new Message<>(FAIL_CODE, "Memory history not enabled!"));
+        }
+        return ResponseEntity.ok(new Message<>(stats));
+    }
+
     @GetMapping("/api/monitor/{monitorId}/metrics/{metrics}")
     @Operation(summary = "Query Real Time Metrics Data", description = "查询监控指标组的指标数据")
     public ResponseEntity<Message<MetricsData>> getMetricsData(
@@ -96,24 +123,37 @@ public class MetricsDataController {
         if (storageData == null) {
             return ResponseEntity.ok().body(new Message<>("query metrics data is empty"));
         }
-        {
-            MetricsData.MetricsDataBuilder dataBuilder = MetricsData.builder();
-            dataBuilder.id(storageData.getId()).app(storageData.getApp()).metric(storageData.getMetrics())
-                    .time(storageData.getTime());
-            List<Field> fields = storageData.getFieldsList().stream().map(tmpField ->
-                            Field.builder().name(tmpField.getName())
-                                    .type(Integer.valueOf(tmpField.getType()).byteValue())
-                                    .unit(tmpField.getUnit())
-                                    .build())
-                    .collect(Collectors.toList());
-            dataBuilder.fields(fields);
-            List<ValueRow> valueRows = storageData.getValuesList().stream().map(redisValueRow ->
-                    ValueRow.builder().instance(redisValueRow.getInstance())
-                            .values(redisValueRow.getColumnsList().stream().map(Value::new).collect(Collectors.toList()))
-                            .build()).collect(Collectors.toList());
-            dataBuilder.valueRows(valueRows);
-            return ResponseEntity.ok().body(new Message<>(dataBuilder.build()));
+        return ResponseEntity.ok().body(new Message<>(RealTimeMetricsPublisher.toMetricsData(storageData)));
+    }
+
+    @GetMapping(path = "/api/monitor/metrics/stream", produces = {TEXT_EVENT_STREAM_VALUE})
+    @Operation(summary = "Subscribe Real Time Metrics Data",
+            description = "订阅监控指标组的实时数据 以SSE推送当前数据及之后的每次更新")
+    public SseEmitter streamMetricsData(
+            @Parameter(description = "Subscribed monitor metrics, monitorId.metrics", example = "343254354.cpu")
+            @RequestParam List<String> subscribe) {
+        Set<String> keys = new LinkedHashSet<>(subscribe.size());
+        List<CollectRep.MetricsData> currents = new LinkedList<>();
+        for (String item : subscribe) {
+            int index = item.indexOf('.');
+            if (index <= 0 || index == item.length() - 1) {
+                throw new IllegalArgumentException("subscribe monitor metrics: " + item + " is illegal.");
+            }
+            long monitorId;
+            try {
+                monitorId = Long.parseLong(item.substring(0, index));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("subscribe monitor metrics: " + item + " is illegal.");
+            }
+            String metrics = item.substring(index + 1);
+            if (keys.add(RealTimeMetricsPublisher.key(monitorId, metrics))) {
+                CollectRep.MetricsData current = memoryDataStorage.getCurrentMetricsData(monitorId, metrics);
+                if (current != null) {
+                    currents.add(current);
+                }
+            }
         }
+        return metricsPublisher.subscribe(keys, currents);
     }
 
     @GetMapping("/api/monitor/{monitorId}/metric/{metricFull}")
@@ -127,7 +167,7 @@ public class MetricsDataController {
             @RequestParam(required = false) String instance,
             @Parameter(description = "查询历史时间段,默认6h-6小时:s-秒、m-分, h-小时, d-天, w-周", example = "6h")
             @RequestParam(required = false) String history,
-            @Parameter(description = "是否计算聚合数据,需查询时间段大于1周以上,默认不开启,聚合降样时间窗口默认为4小时", example = "false")
+            @Parameter(description = "是否计算聚合数据,默认不开启,聚合降样时间窗口由查询时间段推算,使返回约history-points个窗口,如1h-30s,1d-10m,7d-1h", example = "false")
             @RequestParam(required = false) Boolean interval
     ) {
         String[] names = metricFull.split("\\.");
@@ -140,17 +180,28 @@ public class MetricsDataController {
         if (history == null) {
             history = "6h";
         }
-        Map<String, List<Value>> instanceValuesMap = null;
-        if (interval == null || !interval) {
-            if (tdEngineDataStorage != null) {
+        boolean aggregate = interval != null && interval;
+        boolean tdEngineAvailable = isTdEngineAvailable();
+        // the recent history in memory first, query tdengine or local tsdb when memory does not keep the whole history time
+        // 优先使用内存中的近期历史数据 内存未覆盖整个查询时间段时查询tdengine或本地时序存储
+        Map<String, List<Value>> instanceValuesMap = memoryDataStorage.getHistoryMetricData(monitorId, metrics,
+                metric, instance, history, aggregate, tdEngineAvailable || localTsdbDataStorage != null);
+        if (instanceValuesMap == null && tdEngineAvailable) {
+            if (!aggregate) {
                 instanceValuesMap = tdEngineDataStorage
                         .getHistoryMetricData(monitorId, app, metrics, metric, instance, history);
-            }
-        } else {
-            if (tdEngineDataStorage != null) {
+            } else {
                 instanceValuesMap = tdEngineDataStorage
                         .getHistoryIntervalMetricData(monitorId, app, metrics, metric, instance, history);
             }
+        } else if (instanceValuesMap == null && localTsdbDataStorage != null) {
+            if (!aggregate) {
+                instanceValuesMap = localTsdbDataStorage
+                        .getHistoryMetricData(monitorId, metrics, metric, instance, history);
+            } else {
+                instanceValuesMap = localTsdbDataStorage
+                        .getHistoryIntervalMetricData(monitorId, metrics, metric, instance, history);
+            }
         }
         MetricsHistoryData historyData = MetricsHistoryData.builder()
                 .id(monitorId).metric(metrics).values(instanceValuesMap)
@@ -158,4 +209,8 @@ public class MetricsDataController {
                 .build();
         return ResponseEntity.ok().body(new Message<>(historyData));
     }
+
+    private boolean isTdEngineAvailable() {
+        return tdEngineDataStorage != null && tdEngineDataStorage.isServerAvailable();
+    }
 }
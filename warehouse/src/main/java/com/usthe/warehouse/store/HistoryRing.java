@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.store;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Fixed size ring of the samples of one series in one tier, the arrays are allocated once
+ * 单个序列在一个层级上的固定大小采样环 数组只分配一次
+ * <p>
+ * The raw tier keeps every sample, an aggregate tier keeps the sum, count, min and max of each resolution window.
+ * Writes are serialized, reads are optimistic and only fall back to the read lock when overlapped with a write.
+ * 原始层保留每个采样点 聚合层保留每个时间窗口的和,数量,最小值,最大值
+ * 写入串行 读取乐观无锁 只有与写入重叠时才退化为读锁
+ *
+ * @author tom
+ * @date 2026/10/16 21:30
+ */
+final class HistoryRing {
+
+    private static final int OPTIMISTIC_READ_TIMES = 3;
+
+    /**
+     * aggregate window millis, 0 means raw samples
+     * 聚合时间窗口毫秒 0表示原始采样
+     */
+    private final long resolution;
+    private final int capacity;
+    private final long[] times;
+    /**
+     * raw: value, aggregate: sum
+     */
+    private final double[] values;
+    private final double[] mins;
+    private final double[] maxs;
+    private final int[] counts;
+    private final StampedLock lock = new StampedLock();
+    /**
+     * total slots written, the slot of the n-th write is n % capacity
+     * 已写入的槽位总数 第n次写入的槽位为 n % capacity
+     */
+    private long written;
+
+    HistoryRing(int capacity, long resolution) {
+        this.capacity = capacity;
+        this.resolution = resolution;
+        this.times = new long[capacity];
+        this.values = new double[capacity];
+        if (resolution > 0) {
+            mins = new double[capacity];
+            maxs = new double[capacity];
+            counts = new int[capacity];
+        } else {
+            mins = null;
+            maxs = null;
+            counts = null;
+        }
+    }
+
+    /**
+     * memory used by the ring
+     * @param capacity slots
+     * @param resolution aggregate window millis, 0 means raw
+     * @return bytes
+     */
+    static long estimateBytes(int capacity, long resolution) {
+        return resolution > 0 ? capacity * 36L : capacity * 16L;
+    }
+
+    long getResolution() {
+        return resolution;
+    }
+
+    /**
+     * add a sample, the sample older than the latest slot is ignored
+     * 写入采样点 早于最新槽位的采样点被忽略
+     *
+     * @param time sample time millis
+     * @param value sample value
+     */
+    void add(long time, double value) {
+        long slotTime = resolution > 0 ? time - time % resolution : time;
+        long stamp = lock.writeLock();
+        try {
+            if (written > 0) {
+                int latest = (int) ((written - 1) % capacity);
+                if (slotTime < times[latest]) {
+                    return;
+                }
+                if (slotTime == times[latest]) {
+                    if (resolution > 0) {
+                        values[latest] += value;
+                        mins[latest] = Math.min(mins[latest], value);
+                        maxs[latest] = Math.max(maxs[latest], value);
+                        counts[latest]++;
+                    } else {
+                        values[latest] = value;
+                    }
+                    return;
+                }
+            }
+            int slot = (int) (written % capacity);
+            times[slot] = slotTime;
+            values[slot] = value;
+            if (resolution > 0) {
+                mins[slot] = value;
+                maxs[slot] = value;
+                counts[slot] = 1;
+            }
+            written++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * the time of the oldest slot kept, Long.MAX_VALUE when empty
+     * 保留的最早槽位时间 为空时返回Long.MAX_VALUE
+     */
+    long oldestTime() {
+        long stamp = lock.tryOptimisticRead();
+        long oldest = oldestTimeUnsafe();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                oldest = oldestTimeUnsafe();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return oldest;
+    }
+
+    private long oldestTimeUnsafe() {
+        long count = written;
+        if (count == 0) {
+            return Long.MAX_VALUE;
+        }
+        return times[(int) (count > capacity ? count % capacity : 0)];
+    }
+
+    /**
+     * whether the older samples have been overwritten
+     * 更早的采样点是否已被覆盖
+     */
+    boolean isFull() {
+        long stamp = lock.tryOptimisticRead();
+        boolean full = written >= capacity;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                full = written >= capacity;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return full;
+    }
+
+    /**
+     * copy the slots not older than startTime, in time order
+     * 按时间顺序拷贝不早于startTime的槽位
+     *
+     * @param startTime start time millis
+     * @return snapshot
+     */
+    Snapshot snapshot(long startTime) {
+        for (int i = 0; i < OPTIMISTIC_READ_TIMES; i++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0L) {
+                Snapshot snapshot = copy(startTime);
+                if (lock.validate(stamp)) {
+                    return snapshot;
+                }
+            }
+        }
+        long stamp = lock.readLock();
+        try {
+            return copy(startTime);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private Snapshot copy(long startTime) {
+        long end = written;
+        long begin = Math.max(0, end - capacity);
+        // the slots are in time order, skip the ones before startTime
+        while (begin < end && times[(int) (begin % capacity)] < startTime) {
+            begin++;
+        }
+        int size = (int) Math.max(0, end - begin);
+        Snapshot snapshot = new Snapshot(size, resolution > 0);
+        for (int i = 0; i < size; i++) {
+            int slot = (int) ((begin + i) % capacity);
+            snapshot.times[i] = times[slot];
+            if (resolution > 0) {
+                int count = Math.max(1, counts[slot]);
+                snapshot.values[i] = values[slot] / count;
+                snapshot.mins[i] = mins[slot];
+                snapshot.maxs[i] = maxs[slot];
+            } else {
+                snapshot.values[i] = values[slot];
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * copied samples, values are the means for aggregate tier
+     * 拷贝出的采样点 聚合层的values为平均值
+     */
+    static final class Snapshot {
+        final long[] times;
+        final double[] values;
+        final double[] mins;
+        final double[] maxs;
+
+        private Snapshot(int size, boolean aggregate) {
+            times = new long[size];
+            values = new double[size];
+            mins = aggregate ? new double[size] : null;
+            maxs = aggregate ? new double[size] : null;
+        }
+
+        int size() {
+            return times.length;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.store;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * History time and value utils shared by the memory, tdengine and local tsdb history query
+ * 内存,tdengine和本地时序存储历史查询共用的时间与数值工具
+ *
+ * @author tom
+ * @date 2026/10/17 15:20
+ */
+final class HistoryTimeUtil {
+
+    private static final long DEFAULT_HISTORY_MILLIS = TimeUnit.HOURS.toMillis(6);
+    /**
+     * default points of the history interval query
+     * 历史聚合查询的默认返回点数
+     */
+    static final int DEFAULT_HISTORY_POINTS = 200;
+    /**
+     * candidate aggregate windows of the history interval query
+     * 历史聚合查询的候选时间窗口
+     */
+    private static final long[] INTERVAL_WINDOWS = {
+            TimeUnit.SECONDS.toMillis(10), TimeUnit.SECONDS.toMillis(30), TimeUnit.MINUTES.toMillis(1),
+            TimeUnit.MINUTES.toMillis(5), TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(15),
+            TimeUnit.MINUTES.toMillis(30), TimeUnit.HOURS.toMillis(1), TimeUnit.HOURS.toMillis(2),
+            TimeUnit.HOURS.toMillis(4), TimeUnit.HOURS.toMillis(6), TimeUnit.HOURS.toMillis(12),
+            TimeUnit.DAYS.toMillis(1), TimeUnit.DAYS.toMillis(7)};
+    /**
+     * the scaled value of 4 decimal places is exact in a long below it
+     * 小于该值时放大4位小数后可用long精确表示
+     */
+    private static final double MAX_FAST_FORMAT_VALUE = 1e11;
+    private static final double HALF_TOLERANCE = 1e-4;
+
+    private HistoryTimeUtil() {}
+
+    /**
+     * parse the history time, eg: 30s 10m 6h 1d 1w, default 6h
+     * @param history history time
+     * @return millis
+     */
+    static long parseHistoryMillis(String history) {
+        if (history == null || history.length() < 2) {
+            return DEFAULT_HISTORY_MILLIS;
+        }
+        long number;
+        try {
+            number = Long.parseLong(history.substring(0, history.length() - 1).trim());
+        } catch (NumberFormatException e) {
+            return DEFAULT_HISTORY_MILLIS;
+        }
+        switch (Character.toLowerCase(history.charAt(history.length() - 1))) {
+            case 's':
+                return TimeUnit.SECONDS.toMillis(number);
+            case 'm':
+                return TimeUnit.MINUTES.toMillis(number);
+            case 'h':
+                return TimeUnit.HOURS.toMillis(number);
+            case 'd':
+                return TimeUnit.DAYS.toMillis(number);
+            case 'w':
+                return TimeUnit.DAYS.toMillis(number * 7);
+            default:
+                return DEFAULT_HISTORY_MILLIS;
+        }
+    }
+
+    /**
+     * the aggregate window of the history time, so that about the given points come back
+     * 根据查询时间段得到聚合时间窗口 使返回的点数约为给定的点数
+     *
+     * @param historyMillis history time millis
+     * @param points expected points
+     * @return window millis, one of the {@link #INTERVAL_WINDOWS}
+     */
+    static long intervalMillis(long historyMillis, int points) {
+        long window = historyMillis / Math.max(1, points);
+        for (long intervalWindow : INTERVAL_WINDOWS) {
+            if (intervalWindow >= window) {
+                return intervalWindow;
+            }
+        }
+        return INTERVAL_WINDOWS[INTERVAL_WINDOWS.length - 1];
+    }
+
+    /**
+     * the duration literal of the millis, eg: 30s 5m 4h 1d
+     * 毫秒数对应的时长字面量
+     */
+    static String durationLiteral(long millis) {
+        if (millis > 0 && millis % TimeUnit.DAYS.toMillis(1) == 0) {
+            return millis / TimeUnit.DAYS.toMillis(1) + "d";
+        } else if (millis > 0 && millis % TimeUnit.HOURS.toMillis(1) == 0) {
+            return millis / TimeUnit.HOURS.toMillis(1) + "h";
+        } else if (millis > 0 && millis % TimeUnit.MINUTES.toMillis(1) == 0) {
+            return millis / TimeUnit.MINUTES.toMillis(1) + "m";
+        } else if (millis > 0 && millis % TimeUnit.SECONDS.toMillis(1) == 0) {
+            return millis / TimeUnit.SECONDS.toMillis(1) + "s";
+        }
+        return millis + "a";
+    }
+
+    /**
+     * format the value with at most 4 decimal places, HALF_UP and no trailing zeros
+     * 格式化数值 最多保留4位小数 四舍五入并去除末尾的0
+     */
+    static String formatValue(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return String.valueOf(value);
+        }
+        double abs = Math.abs(value);
+        double scaledValue = abs * 10000;
+        double remainder = scaledValue - Math.floor(scaledValue);
+        // the exact BigDecimal for the big value and the value near the half, where the scaled double may round wrongly
+        // 大数值及接近进位边界的数值使用精确的BigDecimal 此时放大后的double可能舍入错误
+        if (abs >= MAX_FAST_FORMAT_VALUE
+                || Math.abs(remainder - 0.5) <= Math.max(HALF_TOLERANCE, Math.ulp(scaledValue))) {
+            return new BigDecimal(value).setScale(4, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+        }
+        long scaled = (long) (scaledValue + 0.5);
+        if (scaled == 0) {
+            return "0";
+        }
+        StringBuilder builder = new StringBuilder(24);
+        if (value < 0) {
+            builder.append('-');
+        }
+        builder.append(scaled / 10000);
+        int fraction = (int) (scaled % 10000);
+        if (fraction != 0) {
+            int digits = 4;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            builder.append('.');
+            for (int size = String.valueOf(fraction).length(); size < digits; size++) {
+                builder.append('0');
+            }
+            builder.append(fraction);
+        }
+        return builder.toString();
+    }
+}
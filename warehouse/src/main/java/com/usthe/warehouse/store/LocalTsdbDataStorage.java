@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.store;
+
+import com.usthe.common.entity.dto.Value;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.queue.CommonDataQueue;
+import com.usthe.common.util.CommonConstants;
+import com.usthe.common.util.ValueRowUtil;
+import com.usthe.warehouse.WarehouseProperties;
+import com.usthe.warehouse.WarehouseWorkerPool;
+import com.usthe.warehouse.store.tsdb.LocalTsdb;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded local time series storage of the history metrics data, an alternative of tdengine for small deployments
+ * 历史指标数据的嵌入式本地时序存储 小规模部署时替代tdengine
+ *
+ * @author tom
+ * @date 2026/10/16 22:10
+ */
+@Configuration
+@AutoConfigureAfter(value = {WarehouseProperties.class})
+@ConditionalOnProperty(prefix = "warehouse.store.local-tsdb",
+        name = "enabled", havingValue = "true")
+@Slf4j
+public class LocalTsdbDataStorage implements DisposableBean {
+
+    private static final String NULL_INSTANCE = "NULL";
+    private static final long MAINTAIN_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private final LocalTsdb localTsdb;
+    private final WarehouseWorkerPool workerPool;
+    private final CommonDataQueue commonDataQueue;
+
+    public LocalTsdbDataStorage(WarehouseWorkerPool workerPool, WarehouseProperties properties,
+                                CommonDataQueue commonDataQueue) throws IOException {
+        this.workerPool = workerPool;
+        this.commonDataQueue = commonDataQueue;
+        if (properties == null || properties.getStore() == null || properties.getStore().getLocalTsdb() == null) {
+            log.error("init error, please config Warehouse local tsdb props in application.yml");
+            throw new IllegalArgumentException("please config Warehouse local tsdb props");
+        }
+        WarehouseProperties.StoreProperties.TdEngineProperties tdEngineProperties = properties.getStore().getTdEngine();
+        if (tdEngineProperties != null && tdEngineProperties.isEnabled()) {
+            // both consume the same persistent storage queue, each one would only get part of the data
+            log.error("init error, local tsdb and tdengine are both enabled, they share the persistent storage data");
+            throw new IllegalArgumentException("local tsdb and tdengine can not be both enabled, disable one of them");
+        }
+        WarehouseProperties.StoreProperties.LocalTsdbProperties tsdbProperties = properties.getStore().getLocalTsdb();
+        localTsdb = new LocalTsdb(new File(tsdbProperties.getDataDir()),
+                TimeUnit.SECONDS.toMillis(tsdbProperties.getRetention()),
+                TimeUnit.SECONDS.toMillis(tsdbProperties.getChunkDuration()),
+                tsdbProperties.getChunkSize(), tsdbProperties.getBlockSamples(),
+                TimeUnit.SECONDS.toMillis(tsdbProperties.getBlockFlushInterval()));
+        startStorageData();
+    }
+
+    private void startStorageData() {
+        Runnable runnable = () -> {
+            Thread.currentThread().setName("warehouse-local-tsdb-data-storage");
+            long lastMaintainTime = System.currentTimeMillis();
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    CollectRep.MetricsData metricsData = commonDataQueue.pollPersistentStorageMetricsData();
+                    if (metricsData != null) {
+                        saveData(metricsData);
+                    }
+                    long now = System.currentTimeMillis();
+                    if (now - lastMaintainTime >= MAINTAIN_INTERVAL) {
+                        lastMaintainTime = now;
+                        localTsdb.maintain(now);
+                    }
+                } catch (InterruptedException e) {
+                    log.error(e.getMessage());
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    log.error("[local tsdb] save metrics data error: {}", e.getMessage(), e);
+                }
+            }
+        };
+        workerPool.executeJob(runnable);
+    }
+
+    void saveData(CollectRep.MetricsData metricsData) throws IOException {
+        if (metricsData.getCode() != CollectRep.Code.SUCCESS || metricsData.getValuesList().isEmpty()) {
+            return;
+        }
+        long time = metricsData.getTime() > 0 ? metricsData.getTime() : System.currentTimeMillis();
+        List<CollectRep.Field> fields = metricsData.getFieldsList();
+        for (int index = 0; index < fields.size(); index++) {
+            CollectRep.Field field = fields.get(index);
+            if (field.getType() != CommonConstants.TYPE_NUMBER) {
+                continue;
+            }
+            for (CollectRep.ValueRow valueRow : metricsData.getValuesList()) {
+                Double value = ValueRowUtil.getNumber(valueRow, index);
+                if (value == null) {
+                    continue;
+                }
+                String instance = valueRow.getInstance();
+                if (instance == null || instance.isEmpty()) {
+                    instance = NULL_INSTANCE;
+                }
+                localTsdb.append(metricsData.getId(), metricsData.getMetrics(), field.getName(), instance, time, value);
+            }
+        }
+    }
+
+    public Map<String, List<Value>> getHistoryMetricData(Long monitorId, String metrics, String metric,
+                                                         String instance, String history) {
+        long now = System.currentTimeMillis();
+        Map<String, List<Value>> instanceValuesMap = new HashMap<>(8);
+        localTsdb.scan(monitorId, metrics, metric, instance, now - HistoryTimeUtil.parseHistoryMillis(history), now,
+                (instanceValue, time, value) -> instanceValuesMap
+                        .computeIfAbsent(instanceValue, key -> new LinkedList<>())
+                        .add(new Value(HistoryTimeUtil.formatValue(value), time)));
+        return instanceValuesMap;
+    }
+
+    public Map<String, List<Value>> getHistoryIntervalMetricData(Long monitorId, String metrics, String metric,
+                                                                 String instance, String history) {
+        long now = System.currentTimeMillis();
+        long historyMillis = HistoryTimeUtil.parseHistoryMillis(history);
+        // aggregate window derived from the history time, same as tdengine
+        // 聚合时间窗口由查询时间段推算 与tdengine一致
+        long window = HistoryTimeUtil.intervalMillis(historyMillis, HistoryTimeUtil.DEFAULT_HISTORY_POINTS);
+        Map<String, Map<Long, Aggregate>> instanceWindows = new HashMap<>(8);
+        localTsdb.scan(monitorId, metrics, metric, instance, now - historyMillis, now,
+                (instanceValue, time, value) -> instanceWindows
+                        .computeIfAbsent(instanceValue, key -> new LinkedHashMap<>())
+                        .computeIfAbsent(time - time % window, Aggregate::new)
+                        .add(value));
+        Map<String, List<Value>> instanceValuesMap = new HashMap<>(instanceWindows.size());
+        instanceWindows.forEach((instanceValue, windows) -> {
+            List<Value> values = new LinkedList<>();
+            for (Aggregate aggregate : windows.values()) {
+                values.add(Value.builder()
+                        .origin(HistoryTimeUtil.formatValue(aggregate.first))
+                        .mean(HistoryTimeUtil.formatValue(aggregate.sum / aggregate.count))
+                        .min(HistoryTimeUtil.formatValue(aggregate.min))
+                        .max(HistoryTimeUtil.formatValue(aggregate.max))
+                        .time(aggregate.time).build());
+            }
+            instanceValuesMap.put(instanceValue, values);
+        });
+        return instanceValuesMap;
+    }
+
+    public LocalTsdb.TsdbStats getStats() {
+        return localTsdb.getStats();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        localTsdb.close();
+    }
+
+    private static final class Aggregate {
+        private final long time;
+        private double first;
+        private double sum;
+        private double min = Double.MAX_VALUE;
+        private double max = -Double.MAX_VALUE;
+        private int count;
+
+        private Aggregate(long time) {
+            this.time = time;
+        }
+
+        private void add(double value) {
+            if (count == 0) {
+                first = value;
+            }
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            count++;
+        }
+    }
+}
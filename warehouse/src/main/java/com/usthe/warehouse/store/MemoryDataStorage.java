@@ -17,10 +17,12 @@
 
 package com.usthe.warehouse.store;
 
+import com.usthe.common.entity.dto.Value;
 import com.usthe.common.entity.message.CollectRep;
 import com.usthe.common.queue.CommonDataQueue;
 import com.usthe.warehouse.WarehouseProperties;
 import com.usthe.warehouse.WarehouseWorkerPool;
+import com.usthe.warehouse.stream.RealTimeMetricsPublisher;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
@@ -28,11 +30,12 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.lang.NonNull;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * redis存储采集实时数据
+ * 内存存储采集实时数据 及数值指标的近期历史数据
  * @author tom
  * @date 2021/11/25 10:26
  */
@@ -46,11 +49,28 @@ public class MemoryDataStorage implements DisposableBean {
     private Map<String, CollectRep.MetricsData> metricsDataMap;
     private WarehouseWorkerPool workerPool;
     private CommonDataQueue commonDataQueue;
+    /**
+     * recent history, null when disabled
+     * 近期历史数据 未启用时为null
+     */
+    private MemoryHistoryStore historyStore;
+    private RealTimeMetricsPublisher metricsPublisher;
 
-    public MemoryDataStorage(WarehouseWorkerPool workerPool, CommonDataQueue commonDataQueue) {
+    public MemoryDataStorage(WarehouseProperties properties, WarehouseWorkerPool workerPool,
+                             CommonDataQueue commonDataQueue, RealTimeMetricsPublisher metricsPublisher) {
         metricsDataMap = new ConcurrentHashMap<>(1024);
         this.workerPool = workerPool;
         this.commonDataQueue = commonDataQueue;
+        this.metricsPublisher = metricsPublisher;
+        WarehouseProperties.StoreProperties.HistoryProperties historyProperties =
+                new WarehouseProperties.StoreProperties.HistoryProperties();
+        if (properties != null && properties.getStore() != null && properties.getStore().getMemory() != null
+                && properties.getStore().getMemory().getHistory() != null) {
+            historyProperties = properties.getStore().getMemory().getHistory();
+        }
+        if (historyProperties.isEnabled() && historyProperties.getMaxSeries() > 0) {
+            historyStore = new MemoryHistoryStore(historyProperties);
+        }
         startStorageData();
     }
 
@@ -59,6 +79,43 @@ public class MemoryDataStorage implements DisposableBean {
         return metricsDataMap.get(hashKey);
     }
 
+    /**
+     * query the recent history of the metric
+     * 查询指标的近期历史数据
+     *
+     * @param monitorId monitor id
+     * @param metrics metrics name
+     * @param metric metric name
+     * @param instance instance, null means all instances
+     * @param history history time, eg: 30m 6h 1d
+     * @param interval whether query the aggregate values
+     * @param requireCovered return null if the data of the whole history time is not in memory
+     * @return instance - values, null when not covered or history disabled
+     */
+    public Map<String, List<Value>> getHistoryMetricData(Long monitorId, String metrics, String metric, String instance,
+                                                         String history, boolean interval, boolean requireCovered) {
+        if (historyStore == null) {
+            return null;
+        }
+        return historyStore.getHistoryMetricData(monitorId, metrics, metric, instance, history, interval, requireCovered);
+    }
+
+    /**
+     * whether the recent history is kept in memory
+     * @return true when history enabled
+     */
+    public boolean isHistoryEnabled() {
+        return historyStore != null;
+    }
+
+    /**
+     * memory history statistics, null when history disabled
+     * @return statistics
+     */
+    public MemoryHistoryStore.HistoryStats getHistoryStats() {
+        return historyStore == null ? null : historyStore.getStats();
+    }
+
     private void startStorageData() {
         Runnable runnable = () -> {
             Thread.currentThread().setName("warehouse-memory-data-storage");
@@ -83,6 +140,10 @@ public class MemoryDataStorage implements DisposableBean {
             return;
         }
         metricsDataMap.put(hashKey, metricsData);
+        metricsPublisher.publish(metricsData);
+        if (historyStore != null && metricsData.getCode() == CollectRep.Code.SUCCESS) {
+            historyStore.add(metricsData);
+        }
     }
 
     @Override
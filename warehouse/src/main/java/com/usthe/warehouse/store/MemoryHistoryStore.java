@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.store;
+
+import com.usthe.common.entity.dto.Value;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
+import com.usthe.common.util.ValueRowUtil;
+import com.usthe.warehouse.WarehouseProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recent history of the number metrics kept in fixed size rings, one series per monitor, metrics, metric and instance
+ * 数值指标的近期历史数据 保存在固定大小的环中 每个监控,指标组,指标,实例为一个序列
+ * <p>
+ * Each series has a raw ring and the downsampling rings of the configured tiers, the memory of a series is fixed
+ * and the series count is limited, the series not written for the longest retention are removed.
+ * 每个序列有一个原始环和配置的各降采样层的环 单序列内存固定且序列数有上限 超过最长保留时间未写入的序列被移除
+ *
+ * @author tom
+ * @date 2026/10/16 21:30
+ */
+@Slf4j
+public class MemoryHistoryStore {
+
+    private static final String NULL_INSTANCE = "NULL";
+    private static final long EVICT_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+    /**
+     * object headers, the series key and the map entries of one series
+     * 单个序列的对象头,序列键和索引项的估算内存
+     */
+    private static final long SERIES_OVERHEAD_BYTES = 512L;
+
+    private final int maxSeries;
+    private final int rawDepth;
+    /**
+     * aggregate tiers: resolution millis and capacity, from fine to coarse
+     * 聚合层: 时间窗口毫秒和槽位数 从细到粗
+     */
+    private final long[] tierResolutions;
+    private final int[] tierCapacities;
+    private final long maxRetention;
+    private final long seriesBytes;
+    /**
+     * monitorId.metrics.metric -> instance -> series
+     */
+    private final Map<String, Map<String, Series>> seriesMap = new ConcurrentHashMap<>(1024);
+    private final AtomicInteger seriesCount = new AtomicInteger();
+    private final AtomicLong rejectedSeries = new AtomicLong();
+    private volatile long lastEvictTime = System.currentTimeMillis();
+
+    public MemoryHistoryStore(WarehouseProperties.StoreProperties.HistoryProperties properties) {
+        this.maxSeries = Math.max(0, properties.getMaxSeries());
+        this.rawDepth = Math.max(1, properties.getRawDepth());
+        List<WarehouseProperties.StoreProperties.HistoryTier> tiers = new ArrayList<>();
+        if (properties.getTiers() != null) {
+            for (WarehouseProperties.StoreProperties.HistoryTier tier : properties.getTiers()) {
+                if (tier.getResolution() > 0 && tier.getRetention() >= tier.getResolution()) {
+                    tiers.add(tier);
+                } else {
+                    log.warn("[warehouse memory] illegal history tier resolution: {}s retention: {}s, ignore.",
+                            tier.getResolution(), tier.getRetention());
+                }
+            }
+        }
+        tiers.sort((tier1, tier2) -> Long.compare(tier1.getResolution(), tier2.getResolution()));
+        tierResolutions = new long[tiers.size()];
+        tierCapacities = new int[tiers.size()];
+        long retention = 0L;
+        long bytes = SERIES_OVERHEAD_BYTES + HistoryRing.estimateBytes(rawDepth, 0);
+        for (int i = 0; i < tiers.size(); i++) {
+            tierResolutions[i] = TimeUnit.SECONDS.toMillis(tiers.get(i).getResolution());
+            tierCapacities[i] = (int) (tiers.get(i).getRetention() / tiers.get(i).getResolution());
+            retention = Math.max(retention, TimeUnit.SECONDS.toMillis(tiers.get(i).getRetention()));
+            bytes += HistoryRing.estimateBytes(tierCapacities[i], tierResolutions[i]);
+        }
+        // the raw ring of a long interval series is kept at least one day
+        this.maxRetention = Math.max(retention, TimeUnit.DAYS.toMillis(1));
+        this.seriesBytes = bytes;
+        log.info("[warehouse memory] history max series: {}, raw depth: {}, tiers: {}, max memory: {}MB.",
+                maxSeries, rawDepth, tiers.size(), maxSeries * seriesBytes / 1024 / 1024);
+    }
+
+    /**
+     * add the number metric values of the metrics data
+     * 写入采集数据中的数值指标
+     *
+     * @param metricsData metrics data
+     */
+    public void add(CollectRep.MetricsData metricsData) {
+        long now = System.currentTimeMillis();
+        if (now - lastEvictTime > EVICT_INTERVAL) {
+            lastEvictTime = now;
+            evictStale(now);
+        }
+        long time = metricsData.getTime() > 0 ? metricsData.getTime() : now;
+        List<CollectRep.Field> fields = metricsData.getFieldsList();
+        for (int index = 0; index < fields.size(); index++) {
+            CollectRep.Field field = fields.get(index);
+            if (field.getType() != CommonConstants.TYPE_NUMBER) {
+                continue;
+            }
+            String key = seriesKey(metricsData.getId(), metricsData.getMetrics(), field.getName());
+            for (CollectRep.ValueRow valueRow : metricsData.getValuesList()) {
+                Double value = ValueRowUtil.getNumber(valueRow, index);
+                if (value == null) {
+                    continue;
+                }
+                String instance = valueRow.getInstance();
+                if (instance == null || instance.isEmpty()) {
+                    instance = NULL_INSTANCE;
+                }
+                Series series = getOrCreateSeries(key, instance);
+                if (series != null) {
+                    series.add(time, value);
+                }
+            }
+        }
+    }
+
+    private Series getOrCreateSeries(String key, String instance) {
+        Map<String, Series> instanceSeries = seriesMap.computeIfAbsent(key, k -> new ConcurrentHashMap<>(4));
+        Series series = instanceSeries.get(instance);
+        if (series != null) {
+            return series;
+        }
+        return instanceSeries.computeIfAbsent(instance, k -> {
+            if (seriesCount.incrementAndGet() > maxSeries) {
+                seriesCount.decrementAndGet();
+                if (rejectedSeries.getAndIncrement() % 1000 == 0) {
+                    log.warn("[warehouse memory] history series reach the max: {}, the new series are not kept.", maxSeries);
+                }
+                return null;
+            }
+            return new Series();
+        });
+    }
+
+    /**
+     * remove the series not written for the longest retention, eg: monitor deleted
+     * 移除超过最长保留时间未写入的序列 如监控已删除
+     *
+     * @param now current time millis
+     */
+    void evictStale(long now) {
+        int evicted = 0;
+        for (Map<String, Series> instanceSeries : seriesMap.values()) {
+            for (Map.Entry<String, Series> entry : instanceSeries.entrySet()) {
+                if (now - entry.getValue().lastWriteTime > maxRetention
+                        && instanceSeries.remove(entry.getKey(), entry.getValue())) {
+                    seriesCount.decrementAndGet();
+                    evicted++;
+                }
+            }
+        }
+        seriesMap.values().removeIf(Map::isEmpty);
+        if (evicted > 0) {
+            log.info("[warehouse memory] evict {} stale history series, {}", evicted, getStats());
+        }
+    }
+
+    /**
+     * query the history of the metric from memory
+     * 从内存查询指标的历史数据
+     *
+     * @param monitorId monitor id
+     * @param metrics metrics name
+     * @param metric metric name
+     * @param instance instance, null means all instances
+     * @param history history time, eg: 30m 6h 1d
+     * @param interval whether query the aggregate values
+     * @param requireCovered return null if the data of the whole history time is not in memory
+     * @return instance - values, null when not covered
+     */
+    public Map<String, List<Value>> getHistoryMetricData(Long monitorId, String metrics, String metric, String instance,
+                                                         String history, boolean interval, boolean requireCovered) {
+        long startTime = System.currentTimeMillis() - HistoryTimeUtil.parseHistoryMillis(history);
+        Map<String, Series> instanceSeries = seriesMap.getOrDefault(seriesKey(monitorId, metrics, metric),
+                Collections.emptyMap());
+        Map<String, Series> selected = instanceSeries;
+        if (instance != null) {
+            Series series = instanceSeries.get(instance);
+            selected = series == null ? Collections.emptyMap() : Collections.singletonMap(instance, series);
+        }
+        if (requireCovered && selected.isEmpty()) {
+            return null;
+        }
+        Map<String, List<Value>> instanceValuesMap = new HashMap<>(selected.size());
+        for (Map.Entry<String, Series> entry : selected.entrySet()) {
+            HistoryRing ring = entry.getValue().selectRing(startTime, interval);
+            // the data before the oldest sample may be dropped or not collected since startup
+            // 最早采样点之前的数据可能已被覆盖或是启动前的数据
+            if (requireCovered && ring.oldestTime() > startTime) {
+                return null;
+            }
+            HistoryRing.Snapshot snapshot = ring.snapshot(startTime);
+            List<Value> values = new LinkedList<>();
+            for (int i = 0; i < snapshot.size(); i++) {
+                String origin = HistoryTimeUtil.formatValue(snapshot.values[i]);
+                if (interval) {
+                    values.add(Value.builder().origin(origin).mean(origin)
+                            .min(HistoryTimeUtil.formatValue(snapshot.mins == null ? snapshot.values[i] : snapshot.mins[i]))
+                            .max(HistoryTimeUtil.formatValue(snapshot.maxs == null ? snapshot.values[i] : snapshot.maxs[i]))
+                            .time(snapshot.times[i]).build());
+                } else {
+                    values.add(new Value(origin, snapshot.times[i]));
+                }
+            }
+            instanceValuesMap.put(entry.getKey(), values);
+        }
+        return instanceValuesMap;
+    }
+
+    public HistoryStats getStats() {
+        int count = seriesCount.get();
+        return new HistoryStats(count, maxSeries, seriesBytes, count * seriesBytes,
+                maxSeries * seriesBytes, rejectedSeries.get());
+    }
+
+    private static String seriesKey(long monitorId, String metrics, String metric) {
+        return monitorId + "." + metrics + "." + metric;
+    }
+
+    /**
+     * rings of one series
+     * 单个序列的各层级环
+     */
+    private final class Series {
+        private final HistoryRing raw;
+        private final HistoryRing[] tiers;
+        private volatile long lastWriteTime;
+
+        private Series() {
+            raw = new HistoryRing(rawDepth, 0L);
+            tiers = new HistoryRing[tierResolutions.length];
+            for (int i = 0; i < tiers.length; i++) {
+                tiers[i] = new HistoryRing(tierCapacities[i], tierResolutions[i]);
+            }
+            lastWriteTime = System.currentTimeMillis();
+        }
+
+        private void add(long time, double value) {
+            raw.add(time, value);
+            for (HistoryRing tier : tiers) {
+                tier.add(time, value);
+            }
+            lastWriteTime = System.currentTimeMillis();
+        }
+
+        /**
+         * the finest ring that keeps the data since startTime, else the one keeps the longest
+         * 选择保留了startTime以来数据的最细粒度环 否则选择保留最久的环
+         */
+        private HistoryRing selectRing(long startTime, boolean interval) {
+            if (!interval && (!raw.isFull() || raw.oldestTime() <= startTime)) {
+                return raw;
+            }
+            for (HistoryRing tier : tiers) {
+                if (!tier.isFull() || tier.oldestTime() <= startTime) {
+                    return tier;
+                }
+            }
+            if (tiers.length > 0) {
+                return tiers[tiers.length - 1];
+            }
+            return raw;
+        }
+    }
+
+    /**
+     * memory history statistics
+     * 内存历史数据统计
+     */
+    @Data
+    @AllArgsConstructor
+    public static class HistoryStats {
+        private int series;
+        private int maxSeries;
+        private long bytesPerSeries;
+        private long usedBytes;
+        private long maxBytes;
+        private long rejectedSeries;
+    }
+}
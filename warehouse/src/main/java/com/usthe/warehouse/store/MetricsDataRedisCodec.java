@@ -17,29 +17,80 @@
 
 package com.usthe.warehouse.store;
 
+import com.google.protobuf.CodedOutputStream;
 import com.usthe.common.entity.message.CollectRep;
 import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.ToByteBufEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * MetricsData redis 序列化
+ * <p>
+ * Values are encoded straight into the netty buffer of the connection, and decoded from the read buffer
+ * which may be a direct buffer. The value larger than the compress threshold is written as
+ * 0x00 + 0x01 + deflate(protobuf), a protobuf message never starts with byte 0,
+ * so the raw values written before are still readable.
+ * 值直接编码到连接的netty缓冲区 解码时读缓冲区可能是堆外缓冲区
+ * 大于压缩阈值的值写为 0x00 + 0x01 + deflate(protobuf) protobuf消息不会以字节0开头 之前写入的原始值仍可读取
+ *
  * @author tom
  * @date 2021/11/25 10:42
  */
 @Slf4j
-public class MetricsDataRedisCodec implements RedisCodec<String, CollectRep.MetricsData> {
+public class MetricsDataRedisCodec implements RedisCodec<String, CollectRep.MetricsData>,
+        ToByteBufEncoder<String, CollectRep.MetricsData> {
+
+    private static final byte COMPRESSED_MARK = 0;
+    private static final byte DEFLATE = 1;
+    private static final int COMPRESSED_HEADER_SIZE = 2;
+
+    /**
+     * compress the value whose serialized size is larger than it, 0 means no compression
+     * 序列化后大于该字节数的值进行压缩 0表示不压缩
+     */
+    private final int compressThreshold;
+
+    public MetricsDataRedisCodec() {
+        this(0);
+    }
+
+    public MetricsDataRedisCodec(int compressThreshold) {
+        this.compressThreshold = Math.max(0, compressThreshold);
+    }
 
     @Override
     public String decodeKey(ByteBuffer byteBuffer) {
-        return new String(byteBuffer.array(), byteBuffer.position(), byteBuffer.limit(), StandardCharsets.UTF_8);
+        return StandardCharsets.UTF_8.decode(byteBuffer).toString();
     }
 
     @Override
     public CollectRep.MetricsData decodeValue(ByteBuffer byteBuffer) {
         try {
+            if (byteBuffer.remaining() >= COMPRESSED_HEADER_SIZE
+                    && byteBuffer.get(byteBuffer.position()) == COMPRESSED_MARK) {
+                byte algorithm = byteBuffer.get(byteBuffer.position() + 1);
+                if (algorithm != DEFLATE) {
+                    throw new IOException("unknown compression " + algorithm);
+                }
+                ByteBuffer compressed = byteBuffer.duplicate();
+                compressed.position(compressed.position() + COMPRESSED_HEADER_SIZE);
+                try (InputStream inputStream = new InflaterInputStream(new ByteBufferInputStream(compressed))) {
+                    return CollectRep.MetricsData.parseFrom(inputStream);
+                }
+            }
             return CollectRep.MetricsData.parseFrom(byteBuffer);
         } catch (Exception e) {
             log.error(e.getMessage());
@@ -54,6 +105,106 @@ public class MetricsDataRedisCodec implements RedisCodec<String, CollectRep.Metr
 
     @Override
     public ByteBuffer encodeValue(CollectRep.MetricsData metricsData) {
-        return ByteBuffer.wrap(metricsData.toByteArray());
+        if (!isCompressed(metricsData)) {
+            return ByteBuffer.wrap(metricsData.toByteArray());
+        }
+        ByteBuf buf = Unpooled.buffer(estimateSize(metricsData));
+        encodeValue(metricsData, buf);
+        return buf.nioBuffer();
+    }
+
+    @Override
+    public void encodeKey(String key, ByteBuf target) {
+        target.writeCharSequence(key, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void encodeValue(CollectRep.MetricsData metricsData, ByteBuf target) {
+        if (!isCompressed(metricsData)) {
+            int size = metricsData.getSerializedSize();
+            target.ensureWritable(size);
+            if (target.nioBufferCount() == 1) {
+                // serialize into the memory of the target buffer, no intermediate byte array
+                // 直接序列化到目标缓冲区的内存中 无中间字节数组
+                try {
+                    CodedOutputStream codedOutput = CodedOutputStream.newInstance(target.nioBuffer(target.writerIndex(), size));
+                    metricsData.writeTo(codedOutput);
+                    codedOutput.flush();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+                target.writerIndex(target.writerIndex() + size);
+                return;
+            }
+        }
+        try (OutputStream outputStream = new ByteBufOutputStream(target)) {
+            if (isCompressed(metricsData)) {
+                outputStream.write(COMPRESSED_MARK);
+                outputStream.write(DEFLATE);
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try (DeflaterOutputStream deflaterStream = new DeflaterOutputStream(outputStream, deflater)) {
+                    metricsData.writeTo(deflaterStream);
+                } finally {
+                    deflater.end();
+                }
+            } else {
+                metricsData.writeTo(outputStream);
+            }
+        } catch (IOException e) {
+            // never happen, the netty buffer grows itself
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int estimateSize(Object keyOrValue) {
+        if (keyOrValue instanceof CollectRep.MetricsData) {
+            // the compressed size is not known, the buffer grows when needed
+            return ((CollectRep.MetricsData) keyOrValue).getSerializedSize();
+        }
+        if (keyOrValue instanceof String) {
+            return ByteBufUtil.utf8MaxBytes((String) keyOrValue);
+        }
+        return 0;
+    }
+
+    private boolean isCompressed(CollectRep.MetricsData metricsData) {
+        return compressThreshold > 0 && metricsData.getSerializedSize() > compressThreshold;
+    }
+
+    /**
+     * input stream over a heap or direct byte buffer without copying it
+     * 基于堆内或堆外缓冲区的输入流 不复制缓冲区
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int size = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, size);
+            return size;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
     }
 }
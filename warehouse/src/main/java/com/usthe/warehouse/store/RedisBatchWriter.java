@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.store;
+
+import com.usthe.common.entity.message.CollectRep;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis batch writer
+ * Gather the metrics data within a size or time window, coalesce them by monitor,
+ * and write them by one multi-field HSET per monitor, pipelined on a connection whose auto flush is disabled.
+ * The commands of a batch are flushed to the socket together, and acknowledged before the next batch is flushed.
+ * 收集一定数量或时间窗口内的指标数据 按监控合并 每个监控一条多字段HSET 在关闭自动刷写的连接上流水线发送
+ * 一批命令一起刷写到socket 并在下一批刷写前确认上一批的响应
+ * <p>
+ * HSET 1 cpu (..) memory (..)   HSET 2 cpu (..)
+ *
+ * @author tom
+ * @date 2026/10/16 23:50
+ */
+@Slf4j
+public class RedisBatchWriter {
+
+    private final StatefulRedisConnection<String, CollectRep.MetricsData> connection;
+    private final int batchSize;
+    private final long batchInterval;
+    private final long timeout;
+
+    /**
+     * monitor id -> metrics -> the latest data in current batch
+     */
+    private final Map<String, Map<String, CollectRep.MetricsData>> batchMap = new LinkedHashMap<>();
+    private int batchFields;
+    private long batchStartTime;
+    /**
+     * the commands flushed but not acknowledged
+     */
+    private List<RedisFuture<Long>> pendingFutures = new ArrayList<>();
+    private int pendingFields;
+
+    private long writtenFields;
+    private long flushCount;
+
+    /**
+     * @param connection connection used by this writer only, its auto flush is disabled
+     * @param batchSize max fields(monitor metrics) of one batch
+     * @param batchInterval max wait time(ms) of the data in one batch before flush
+     * @param timeout max wait time(ms) of the acknowledgement of one batch
+     */
+    public RedisBatchWriter(StatefulRedisConnection<String, CollectRep.MetricsData> connection,
+                            int batchSize, long batchInterval, long timeout) {
+        this.connection = connection;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchInterval = Math.max(0, batchInterval);
+        this.timeout = timeout;
+        connection.setAutoFlushCommands(false);
+    }
+
+    /**
+     * add metrics data into current batch, flush when the batch is full.
+     * The data of the same monitor metrics in one batch is replaced by the latest.
+     * @param metricsData metrics data
+     */
+    public synchronized void add(CollectRep.MetricsData metricsData) {
+        if (metricsData == null || metricsData.getValuesList().isEmpty()) {
+            return;
+        }
+        Map<String, CollectRep.MetricsData> fieldMap = batchMap
+                .computeIfAbsent(String.valueOf(metricsData.getId()), key -> new HashMap<>(8));
+        if (fieldMap.put(metricsData.getMetrics(), metricsData) == null) {
+            if (batchFields == 0) {
+                batchStartTime = System.currentTimeMillis();
+            }
+            batchFields++;
+        }
+        if (batchFields >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * flush current batch when it is held longer than the batch interval
+     */
+    public synchronized void flushIfExpired() {
+        if (batchFields > 0 && System.currentTimeMillis() - batchStartTime >= batchInterval) {
+            flush();
+        }
+    }
+
+    /**
+     * write current batch into redis, wait the acknowledgement of the previous batch first
+     */
+    public synchronized void flush() {
+        awaitPending();
+        if (batchMap.isEmpty()) {
+            return;
+        }
+        try {
+            RedisAsyncCommands<String, CollectRep.MetricsData> commands = connection.async();
+            List<RedisFuture<Long>> futures = new ArrayList<>(batchMap.size());
+            for (Map.Entry<String, Map<String, CollectRep.MetricsData>> entry : batchMap.entrySet()) {
+                futures.add(commands.hset(entry.getKey(), entry.getValue()));
+            }
+            connection.flushCommands();
+            pendingFutures = futures;
+            pendingFields = batchFields;
+        } catch (Exception e) {
+            log.error("[warehouse redis] flush batch error: {}", e.getMessage());
+        } finally {
+            flushCount++;
+            batchMap.clear();
+            batchFields = 0;
+        }
+    }
+
+    /**
+     * flush current batch and wait its acknowledgement
+     */
+    public synchronized void close() {
+        flush();
+        awaitPending();
+    }
+
+    public synchronized long getWrittenFields() {
+        return writtenFields;
+    }
+
+    public synchronized long getFlushCount() {
+        return flushCount;
+    }
+
+    private void awaitPending() {
+        if (pendingFutures.isEmpty()) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        boolean success = true;
+        try {
+            for (RedisFuture<Long> future : pendingFutures) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0 || !future.await(wait, TimeUnit.MILLISECONDS)) {
+                    log.error("[warehouse redis] batch write timeout after {} ms.", timeout);
+                    success = false;
+                    break;
+                }
+                if (future.getError() != null) {
+                    log.error("[warehouse redis] batch write error: {}", future.getError());
+                    success = false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            success = false;
+        }
+        if (success) {
+            writtenFields += pendingFields;
+        }
+        pendingFutures = new ArrayList<>();
+        pendingFields = 0;
+    }
+}
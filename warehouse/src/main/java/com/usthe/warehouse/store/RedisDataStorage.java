@@ -21,10 +21,10 @@ import com.usthe.common.entity.message.CollectRep;
 import com.usthe.common.queue.CommonDataQueue;
 import com.usthe.warehouse.WarehouseProperties;
 import com.usthe.warehouse.WarehouseWorkerPool;
+import com.usthe.warehouse.stream.RealTimeMetricsPublisher;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.RedisURI;
 import io.lettuce.core.api.StatefulRedisConnection;
-import io.lettuce.core.api.async.RedisAsyncCommands;
 import io.lettuce.core.api.sync.RedisCommands;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.DisposableBean;
@@ -48,15 +48,21 @@ import java.time.temporal.ChronoUnit;
 @Slf4j
 public class RedisDataStorage implements DisposableBean {
 
+    private static final Duration COMMAND_TIMEOUT = Duration.of(10, ChronoUnit.SECONDS);
+
     private RedisClient redisClient;
     private StatefulRedisConnection<String, CollectRep.MetricsData> connection;
+    private StatefulRedisConnection<String, CollectRep.MetricsData> writeConnection;
+    private RedisBatchWriter batchWriter;
     private WarehouseWorkerPool workerPool;
     private CommonDataQueue commonDataQueue;
+    private RealTimeMetricsPublisher metricsPublisher;
 
     public RedisDataStorage (WarehouseProperties properties, WarehouseWorkerPool workerPool,
-                             CommonDataQueue commonDataQueue) {
+                             CommonDataQueue commonDataQueue, RealTimeMetricsPublisher metricsPublisher) {
         this.workerPool = workerPool;
         this.commonDataQueue = commonDataQueue;
+        this.metricsPublisher = metricsPublisher;
         initRedisClient(properties);
         startStorageData();
     }
@@ -75,8 +81,11 @@ public class RedisDataStorage implements DisposableBean {
                     if (metricsData != null) {
                         saveData(metricsData);
                     }
+                    batchWriter.flushIfExpired();
                 } catch (InterruptedException e) {
                     log.error(e.getMessage());
+                } catch (Exception e) {
+                    log.error("[warehouse redis] save metrics data error: {}", e.getMessage(), e);
                 }
             }
         };
@@ -84,20 +93,13 @@ public class RedisDataStorage implements DisposableBean {
     }
 
     private void saveData(CollectRep.MetricsData metricsData) {
-        String key = String.valueOf(metricsData.getId());
-        String hashKey = metricsData.getMetrics();
         if (metricsData.getValuesList().isEmpty()) {
-            log.info("[warehouse redis] redis flush metrics data {} - {} is null, ignore.", key, hashKey);
+            log.info("[warehouse redis] redis flush metrics data {} - {} is null, ignore.",
+                    metricsData.getId(), metricsData.getMetrics());
             return;
         }
-        RedisAsyncCommands<String, CollectRep.MetricsData> commands = connection.async();
-        commands.hset(key, hashKey, metricsData).thenAccept(response -> {
-            if (response) {
-                log.debug("[warehouse] redis add new data {}:{}.", key, hashKey);
-            } else {
-                log.debug("[warehouse] redis replace data {}:{}.", key, hashKey);
-            }
-        });
+        metricsPublisher.publish(metricsData);
+        batchWriter.add(metricsData);
     }
 
     private void initRedisClient(WarehouseProperties properties) {
@@ -109,16 +111,28 @@ public class RedisDataStorage implements DisposableBean {
         RedisURI.Builder uriBuilder = RedisURI.builder()
                 .withHost(redisProp.getHost())
                 .withPort(redisProp.getPort())
-                .withTimeout(Duration.of(10, ChronoUnit.SECONDS));
+                .withTimeout(COMMAND_TIMEOUT);
         if (redisProp.getPassword() != null && !"".equals(redisProp.getPassword())) {
             uriBuilder.withPassword(redisProp.getPassword().toCharArray());
         }
         redisClient = RedisClient.create(uriBuilder.build());
-        connection = redisClient.connect(new MetricsDataRedisCodec());
+        MetricsDataRedisCodec codec = new MetricsDataRedisCodec(redisProp.getCompressThreshold());
+        connection = redisClient.connect(codec);
+        // the writes are pipelined on their own connection, its auto flush is disabled and never blocks the queries
+        // 写入在独立的连接上流水线发送 该连接关闭了自动刷写 不会阻塞查询
+        writeConnection = redisClient.connect(codec);
+        batchWriter = new RedisBatchWriter(writeConnection, redisProp.getBatchSize(), redisProp.getBatchInterval(),
+                COMMAND_TIMEOUT.toMillis());
     }
 
     @Override
     public void destroy() throws Exception {
+        if (batchWriter != null) {
+            batchWriter.close();
+        }
+        if (writeConnection != null) {
+            writeConnection.close();
+        }
         if (connection != null) {
             connection.close();
         }
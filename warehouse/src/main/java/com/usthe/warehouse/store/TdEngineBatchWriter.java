@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.store;
+
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
+import com.usthe.common.util.ValueRowUtil;
+import com.usthe.warehouse.WarehouseProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * tdengine batch writer
+ * Gather metrics data of many monitors within a size or time window,
+ * and write them by one multi-table multi-row INSERT on one connection.
+ * 收集一定数量或时间窗口内多个监控的指标数据 在一个连接上用一条多表多行INSERT写入
+ * <p>
+ * INSERT INTO t1 USING st1 TAGS (1) VALUES (..) (..) t2 USING st2 TAGS (2) VALUES (..)
+ *
+ * @author tom
+ * @date 2026/10/16 14:20
+ */
+@Slf4j
+public class TdEngineBatchWriter {
+
+    private static final Pattern SQL_SPECIAL_STRING_PATTERN = Pattern.compile("(\\\\)|(')");
+    private static final String INSERT_SQL_PREFIX = "INSERT INTO";
+    private static final String TABLE_DATA_SQL = " %s USING %s TAGS (%s) VALUES";
+    /**
+     * length of the table data sql without the placeholders
+     */
+    private static final int TABLE_DATA_SQL_LENGTH = String.format(TABLE_DATA_SQL, "", "", "").length();
+    private static final String CREATE_SUPER_TABLE_SQL = "CREATE STABLE IF NOT EXISTS `%s` %s TAGS (monitor BIGINT)";
+    private static final String NO_SUPER_TABLE_ERROR = "Table does not exist";
+    private static final int CONNECTION_ATTEMPTS = 3;
+    private static final long CONNECTION_RETRY_DELAY = 500L;
+
+    private final DataSource dataSource;
+    private final int batchSize;
+    private final long batchInterval;
+    private final int maxSqlLength;
+    private final int tableStrColumnDefineMaxLength;
+
+    /**
+     * table name -> rows of this table in current batch
+     */
+    private final Map<String, TableBatch> tableBatchMap = new LinkedHashMap<>();
+    private int batchRows;
+    private int batchSqlLength;
+    private long batchStartTime;
+
+    private long writtenRows;
+    private long droppedRows;
+    private long flushCount;
+
+    public TdEngineBatchWriter(DataSource dataSource,
+                               WarehouseProperties.StoreProperties.TdEngineProperties tdEngineProperties) {
+        this.dataSource = dataSource;
+        this.batchSize = Math.max(1, tdEngineProperties.getBatchSize());
+        this.batchInterval = Math.max(0, tdEngineProperties.getBatchInterval());
+        this.maxSqlLength = tdEngineProperties.getMaxSqlLength();
+        this.tableStrColumnDefineMaxLength = tdEngineProperties.getTableStrColumnDefineMaxLength();
+    }
+
+    /**
+     * add metrics data into current batch, flush when the batch is full
+     * @param metricsData metrics data
+     */
+    public synchronized void add(CollectRep.MetricsData metricsData) {
+        if (metricsData == null || metricsData.getValuesList().isEmpty() || metricsData.getFieldsList().isEmpty()) {
+            return;
+        }
+        String monitorId = String.valueOf(metricsData.getId());
+        String table = metricsData.getApp() + "_" + metricsData.getMetrics() + "_" + monitorId;
+        String superTable = metricsData.getApp() + "_" + metricsData.getMetrics() + "_super";
+        StringBuilder rowsBuffer = buildRows(metricsData);
+        int appendLength = rowsBuffer.length();
+        if (!tableBatchMap.containsKey(table)) {
+            appendLength += TableBatch.headerLength(table, superTable, monitorId);
+        }
+        if (batchRows > 0 && INSERT_SQL_PREFIX.length() + batchSqlLength + appendLength > maxSqlLength) {
+            flush();
+        }
+        TableBatch tableBatch = tableBatchMap.get(table);
+        if (tableBatch == null) {
+            tableBatch = new TableBatch(table, superTable, monitorId, metricsData.getFieldsList());
+            tableBatchMap.put(table, tableBatch);
+            batchSqlLength += TableBatch.headerLength(table, superTable, monitorId);
+        }
+        tableBatch.values.append(rowsBuffer);
+        tableBatch.rows += metricsData.getValuesCount();
+        batchSqlLength += rowsBuffer.length();
+        if (batchRows == 0) {
+            batchStartTime = System.currentTimeMillis();
+        }
+        batchRows += metricsData.getValuesCount();
+        if (batchRows >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * flush current batch when it is held longer than the batch interval
+     */
+    public synchronized void flushIfExpired() {
+        if (batchRows > 0 && System.currentTimeMillis() - batchStartTime >= batchInterval) {
+            flush();
+        }
+    }
+
+    /**
+     * write current batch into tdengine
+     * the batch is written table by table when the multi-table statement fails, only the failed tables are dropped
+     * 多表语句失败时逐表写入 只丢弃失败的表
+     */
+    public synchronized void flush() {
+        if (tableBatchMap.isEmpty()) {
+            return;
+        }
+        StringBuilder sqlBuffer = new StringBuilder(batchSqlLength + INSERT_SQL_PREFIX.length());
+        sqlBuffer.append(INSERT_SQL_PREFIX);
+        for (TableBatch tableBatch : tableBatchMap.values()) {
+            tableBatch.appendTo(sqlBuffer);
+        }
+        String insertDataSql = sqlBuffer.toString();
+        log.debug(insertDataSql);
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement()) {
+            try {
+                statement.execute(insertDataSql);
+                writtenRows += batchRows;
+            } catch (Exception e) {
+                // some stable not exists, a column mismatch or a bad value of some table,
+                // fallback to write table by table and create the missing stable
+                log.warn("[tdengine-data]: batch insert of {} tables failed: {}, write table by table.",
+                        tableBatchMap.size(), e.getMessage());
+                writeTableByTable(statement);
+            }
+        } catch (Exception e) {
+            droppedRows += batchRows;
+            log.error("[tdengine-data]: connection not available, drop {} rows of {} tables: {}",
+                    batchRows, tableBatchMap.size(), e.getMessage());
+        } finally {
+            flushCount++;
+            tableBatchMap.clear();
+            batchRows = 0;
+            batchSqlLength = 0;
+        }
+    }
+
+    /**
+     * get the connection, retry with backoff when the tdengine is not available for a moment
+     */
+    private Connection getConnection() throws SQLException {
+        SQLException exception = null;
+        for (int attempt = 1; attempt <= CONNECTION_ATTEMPTS; attempt++) {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException e) {
+                exception = e;
+                if (attempt < CONNECTION_ATTEMPTS) {
+                    log.warn("[tdengine-data]: get connection failed: {}, retry {}.", e.getMessage(), attempt);
+                    try {
+                        Thread.sleep(CONNECTION_RETRY_DELAY * attempt);
+                    } catch (InterruptedException interruptedException) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+        throw exception;
+    }
+
+    public synchronized long getWrittenRows() {
+        return writtenRows;
+    }
+
+    public synchronized long getDroppedRows() {
+        return droppedRows;
+    }
+
+    public synchronized long getFlushCount() {
+        return flushCount;
+    }
+
+    private void writeTableByTable(Statement statement) {
+        int droppedTables = 0;
+        long dropped = 0;
+        for (TableBatch tableBatch : tableBatchMap.values()) {
+            StringBuilder sqlBuffer = new StringBuilder(INSERT_SQL_PREFIX);
+            tableBatch.appendTo(sqlBuffer);
+            String insertDataSql = sqlBuffer.toString();
+            try {
+                statement.execute(insertDataSql);
+                writtenRows += tableBatch.rows;
+            } catch (Exception e) {
+                if (e.getMessage() != null && e.getMessage().contains(NO_SUPER_TABLE_ERROR)) {
+                    String createTableSql = buildCreateSuperTableSql(tableBatch);
+                    try {
+                        log.info("[tdengine-data]: create {} use sql: {}.", tableBatch.superTable, createTableSql);
+                        statement.execute(createTableSql);
+                        statement.execute(insertDataSql);
+                        writtenRows += tableBatch.rows;
+                        continue;
+                    } catch (Exception createTableException) {
+                        log.error(e.getMessage(), createTableException);
+                    }
+                } else {
+                    log.error("[tdengine-data]: insert table {} failed: {}", tableBatch.table, e.getMessage());
+                }
+                droppedTables++;
+                dropped += tableBatch.rows;
+            }
+        }
+        if (dropped > 0) {
+            droppedRows += dropped;
+            log.error("[tdengine-data]: drop {} rows of {} failed tables, the other tables are written.",
+                    dropped, droppedTables);
+        }
+    }
+
+    private String buildCreateSuperTableSql(TableBatch tableBatch) {
+        List<CollectRep.Field> fields = tableBatch.fields;
+        StringBuilder fieldSqlBuilder = new StringBuilder("(");
+        fieldSqlBuilder.append("ts TIMESTAMP, ");
+        fieldSqlBuilder.append("instance NCHAR(").append(tableStrColumnDefineMaxLength).append("), ");
+        for (int index = 0; index < fields.size(); index++) {
+            CollectRep.Field field = fields.get(index);
+            String fieldName = field.getName();
+            if (field.getType() == CommonConstants.TYPE_NUMBER) {
+                fieldSqlBuilder.append("`").append(fieldName).append("` ").append("DOUBLE");
+            } else {
+                fieldSqlBuilder.append("`").append(fieldName).append("` ").append("NCHAR(")
+                        .append(tableStrColumnDefineMaxLength).append(")");
+            }
+            if (index != fields.size() - 1) {
+                fieldSqlBuilder.append(", ");
+            }
+        }
+        fieldSqlBuilder.append(")");
+        return String.format(CREATE_SUPER_TABLE_SQL, tableBatch.superTable, fieldSqlBuilder);
+    }
+
+    private StringBuilder buildRows(CollectRep.MetricsData metricsData) {
+        List<CollectRep.Field> fields = metricsData.getFieldsList();
+        StringBuilder sqlBuffer = new StringBuilder();
+        int i = 0;
+        for (CollectRep.ValueRow valueRow : metricsData.getValuesList()) {
+            sqlBuffer.append(" (");
+            sqlBuffer.append(metricsData.getTime() + i++).append(", ");
+            sqlBuffer.append("'").append(valueRow.getInstance()).append("', ");
+            for (int index = 0; index < fields.size(); index++) {
+                CollectRep.Field field = fields.get(index);
+                String value = valueRow.getColumns(index);
+                if (ValueRowUtil.hasNumber(valueRow, index)) {
+                    // typed number data
+                    sqlBuffer.append(valueRow.getNumbers(index));
+                } else if (CommonConstants.NULL_VALUE.equals(value)) {
+                    sqlBuffer.append("NULL");
+                } else if (field.getType() == CommonConstants.TYPE_NUMBER) {
+                    // number data
+                    try {
+                        double number = Double.parseDouble(value);
+                        sqlBuffer.append(number);
+                    } catch (Exception e) {
+                        log.warn(e.getMessage());
+                        sqlBuffer.append("NULL");
+                    }
+                } else {
+                    // string
+                    sqlBuffer.append("'").append(formatStringValue(value)).append("'");
+                }
+                if (index != fields.size() - 1) {
+                    sqlBuffer.append(", ");
+                }
+            }
+            sqlBuffer.append(")");
+        }
+        return sqlBuffer;
+    }
+
+    private String formatStringValue(String value) {
+        String formatValue = SQL_SPECIAL_STRING_PATTERN.matcher(value).replaceAll("\\\\$0");
+        // bugfix Argument list too long
+        if (formatValue != null && formatValue.length() > tableStrColumnDefineMaxLength) {
+            formatValue = formatValue.substring(0, tableStrColumnDefineMaxLength);
+        }
+        return formatValue;
+    }
+
+    /**
+     * rows of one table in current batch
+     */
+    private static class TableBatch {
+        private final String table;
+        private final String superTable;
+        private final String monitorId;
+        private final List<CollectRep.Field> fields;
+        private final StringBuilder values = new StringBuilder();
+        private int rows;
+
+        private TableBatch(String table, String superTable, String monitorId, List<CollectRep.Field> fields) {
+            this.table = table;
+            this.superTable = superTable;
+            this.monitorId = monitorId;
+            this.fields = fields;
+        }
+
+        private static int headerLength(String table, String superTable, String monitorId) {
+            return TABLE_DATA_SQL_LENGTH + table.length() + superTable.length() + monitorId.length();
+        }
+
+        private void appendTo(StringBuilder sqlBuffer) {
+            sqlBuffer.append(String.format(TABLE_DATA_SQL, table, superTable, monitorId)).append(values);
+        }
+    }
+}
@@ -20,7 +20,6 @@ package com.usthe.warehouse.store;
 import com.usthe.common.entity.dto.Value;
 import com.usthe.common.entity.message.CollectRep;
 import com.usthe.common.queue.CommonDataQueue;
-import com.usthe.common.util.CommonConstants;
 import com.usthe.warehouse.WarehouseProperties;
 import com.usthe.warehouse.WarehouseWorkerPool;
 import com.zaxxer.hikari.HikariConfig;
@@ -31,15 +30,10 @@ import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.sql.Timestamp;
-import java.util.*;
-import java.util.regex.Pattern;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * tdengine data storage
@@ -53,27 +47,13 @@ import java.util.regex.Pattern;
 @Slf4j
 public class TdEngineDataStorage implements DisposableBean {
 
-    private static final Pattern SQL_SPECIAL_STRING_PATTERN = Pattern.compile("(\\\\)|(')");
-    private static final String INSERT_TABLE_DATA_SQL = "INSERT INTO %s USING %s TAGS (%s) VALUES %s";
-    private static final String CREATE_SUPER_TABLE_SQL = "CREATE STABLE IF NOT EXISTS `%s` %s TAGS (monitor BIGINT)";
-    private static final String NO_SUPER_TABLE_ERROR = "Table does not exist";
-    private static final String QUERY_HISTORY_WITH_INSTANCE_SQL
-            = "SELECT ts, instance, %s FROM %s WHERE instance = %s AND ts >= now - %s order by ts desc";
-    private static final String QUERY_HISTORY_SQL
-            = "SELECT ts, instance, %s FROM %s WHERE ts >= now - %s order by ts desc";
-    private static final String QUERY_HISTORY_INTERVAL_WITH_INSTANCE_SQL
-            = "SELECT first(%s), avg(%s), min(%s), max(%s) FROM %s WHERE instance = %s AND ts >= now - %s interval(4h)";
-    private static final String QUERY_INSTANCE_SQL
-            = "SELECT DISTINCT instance FROM %s WHERE ts >= now - 1w";
-
-    private static final String TABLE_NOT_EXIST
-            = "Table does not exist";
-
     private HikariDataSource hikariDataSource;
     private WarehouseWorkerPool workerPool;
     private CommonDataQueue commonDataQueue;
     private boolean serverAvailable;
-    private int tableStrColumnDefineMaxLength;
+    private WarehouseProperties.StoreProperties.TdEngineProperties tdEngineProperties;
+    private List<TdEngineBatchWriter> batchWriters;
+    private TdEngineHistoryQuery historyQuery;
 
     public TdEngineDataStorage(WarehouseWorkerPool workerPool, WarehouseProperties properties,
                                CommonDataQueue commonDataQueue) {
@@ -83,8 +63,12 @@ public class TdEngineDataStorage implements DisposableBean {
             log.error("init error, please config Warehouse TdEngine props in application.yml");
             throw new IllegalArgumentException("please config Warehouse TdEngine props");
         }
-        tableStrColumnDefineMaxLength = properties.getStore().getTdEngine().getTableStrColumnDefineMaxLength();
+        tdEngineProperties = properties.getStore().getTdEngine();
+        batchWriters = new CopyOnWriteArrayList<>();
         serverAvailable = initTdEngineDatasource(properties.getStore().getTdEngine());
+        if (serverAvailable) {
+            historyQuery = new TdEngineHistoryQuery(hikariDataSource, tdEngineProperties);
+        }
         startStorageData(serverAvailable);
     }
 
@@ -122,11 +106,21 @@ public class TdEngineDataStorage implements DisposableBean {
     private void startStorageData(boolean consume) {
         Runnable runnable = () -> {
             Thread.currentThread().setName("warehouse-tdEngine-data-storage");
+            // each storage thread gathers its own batch, no lock contention between threads
+            // 每个存储线程独立攒批 线程间无锁竞争
+            TdEngineBatchWriter batchWriter = null;
+            if (consume) {
+                batchWriter = new TdEngineBatchWriter(hikariDataSource, tdEngineProperties);
+                batchWriters.add(batchWriter);
+            }
             while (!Thread.currentThread().isInterrupted()) {
                 try {
                     CollectRep.MetricsData metricsData = commonDataQueue.pollPersistentStorageMetricsData();
-                    if (consume && metricsData != null) {
-                        saveData(metricsData);
+                    if (batchWriter != null) {
+                        if (metricsData != null) {
+                            batchWriter.add(metricsData);
+                        }
+                        batchWriter.flushIfExpired();
                     }
                 } catch (InterruptedException e) {
                     log.error(e.getMessage());
@@ -141,113 +135,14 @@ public class TdEngineDataStorage implements DisposableBean {
         return serverAvailable;
     }
 
-    public void saveData(CollectRep.MetricsData metricsData) {
-        if (metricsData == null || metricsData.getValuesList().isEmpty() || metricsData.getFieldsList().isEmpty()) {
-            return;
-        }
-        String monitorId = String.valueOf(metricsData.getId());
-        String superTable = metricsData.getApp() + "_" + metricsData.getMetrics() + "_super";
-        String table = metricsData.getApp() + "_" + metricsData.getMetrics() + "_" + monitorId;
-        List<CollectRep.Field> fields = metricsData.getFieldsList();
-        StringBuilder sqlBuffer = new StringBuilder();
-        int i = 0;
-        for (CollectRep.ValueRow valueRow : metricsData.getValuesList()) {
-            StringBuilder sqlRowBuffer = new StringBuilder("(");
-            sqlRowBuffer.append(metricsData.getTime() + i++).append(", ");
-            sqlRowBuffer.append("'").append(valueRow.getInstance()).append("', ");
-            for (int index = 0; index < fields.size(); index++) {
-                CollectRep.Field field = fields.get(index);
-                String value = valueRow.getColumns(index);
-                if (field.getType() == CommonConstants.TYPE_NUMBER) {
-                    // number data
-                    if (CommonConstants.NULL_VALUE.equals(value)) {
-                        sqlRowBuffer.append("NULL");
-                    } else {
-                        try {
-                            double number = Double.parseDouble(value);
-                            sqlRowBuffer.append(number);
-                        } catch (Exception e) {
-                            log.warn(e.getMessage());
-                            sqlRowBuffer.append("NULL");
-                        }
-                    }
-                } else {
-                    // string
-                    if (CommonConstants.NULL_VALUE.equals(value)) {
-                        sqlRowBuffer.append("NULL");
-                    } else {
-                        sqlRowBuffer.append("'").append(formatStringValue(value)).append("'");
-                    }
-                }
-                if (index != fields.size() - 1) {
-                    sqlRowBuffer.append(", ");
-                }
-            }
-            sqlRowBuffer.append(")");
-            sqlBuffer.append(" ").append(sqlRowBuffer);
-        }
-        String insertDataSql = String.format(INSERT_TABLE_DATA_SQL, table, superTable, monitorId, sqlBuffer);
-        log.debug(insertDataSql);
-        Connection connection = null;
-        Statement statement = null;
-        try {
-            connection = hikariDataSource.getConnection();
-            statement = connection.createStatement();
-            statement.execute(insertDataSql);
-            connection.close();
-        } catch (Exception e) {
-            if (e.getMessage().contains(NO_SUPER_TABLE_ERROR)) {
-                // stable not exists, create it
-                StringBuilder fieldSqlBuilder = new StringBuilder("(");
-                fieldSqlBuilder.append("ts TIMESTAMP, ");
-                fieldSqlBuilder.append("instance NCHAR(").append(tableStrColumnDefineMaxLength).append("), ");
-                for (int index = 0; index < fields.size(); index++) {
-                    CollectRep.Field field = fields.get(index);
-                    String fieldName = field.getName();
-                    if (field.getType() == CommonConstants.TYPE_NUMBER) {
-                        fieldSqlBuilder.append("`").append(fieldName).append("` ").append("DOUBLE");
-                    } else {
-                        fieldSqlBuilder.append("`").append(fieldName).append("` ").append("NCHAR(")
-                                .append(tableStrColumnDefineMaxLength).append(")");
-                    }
-                    if (index != fields.size() - 1) {
-                        fieldSqlBuilder.append(", ");
-                    }
-                }
-                fieldSqlBuilder.append(")");
-                String createTableSql = String.format(CREATE_SUPER_TABLE_SQL, superTable, fieldSqlBuilder);
-                try {
-                    assert statement != null;
-                    log.info("[tdengine-data]: create {} use sql: {}.", superTable, createTableSql);
-                    statement.execute(createTableSql);
-                    statement.execute(insertDataSql);
-                } catch (Exception createTableException) {
-                    log.error(e.getMessage(), createTableException);
-                }
-            } else {
-                log.error(e.getMessage());
-            }
-        } finally {
-            try {
-                assert connection != null;
-                connection.close();
-            } catch (Exception e) {
-                log.error(e.getMessage());
-            }
-        }
-    }
-
-    private String formatStringValue(String value){
-        String formatValue = SQL_SPECIAL_STRING_PATTERN.matcher(value).replaceAll("\\\\$0");
-        // bugfix Argument list too long
-        if (formatValue != null && formatValue.length() > tableStrColumnDefineMaxLength) {
-            formatValue = formatValue.substring(0, tableStrColumnDefineMaxLength);
-        }
-        return formatValue;
-    }
-
     @Override
     public void destroy() {
+        for (TdEngineBatchWriter batchWriter : batchWriters) {
+            batchWriter.flush();
+        }
+        if (historyQuery != null) {
+            historyQuery.close();
+        }
         if (hikariDataSource != null) {
             hikariDataSource.close();
         }
@@ -265,136 +160,36 @@ public class TdEngineDataStorage implements DisposableBean {
      * @return 指标历史数据列表
      */
     public Map<String, List<Value>> getHistoryMetricData(Long monitorId, String app, String metrics, String metric, String instance, String history) {
-        String table = app + "_" + metrics + "_" + monitorId;
-        String selectSql =  instance == null ? String.format(QUERY_HISTORY_SQL, metric, table, history) :
-                String.format(QUERY_HISTORY_WITH_INSTANCE_SQL, metric, table, instance, history);
-        log.debug(selectSql);
-        Connection connection = null;
-        Map<String, List<Value>> instanceValuesMap = new HashMap<>(8);
-        try {
-            if (!serverAvailable) {
-                log.error("\n\t---------------TdEngine Init Failed---------------\n" +
-                        "\t--------------Please Config Tdengine--------------\n" +
-                        "\t----------Can Not Use Metric History Now----------\n");
-                return instanceValuesMap;
-            }
-            connection = hikariDataSource.getConnection();
-            Statement statement = connection.createStatement();
-            ResultSet resultSet = statement.executeQuery(selectSql);
-            while (resultSet.next()) {
-                Timestamp ts = resultSet.getTimestamp(1);
-                String instanceValue = resultSet.getString(2);
-                if (instanceValue == null || "".equals(instanceValue)) {
-                    instanceValue = "NULL";
-                }
-                double value = resultSet.getDouble(3);
-                String strValue = new BigDecimal(value).setScale(4, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
-                List<Value> valueList = instanceValuesMap.computeIfAbsent(instanceValue, k -> new LinkedList<>());
-                valueList.add(new Value(strValue, ts.getTime()));
-            }
-            resultSet.close();
-            return instanceValuesMap;
-        } catch (SQLException sqlException) {
-          String msg = sqlException.getMessage();
-          if (msg != null && !msg.contains(TABLE_NOT_EXIST)) {
-              log.warn(sqlException.getMessage());
-          }
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-        } finally {
-            try {
-                assert connection != null;
-                connection.close();
-            } catch (Exception e) {
-                log.error(e.getMessage());
-            }
+        if (!serverAvailable) {
+            logServerUnavailable();
+            return Collections.emptyMap();
         }
-        return instanceValuesMap;
+        return historyQuery.getHistoryMetricData(app + "_" + metrics + "_" + monitorId, metric, instance, history);
     }
 
+    /**
+     * 从TD ENGINE时序数据库获取指标历史数据的聚合值 聚合时间窗口由历史范围推算
+     *
+     * @param monitorId 监控ID
+     * @param app 监控类型
+     * @param metrics 指标集合名
+     * @param metric 指标名
+     * @param instance 实例
+     * @param history 历史范围
+     * @return 指标历史聚合数据列表
+     */
     public Map<String, List<Value>> getHistoryIntervalMetricData(Long monitorId, String app, String metrics,
                                                     String metric, String instance, String history) {
         if (!serverAvailable) {
-            log.error("\n\t---------------TdEngine Init Failed---------------\n" +
-                    "\t--------------Please Config Tdengine--------------\n" +
-                    "\t----------Can Not Use Metric History Now----------\n");
+            logServerUnavailable();
             return Collections.emptyMap();
         }
-        String table = app + "_" + metrics + "_" + monitorId;
-        List<String> instances = new LinkedList<>();
-        if (instance != null) {
-            instances.add(instance);
-        }
-        if (instances.isEmpty()) {
-            // 若未指定instance，需查询当前指标数据前1周有多少个instance
-            String queryInstanceSql = String.format(QUERY_INSTANCE_SQL, table);
-            Connection connection = null;
-            try {
-                connection = hikariDataSource.getConnection();
-                Statement statement = connection.createStatement();
-                ResultSet resultSet = statement.executeQuery(queryInstanceSql);
-                while (resultSet.next()) {
-                    String instanceValue = resultSet.getString(1);
-                    if (instanceValue == null || "".equals(instanceValue)) {
-                        instances.add("''");
-                    } else {
-                        instances.add(instanceValue);
-                    }
-                }
-            } catch (Exception e) {
-                log.error(e.getMessage());
-            } finally {
-                try {
-                    assert connection != null;
-                    connection.close();
-                } catch (Exception e) {
-                    log.error(e.getMessage());
-                }
-            }
-        }
-        Map<String, List<Value>> instanceValuesMap = new HashMap<>(instances.size());
-        for (String instanceValue : instances) {
-            String selectSql = String.format(QUERY_HISTORY_INTERVAL_WITH_INSTANCE_SQL,
-                            metric, metric, metric, metric, table, instanceValue, history);
-            log.debug(selectSql);
-            if ("''".equals(instanceValue)) {
-                instanceValue = "NULL";
-            }
-            List<Value> values = instanceValuesMap.computeIfAbsent(instanceValue, k -> new LinkedList<>());
-            Connection connection = null;
-            try {
-                connection = hikariDataSource.getConnection();
-                Statement statement = connection.createStatement();
-                ResultSet resultSet = statement.executeQuery(selectSql);
-                while (resultSet.next()) {
-                    Timestamp ts = resultSet.getTimestamp(1);
-                    double origin = resultSet.getDouble(2);
-                    String originStr = new BigDecimal(origin).stripTrailingZeros().toPlainString();
-                    double avg = resultSet.getDouble(3);
-                    String avgStr = new BigDecimal(avg).stripTrailingZeros().toPlainString();
-                    double min = resultSet.getDouble(4);
-                    String minStr = new BigDecimal(min).stripTrailingZeros().toPlainString();
-                    double max = resultSet.getDouble(5);
-                    String maxStr = new BigDecimal(max).stripTrailingZeros().toPlainString();
-                    Value value = Value.builder()
-                            .origin(originStr).mean(avgStr)
-                            .min(minStr).max(maxStr)
-                            .time(ts.getTime())
-                            .build();
-                    values.add(value);
-                }
-                resultSet.close();
-            } catch (Exception e) {
-                log.error(e.getMessage(), e);
-            } finally {
-                try {
-                    assert connection != null;
-                    connection.close();
-                } catch (Exception e) {
-                    log.error(e.getMessage());
-                }
-            }
-        }
-        return instanceValuesMap;
+        return historyQuery.getHistoryIntervalMetricData(app + "_" + metrics + "_" + monitorId, metric, instance, history);
+    }
+
+    private void logServerUnavailable() {
+        log.error("\n\t---------------TdEngine Init Failed---------------\n" +
+                "\t--------------Please Config Tdengine--------------\n" +
+                "\t----------Can Not Use Metric History Now----------\n");
     }
 }
@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.store;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.usthe.common.entity.dto.Value;
+import com.usthe.common.util.LruHashMap;
+import com.usthe.warehouse.WarehouseProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * tdengine history query
+ * The aggregate window of the interval query is derived from the history time so that about the configured points
+ * come back, the instances are queried in parallel, and the results are cached shortly for the repeated dashboard
+ * queries, the same queries at the same time run once.
+ * 聚合查询的时间窗口由查询时间段推算 使返回点数约为配置的点数 各实例并行查询
+ * 查询结果短时缓存以应对仪表盘的重复查询 同时发起的相同查询只执行一次
+ * <p>
+ * tdengine 2.x does not support INTERVAL with GROUP BY a normal column, the instance is a normal column,
+ * so the instances are not aggregated by one query.
+ * tdengine 2.x 不支持 INTERVAL 与普通列 GROUP BY 同时使用 实例是普通列 因此各实例无法用一条查询聚合
+ *
+ * @author tom
+ * @date 2026/10/17 00:30
+ */
+@Slf4j
+public class TdEngineHistoryQuery {
+
+    private static final String QUERY_HISTORY_WITH_INSTANCE_SQL
+            = "SELECT ts, instance, %s FROM %s WHERE instance = %s AND ts >= now - %s order by ts desc";
+    private static final String QUERY_HISTORY_SQL
+            = "SELECT ts, instance, %s FROM %s WHERE ts >= now - %s order by ts desc";
+    private static final String QUERY_HISTORY_INTERVAL_WITH_INSTANCE_SQL
+            = "SELECT first(%s), avg(%s), min(%s), max(%s) FROM %s WHERE instance = %s AND ts >= now - %s interval(%s)";
+    private static final String QUERY_INSTANCE_SQL
+            = "SELECT DISTINCT instance FROM %s WHERE ts >= now - %s";
+    private static final String TABLE_NOT_EXIST = "Table does not exist";
+    private static final String NULL_INSTANCE = "NULL";
+    private static final Pattern SQL_SPECIAL_STRING_PATTERN = Pattern.compile("(\\\\)|(')");
+    private static final int MAX_CACHED_QUERIES = 512;
+    private static final long QUERY_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private final DataSource dataSource;
+    private final int historyPoints;
+    private final long cacheTtl;
+    private final int parallelism;
+    private final ThreadPoolExecutor queryExecutor;
+    /**
+     * query key -> result, access under its lock
+     */
+    private final Map<String, CachedResult> cache = new LruHashMap<>(MAX_CACHED_QUERIES);
+
+    public TdEngineHistoryQuery(DataSource dataSource,
+                                WarehouseProperties.StoreProperties.TdEngineProperties tdEngineProperties) {
+        this.dataSource = dataSource;
+        this.historyPoints = tdEngineProperties.getHistoryPoints() > 0
+                ? tdEngineProperties.getHistoryPoints() : HistoryTimeUtil.DEFAULT_HISTORY_POINTS;
+        this.cacheTtl = TimeUnit.SECONDS.toMillis(Math.max(0, tdEngineProperties.getQueryCacheTtl()));
+        this.parallelism = Math.max(1, tdEngineProperties.getQueryParallelism());
+        // the caller runs the instance query when the query threads are busy or closed
+        // 查询线程繁忙或已关闭时由调用方线程执行实例查询
+        queryExecutor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(parallelism * 16),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("warehouse-tdengine-query-%d").build(),
+                (runnable, executor) -> runnable.run());
+        queryExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * query the history metric data
+     * 查询指标历史数据
+     *
+     * @param table table name
+     * @param metric metric name
+     * @param instance instance, null means all instances
+     * @param history history time, eg: 30m 6h 1d
+     * @return instance - values desc by time, read only
+     */
+    public Map<String, List<Value>> getHistoryMetricData(String table, String metric, String instance, String history) {
+        long historyMillis = HistoryTimeUtil.parseHistoryMillis(history);
+        String key = "raw:" + table + ":" + metric + ":" + instance + ":" + historyMillis;
+        return cached(key, () -> queryHistoryMetricData(table, metric, instance, historyMillis));
+    }
+
+    /**
+     * query the aggregate values of the history metric data
+     * 查询指标历史数据的聚合值
+     *
+     * @param table table name
+     * @param metric metric name
+     * @param instance instance, null means all instances
+     * @param history history time, eg: 1d 1w
+     * @return instance - aggregate values, read only
+     */
+    public Map<String, List<Value>> getHistoryIntervalMetricData(String table, String metric, String instance,
+                                                                 String history) {
+        long historyMillis = HistoryTimeUtil.parseHistoryMillis(history);
+        String key = "interval:" + table + ":" + metric + ":" + instance + ":" + historyMillis;
+        return cached(key, () -> queryHistoryIntervalMetricData(table, metric, instance, historyMillis));
+    }
+
+    public void close() {
+        queryExecutor.shutdownNow();
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * the result of the query key, queried by the first caller and waited by the others
+     * @param loader query, its failed or partial result is not cached
+     */
+    private Map<String, List<Value>> cached(String key, Supplier<QueryResult> loader) {
+        if (cacheTtl <= 0) {
+            return loader.get().values;
+        }
+        long now = System.currentTimeMillis();
+        CachedResult cachedResult;
+        boolean owner = false;
+        synchronized (cache) {
+            cachedResult = cache.get(key);
+            if (cachedResult == null || cachedResult.isExpired(now)) {
+                cachedResult = new CachedResult(now + cacheTtl);
+                cache.put(key, cachedResult);
+                owner = true;
+            }
+        }
+        if (owner) {
+            QueryResult result = QueryResult.FAILED;
+            try {
+                result = loader.get();
+            } finally {
+                if (!result.cacheable) {
+                    synchronized (cache) {
+                        cache.remove(key, cachedResult);
+                    }
+                }
+                cachedResult.future.complete(result.values);
+            }
+        }
+        try {
+            return cachedResult.future.get(QUERY_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyMap();
+        } catch (ExecutionException | TimeoutException e) {
+            log.error("[tdengine-query] wait the query {} error: {}", key, e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    private QueryResult queryHistoryMetricData(String table, String metric, String instance, long historyMillis) {
+        String selectSql = instance == null
+                ? String.format(QUERY_HISTORY_SQL, metric, table, historyLiteral(historyMillis))
+                : String.format(QUERY_HISTORY_WITH_INSTANCE_SQL, metric, table, quote(instance), historyLiteral(historyMillis));
+        log.debug(selectSql);
+        Map<String, List<Value>> instanceValuesMap = new HashMap<>(8);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(selectSql)) {
+            while (resultSet.next()) {
+                long time = resultSet.getTimestamp(1).getTime();
+                String instanceValue = resultSet.getString(2);
+                if (instanceValue == null || "".equals(instanceValue)) {
+                    instanceValue = NULL_INSTANCE;
+                }
+                String value = HistoryTimeUtil.formatValue(resultSet.getDouble(3));
+                instanceValuesMap.computeIfAbsent(instanceValue, k -> new ArrayList<>()).add(new Value(value, time));
+            }
+        } catch (SQLException sqlException) {
+            return isTableNotExist(sqlException) ? QueryResult.EMPTY : QueryResult.FAILED;
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return QueryResult.FAILED;
+        }
+        return new QueryResult(Collections.unmodifiableMap(instanceValuesMap), true);
+    }
+
+    private QueryResult queryHistoryIntervalMetricData(String table, String metric, String instance,
+                                                       long historyMillis) {
+        List<String> instances;
+        if (instance != null) {
+            instances = Collections.singletonList(instance);
+        } else {
+            instances = queryInstances(table, historyMillis);
+            if (instances == null) {
+                return QueryResult.FAILED;
+            }
+        }
+        String interval = HistoryTimeUtil.durationLiteral(HistoryTimeUtil.intervalMillis(historyMillis, historyPoints));
+        Map<String, Future<List<Value>>> futures = new LinkedHashMap<>(instances.size());
+        for (String instanceValue : instances) {
+            String selectSql = String.format(QUERY_HISTORY_INTERVAL_WITH_INSTANCE_SQL,
+                    metric, metric, metric, metric, table, quote(instanceValue), historyLiteral(historyMillis), interval);
+            String instanceKey = "".equals(instanceValue) ? NULL_INSTANCE : instanceValue;
+            if (instances.size() == 1) {
+                futures.put(instanceKey, CompletableFuture.completedFuture(queryIntervalValues(selectSql)));
+            } else {
+                futures.put(instanceKey, queryExecutor.submit(() -> queryIntervalValues(selectSql)));
+            }
+        }
+        long deadline = System.currentTimeMillis() + QUERY_TIMEOUT;
+        Map<String, List<Value>> instanceValuesMap = new HashMap<>(futures.size());
+        boolean success = true;
+        for (Map.Entry<String, Future<List<Value>>> entry : futures.entrySet()) {
+            List<Value> values = null;
+            try {
+                values = entry.getValue().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                log.error("[tdengine-query] query instance {} error: {}", entry.getKey(), e.getMessage());
+                entry.getValue().cancel(true);
+            }
+            if (values == null) {
+                success = false;
+                values = Collections.emptyList();
+            }
+            instanceValuesMap.put(entry.getKey(), values);
+        }
+        // the partial result is returned but not cached
+        // 部分失败的结果返回但不缓存
+        return new QueryResult(Collections.unmodifiableMap(instanceValuesMap), success);
+    }
+
+    private List<String> queryInstances(String table, long historyMillis) {
+        String queryInstanceSql = String.format(QUERY_INSTANCE_SQL, table, historyLiteral(historyMillis));
+        List<String> instances = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(queryInstanceSql)) {
+            while (resultSet.next()) {
+                String instanceValue = resultSet.getString(1);
+                instances.add(instanceValue == null ? "" : instanceValue);
+            }
+        } catch (SQLException sqlException) {
+            return isTableNotExist(sqlException) ? Collections.emptyList() : null;
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return null;
+        }
+        return instances;
+    }
+
+    private List<Value> queryIntervalValues(String selectSql) {
+        log.debug(selectSql);
+        List<Value> values = new ArrayList<>(historyPoints + 1);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(selectSql)) {
+            while (resultSet.next()) {
+                values.add(Value.builder()
+                        .origin(HistoryTimeUtil.formatValue(resultSet.getDouble(2)))
+                        .mean(HistoryTimeUtil.formatValue(resultSet.getDouble(3)))
+                        .min(HistoryTimeUtil.formatValue(resultSet.getDouble(4)))
+                        .max(HistoryTimeUtil.formatValue(resultSet.getDouble(5)))
+                        .time(resultSet.getTimestamp(1).getTime())
+                        .build());
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return null;
+        }
+        return values;
+    }
+
+    /**
+     * the table not created yet is an empty result, others are failures
+     * 表尚未创建视为空结果 其它为查询失败
+     */
+    private boolean isTableNotExist(SQLException sqlException) {
+        String msg = sqlException.getMessage();
+        if (msg != null && msg.contains(TABLE_NOT_EXIST)) {
+            return true;
+        }
+        log.warn(msg);
+        return false;
+    }
+
+    private static String historyLiteral(long historyMillis) {
+        return HistoryTimeUtil.durationLiteral(historyMillis);
+    }
+
+    private static String quote(String value) {
+        return "'" + SQL_SPECIAL_STRING_PATTERN.matcher(value).replaceAll("\\\\$0") + "'";
+    }
+
+    private static final class CachedResult {
+        private final long expireTime;
+        private final CompletableFuture<Map<String, List<Value>>> future = new CompletableFuture<>();
+
+        private CachedResult(long expireTime) {
+            this.expireTime = expireTime;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expireTime;
+        }
+    }
+
+    private static final class QueryResult {
+        private static final QueryResult EMPTY = new QueryResult(Collections.emptyMap(), true);
+        private static final QueryResult FAILED = new QueryResult(Collections.emptyMap(), false);
+
+        private final Map<String, List<Value>> values;
+        private final boolean cacheable;
+
+        private QueryResult(Map<String, List<Value>> values, boolean cacheable) {
+            this.values = values;
+            this.cacheable = cacheable;
+        }
+    }
+}
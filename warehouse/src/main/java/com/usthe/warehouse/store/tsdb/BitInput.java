@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.store.tsdb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bit reader of a range of the buffer, only absolute gets are used so a shared buffer can be read concurrently
+ * 缓冲区指定区间的位读取器 只使用绝对位置读取 共享缓冲区可被并发读取
+ *
+ * @author tom
+ * @date 2026/10/16 22:10
+ */
+final class BitInput {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int bitLimit;
+    private int bitPosition;
+
+    BitInput(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.bitLimit = length << 3;
+    }
+
+    boolean readBit() {
+        return readBits(1) != 0L;
+    }
+
+    /**
+     * read bits as the low bits of the value, high bit first
+     * 读取bits位作为返回值的低位 高位在前
+     *
+     * @param bits bit count, 0 - 64
+     * @return value
+     */
+    long readBits(int bits) {
+        if (bitPosition + bits > bitLimit) {
+            throw new IllegalStateException("read beyond the block end, the block may be corrupted.");
+        }
+        long value = 0L;
+        while (bits > 0) {
+            int available = 8 - (bitPosition & 7);
+            int take = Math.min(available, bits);
+            int current = buffer.get(offset + (bitPosition >>> 3)) & 0xFF;
+            int chunk = (current >>> (available - take)) & ((1 << take) - 1);
+            value = (value << take) | chunk;
+            bitPosition += take;
+            bits -= take;
+        }
+        return value;
+    }
+}
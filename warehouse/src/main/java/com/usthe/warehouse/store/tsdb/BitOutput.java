@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.store.tsdb;
+
+import java.util.Arrays;
+
+/**
+ * Growable bit writer, the bits are written from the most significant bit of each byte
+ * 可扩容的位写入器 从每个字节的最高位开始写入
+ *
+ * @author tom
+ * @date 2026/10/16 22:10
+ */
+final class BitOutput {
+
+    private byte[] buffer;
+    private int bitPosition;
+
+    BitOutput(int initialBytes) {
+        buffer = new byte[Math.max(16, initialBytes)];
+    }
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1L : 0L, 1);
+    }
+
+    /**
+     * write the low bits of value, high bit first
+     * 写入value的低bits位 高位在前
+     *
+     * @param value value
+     * @param bits bit count, 0 - 64
+     */
+    void writeBits(long value, int bits) {
+        ensureCapacity(bits);
+        while (bits > 0) {
+            int byteIndex = bitPosition >>> 3;
+            int free = 8 - (bitPosition & 7);
+            int take = Math.min(free, bits);
+            int chunk = (int) ((value >>> (bits - take)) & ((1 << take) - 1));
+            buffer[byteIndex] |= (byte) (chunk << (free - take));
+            bitPosition += take;
+            bits -= take;
+        }
+    }
+
+    private void ensureCapacity(int bits) {
+        int requiredBytes = (bitPosition + bits + 7) >>> 3;
+        if (requiredBytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(requiredBytes, buffer.length << 1));
+        }
+    }
+
+    int bitLength() {
+        return bitPosition;
+    }
+
+    int byteLength() {
+        return (bitPosition + 7) >>> 3;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, byteLength());
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.store.tsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory mapped append-only chunk file of the encoded blocks
+ * 存放编码块的内存映射只追加分片文件
+ * <p>
+ * file: header(magic, version, create time) + block records.
+ * record: magic, series id, sample count, min time, max time, data length, data.
+ * The record magic is written last, a record interrupted by a crash is not visible when reopened.
+ * 文件: 文件头(魔数,版本,创建时间) + 块记录; 记录: 魔数,序列ID,采样数,最小时间,最大时间,数据长度,数据
+ * 记录魔数最后写入 崩溃时未写完的记录在重新打开后不可见
+ *
+ * @author tom
+ * @date 2026/10/16 22:10
+ */
+final class ChunkFile {
+
+    private static final int FILE_MAGIC = 0x48425453;
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 16;
+    private static final int RECORD_MAGIC = 0x424C4B31;
+    static final int RECORD_HEADER_SIZE = 32;
+
+    private final int id;
+    private final File file;
+    private final long createTime;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int writePosition;
+    /**
+     * max sample time of the blocks, used by the retention
+     * 块中最大的采样时间 用于过期删除
+     */
+    private volatile long maxTime = Long.MIN_VALUE;
+
+    private ChunkFile(int id, File file, long createTime, MappedByteBuffer buffer) {
+        this.id = id;
+        this.file = file;
+        this.createTime = createTime;
+        this.buffer = buffer;
+        this.capacity = buffer.capacity();
+    }
+
+    static ChunkFile create(File file, int id, int capacity, long createTime) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(capacity);
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        buffer.putInt(0, FILE_MAGIC);
+        buffer.putInt(4, FILE_VERSION);
+        buffer.putLong(8, createTime);
+        ChunkFile chunkFile = new ChunkFile(id, file, createTime, buffer);
+        chunkFile.writePosition = FILE_HEADER_SIZE;
+        return chunkFile;
+    }
+
+    /**
+     * open the chunk file and scan its records
+     * 打开分片文件并扫描其中的块记录
+     *
+     * @param file file
+     * @param id chunk id
+     * @param visitor record visitor
+     * @return chunk file
+     * @throws IOException when the file is not a chunk file
+     */
+    static ChunkFile open(File file, int id, RecordVisitor visitor) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+        }
+        if (buffer.capacity() < FILE_HEADER_SIZE || buffer.getInt(0) != FILE_MAGIC || buffer.getInt(4) != FILE_VERSION) {
+            throw new IOException("illegal chunk file: " + file.getName());
+        }
+        ChunkFile chunkFile = new ChunkFile(id, file, buffer.getLong(8), buffer);
+        int position = FILE_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= chunkFile.capacity && buffer.getInt(position) == RECORD_MAGIC) {
+            int length = buffer.getInt(position + 28);
+            if (length < 0 || position + RECORD_HEADER_SIZE + length > chunkFile.capacity) {
+                break;
+            }
+            long maxTime = buffer.getLong(position + 20);
+            visitor.visit(chunkFile, buffer.getInt(position + 4), buffer.getInt(position + 8),
+                    buffer.getLong(position + 12), maxTime, position + RECORD_HEADER_SIZE, length);
+            chunkFile.maxTime = Math.max(chunkFile.maxTime, maxTime);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        chunkFile.writePosition = position;
+        return chunkFile;
+    }
+
+    /**
+     * append a block, called by the single writer
+     * 追加编码块 由唯一的写线程调用
+     *
+     * @return the data offset, -1 when no enough space
+     */
+    int append(int seriesId, int count, long minTime, long maxTime, byte[] data) {
+        int position = writePosition;
+        if (position + RECORD_HEADER_SIZE + data.length > capacity) {
+            return -1;
+        }
+        // the writer's own view, its position never affects the readers
+        ByteBuffer writeBuffer = buffer.duplicate();
+        writeBuffer.position(position + RECORD_HEADER_SIZE);
+        writeBuffer.put(data);
+        buffer.putInt(position + 4, seriesId);
+        buffer.putInt(position + 8, count);
+        buffer.putLong(position + 12, minTime);
+        buffer.putLong(position + 20, maxTime);
+        buffer.putInt(position + 28, data.length);
+        buffer.putInt(position, RECORD_MAGIC);
+        writePosition = position + RECORD_HEADER_SIZE + data.length;
+        this.maxTime = Math.max(this.maxTime, maxTime);
+        return position + RECORD_HEADER_SIZE;
+    }
+
+    /**
+     * the shared buffer, read by absolute gets only
+     * 共享的缓冲区 只能使用绝对位置读取
+     */
+    MappedByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    long getCreateTime() {
+        return createTime;
+    }
+
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * delete the file, the mapping is released when the buffer is collected
+     * 删除文件 映射在缓冲区被回收时释放
+     */
+    boolean delete() {
+        return file.delete();
+    }
+
+    interface RecordVisitor {
+        void visit(ChunkFile chunkFile, int seriesId, int count, long minTime, long maxTime, int offset, int length);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.store.tsdb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decoder of the block written by {@link GorillaEncoder}
+ * {@link GorillaEncoder}编码块的解码器
+ *
+ * @author tom
+ * @date 2026/10/16 22:10
+ */
+final class GorillaDecoder {
+
+    private final BitInput input;
+    private final int count;
+    private int index;
+    private long time;
+    private long delta;
+    private long valueBits;
+    private int leading;
+    private int trailing;
+
+    GorillaDecoder(ByteBuffer buffer, int offset, int length, int count) {
+        this.input = new BitInput(buffer, offset, length);
+        this.count = count;
+    }
+
+    /**
+     * decode the next sample
+     * @return false when no more sample
+     */
+    boolean next() {
+        if (index >= count) {
+            return false;
+        }
+        if (index == 0) {
+            time = input.readBits(64);
+            valueBits = input.readBits(64);
+        } else {
+            delta += readDeltaOfDelta();
+            time += delta;
+            readXor();
+        }
+        index++;
+        return true;
+    }
+
+    private long readDeltaOfDelta() {
+        if (!input.readBit()) {
+            return 0L;
+        }
+        if (!input.readBit()) {
+            return input.readBits(7) - 63;
+        }
+        if (!input.readBit()) {
+            return input.readBits(9) - 255;
+        }
+        if (!input.readBit()) {
+            return input.readBits(12) - 2047;
+        }
+        if (!input.readBit()) {
+            return input.readBits(32) - Integer.MAX_VALUE;
+        }
+        return input.readBits(64);
+    }
+
+    private void readXor() {
+        if (!input.readBit()) {
+            return;
+        }
+        if (input.readBit()) {
+            leading = (int) input.readBits(5);
+            int meaningful = (int) input.readBits(6) + 1;
+            trailing = 64 - leading - meaningful;
+        }
+        long xor = input.readBits(64 - leading - trailing) << trailing;
+        valueBits ^= xor;
+    }
+
+    long getTime() {
+        return time;
+    }
+
+    double getValue() {
+        return Double.longBitsToDouble(valueBits);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.store.tsdb;
+
+/**
+ * Gorilla style encoder of one block: delta-of-delta timestamps and XOR compressed float values
+ * Gorilla风格的块编码器: 时间戳二阶差分编码 浮点数值异或压缩
+ * <p>
+ * timestamp: first 64 bits, then the delta of delta with prefix
+ * '0' (0), '10' (7 bits), '110' (9 bits), '1110' (12 bits), '11110' (32 bits), '11111' (64 bits).
+ * value: first 64 bits, then the xor with the previous value: '0' equal,
+ * '10' + meaningful bits within the previous leading/trailing zeros window,
+ * '11' + 5 bits leading zeros + 6 bits (meaningful bits - 1) + meaningful bits.
+ * 时间戳: 首个64位 之后为带前缀的二阶差分; 数值: 首个64位 之后为与前值的异或 复用前一个前导零/尾随零窗口或写入新窗口
+ *
+ * @author tom
+ * @date 2026/10/16 22:10
+ */
+final class GorillaEncoder {
+
+    private final BitOutput output;
+    private int count;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private long previousTime;
+    private long previousDelta;
+    private long previousValue;
+    private int previousLeading = -1;
+    private int previousTrailing;
+
+    GorillaEncoder(int initialBytes) {
+        output = new BitOutput(initialBytes);
+    }
+
+    void append(long time, double value) {
+        long valueBits = Double.doubleToRawLongBits(value);
+        if (count == 0) {
+            output.writeBits(time, 64);
+            output.writeBits(valueBits, 64);
+        } else {
+            long delta = time - previousTime;
+            writeDeltaOfDelta(delta - previousDelta);
+            previousDelta = delta;
+            writeXor(valueBits ^ previousValue);
+        }
+        previousTime = time;
+        previousValue = valueBits;
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+        count++;
+    }
+
+    private void writeDeltaOfDelta(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            output.writeBit(false);
+        } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+            output.writeBits(0b10, 2);
+            output.writeBits(deltaOfDelta + 63, 7);
+        } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+            output.writeBits(0b110, 3);
+            output.writeBits(deltaOfDelta + 255, 9);
+        } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+            output.writeBits(0b1110, 4);
+            output.writeBits(deltaOfDelta + 2047, 12);
+        } else if (deltaOfDelta >= -Integer.MAX_VALUE && deltaOfDelta <= (long) Integer.MAX_VALUE + 1) {
+            output.writeBits(0b11110, 5);
+            output.writeBits(deltaOfDelta + Integer.MAX_VALUE, 32);
+        } else {
+            output.writeBits(0b11111, 5);
+            output.writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    private void writeXor(long xor) {
+        if (xor == 0) {
+            output.writeBit(false);
+            return;
+        }
+        output.writeBit(true);
+        int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+            output.writeBit(false);
+            output.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+        } else {
+            int meaningful = 64 - leading - trailing;
+            output.writeBit(true);
+            output.writeBits(leading, 5);
+            output.writeBits(meaningful - 1, 6);
+            output.writeBits(xor >>> trailing, meaningful);
+            previousLeading = leading;
+            previousTrailing = trailing;
+        }
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getMinTime() {
+        return minTime;
+    }
+
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    int byteLength() {
+        return output.byteLength();
+    }
+
+    byte[] toByteArray() {
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,480 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.store.tsdb;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded file-backed time series store
+ * 嵌入式基于文件的时序存储
+ * <p>
+ * A series is a number metric of one monitor instance. Its recent samples are encoded in the head block in memory,
+ * the head is sealed into the active chunk file when it has enough samples or is old enough.
+ * Chunk files are memory mapped and append-only, rolled by size and time, and deleted as a whole when expired.
+ * The blocks of each series are indexed in memory and rebuilt by scanning the chunk files when opened.
+ * 序列为某监控实例的一个数值指标 近期采样点编码在内存中的头块 头块采样点足够多或时间足够久时封存到当前分片文件
+ * 分片文件内存映射且只追加 按大小和时间滚动 过期后整体删除 每个序列的块索引在内存中 打开时扫描分片文件重建
+ * <p>
+ * Writes (append, maintain, close) come from one storage thread, reads can run concurrently.
+ * The samples in the head blocks are lost when the process crashes.
+ * 写入(追加,维护,关闭)来自单个存储线程 读取可并发; 进程崩溃时头块中的采样点会丢失
+ *
+ * @author tom
+ * @date 2026/10/16 22:10
+ */
+@Slf4j
+public class LocalTsdb implements Closeable {
+
+    private static final String SERIES_FILE = "series.dat";
+    private static final String CHUNK_FILE_PREFIX = "chunk-";
+    private static final String CHUNK_FILE_SUFFIX = ".dat";
+    private static final char KEY_SEPARATOR = '\t';
+    private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+
+    private final File dataDir;
+    private final long retention;
+    private final long chunkDuration;
+    private final int chunkSize;
+    private final int blockSamples;
+    private final long blockFlushInterval;
+
+    /**
+     * monitorId metrics metric -> instance -> series
+     */
+    private final Map<String, Map<String, Series>> seriesIndex = new ConcurrentHashMap<>(1024);
+    private final Map<Integer, ChunkFile> chunks = new ConcurrentHashMap<>(16);
+    private final AtomicLong sealedSamples = new AtomicLong();
+    private final AtomicLong sealedBytes = new AtomicLong();
+    private ChunkFile activeChunk;
+    private DataOutputStream seriesOutput;
+    private int nextSeriesId;
+    private int nextChunkId;
+    private volatile boolean closed;
+
+    /**
+     * @param dataDir data directory
+     * @param retention data kept millis
+     * @param chunkDuration max time span millis of a chunk file, the granularity of the retention
+     * @param chunkSize chunk file size
+     * @param blockSamples max samples of a block
+     * @param blockFlushInterval max time millis a block kept in memory
+     * @throws IOException when the data directory can not be opened
+     */
+    public LocalTsdb(File dataDir, long retention, long chunkDuration, int chunkSize,
+                     int blockSamples, long blockFlushInterval) throws IOException {
+        this.dataDir = dataDir;
+        this.retention = retention;
+        this.chunkDuration = chunkDuration;
+        this.chunkSize = Math.max(MIN_CHUNK_SIZE, chunkSize);
+        this.blockSamples = Math.max(2, blockSamples);
+        this.blockFlushInterval = blockFlushInterval;
+        open();
+    }
+
+    private void open() throws IOException {
+        if (!dataDir.exists() && !dataDir.mkdirs()) {
+            throw new IOException("can not create local tsdb data directory: " + dataDir);
+        }
+        File seriesFile = new File(dataDir, SERIES_FILE);
+        Map<Integer, String> seriesKeys = readSeriesFile(seriesFile);
+        Map<Integer, Series> referencedSeries = new TreeMap<>();
+        Map<Integer, File> chunkFiles = new TreeMap<>();
+        File[] files = dataDir.listFiles((dir, name) -> name.startsWith(CHUNK_FILE_PREFIX) && name.endsWith(CHUNK_FILE_SUFFIX));
+        for (File file : files == null ? new File[0] : files) {
+            try {
+                chunkFiles.put(Integer.parseInt(file.getName().substring(CHUNK_FILE_PREFIX.length(),
+                        file.getName().length() - CHUNK_FILE_SUFFIX.length())), file);
+            } catch (NumberFormatException e) {
+                log.warn("[local tsdb] ignore unknown file {}.", file.getName());
+            }
+        }
+        for (Map.Entry<Integer, File> entry : chunkFiles.entrySet()) {
+            try {
+                ChunkFile chunkFile = ChunkFile.open(entry.getValue(), entry.getKey(),
+                        (chunk, seriesId, count, minTime, maxTime, offset, length) -> {
+                            String key = seriesKeys.get(seriesId);
+                            if (key == null) {
+                                return;
+                            }
+                            Series series = referencedSeries.computeIfAbsent(seriesId, id -> createSeries(id, key));
+                            series.blocks.add(new BlockRef(chunk, offset, length, count, minTime, maxTime));
+                            sealedSamples.addAndGet(count);
+                            sealedBytes.addAndGet(ChunkFile.RECORD_HEADER_SIZE + length);
+                        });
+                chunks.put(chunkFile.getId(), chunkFile);
+                activeChunk = chunkFile;
+            } catch (IOException e) {
+                log.error("[local tsdb] open chunk file {} error, ignore it: {}", entry.getValue().getName(), e.getMessage());
+            }
+            nextChunkId = entry.getKey() + 1;
+        }
+        // rewrite the series file with the series still referenced by the chunks
+        // 只保留仍被分片引用的序列 重写序列文件
+        File tempFile = new File(dataDir, SERIES_FILE + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            for (Series series : referencedSeries.values()) {
+                output.writeInt(series.id);
+                output.writeUTF(series.key);
+            }
+        }
+        Files.move(tempFile.toPath(), seriesFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        for (Series series : referencedSeries.values()) {
+            nextSeriesId = Math.max(nextSeriesId, series.id + 1);
+        }
+        seriesOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(seriesFile, true)));
+        log.info("[local tsdb] open {}, {} series, {} chunks, {} samples.", dataDir.getAbsolutePath(),
+                referencedSeries.size(), chunks.size(), sealedSamples.get());
+    }
+
+    private Map<Integer, String> readSeriesFile(File seriesFile) throws IOException {
+        Map<Integer, String> seriesKeys = new HashMap<>(1024);
+        if (!seriesFile.exists()) {
+            return seriesKeys;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(seriesFile)))) {
+            while (true) {
+                int id = input.readInt();
+                seriesKeys.put(id, input.readUTF());
+            }
+        } catch (EOFException e) {
+            // end of file, or the last entry interrupted by a crash
+        }
+        return seriesKeys;
+    }
+
+    private Series createSeries(int id, String key) {
+        // monitorId metrics metric instance, the instance may contain the separator
+        int index = key.indexOf(KEY_SEPARATOR, key.indexOf(KEY_SEPARATOR, key.indexOf(KEY_SEPARATOR) + 1) + 1);
+        String metricKey = key.substring(0, index);
+        String instance = key.substring(index + 1);
+        Series series = new Series(id, key, instance);
+        seriesIndex.computeIfAbsent(metricKey, k -> new ConcurrentHashMap<>(4)).put(instance, series);
+        return series;
+    }
+
+    /**
+     * append a sample
+     * 追加采样点
+     *
+     * @param monitorId monitor id
+     * @param metrics metrics name
+     * @param metric metric name
+     * @param instance instance
+     * @param time sample time millis
+     * @param value sample value
+     * @throws IOException when write error
+     */
+    public synchronized void append(long monitorId, String metrics, String metric, String instance,
+                                    long time, double value) throws IOException {
+        if (closed) {
+            return;
+        }
+        String metricKey = metricKey(monitorId, metrics, metric);
+        Map<String, Series> instanceSeries = seriesIndex.get(metricKey);
+        Series series = instanceSeries == null ? null : instanceSeries.get(instance);
+        if (series == null) {
+            String key = metricKey + KEY_SEPARATOR + instance;
+            series = createSeries(nextSeriesId++, key);
+            seriesOutput.writeInt(series.id);
+            seriesOutput.writeUTF(key);
+            seriesOutput.flush();
+        }
+        synchronized (series) {
+            if (series.head == null) {
+                series.head = new GorillaEncoder(blockSamples * 2);
+                series.headCreateTime = System.currentTimeMillis();
+            }
+            series.head.append(time, value);
+            if (series.head.getCount() >= blockSamples) {
+                seal(series);
+            }
+        }
+    }
+
+    /**
+     * seal the old heads, flush the chunk and delete the expired chunks, called periodically by the writer
+     * 封存旧的头块,刷盘并删除过期分片 由写线程定期调用
+     *
+     * @param now current time millis
+     * @throws IOException when write error
+     */
+    public synchronized void maintain(long now) throws IOException {
+        if (closed) {
+            return;
+        }
+        for (Map<String, Series> instanceSeries : seriesIndex.values()) {
+            for (Series series : instanceSeries.values()) {
+                synchronized (series) {
+                    if (series.head != null && now - series.headCreateTime >= blockFlushInterval) {
+                        seal(series);
+                    }
+                }
+            }
+        }
+        if (activeChunk != null) {
+            activeChunk.force();
+        }
+        deleteExpiredChunks(now);
+    }
+
+    private void deleteExpiredChunks(long now) {
+        for (ChunkFile chunk : new ArrayList<>(chunks.values())) {
+            if (chunk == activeChunk || chunk.getMaxTime() >= now - retention) {
+                continue;
+            }
+            chunks.remove(chunk.getId());
+            long samples = 0L;
+            long bytes = 0L;
+            for (Map<String, Series> instanceSeries : seriesIndex.values()) {
+                for (Series series : instanceSeries.values()) {
+                    for (BlockRef block : series.blocks) {
+                        if (block.chunk == chunk) {
+                            samples += block.count;
+                            bytes += ChunkFile.RECORD_HEADER_SIZE + block.length;
+                        }
+                    }
+                    series.blocks.removeIf(block -> block.chunk == chunk);
+                    synchronized (series) {
+                        if (series.blocks.isEmpty() && series.head == null) {
+                            instanceSeries.remove(series.instance, series);
+                        }
+                    }
+                }
+            }
+            seriesIndex.values().removeIf(Map::isEmpty);
+            sealedSamples.addAndGet(-samples);
+            sealedBytes.addAndGet(-bytes);
+            if (!chunk.delete()) {
+                log.warn("[local tsdb] delete expired chunk file {} failed.", chunk.getId());
+            }
+            log.info("[local tsdb] delete expired chunk {}, {} samples.", chunk.getId(), samples);
+        }
+    }
+
+    /**
+     * write the head block of the series into the active chunk, called with the series lock
+     */
+    private void seal(Series series) throws IOException {
+        GorillaEncoder head = series.head;
+        byte[] data = head.toByteArray();
+        long now = System.currentTimeMillis();
+        if (activeChunk == null || now - activeChunk.getCreateTime() >= chunkDuration) {
+            rollChunk(now);
+        }
+        int offset = activeChunk.append(series.id, head.getCount(), head.getMinTime(), head.getMaxTime(), data);
+        if (offset < 0) {
+            rollChunk(now);
+            offset = activeChunk.append(series.id, head.getCount(), head.getMinTime(), head.getMaxTime(), data);
+            if (offset < 0) {
+                throw new IOException("block size " + data.length + " exceeds the chunk size " + chunkSize);
+            }
+        }
+        series.blocks.add(new BlockRef(activeChunk, offset, data.length, head.getCount(), head.getMinTime(), head.getMaxTime()));
+        series.head = null;
+        sealedSamples.addAndGet(head.getCount());
+        sealedBytes.addAndGet(ChunkFile.RECORD_HEADER_SIZE + data.length);
+    }
+
+    private void rollChunk(long now) throws IOException {
+        if (activeChunk != null) {
+            activeChunk.force();
+        }
+        int id = nextChunkId++;
+        File file = new File(dataDir, String.format("%s%08d%s", CHUNK_FILE_PREFIX, id, CHUNK_FILE_SUFFIX));
+        activeChunk = ChunkFile.create(file, id, chunkSize, now);
+        chunks.put(id, activeChunk);
+    }
+
+    /**
+     * scan the samples of the metric in the time range, the samples of one instance are visited together
+     * 扫描时间范围内指标的采样点 同一实例的采样点连续访问
+     *
+     * @param monitorId monitor id
+     * @param metrics metrics name
+     * @param metric metric name
+     * @param instance instance, null means all instances
+     * @param startTime start time millis, inclusive
+     * @param endTime end time millis, inclusive
+     * @param visitor sample visitor
+     */
+    public void scan(long monitorId, String metrics, String metric, String instance,
+                     long startTime, long endTime, SampleVisitor visitor) {
+        Map<String, Series> instanceSeries = seriesIndex.getOrDefault(metricKey(monitorId, metrics, metric),
+                Collections.emptyMap());
+        for (Series series : instanceSeries.values()) {
+            if (instance != null && !Objects.equals(instance, series.instance)) {
+                continue;
+            }
+            List<BlockRef> blocks;
+            byte[] headData = null;
+            int headCount = 0;
+            synchronized (series) {
+                blocks = new ArrayList<>(series.blocks);
+                if (series.head != null && series.head.getMaxTime() >= startTime && series.head.getMinTime() <= endTime) {
+                    headData = series.head.toByteArray();
+                    headCount = series.head.getCount();
+                }
+            }
+            for (BlockRef block : blocks) {
+                if (block.maxTime >= startTime && block.minTime <= endTime) {
+                    decode(new GorillaDecoder(block.chunk.getBuffer(), block.offset, block.length, block.count),
+                            series.instance, startTime, endTime, visitor);
+                }
+            }
+            if (headData != null) {
+                decode(new GorillaDecoder(ByteBuffer.wrap(headData), 0, headData.length, headCount),
+                        series.instance, startTime, endTime, visitor);
+            }
+        }
+    }
+
+    private void decode(GorillaDecoder decoder, String instance, long startTime, long endTime, SampleVisitor visitor) {
+        while (decoder.next()) {
+            long time = decoder.getTime();
+            if (time >= startTime && time <= endTime) {
+                visitor.visit(instance, time, decoder.getValue());
+            }
+        }
+    }
+
+    public TsdbStats getStats() {
+        int series = 0;
+        for (Map<String, Series> instanceSeries : seriesIndex.values()) {
+            series += instanceSeries.size();
+        }
+        long diskBytes = 0L;
+        for (ChunkFile chunk : chunks.values()) {
+            diskBytes += chunk.getWritePosition();
+        }
+        long samples = sealedSamples.get();
+        long bytes = sealedBytes.get();
+        return new TsdbStats(series, chunks.size(), samples, diskBytes, samples == 0 ? 0D : (double) bytes / samples);
+    }
+
+    /**
+     * seal all the heads and flush
+     * 封存所有头块并刷盘
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        for (Map<String, Series> instanceSeries : seriesIndex.values()) {
+            for (Series series : instanceSeries.values()) {
+                synchronized (series) {
+                    if (series.head != null) {
+                        seal(series);
+                    }
+                }
+            }
+        }
+        closed = true;
+        if (activeChunk != null) {
+            activeChunk.force();
+        }
+        seriesOutput.close();
+    }
+
+    private static String metricKey(long monitorId, String metrics, String metric) {
+        return String.valueOf(monitorId) + KEY_SEPARATOR + metrics + KEY_SEPARATOR + metric;
+    }
+
+    public interface SampleVisitor {
+        /**
+         * visit a sample
+         * @param instance instance
+         * @param time sample time millis
+         * @param value sample value
+         */
+        void visit(String instance, long time, double value);
+    }
+
+    private static final class Series {
+        private final int id;
+        private final String key;
+        private final String instance;
+        private final List<BlockRef> blocks = new CopyOnWriteArrayList<>();
+        private GorillaEncoder head;
+        private long headCreateTime;
+
+        private Series(int id, String key, String instance) {
+            this.id = id;
+            this.key = key;
+            this.instance = instance;
+        }
+    }
+
+    private static final class BlockRef {
+        private final ChunkFile chunk;
+        private final int offset;
+        private final int length;
+        private final int count;
+        private final long minTime;
+        private final long maxTime;
+
+        private BlockRef(ChunkFile chunk, int offset, int length, int count, long minTime, long maxTime) {
+            this.chunk = chunk;
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+        }
+    }
+
+    /**
+     * local tsdb statistics
+     * 本地时序存储统计
+     */
+    @Data
+    @AllArgsConstructor
+    public static class TsdbStats {
+        private int series;
+        private int chunks;
+        private long samples;
+        private long diskBytes;
+        private double bytesPerSample;
+    }
+}
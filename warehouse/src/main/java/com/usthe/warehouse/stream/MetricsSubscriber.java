@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.stream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A client subscribed the real time metrics data, with a bounded queue of the serialized updates
+ * 订阅实时指标数据的客户端 持有已序列化更新的有界队列
+ * <p>
+ * The publisher only enqueues, at most one sender drains the queue at the same time.
+ * When the client is slower than the updates, the oldest update is dropped.
+ * 发布者只负责入队 同一时刻最多一个发送任务消费队列 客户端消费慢于更新时丢弃最旧的更新
+ *
+ * @author tom
+ * @date 2026/10/16 23:20
+ */
+@Slf4j
+final class MetricsSubscriber {
+
+    private final SseEmitter emitter;
+    private final Set<String> keys;
+    private final int queueSize;
+    private final Deque<Set<ResponseBodyEmitter.DataWithMediaType>> frames;
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    MetricsSubscriber(SseEmitter emitter, Set<String> keys, int queueSize) {
+        this.emitter = emitter;
+        this.keys = keys;
+        this.queueSize = Math.max(1, queueSize);
+        this.frames = new ArrayDeque<>(this.queueSize);
+    }
+
+    /**
+     * enqueue the serialized update
+     * 将已序列化的更新入队
+     *
+     * @param frame serialized update
+     * @return true when the caller should schedule a drain
+     */
+    boolean offer(Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+        if (closed) {
+            return false;
+        }
+        synchronized (frames) {
+            if (frames.size() >= queueSize) {
+                frames.pollFirst();
+                dropped.incrementAndGet();
+            }
+            frames.offerLast(frame);
+        }
+        return draining.compareAndSet(false, true);
+    }
+
+    /**
+     * send the queued updates until the queue is empty, the drain flag is held by the caller
+     * 发送队列中的更新直到队列为空 调用方已持有消费标记
+     */
+    void drain() {
+        while (true) {
+            Set<ResponseBodyEmitter.DataWithMediaType> frame;
+            synchronized (frames) {
+                frame = frames.pollFirst();
+            }
+            if (frame == null) {
+                draining.set(false);
+                // an update may come between the empty poll and the flag reset
+                // 队列为空与标记重置之间可能有新的更新入队
+                synchronized (frames) {
+                    if (frames.isEmpty()) {
+                        return;
+                    }
+                }
+                if (!draining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            if (closed) {
+                return;
+            }
+            try {
+                emitter.send(frame);
+            } catch (Exception e) {
+                log.debug("[metrics stream] send to the client error: {}", e.getMessage());
+                close();
+                emitter.completeWithError(e);
+                return;
+            }
+        }
+    }
+
+    void close() {
+        closed = true;
+        synchronized (frames) {
+            frames.clear();
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    Set<String> getKeys() {
+        return keys;
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.stream;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.usthe.common.entity.dto.Field;
+import com.usthe.common.entity.dto.MetricsData;
+import com.usthe.common.entity.dto.Value;
+import com.usthe.common.entity.dto.ValueRow;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.GsonUtil;
+import com.usthe.common.util.ValueRowUtil;
+import com.usthe.warehouse.WarehouseProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Server push of the real time metrics data to the subscribed clients by SSE
+ * 通过SSE向订阅的客户端推送实时指标数据
+ * <p>
+ * An update is serialized once and the same frame is queued to all subscribers of its monitor metrics,
+ * the storage thread never blocks on the clients. Each draining client takes its own sender thread,
+ * a blocked client only delays itself and drops its oldest updates.
+ * 每个更新只序列化一次 同一帧入队到该监控指标组的所有订阅者 存储线程不会被客户端阻塞
+ * 每个正在发送的客户端占用独立的发送线程 阻塞的客户端只影响自身并丢弃其最旧的更新
+ *
+ * @author tom
+ * @date 2026/10/16 23:20
+ */
+@Component
+@Slf4j
+public class RealTimeMetricsPublisher implements DisposableBean {
+
+    private static final String EVENT_METRICS = "metrics";
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> HEARTBEAT_FRAME =
+            SseEmitter.event().comment("heartbeat").build();
+
+    private final WarehouseProperties.StreamProperties properties;
+    /**
+     * monitorId.metrics - subscribers
+     * 监控ID.指标组 - 订阅者
+     */
+    private final Map<String, Set<MetricsSubscriber>> subscriberMap = new ConcurrentHashMap<>(64);
+    private final Set<MetricsSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor senderExecutor;
+    private final ScheduledExecutorService heartbeatExecutor;
+
+    public RealTimeMetricsPublisher(WarehouseProperties properties) {
+        this.properties = properties != null && properties.getStream() != null
+                ? properties.getStream() : new WarehouseProperties.StreamProperties();
+        ThreadFactory senderFactory = new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("warehouse-stream-sender-%d")
+                .build();
+        // at most one drain task of a subscriber at the same time, the threads never exceed the subscribers
+        // 每个订阅者同一时刻最多一个发送任务 线程数不会超过订阅者数
+        senderExecutor = new ThreadPoolExecutor(0, Math.max(1, this.properties.getMaxSubscribers()),
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(), senderFactory, new ThreadPoolExecutor.AbortPolicy());
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("warehouse-stream-heartbeat")
+                .build());
+        long heartbeatInterval = Math.max(1, this.properties.getHeartbeatInterval());
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, heartbeatInterval, heartbeatInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * subscribe the real time data of the monitor metrics
+     * 订阅监控指标组的实时数据
+     *
+     * @param keys monitorId.metrics, see {@link #key(long, String)}
+     * @param currents current data sent first
+     * @return sse emitter
+     * @throws IllegalArgumentException when the subscribers are full
+     */
+    public SseEmitter subscribe(Set<String> keys, Collection<CollectRep.MetricsData> currents) {
+        if (subscribers.size() >= properties.getMaxSubscribers()) {
+            throw new IllegalArgumentException("too many real time metrics subscribers, please try again later.");
+        }
+        SseEmitter emitter = new SseEmitter(TimeUnit.SECONDS.toMillis(properties.getTimeout()));
+        subscribe(emitter, keys, currents);
+        return emitter;
+    }
+
+    MetricsSubscriber subscribe(SseEmitter emitter, Set<String> keys, Collection<CollectRep.MetricsData> currents) {
+        MetricsSubscriber subscriber = new MetricsSubscriber(emitter, keys, properties.getQueueSize());
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(throwable -> unsubscribe(subscriber));
+        subscribers.add(subscriber);
+        for (String key : keys) {
+            subscriberMap.compute(key, (k, metricsSubscribers) -> {
+                if (metricsSubscribers == null) {
+                    metricsSubscribers = ConcurrentHashMap.newKeySet();
+                }
+                metricsSubscribers.add(subscriber);
+                return metricsSubscribers;
+            });
+        }
+        for (CollectRep.MetricsData current : currents) {
+            offer(subscriber, toFrame(current));
+        }
+        return subscriber;
+    }
+
+    /**
+     * push the new data to its subscribers, called by the real time storage
+     * 推送新数据到订阅者 由实时数据存储调用
+     *
+     * @param metricsData metrics data
+     */
+    public void publish(CollectRep.MetricsData metricsData) {
+        if (subscriberMap.isEmpty()) {
+            return;
+        }
+        Set<MetricsSubscriber> metricsSubscribers = subscriberMap.get(key(metricsData.getId(), metricsData.getMetrics()));
+        if (metricsSubscribers == null || metricsSubscribers.isEmpty()) {
+            return;
+        }
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = toFrame(metricsData);
+        for (MetricsSubscriber subscriber : metricsSubscribers) {
+            offer(subscriber, frame);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public static String key(long monitorId, String metrics) {
+        return monitorId + "." + metrics;
+    }
+
+    /**
+     * convert the protobuf metrics data to the dto
+     * 将protobuf指标组数据转换为dto
+     *
+     * @param metricsData protobuf metrics data
+     * @return dto
+     */
+    public static MetricsData toMetricsData(CollectRep.MetricsData metricsData) {
+        MetricsData.MetricsDataBuilder dataBuilder = MetricsData.builder();
+        dataBuilder.id(metricsData.getId()).app(metricsData.getApp()).metric(metricsData.getMetrics())
+                .time(metricsData.getTime());
+        List<Field> fields = metricsData.getFieldsList().stream().map(tmpField ->
+                        Field.builder().name(tmpField.getName())
+                                .type(Integer.valueOf(tmpField.getType()).byteValue())
+                                .unit(tmpField.getUnit())
+                                .build())
+                .collect(Collectors.toList());
+        dataBuilder.fields(fields);
+        List<ValueRow> valueRows = metricsData.getValuesList().stream().map(valueRow ->
+                ValueRow.builder().instance(valueRow.getInstance())
+                        .values(ValueRowUtil.getColumns(valueRow).stream().map(Value::new).collect(Collectors.toList()))
+                        .build()).collect(Collectors.toList());
+        dataBuilder.valueRows(valueRows);
+        return dataBuilder.build();
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> toFrame(CollectRep.MetricsData metricsData) {
+        return SseEmitter.event().name(EVENT_METRICS)
+                .data(GsonUtil.toJson(toMetricsData(metricsData)))
+                .build();
+    }
+
+    private void offer(MetricsSubscriber subscriber, Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+        if (!subscriber.offer(frame)) {
+            return;
+        }
+        try {
+            senderExecutor.execute(() -> {
+                subscriber.drain();
+                if (subscriber.isClosed()) {
+                    unsubscribe(subscriber);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("[metrics stream] sender threads are full, close the subscriber.");
+            unsubscribe(subscriber);
+            subscriber.getEmitter().complete();
+        }
+    }
+
+    private void heartbeat() {
+        for (MetricsSubscriber subscriber : subscribers) {
+            try {
+                offer(subscriber, HEARTBEAT_FRAME);
+            } catch (Exception e) {
+                log.error("[metrics stream] heartbeat error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void unsubscribe(MetricsSubscriber subscriber) {
+        subscriber.close();
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        for (String key : subscriber.getKeys()) {
+            subscriberMap.computeIfPresent(key, (k, metricsSubscribers) -> {
+                metricsSubscribers.remove(subscriber);
+                return metricsSubscribers.isEmpty() ? null : metricsSubscribers;
+            });
+        }
+        if (subscriber.getDropped() > 0) {
+            log.debug("[metrics stream] subscriber closed, {} updates dropped as it is slow.", subscriber.getDropped());
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        heartbeatExecutor.shutdownNow();
+        for (MetricsSubscriber subscriber : subscribers) {
+            unsubscribe(subscriber);
+            subscriber.getEmitter().complete();
+        }
+        senderExecutor.shutdownNow();
+    }
+}
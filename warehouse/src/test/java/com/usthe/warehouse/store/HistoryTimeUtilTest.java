@@ -0,0 +1,56 @@
+package com.usthe.warehouse.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test case for {@link HistoryTimeUtil}
+ */
+class HistoryTimeUtilTest {
+
+    @Test
+    void parseHistoryMillis() {
+        assertEquals(TimeUnit.MINUTES.toMillis(30), HistoryTimeUtil.parseHistoryMillis("30m"));
+        assertEquals(TimeUnit.DAYS.toMillis(14), HistoryTimeUtil.parseHistoryMillis("2w"));
+        assertEquals(TimeUnit.HOURS.toMillis(6), HistoryTimeUtil.parseHistoryMillis(null));
+        assertEquals(TimeUnit.HOURS.toMillis(6), HistoryTimeUtil.parseHistoryMillis("xh"));
+    }
+
+    @Test
+    void intervalMillis() {
+        assertEquals(TimeUnit.SECONDS.toMillis(30), HistoryTimeUtil.intervalMillis(TimeUnit.HOURS.toMillis(1), 200));
+        assertEquals(TimeUnit.MINUTES.toMillis(10), HistoryTimeUtil.intervalMillis(TimeUnit.DAYS.toMillis(1), 200));
+        assertEquals(TimeUnit.HOURS.toMillis(1), HistoryTimeUtil.intervalMillis(TimeUnit.DAYS.toMillis(7), 200));
+        assertEquals(TimeUnit.SECONDS.toMillis(10), HistoryTimeUtil.intervalMillis(TimeUnit.MINUTES.toMillis(5), 200));
+        assertEquals(TimeUnit.DAYS.toMillis(7), HistoryTimeUtil.intervalMillis(TimeUnit.DAYS.toMillis(3650), 200));
+        assertEquals("30s", HistoryTimeUtil.durationLiteral(TimeUnit.SECONDS.toMillis(30)));
+        assertEquals("10m", HistoryTimeUtil.durationLiteral(TimeUnit.MINUTES.toMillis(10)));
+        assertEquals("6h", HistoryTimeUtil.durationLiteral(TimeUnit.HOURS.toMillis(6)));
+        assertEquals("7d", HistoryTimeUtil.durationLiteral(TimeUnit.DAYS.toMillis(7)));
+        assertEquals("1500a", HistoryTimeUtil.durationLiteral(1500));
+    }
+
+    @Test
+    void formatValue() {
+        assertEquals("0", HistoryTimeUtil.formatValue(0));
+        assertEquals("0", HistoryTimeUtil.formatValue(-0.00001));
+        assertEquals("12", HistoryTimeUtil.formatValue(12.0));
+        assertEquals("-3.5", HistoryTimeUtil.formatValue(-3.5));
+        assertEquals("1.0235", HistoryTimeUtil.formatValue(1.02346));
+        assertEquals("0.1", HistoryTimeUtil.formatValue(0.1));
+        assertEquals("NaN", HistoryTimeUtil.formatValue(Double.NaN));
+        // same as the exact BigDecimal
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(16) - 4);
+            assertEquals(new BigDecimal(value).setScale(4, RoundingMode.HALF_UP)
+                    .stripTrailingZeros().toPlainString(), HistoryTimeUtil.formatValue(value));
+        }
+    }
+}
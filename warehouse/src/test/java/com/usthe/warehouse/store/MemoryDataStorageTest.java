@@ -1,24 +1,93 @@
 package com.usthe.warehouse.store;
 
+import com.usthe.common.entity.dto.Value;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.queue.CommonDataQueue;
+import com.usthe.common.util.CommonConstants;
+import com.usthe.warehouse.WarehouseProperties;
+import com.usthe.warehouse.WarehouseWorkerPool;
+import com.usthe.warehouse.stream.RealTimeMetricsPublisher;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 /**
  * Test case for {@link MemoryDataStorage}
  */
 class MemoryDataStorageTest {
 
+    private final BlockingQueue<CollectRep.MetricsData> dataQueue = new LinkedBlockingQueue<>();
+    private final RealTimeMetricsPublisher metricsPublisher = mock(RealTimeMetricsPublisher.class);
+    private MemoryDataStorage memoryDataStorage;
+
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
+        CommonDataQueue commonDataQueue = mock(CommonDataQueue.class);
+        when(commonDataQueue.pollRealTimeStorageMetricsData())
+                .thenAnswer(invocation -> dataQueue.poll(100, TimeUnit.MILLISECONDS));
+        memoryDataStorage = new MemoryDataStorage(new WarehouseProperties(), new WarehouseWorkerPool(), commonDataQueue,
+                metricsPublisher);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        memoryDataStorage.destroy();
     }
 
     @Test
-    void getCurrentMetricsData() {
+    void getCurrentMetricsData() throws Exception {
+        long now = System.currentTimeMillis();
+        dataQueue.add(metricsData(now - 60000, "10"));
+        dataQueue.add(metricsData(now, "20"));
+        waitStored(now);
+
+        assertEquals(now, memoryDataStorage.getCurrentMetricsData(1L, "cpu").getTime());
+        assertNull(memoryDataStorage.getCurrentMetricsData(2L, "cpu"));
+
+        // history kept even without tdengine
+        Map<String, List<Value>> values = memoryDataStorage.getHistoryMetricData(1L, "cpu", "usage", null, "1h", false, false);
+        assertEquals(2, values.get("NULL").size());
+        assertEquals("10", values.get("NULL").get(0).getOrigin());
+        assertEquals("20", values.get("NULL").get(1).getOrigin());
+        assertEquals(1, memoryDataStorage.getHistoryStats().getSeries());
+        // every stored data pushed to the subscribers
+        verify(metricsPublisher, times(2)).publish(any(CollectRep.MetricsData.class));
     }
 
     @Test
-    void destroy() {
+    void destroy() throws Exception {
+        long now = System.currentTimeMillis();
+        dataQueue.add(metricsData(now, "20"));
+        waitStored(now);
+        memoryDataStorage.destroy();
+        assertNull(memoryDataStorage.getCurrentMetricsData(1L, "cpu"));
+    }
+
+    private void waitStored(long time) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            CollectRep.MetricsData data = memoryDataStorage.getCurrentMetricsData(1L, "cpu");
+            if (data != null && data.getTime() == time) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private CollectRep.MetricsData metricsData(long time, String usage) {
+        return CollectRep.MetricsData.newBuilder()
+                .setId(1L).setApp("linux").setMetrics("cpu").setTime(time)
+                .addFields(CollectRep.Field.newBuilder().setName("usage").setType(CommonConstants.TYPE_NUMBER).build())
+                .addValues(CollectRep.ValueRow.newBuilder().addColumns(usage).build())
+                .build();
     }
-}
\ No newline at end of file
+}
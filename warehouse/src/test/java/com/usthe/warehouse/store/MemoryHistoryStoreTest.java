@@ -0,0 +1,135 @@
+package com.usthe.warehouse.store;
+
+import com.usthe.common.entity.dto.Value;
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
+import com.usthe.warehouse.WarehouseProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link MemoryHistoryStore}
+ */
+class MemoryHistoryStoreTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Test
+    void rawAndTierHistory() {
+        MemoryHistoryStore store = new MemoryHistoryStore(properties(100, 10, new WarehouseProperties.StoreProperties.HistoryTier(300, 3600)));
+        long now = System.currentTimeMillis();
+        // one sample per minute in the last 50 minutes
+        for (int i = 50; i > 0; i--) {
+            store.add(metricsData(now - i * MINUTE + MINUTE / 2, String.valueOf(i)));
+        }
+
+        // the last 5 minutes are in the raw ring
+        Map<String, List<Value>> values = store.getHistoryMetricData(1L, "cpu", "usage", null, "5m", false, true);
+        assertEquals(1, values.size());
+        List<Value> diskValues = values.get("disk1");
+        assertEquals(5, diskValues.size());
+        assertEquals("5", diskValues.get(0).getOrigin());
+        assertEquals("1", diskValues.get(diskValues.size() - 1).getOrigin());
+
+        // the raw ring only keeps 10 samples, 30 minutes are served by the 5 minutes tier
+        values = store.getHistoryMetricData(1L, "cpu", "usage", "disk1", "30m", false, true);
+        List<Value> tierValues = values.get("disk1");
+        assertTrue(tierValues.size() >= 5 && tierValues.size() <= 6);
+        for (int i = 1; i < tierValues.size(); i++) {
+            assertEquals(5 * MINUTE, tierValues.get(i).getTime() - tierValues.get(i - 1).getTime());
+        }
+
+        values = store.getHistoryMetricData(1L, "cpu", "usage", null, "1h", true, false);
+        assertFalse(values.get("disk1").isEmpty());
+        for (Value value : values.get("disk1")) {
+            assertTrue(Double.parseDouble(value.getMin()) <= Double.parseDouble(value.getMean()));
+            assertTrue(Double.parseDouble(value.getMax()) >= Double.parseDouble(value.getMean()));
+        }
+
+        // memory does not keep the data of 2 hours ago
+        assertNull(store.getHistoryMetricData(1L, "cpu", "usage", null, "2h", false, true));
+        assertFalse(store.getHistoryMetricData(1L, "cpu", "usage", null, "2h", false, false).get("disk1").isEmpty());
+        // unknown series
+        assertNull(store.getHistoryMetricData(2L, "cpu", "usage", null, "5m", false, true));
+        assertTrue(store.getHistoryMetricData(2L, "cpu", "usage", null, "5m", false, false).isEmpty());
+        // string field is not kept
+        assertNull(store.getHistoryMetricData(1L, "cpu", "name", null, "5m", false, true));
+    }
+
+    @Test
+    void maxSeries() {
+        MemoryHistoryStore store = new MemoryHistoryStore(properties(2, 10));
+        long now = System.currentTimeMillis();
+        for (long monitorId = 1; monitorId <= 3; monitorId++) {
+            store.add(metricsData(now, "1").toBuilder().setId(monitorId).build());
+        }
+        MemoryHistoryStore.HistoryStats stats = store.getStats();
+        assertEquals(2, stats.getSeries());
+        assertEquals(1, stats.getRejectedSeries());
+        assertEquals(2 * stats.getBytesPerSeries(), stats.getUsedBytes());
+        assertEquals(stats.getMaxBytes(), stats.getUsedBytes());
+        assertNull(store.getHistoryMetricData(3L, "cpu", "usage", null, "5m", false, true));
+
+        // stale series are removed and the slots are free again
+        store.evictStale(now + TimeUnit.DAYS.toMillis(2));
+        assertEquals(0, store.getStats().getSeries());
+        store.add(metricsData(now, "1").toBuilder().setId(3L).build());
+        assertEquals(1, store.getStats().getSeries());
+    }
+
+    @Test
+    void readWhileWriting() throws Exception {
+        HistoryRing ring = new HistoryRing(64, 0L);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> error = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                HistoryRing.Snapshot snapshot = ring.snapshot(0L);
+                for (int i = 0; i < snapshot.size(); i++) {
+                    // value is always the time, in time order
+                    if (snapshot.values[i] != snapshot.times[i] || (i > 0 && snapshot.times[i] <= snapshot.times[i - 1])) {
+                        error.set("torn snapshot at " + i);
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (long time = 1; time <= 200000; time++) {
+            ring.add(time, time);
+        }
+        running.set(false);
+        reader.join();
+        assertNull(error.get());
+        assertTrue(ring.isFull());
+        assertEquals(200000 - 63, ring.oldestTime());
+    }
+
+    private WarehouseProperties.StoreProperties.HistoryProperties properties(
+            int maxSeries, int rawDepth, WarehouseProperties.StoreProperties.HistoryTier... tiers) {
+        WarehouseProperties.StoreProperties.HistoryProperties properties = new WarehouseProperties.StoreProperties.HistoryProperties();
+        properties.setMaxSeries(maxSeries);
+        properties.setRawDepth(rawDepth);
+        List<WarehouseProperties.StoreProperties.HistoryTier> tierList = new ArrayList<>();
+        Collections.addAll(tierList, tiers);
+        properties.setTiers(tierList);
+        return properties;
+    }
+
+    private CollectRep.MetricsData metricsData(long time, String usage) {
+        return CollectRep.MetricsData.newBuilder()
+                .setId(1L).setApp("linux").setMetrics("cpu").setTime(time)
+                .addFields(CollectRep.Field.newBuilder().setName("name").setType(CommonConstants.TYPE_STRING).build())
+                .addFields(CollectRep.Field.newBuilder().setName("usage").setType(CommonConstants.TYPE_NUMBER).build())
+                .addValues(CollectRep.ValueRow.newBuilder().setInstance("disk1").addColumns("disk1").addColumns(usage).build())
+                .build();
+    }
+}
@@ -1,8 +1,15 @@
 package com.usthe.warehouse.store;
 
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -10,23 +17,79 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class MetricsDataRedisCodecTest {
 
+    private MetricsDataRedisCodec codec;
+    private MetricsDataRedisCodec compressCodec;
+    private CollectRep.MetricsData metricsData;
+
     @BeforeEach
     void setUp() {
+        codec = new MetricsDataRedisCodec();
+        compressCodec = new MetricsDataRedisCodec(256);
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder()
+                .setId(1024L).setApp("linux").setMetrics("interface").setTime(1666000000000L)
+                .addFields(CollectRep.Field.newBuilder().setName("interface_name").setType(CommonConstants.TYPE_STRING))
+                .addFields(CollectRep.Field.newBuilder().setName("receive_bytes").setType(CommonConstants.TYPE_NUMBER));
+        for (int row = 0; row < 50; row++) {
+            builder.addValues(CollectRep.ValueRow.newBuilder().setInstance("eth" + row)
+                    .addColumns("eth" + row).addColumns(String.valueOf(row * 1024.5)));
+        }
+        metricsData = builder.build();
     }
 
     @Test
     void decodeKey() {
+        ByteBuffer direct = ByteBuffer.allocateDirect(16);
+        direct.put("x监控1024".getBytes(StandardCharsets.UTF_8)).flip();
+        assertEquals("x监控1024", codec.decodeKey(direct));
+
+        // heap buffer not starting at 0
+        ByteBuffer heap = ByteBuffer.wrap("xx1024".getBytes(StandardCharsets.UTF_8));
+        heap.position(2);
+        assertEquals("1024", codec.decodeKey(heap));
     }
 
     @Test
     void decodeValue() {
+        ByteBuffer direct = ByteBuffer.allocateDirect(metricsData.getSerializedSize());
+        direct.put(metricsData.toByteArray()).flip();
+        assertEquals(metricsData, codec.decodeValue(direct));
+
+        // the compressed value decoded by any codec, the raw value by the compress codec
+        assertEquals(metricsData, codec.decodeValue(compressCodec.encodeValue(metricsData)));
+        assertEquals(metricsData, compressCodec.decodeValue(ByteBuffer.wrap(metricsData.toByteArray())));
+        assertNull(codec.decodeValue(ByteBuffer.wrap(new byte[]{0, 9, 1, 2})));
     }
 
     @Test
     void encodeKey() {
+        assertEquals("1024", StandardCharsets.UTF_8.decode(codec.encodeKey("1024")).toString());
+        ByteBuf target = Unpooled.directBuffer(2);
+        codec.encodeKey("监控1024", target);
+        assertEquals("监控1024", target.toString(StandardCharsets.UTF_8));
+        assertTrue(codec.estimateSize("监控1024") >= target.readableBytes());
     }
 
     @Test
     void encodeValue() {
+        ByteBuffer raw = codec.encodeValue(metricsData);
+        assertEquals(ByteBuffer.wrap(metricsData.toByteArray()), raw);
+
+        ByteBuf target = Unpooled.directBuffer(4);
+        target.writeByte(7);
+        codec.encodeValue(metricsData, target);
+        target.skipBytes(1);
+        assertEquals(metricsData.getSerializedSize(), target.readableBytes());
+        assertEquals(metricsData, codec.decodeValue(target.nioBuffer()));
+
+        ByteBuffer compressed = compressCodec.encodeValue(metricsData);
+        assertEquals(0, compressed.get(compressed.position()));
+        assertTrue(compressed.remaining() < metricsData.getSerializedSize());
+        ByteBuf compressedTarget = Unpooled.buffer();
+        compressCodec.encodeValue(metricsData, compressedTarget);
+        assertEquals(compressed, compressedTarget.nioBuffer());
+
+        // small value not compressed
+        CollectRep.MetricsData small = CollectRep.MetricsData.newBuilder().setId(1L).setMetrics("cpu").build();
+        assertEquals(ByteBuffer.wrap(small.toByteArray()), compressCodec.encodeValue(small));
     }
-}
\ No newline at end of file
+}
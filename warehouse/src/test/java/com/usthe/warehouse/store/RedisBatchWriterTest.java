@@ -0,0 +1,106 @@
+package com.usthe.warehouse.store;
+
+import com.usthe.common.entity.message.CollectRep;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for {@link RedisBatchWriter}
+ */
+class RedisBatchWriterTest {
+
+    private StatefulRedisConnection<String, CollectRep.MetricsData> connection;
+    private RedisAsyncCommands<String, CollectRep.MetricsData> commands;
+    private RedisFuture<Long> future;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        connection = mock(StatefulRedisConnection.class);
+        commands = mock(RedisAsyncCommands.class);
+        future = mock(RedisFuture.class);
+        when(connection.async()).thenReturn(commands);
+        when(commands.hset(anyString(), anyMap())).thenReturn(future);
+        when(future.await(anyLong(), any(TimeUnit.class))).thenReturn(true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void addAndFlush() throws Exception {
+        RedisBatchWriter writer = new RedisBatchWriter(connection, 3, 60000, 1000);
+        verify(connection).setAutoFlushCommands(false);
+
+        writer.add(metricsData(1L, "cpu", "10"));
+        writer.add(metricsData(1L, "memory", "20"));
+        // the same monitor metrics replaced by the latest in one batch
+        writer.add(metricsData(1L, "cpu", "11"));
+        writer.flushIfExpired();
+        verify(commands, never()).hset(anyString(), anyMap());
+
+        writer.add(metricsData(2L, "cpu", "30"));
+        ArgumentCaptor<Map<String, CollectRep.MetricsData>> fields = ArgumentCaptor.forClass(Map.class);
+        InOrder inOrder = inOrder(commands, connection);
+        inOrder.verify(commands).hset(eq("1"), fields.capture());
+        inOrder.verify(commands).hset(eq("2"), anyMap());
+        inOrder.verify(connection).flushCommands();
+        assertEquals(2, fields.getValue().size());
+        assertEquals("11", fields.getValue().get("cpu").getValues(0).getColumns(0));
+        assertEquals(1, writer.getFlushCount());
+        // acknowledged before the next flush
+        assertEquals(0, writer.getWrittenFields());
+        writer.close();
+        verify(future, times(2)).await(anyLong(), any(TimeUnit.class));
+        assertEquals(3, writer.getWrittenFields());
+    }
+
+    @Test
+    void flushIfExpired() {
+        RedisBatchWriter writer = new RedisBatchWriter(connection, 100, 0, 1000);
+        writer.flushIfExpired();
+        verify(connection, never()).flushCommands();
+        writer.add(metricsData(1L, "cpu", "10"));
+        writer.add(CollectRep.MetricsData.newBuilder().setId(1L).setMetrics("disk").build());
+        writer.flushIfExpired();
+        verify(commands).hset(eq("1"), anyMap());
+        verify(connection).flushCommands();
+    }
+
+    @Test
+    void writeError() throws Exception {
+        when(future.getError()).thenReturn("OOM command not allowed");
+        RedisBatchWriter writer = new RedisBatchWriter(connection, 1, 0, 1000);
+        writer.add(metricsData(1L, "cpu", "10"));
+        writer.close();
+        assertEquals(0, writer.getWrittenFields());
+
+        when(future.await(anyLong(), any(TimeUnit.class))).thenReturn(false);
+        writer.add(metricsData(1L, "cpu", "10"));
+        writer.close();
+        assertEquals(0, writer.getWrittenFields());
+        assertEquals(2, writer.getFlushCount());
+    }
+
+    private CollectRep.MetricsData metricsData(long monitorId, String metrics, String value) {
+        return CollectRep.MetricsData.newBuilder()
+                .setId(monitorId).setApp("linux").setMetrics(metrics).setTime(System.currentTimeMillis())
+                .addFields(CollectRep.Field.newBuilder().setName("usage").build())
+                .addValues(CollectRep.ValueRow.newBuilder().addColumns(value).build())
+                .build();
+    }
+}
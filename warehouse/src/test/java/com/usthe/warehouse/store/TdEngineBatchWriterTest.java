@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.usthe.warehouse.store;
+
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.warehouse.WarehouseProperties;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link TdEngineBatchWriter}
+ */
+class TdEngineBatchWriterTest {
+
+    /**
+     * fake tdengine jdbc endpoint, record executed sql and borrowed connections
+     */
+    private static class FakeTdEngine {
+        private final List<String> executedSql = new CopyOnWriteArrayList<>();
+        private final Set<String> superTables = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger connections = new AtomicInteger();
+        /**
+         * tables rejected by the endpoint, eg: column mismatch after a schema change
+         */
+        private final Set<String> badTables = ConcurrentHashMap.newKeySet();
+        /**
+         * the next connections failed
+         */
+        private final AtomicInteger failedConnections = new AtomicInteger();
+        private final boolean autoCreated;
+
+        private FakeTdEngine(boolean autoCreated) {
+            this.autoCreated = autoCreated;
+        }
+
+        private DataSource dataSource() {
+            return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{DataSource.class},
+                    (proxy, method, args) -> {
+                        if ("getConnection".equals(method.getName())) {
+                            if (failedConnections.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                                throw new SQLException("Connection is not available, request timed out");
+                            }
+                            connections.incrementAndGet();
+                            return connection();
+                        }
+                        return null;
+                    });
+        }
+
+        private Connection connection() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                    (proxy, method, args) -> "createStatement".equals(method.getName()) ? statement() : null);
+        }
+
+        private Statement statement() {
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Statement.class},
+                    (proxy, method, args) -> {
+                        if ("execute".equals(method.getName())) {
+                            String sql = (String) args[0];
+                            if (sql.startsWith("CREATE STABLE")) {
+                                superTables.add(sql.substring(sql.indexOf('`') + 1, sql.indexOf('`', sql.indexOf('`') + 1)));
+                            }
+                            for (String token : sql.split(" ")) {
+                                if (badTables.contains(token)) {
+                                    throw new SQLException("TDengine ERROR (2603): Invalid column name");
+                                }
+                            }
+                            if (!sql.startsWith("CREATE STABLE") && !autoCreated) {
+                                for (String token : sql.split(" ")) {
+                                    if (token.endsWith("_super") && !superTables.contains(token)) {
+                                        throw new SQLException("TDengine ERROR (2662): Table does not exist");
+                                    }
+                                }
+                            }
+                            executedSql.add(sql);
+                            return true;
+                        }
+                        return null;
+                    });
+        }
+    }
+
+    private WarehouseProperties.StoreProperties.TdEngineProperties properties(int batchSize) {
+        WarehouseProperties.StoreProperties.TdEngineProperties properties =
+                new WarehouseProperties.StoreProperties.TdEngineProperties();
+        properties.setBatchSize(batchSize);
+        properties.setBatchInterval(60_000);
+        properties.setMaxSqlLength(1024 * 1024);
+        return properties;
+    }
+
+    private CollectRep.MetricsData metricsData(long monitorId, String metrics, int rows) {
+        CollectRep.MetricsData.Builder builder = CollectRep.MetricsData.newBuilder()
+                .setId(monitorId).setApp("linux").setMetrics(metrics).setTime(System.currentTimeMillis())
+                .addFields(CollectRep.Field.newBuilder().setName("usage").setType(0).build())
+                .addFields(CollectRep.Field.newBuilder().setName("name").setType(1).build());
+        for (int i = 0; i < rows; i++) {
+            builder.addValues(CollectRep.ValueRow.newBuilder().setInstance(String.valueOf(i))
+                    .addColumns(String.valueOf(i * 1.5)).addColumns("it's " + i).build());
+        }
+        return builder.build();
+    }
+
+    @Test
+    void batchMultiTableInsert() {
+        FakeTdEngine tdEngine = new FakeTdEngine(true);
+        TdEngineBatchWriter batchWriter = new TdEngineBatchWriter(tdEngine.dataSource(), properties(100));
+        for (int i = 0; i < 10; i++) {
+            batchWriter.add(metricsData(i, "cpu", 10));
+        }
+        // 100 rows reach the batch size, flush in one statement on one connection
+        assertEquals(1, tdEngine.executedSql.size());
+        assertEquals(1, tdEngine.connections.get());
+        assertEquals(100, batchWriter.getWrittenRows());
+        String sql = tdEngine.executedSql.get(0);
+        assertTrue(sql.startsWith("INSERT INTO linux_cpu_0 USING linux_cpu_super TAGS (0) VALUES"));
+        assertTrue(sql.contains(" linux_cpu_9 USING linux_cpu_super TAGS (9) VALUES"));
+        assertTrue(sql.contains("'it\\'s 1'"));
+    }
+
+    @Test
+    void createSuperTableWhenNotExist() {
+        FakeTdEngine tdEngine = new FakeTdEngine(false);
+        TdEngineBatchWriter batchWriter = new TdEngineBatchWriter(tdEngine.dataSource(), properties(1000));
+        batchWriter.add(metricsData(1, "cpu", 2));
+        batchWriter.add(metricsData(1, "memory", 3));
+        batchWriter.flush();
+        assertTrue(tdEngine.superTables.contains("linux_cpu_super"));
+        assertTrue(tdEngine.superTables.contains("linux_memory_super"));
+        assertEquals(5, batchWriter.getWrittenRows());
+        // stable exist now, write in one statement again
+        int executed = tdEngine.executedSql.size();
+        batchWriter.add(metricsData(2, "cpu", 2));
+        batchWriter.add(metricsData(2, "memory", 3));
+        batchWriter.flush();
+        assertEquals(executed + 1, tdEngine.executedSql.size());
+        assertEquals(10, batchWriter.getWrittenRows());
+    }
+
+    @Test
+    void splitByMaxSqlLength() {
+        FakeTdEngine tdEngine = new FakeTdEngine(true);
+        WarehouseProperties.StoreProperties.TdEngineProperties properties = properties(100000);
+        properties.setMaxSqlLength(2048);
+        TdEngineBatchWriter batchWriter = new TdEngineBatchWriter(tdEngine.dataSource(), properties);
+        for (int i = 0; i < 100; i++) {
+            batchWriter.add(metricsData(i, "cpu", 5));
+        }
+        batchWriter.flush();
+        assertEquals(500, batchWriter.getWrittenRows());
+        for (String sql : tdEngine.executedSql) {
+            assertTrue(sql.length() <= 2048);
+        }
+    }
+
+    @Test
+    void oneConnectionPerBatch() {
+        FakeTdEngine tdEngine = new FakeTdEngine(true);
+        TdEngineBatchWriter batchWriter = new TdEngineBatchWriter(tdEngine.dataSource(), properties(1000));
+        int messages = 20_000;
+        for (int i = 0; i < messages; i++) {
+            batchWriter.add(metricsData(i % 3000, "cpu", 2));
+        }
+        batchWriter.flush();
+        assertEquals(messages * 2L, batchWriter.getWrittenRows());
+        // 2 rows per message, a batch of 1000 rows every 500 messages
+        assertEquals(40, batchWriter.getFlushCount());
+        assertEquals(40, tdEngine.connections.get());
+        assertEquals(40, tdEngine.executedSql.size());
+    }
+
+    @Test
+    void dropOnlyTheFailedTable() {
+        FakeTdEngine tdEngine = new FakeTdEngine(true);
+        tdEngine.badTables.add("linux_cpu_2");
+        TdEngineBatchWriter batchWriter = new TdEngineBatchWriter(tdEngine.dataSource(), properties(1000));
+        for (int i = 0; i < 5; i++) {
+            batchWriter.add(metricsData(i, "cpu", 3));
+        }
+        batchWriter.flush();
+        // the batch statement fails, the other tables are written one by one
+        assertEquals(12, batchWriter.getWrittenRows());
+        assertEquals(3, batchWriter.getDroppedRows());
+        assertEquals(4, tdEngine.executedSql.size());
+        assertEquals(1, tdEngine.connections.get());
+    }
+
+    @Test
+    void retryConnection() {
+        FakeTdEngine tdEngine = new FakeTdEngine(true);
+        tdEngine.failedConnections.set(1);
+        TdEngineBatchWriter batchWriter = new TdEngineBatchWriter(tdEngine.dataSource(), properties(1000));
+        batchWriter.add(metricsData(1, "cpu", 3));
+        batchWriter.flush();
+        assertEquals(3, batchWriter.getWrittenRows());
+        assertEquals(0, batchWriter.getDroppedRows());
+
+        // connection not available after the retries, the rows are dropped and counted
+        tdEngine.failedConnections.set(3);
+        batchWriter.add(metricsData(1, "cpu", 3));
+        batchWriter.flush();
+        assertEquals(3, batchWriter.getWrittenRows());
+        assertEquals(3, batchWriter.getDroppedRows());
+    }
+}
@@ -0,0 +1,202 @@
+package com.usthe.warehouse.store;
+
+import com.usthe.common.entity.dto.Value;
+import com.usthe.warehouse.WarehouseProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link TdEngineHistoryQuery}
+ */
+class TdEngineHistoryQueryTest {
+
+    /**
+     * fake tdengine jdbc endpoint, record executed sql and answer the history queries
+     */
+    private static class FakeTdEngine {
+        private final List<String> executedSql = new CopyOnWriteArrayList<>();
+        private final List<String> instances = new ArrayList<>(Arrays.asList("disk1", "it's", ""));
+        private volatile CountDownLatch intervalLatch;
+        private volatile boolean intervalParallel = true;
+        private volatile String failInstance;
+        private volatile boolean tableNotExist;
+
+        private DataSource dataSource() {
+            return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{DataSource.class},
+                    (proxy, method, args) -> "getConnection".equals(method.getName()) ? connection() : null);
+        }
+
+        private Connection connection() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                    (proxy, method, args) -> "createStatement".equals(method.getName()) ? statement() : null);
+        }
+
+        private Statement statement() {
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Statement.class},
+                    (proxy, method, args) -> "executeQuery".equals(method.getName()) ? query((String) args[0]) : null);
+        }
+
+        private ResultSet query(String sql) throws Exception {
+            executedSql.add(sql);
+            if (tableNotExist) {
+                throw new SQLException("TDengine ERROR (2662): Table does not exist");
+            }
+            long now = System.currentTimeMillis();
+            List<Object[]> rows = new ArrayList<>();
+            if (sql.startsWith("SELECT DISTINCT instance")) {
+                for (String instance : instances) {
+                    rows.add(new Object[]{instance.isEmpty() ? null : instance});
+                }
+            } else if (sql.startsWith("SELECT first(")) {
+                if (failInstance != null && sql.contains("instance = '" + failInstance + "'")) {
+                    throw new SQLException("query timeout");
+                }
+                CountDownLatch latch = intervalLatch;
+                if (latch != null) {
+                    latch.countDown();
+                    intervalParallel &= latch.await(5, TimeUnit.SECONDS);
+                }
+                rows.add(new Object[]{new Timestamp(now - 60000), 1.0, 2.123456, 0.5, 4.0});
+                rows.add(new Object[]{new Timestamp(now), 3.0, 3.0, 3.0, 3.0});
+            } else {
+                rows.add(new Object[]{new Timestamp(now), "disk1", 10.00004});
+                rows.add(new Object[]{new Timestamp(now - 60000), null, 20.5});
+            }
+            return resultSet(rows);
+        }
+
+        private ResultSet resultSet(List<Object[]> rows) {
+            Iterator<Object[]> iterator = rows.iterator();
+            Object[][] current = new Object[1][];
+            return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ResultSet.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "next":
+                                current[0] = iterator.hasNext() ? iterator.next() : null;
+                                return current[0] != null;
+                            case "getTimestamp":
+                            case "getString":
+                                return current[0][(int) args[0] - 1];
+                            case "getDouble":
+                                return ((Number) current[0][(int) args[0] - 1]).doubleValue();
+                            default:
+                                return null;
+                        }
+                    });
+        }
+
+        private long count(String prefix) {
+            return executedSql.stream().filter(sql -> sql.startsWith(prefix)).count();
+        }
+    }
+
+    private final FakeTdEngine tdEngine = new FakeTdEngine();
+    private TdEngineHistoryQuery historyQuery;
+
+    @AfterEach
+    void tearDown() {
+        if (historyQuery != null) {
+            historyQuery.close();
+        }
+    }
+
+    private TdEngineHistoryQuery historyQuery(long cacheTtl) {
+        WarehouseProperties.StoreProperties.TdEngineProperties properties =
+                new WarehouseProperties.StoreProperties.TdEngineProperties();
+        properties.setQueryCacheTtl(cacheTtl);
+        historyQuery = new TdEngineHistoryQuery(tdEngine.dataSource(), properties);
+        return historyQuery;
+    }
+
+    @Test
+    void intervalDerivedFromHistory() {
+        TdEngineHistoryQuery query = historyQuery(0);
+        query.getHistoryIntervalMetricData("linux_disk_1", "usage", "disk1", "1h");
+        query.getHistoryIntervalMetricData("linux_disk_1", "usage", "disk1", "1d");
+        query.getHistoryIntervalMetricData("linux_disk_1", "usage", "disk1", "7d");
+        assertEquals(3, tdEngine.executedSql.size());
+        assertTrue(tdEngine.executedSql.get(0).endsWith("instance = 'disk1' AND ts >= now - 1h interval(30s)"));
+        assertTrue(tdEngine.executedSql.get(1).endsWith("ts >= now - 1d interval(10m)"));
+        assertTrue(tdEngine.executedSql.get(2).endsWith("ts >= now - 7d interval(1h)"));
+    }
+
+    @Test
+    void queryInstancesInParallel() {
+        TdEngineHistoryQuery query = historyQuery(0);
+        tdEngine.intervalLatch = new CountDownLatch(tdEngine.instances.size());
+        Map<String, List<Value>> instanceValues = query.getHistoryIntervalMetricData("linux_disk_1", "usage", null, "1d");
+        // every instance query waits the others, only finish in time when run at the same time
+        assertTrue(tdEngine.intervalParallel);
+        assertEquals(1, tdEngine.count("SELECT DISTINCT instance FROM linux_disk_1 WHERE ts >= now - 1d"));
+        assertEquals(3, tdEngine.count("SELECT first("));
+        assertEquals(3, instanceValues.size());
+        assertTrue(tdEngine.executedSql.stream().anyMatch(sql -> sql.contains("instance = 'it\\'s'")));
+        assertTrue(tdEngine.executedSql.stream().anyMatch(sql -> sql.contains("instance = ''")));
+        List<Value> values = instanceValues.get("NULL");
+        assertEquals(2, values.size());
+        assertEquals("1", values.get(0).getOrigin());
+        assertEquals("2.1235", values.get(0).getMean());
+        assertEquals("0.5", values.get(0).getMin());
+        assertEquals("4", values.get(0).getMax());
+    }
+
+    @Test
+    void cacheResult() {
+        TdEngineHistoryQuery query = historyQuery(60);
+        Map<String, List<Value>> first = query.getHistoryIntervalMetricData("linux_disk_1", "usage", null, "1d");
+        Map<String, List<Value>> second = query.getHistoryIntervalMetricData("linux_disk_1", "usage", null, "1d");
+        assertSame(first, second);
+        assertEquals(4, tdEngine.executedSql.size());
+        // other history or raw query is another key
+        query.getHistoryIntervalMetricData("linux_disk_1", "usage", null, "7d");
+        query.getHistoryMetricData("linux_disk_1", "usage", null, "1d");
+        query.getHistoryMetricData("linux_disk_1", "usage", null, "1d");
+        assertEquals(9, tdEngine.executedSql.size());
+        Map<String, List<Value>> raw = query.getHistoryMetricData("linux_disk_1", "usage", null, "1d");
+        assertEquals("10", raw.get("disk1").get(0).getOrigin());
+        assertEquals("20.5", raw.get("NULL").get(0).getOrigin());
+        assertThrows(UnsupportedOperationException.class, () -> raw.put("disk2", new ArrayList<>()));
+    }
+
+    @Test
+    void failureNotCached() {
+        TdEngineHistoryQuery query = historyQuery(60);
+        tdEngine.failInstance = "disk1";
+        Map<String, List<Value>> partial = query.getHistoryIntervalMetricData("linux_disk_1", "usage", null, "1d");
+        // the partial result is returned
+        assertEquals(3, partial.size());
+        assertTrue(partial.get("disk1").isEmpty());
+        assertEquals(2, partial.get("NULL").size());
+
+        tdEngine.failInstance = null;
+        tdEngine.executedSql.clear();
+        Map<String, List<Value>> complete = query.getHistoryIntervalMetricData("linux_disk_1", "usage", null, "1d");
+        assertEquals(4, tdEngine.executedSql.size());
+        assertEquals(2, complete.get("disk1").size());
+
+        // the table not created yet is an empty result and cached
+        tdEngine.tableNotExist = true;
+        tdEngine.executedSql.clear();
+        assertTrue(query.getHistoryMetricData("linux_cpu_1", "usage", "disk1", "1h").isEmpty());
+        assertTrue(query.getHistoryMetricData("linux_cpu_1", "usage", "disk1", "1h").isEmpty());
+        assertEquals(1, tdEngine.executedSql.size());
+    }
+}
@@ -0,0 +1,88 @@
+package com.usthe.warehouse.store.tsdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link GorillaEncoder} {@link GorillaDecoder}
+ */
+class GorillaCodecTest {
+
+    @Test
+    void regularSamples() {
+        long[] times = new long[120];
+        double[] values = new double[120];
+        long start = 1665900000000L;
+        for (int i = 0; i < times.length; i++) {
+            times[i] = start + i * 60000L;
+            values[i] = 20 + i % 3;
+        }
+        GorillaEncoder encoder = roundTrip(times, values);
+        // regular timestamps and repeated values take only a few bits per sample
+        assertTrue(encoder.byteLength() < times.length * 2);
+    }
+
+    @Test
+    void irregularSamples() {
+        Random random = new Random(7);
+        long[] times = new long[1000];
+        double[] values = new double[1000];
+        long time = 1665900000000L;
+        for (int i = 0; i < times.length; i++) {
+            // jitter, gaps and out of order timestamps
+            time += random.nextInt(10) == 0 ? random.nextInt(100000000) - 30000000 : 60000 + random.nextInt(2000) - 1000;
+            times[i] = time;
+            values[i] = random.nextGaussian() * 1000;
+        }
+        times[500] = Long.MIN_VALUE / 4;
+        times[501] = Long.MAX_VALUE / 4;
+        values[100] = Double.NaN;
+        values[101] = Double.POSITIVE_INFINITY;
+        values[102] = -0.0D;
+        values[103] = Double.MIN_VALUE;
+        roundTrip(times, values);
+    }
+
+    @Test
+    void singleSample() {
+        roundTrip(new long[]{1L}, new double[]{3.14D});
+    }
+
+    @Test
+    void corruptedBlock() {
+        GorillaEncoder encoder = new GorillaEncoder(16);
+        encoder.append(1000L, 1D);
+        encoder.append(2000L, 2D);
+        byte[] data = encoder.toByteArray();
+        GorillaDecoder decoder = new GorillaDecoder(ByteBuffer.wrap(data), 0, data.length, 10);
+        assertThrows(IllegalStateException.class, () -> {
+            while (decoder.next()) {
+                decoder.getValue();
+            }
+        });
+    }
+
+    private GorillaEncoder roundTrip(long[] times, double[] values) {
+        GorillaEncoder encoder = new GorillaEncoder(16);
+        for (int i = 0; i < times.length; i++) {
+            encoder.append(times[i], values[i]);
+        }
+        assertEquals(times.length, encoder.getCount());
+        byte[] data = encoder.toByteArray();
+        // decode from the middle of a larger buffer, as the blocks in the chunk file
+        ByteBuffer buffer = ByteBuffer.allocate(data.length + 10);
+        System.arraycopy(data, 0, buffer.array(), 5, data.length);
+        GorillaDecoder decoder = new GorillaDecoder(buffer, 5, data.length, encoder.getCount());
+        for (int i = 0; i < times.length; i++) {
+            assertTrue(decoder.next());
+            assertEquals(times[i], decoder.getTime());
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoder.getValue()));
+        }
+        assertFalse(decoder.next());
+        return encoder;
+    }
+}
@@ -0,0 +1,113 @@
+package com.usthe.warehouse.store.tsdb;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test case for {@link LocalTsdb}
+ */
+class LocalTsdbTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @TempDir
+    File dataDir;
+
+    @Test
+    void appendAndScan() throws Exception {
+        long start = System.currentTimeMillis() - 100 * MINUTE;
+        try (LocalTsdb tsdb = new LocalTsdb(dataDir, 7 * DAY, DAY, 1024 * 1024, 30, 30 * MINUTE)) {
+            for (int i = 0; i < 100; i++) {
+                tsdb.append(1L, "cpu", "usage", "disk1", start + i * MINUTE, i);
+                tsdb.append(1L, "cpu", "usage", "disk2", start + i * MINUTE, i * 2);
+            }
+            // 3 sealed blocks and the head of each series
+            List<double[]> samples = scan(tsdb, "disk1", start, start + 100 * MINUTE);
+            assertEquals(100, samples.size());
+            for (int i = 0; i < samples.size(); i++) {
+                assertEquals(start + i * MINUTE, (long) samples.get(i)[0]);
+                assertEquals((double) i, samples.get(i)[1]);
+            }
+            // time range across the blocks
+            samples = scan(tsdb, "disk2", start + 25 * MINUTE, start + 35 * MINUTE);
+            assertEquals(11, samples.size());
+            assertEquals(50D, samples.get(0)[1]);
+            // all instances
+            samples = scan(tsdb, null, start, start + 100 * MINUTE);
+            assertEquals(200, samples.size());
+            assertTrue(scan(tsdb, "disk3", start, start + 100 * MINUTE).isEmpty());
+            assertTrue(scan(tsdb, "disk1", start - 10 * MINUTE, start - MINUTE).isEmpty());
+
+            LocalTsdb.TsdbStats stats = tsdb.getStats();
+            assertEquals(2, stats.getSeries());
+            assertEquals(180, stats.getSamples());
+            assertTrue(stats.getBytesPerSample() > 0 && stats.getBytesPerSample() < 16);
+        }
+    }
+
+    @Test
+    void reopen() throws Exception {
+        long start = System.currentTimeMillis() - 100 * MINUTE;
+        try (LocalTsdb tsdb = new LocalTsdb(dataDir, 7 * DAY, DAY, 1024 * 1024, 30, 30 * MINUTE)) {
+            for (int i = 0; i < 100; i++) {
+                tsdb.append(1L, "cpu", "usage", "disk1", start + i * MINUTE, i * 0.5);
+            }
+        }
+        try (LocalTsdb tsdb = new LocalTsdb(dataDir, 7 * DAY, DAY, 1024 * 1024, 30, 30 * MINUTE)) {
+            // the heads were sealed when closed
+            assertEquals(100, tsdb.getStats().getSamples());
+            tsdb.append(1L, "cpu", "usage", "disk1", start + 100 * MINUTE, 50);
+            tsdb.append(2L, "mem", "usage", "", start, 1);
+            List<double[]> samples = scan(tsdb, "disk1", start, start + 100 * MINUTE);
+            assertEquals(101, samples.size());
+            assertEquals(49.5D, samples.get(99)[1]);
+        }
+        try (LocalTsdb tsdb = new LocalTsdb(dataDir, 7 * DAY, DAY, 1024 * 1024, 30, 30 * MINUTE)) {
+            assertEquals(2, tsdb.getStats().getSeries());
+            assertEquals(102, tsdb.getStats().getSamples());
+        }
+    }
+
+    @Test
+    void sealAndRetention() throws Exception {
+        long now = System.currentTimeMillis();
+        // the chunk duration is 0, every sealed block rolls a new chunk
+        try (LocalTsdb tsdb = new LocalTsdb(dataDir, DAY, 0L, 1024 * 1024, 1000, MINUTE)) {
+            for (int i = 0; i < 10; i++) {
+                tsdb.append(1L, "cpu", "usage", "disk1", now - 3 * DAY + i * MINUTE, i);
+            }
+            assertEquals(0, tsdb.getStats().getSamples());
+            // the head is old enough to be sealed, the active chunk is never deleted
+            tsdb.maintain(now + 2 * MINUTE);
+            assertEquals(1, tsdb.getStats().getChunks());
+            assertEquals(10, tsdb.getStats().getSamples());
+
+            tsdb.append(1L, "cpu", "usage", "disk1", now - 2 * MINUTE, 10);
+            tsdb.append(1L, "cpu", "usage", "disk2", now - 2 * MINUTE, 10);
+            tsdb.maintain(now + 4 * MINUTE);
+            LocalTsdb.TsdbStats stats = tsdb.getStats();
+            assertEquals(2, stats.getSeries());
+            assertEquals(2, stats.getChunks());
+            assertEquals(2, stats.getSamples());
+            assertEquals(1, scan(tsdb, "disk1", now - 4 * DAY, now).size());
+            assertEquals(2, dataDir.listFiles((dir, name) -> name.startsWith("chunk-")).length);
+        }
+    }
+
+    private List<double[]> scan(LocalTsdb tsdb, String instance, long start, long end) {
+        List<double[]> samples = new ArrayList<>();
+        tsdb.scan(1L, "cpu", "usage", instance, start, end, (instanceValue, time, value) -> {
+            assertTrue(instance == null || instance.equals(instanceValue));
+            samples.add(new double[]{time, value});
+        });
+        return samples;
+    }
+}
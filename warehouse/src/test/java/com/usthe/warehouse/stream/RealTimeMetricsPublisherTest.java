@@ -0,0 +1,179 @@
+package com.usthe.warehouse.stream;
+
+import com.usthe.common.entity.message.CollectRep;
+import com.usthe.common.util.CommonConstants;
+import com.usthe.warehouse.WarehouseProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for {@link RealTimeMetricsPublisher}
+ */
+class RealTimeMetricsPublisherTest {
+
+    private static final int QUEUE_SIZE = 4;
+
+    private RealTimeMetricsPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        WarehouseProperties properties = new WarehouseProperties();
+        properties.getStream().setQueueSize(QUEUE_SIZE);
+        properties.getStream().setMaxSubscribers(3);
+        properties.getStream().setHeartbeatInterval(3600);
+        publisher = new RealTimeMetricsPublisher(properties);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        publisher.destroy();
+    }
+
+    @Test
+    void publish() throws Exception {
+        SseEmitter cpuEmitter = mock(SseEmitter.class);
+        SseEmitter otherCpuEmitter = mock(SseEmitter.class);
+        SseEmitter memoryEmitter = mock(SseEmitter.class);
+        publisher.subscribe(cpuEmitter, keys("1.cpu"), Collections.emptyList());
+        publisher.subscribe(otherCpuEmitter, keys("1.cpu", "1.memory"), Collections.emptyList());
+        publisher.subscribe(memoryEmitter, keys("1.memory"), Collections.emptyList());
+
+        publisher.publish(metricsData(1L, "cpu", "10"));
+        publisher.publish(metricsData(2L, "cpu", "20"));
+
+        ArgumentCaptor<Set<ResponseBodyEmitter.DataWithMediaType>> cpuFrame = frameCaptor();
+        ArgumentCaptor<Set<ResponseBodyEmitter.DataWithMediaType>> otherCpuFrame = frameCaptor();
+        verify(cpuEmitter, timeout(2000)).send(cpuFrame.capture());
+        verify(otherCpuEmitter, timeout(2000)).send(otherCpuFrame.capture());
+        // serialized once, the same frame sent to all subscribers
+        assertSame(cpuFrame.getValue(), otherCpuFrame.getValue());
+        String content = content(cpuFrame.getValue());
+        assertTrue(content.startsWith("event:metrics\ndata:"));
+        assertTrue(content.contains("\"metric\":\"cpu\""));
+        assertTrue(content.contains("\"origin\":\"10\""));
+        Thread.sleep(100);
+        verify(cpuEmitter, times(1)).send(anySet());
+        verify(memoryEmitter, never()).send(anySet());
+    }
+
+    @Test
+    void subscribeCurrentFirst() throws Exception {
+        SseEmitter emitter = mock(SseEmitter.class);
+        publisher.subscribe(emitter, keys("1.cpu"), Collections.singletonList(metricsData(1L, "cpu", "10")));
+        ArgumentCaptor<Set<ResponseBodyEmitter.DataWithMediaType>> frame = frameCaptor();
+        verify(emitter, timeout(2000)).send(frame.capture());
+        assertTrue(content(frame.getValue()).contains("\"origin\":\"10\""));
+        assertEquals(1, publisher.getSubscriberCount());
+    }
+
+    @Test
+    void slowSubscriberDropOldest() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SseEmitter slowEmitter = mock(SseEmitter.class);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(slowEmitter).send(anySet());
+        SseEmitter fastEmitter = mock(SseEmitter.class);
+        MetricsSubscriber slowSubscriber = publisher.subscribe(slowEmitter, keys("1.cpu"), Collections.emptyList());
+        publisher.subscribe(fastEmitter, keys("1.cpu"), Collections.emptyList());
+
+        publisher.publish(metricsData(1L, "cpu", "0"));
+        assertTrue(sending.await(2, TimeUnit.SECONDS));
+        for (int index = 1; index <= 10; index++) {
+            publisher.publish(metricsData(1L, "cpu", String.valueOf(index)));
+            // the fast subscriber is not blocked by the slow one
+            verify(fastEmitter, timeout(2000).times(index + 1)).send(anySet());
+        }
+        release.countDown();
+
+        ArgumentCaptor<Set<ResponseBodyEmitter.DataWithMediaType>> frames = frameCaptor();
+        verify(slowEmitter, timeout(2000).times(1 + QUEUE_SIZE)).send(frames.capture());
+        assertEquals(10 - QUEUE_SIZE, slowSubscriber.getDropped());
+        List<Set<ResponseBodyEmitter.DataWithMediaType>> sent = frames.getAllValues();
+        assertTrue(content(sent.get(1)).contains("\"origin\":\"" + (11 - QUEUE_SIZE) + "\""));
+        assertTrue(content(sent.get(QUEUE_SIZE)).contains("\"origin\":\"10\""));
+    }
+
+    @Test
+    void unsubscribeWhenSendError() throws Exception {
+        SseEmitter emitter = mock(SseEmitter.class);
+        doThrow(new IOException("Broken pipe")).when(emitter).send(anySet());
+        publisher.subscribe(emitter, keys("1.cpu"), Collections.emptyList());
+        publisher.publish(metricsData(1L, "cpu", "10"));
+        verify(emitter, timeout(2000)).completeWithError(any(IOException.class));
+        waitSubscriberCount(0);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    void unsubscribeWhenComplete() throws Exception {
+        SseEmitter emitter = mock(SseEmitter.class);
+        publisher.subscribe(emitter, keys("1.cpu"), Collections.emptyList());
+        ArgumentCaptor<Runnable> completion = ArgumentCaptor.forClass(Runnable.class);
+        verify(emitter).onCompletion(completion.capture());
+        completion.getValue().run();
+        assertEquals(0, publisher.getSubscriberCount());
+        publisher.publish(metricsData(1L, "cpu", "10"));
+        Thread.sleep(100);
+        verify(emitter, never()).send(anySet());
+    }
+
+    @Test
+    void subscribeFull() {
+        for (int index = 0; index < 3; index++) {
+            publisher.subscribe(mock(SseEmitter.class), keys("1.cpu"), Collections.emptyList());
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> publisher.subscribe(keys("1.cpu"), Collections.emptyList()));
+    }
+
+    private void waitSubscriberCount(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (publisher.getSubscriberCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ArgumentCaptor<Set<ResponseBodyEmitter.DataWithMediaType>> frameCaptor() {
+        return (ArgumentCaptor) ArgumentCaptor.forClass(Set.class);
+    }
+
+    private static String content(Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+        return frame.stream().map(data -> String.valueOf(data.getData())).collect(Collectors.joining());
+    }
+
+    private static Set<String> keys(String... keys) {
+        return new HashSet<>(Arrays.asList(keys));
+    }
+
+    private static CollectRep.MetricsData metricsData(long monitorId, String metrics, String usage) {
+        return CollectRep.MetricsData.newBuilder()
+                .setId(monitorId).setApp("linux").setMetrics(metrics).setTime(System.currentTimeMillis())
+                .addFields(CollectRep.Field.newBuilder().setName("usage").setType(CommonConstants.TYPE_NUMBER).build())
+                .addValues(CollectRep.ValueRow.newBuilder().addColumns(usage).build())
+                .build();
+    }
+}
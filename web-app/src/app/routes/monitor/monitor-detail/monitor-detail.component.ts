@@ -71,9 +71,9 @@ export class MonitorDetailComponent implements OnInit {
   }
 
   initMetricChart() {
-    // 检测历史数据服务是否可用
+    // 检测历史数据服务是否可用 内存历史、tdengine或本地时序存储任一可用即可
     const detectStatus$ = this.monitorSvc
-      .getWarehouseStorageServerStatus('tdengine')
+      .getWarehouseStorageServerStatus('history')
       .pipe(
         switchMap((message: Message<any>) => {
           if (message.code == 0) {